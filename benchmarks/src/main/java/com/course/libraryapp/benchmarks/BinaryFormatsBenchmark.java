@@ -0,0 +1,94 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes book lists as JSON, CBOR and Smile, with mappers built the way the message
+ * converters build theirs. The encode benchmarks also report the size of what they wrote, in bytes, as
+ * their {@code bytes} secondary result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BinaryFormatsBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private List<BookRepresentation> catalog;
+    private List<BookRepresentation> page;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+    private byte[] encodedCatalog;
+    private byte[] encodedPage;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        catalog = BookFixtures.bookRepresentations(BookFixtures.bookEntities(catalogSize));
+        page = catalog.subList(0, PAGE_SIZE);
+        listWriter = mapper.writerFor(List.class);
+        listReader = mapper.readerFor(new TypeReference<List<BookRepresentation>>() { });
+        encodedCatalog = listWriter.writeValueAsBytes(catalog);
+        encodedPage = listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] encodeCatalog(EncodedSize encodedSize) throws IOException {
+        byte[] encoded = listWriter.writeValueAsBytes(catalog);
+        encodedSize.bytes = encoded.length;
+        return encoded;
+    }
+
+    @Benchmark
+    public List<BookRepresentation> decodeCatalog() throws IOException {
+        return listReader.readValue(encodedCatalog);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] encodePage(EncodedSize encodedSize) throws IOException {
+        byte[] encoded = listWriter.writeValueAsBytes(page);
+        encodedSize.bytes = encoded.length;
+        return encoded;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<BookRepresentation> decodePage() throws IOException {
+        return listReader.readValue(encodedPage);
+    }
+
+    /**
+     * Holds the size of the last encoding, every call writes the same one, so it is not summed up.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        public long bytes;
+    }
+}
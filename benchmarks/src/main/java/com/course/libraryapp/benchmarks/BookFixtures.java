@@ -0,0 +1,54 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.persistance.model.BookEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic catalogs, so every run and every catalog size sees the same kind of books.
+ */
+final class BookFixtures {
+
+    private static final String[] WORDS = {"Lord", "Rings", "Star", "Dust", "Witcher", "Solaris", "Lalka", "Good",
+            "Omens", "Terror", "State", "American", "Gods", "Fellowship", "Towers", "Żółć", "Miód", "Ocean", "Night", "Sky"};
+    private static final String[] AUTHORS = {"J.R.R.Tolkien", "Neil Gaiman", "Andrzej Sapkowski", "Stanisław Lem",
+            "Bolesław Prus", "Terry Pratchett", "Frank Herbert", "Janusz Zajdel"};
+    private static final GenreEnumRepresentation[] GENRES = GenreEnumRepresentation.values();
+    private static final long SEED = 20211205L;
+
+    private BookFixtures() {
+    }
+
+    static List<BookEntity> bookEntities(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<BookEntity> bookEntities = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + id;
+            int votes = random.nextInt(20);
+            List<Integer> scoreRegistry = new ArrayList<>(votes);
+            long sum = 0;
+            for (int vote = 0; vote < votes; vote++) {
+                int rate = 1 + random.nextInt(5);
+                scoreRegistry.add(rate);
+                sum += rate;
+            }
+            double score = votes == 0 ? 0.0 : Math.round(sum * 100.0 / votes) / 100.0;
+            bookEntities.add(new BookEntity(id, "S" + id, title, AUTHORS[random.nextInt(AUTHORS.length)],
+                    "Description of " + title, GENRES[id % GENRES.length].getGenreName(), score, scoreRegistry));
+        }
+        return bookEntities;
+    }
+
+    static List<BookRepresentation> bookRepresentations(List<BookEntity> bookEntities) {
+        List<BookRepresentation> bookRepresentations = new ArrayList<>(bookEntities.size());
+        for (BookEntity bookEntity : bookEntities) {
+            bookRepresentations.add(BookMapper.INSTANCE.entityToBookRep(bookEntity));
+        }
+        return bookRepresentations;
+    }
+}
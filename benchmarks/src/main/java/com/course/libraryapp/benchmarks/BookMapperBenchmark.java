@@ -0,0 +1,59 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-book mapping walks the whole catalog, so larger catalogs also show the cost of cache misses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BookMapperBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private List<BookEntity> bookEntities;
+    private List<BookRepresentation> bookRepresentations;
+    private int next;
+
+    @Setup
+    public void setup() {
+        bookEntities = BookFixtures.bookEntities(catalogSize);
+        bookRepresentations = BookFixtures.bookRepresentations(bookEntities);
+    }
+
+    @Benchmark
+    public BookRepresentation entityToRepresentation() {
+        return BookMapper.INSTANCE.entityToBookRep(bookEntities.get(nextIndex()));
+    }
+
+    @Benchmark
+    public BookEntity representationToEntity() {
+        return BookMapper.INSTANCE.bookRepToEntity(bookRepresentations.get(nextIndex()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void mapCatalog(Blackhole blackhole) {
+        for (BookEntity bookEntity : bookEntities) {
+            blackhole.consume(BookMapper.INSTANCE.entityToBookRep(bookEntity));
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == catalogSize ? 0 : index + 1;
+        return index;
+    }
+}
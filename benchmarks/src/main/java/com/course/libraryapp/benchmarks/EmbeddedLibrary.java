@@ -0,0 +1,68 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.LibraryApplication;
+import com.course.libraryapp.exposure.service.BookLeaderboards;
+import com.course.libraryapp.persistance.model.BookEntity;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+/**
+ * The application context running against a throwaway embedded MongoDB that holds a generated catalog.
+ * Boot's own embedded Mongo auto-configuration is switched off: it cannot be combined with the
+ * {@code spring.data.mongodb.uri} set in application.properties.
+ */
+final class EmbeddedLibrary implements AutoCloseable {
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private final TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedLibrary(TransitionWalker.ReachedState<RunningMongodProcess> mongod, ConfigurableApplicationContext context) {
+        this.mongod = mongod;
+        this.context = context;
+    }
+
+    static EmbeddedLibrary start(List<BookEntity> bookEntities) {
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.Main.V6_0);
+        ServerAddress address = mongod.current().getServerAddress();
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.data.mongodb.uri=mongodb://" + address + "/benchmarks",
+                        "--spring.data.mongodb.password=unused",
+                        "--spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+                        "--logging.level.root=WARN");
+        EmbeddedLibrary library = new EmbeddedLibrary(mongod, context);
+        library.load(bookEntities);
+        return library;
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        mongod.close();
+    }
+
+    private void load(List<BookEntity> bookEntities) {
+        MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+        for (int from = 0; from < bookEntities.size(); from += INSERT_BATCH_SIZE) {
+            mongoTemplate.insert(bookEntities.subList(from, Math.min(from + INSERT_BATCH_SIZE, bookEntities.size())), BookEntity.class);
+        }
+        // the boards were seeded from the empty collection when the context started
+        context.getBean(BookLeaderboards.class).seed();
+    }
+}
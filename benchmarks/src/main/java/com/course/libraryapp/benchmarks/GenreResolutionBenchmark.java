@@ -0,0 +1,38 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GenreEnumRepresentation#of} is called once for every mapped book, so the canonical name path
+ * should stay allocation-free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenreResolutionBenchmark {
+
+    public String canonicalName = "powieść przygodowa";
+    public String userTypedName = "Powiesc Przygodowa";
+    public String unknownName = "kryminał";
+
+    @Benchmark
+    public GenreEnumRepresentation canonicalName() {
+        return GenreEnumRepresentation.of(canonicalName);
+    }
+
+    @Benchmark
+    public GenreEnumRepresentation userTypedName() {
+        return GenreEnumRepresentation.of(userTypedName);
+    }
+
+    @Benchmark
+    public GenreEnumRepresentation unknownName() {
+        return GenreEnumRepresentation.of(unknownName);
+    }
+}
@@ -0,0 +1,52 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes list responses with an {@link ObjectMapper} configured the way Spring MVC builds its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private List<BookRepresentation> page;
+    private List<BookRepresentation> catalog;
+    private ObjectWriter listWriter;
+
+    @Setup
+    public void setup() {
+        catalog = BookFixtures.bookRepresentations(BookFixtures.bookEntities(catalogSize));
+        page = catalog.subList(0, PAGE_SIZE);
+        listWriter = Jackson2ObjectMapperBuilder.json().build().writerFor(List.class);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void serializeCatalog() throws IOException {
+        listWriter.writeValue(OutputStream.nullOutputStream(), catalog);
+    }
+}
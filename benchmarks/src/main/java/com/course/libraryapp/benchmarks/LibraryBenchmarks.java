@@ -0,0 +1,27 @@
+package com.course.libraryapp.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the usual JMH command line and always adds the GC profiler,
+ * so every result reports {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ * <pre>
+ * mvn -B install -DskipTests
+ * mvn -B -f benchmarks/pom.xml package
+ * java -jar benchmarks/target/benchmarks.jar BookMapperBenchmark -p catalogSize=1000,100000
+ * </pre>
+ */
+public class LibraryBenchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.course.libraryapp.benchmarks;
+
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.service.LibraryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LibraryService} against embedded MongoDB, so the numbers include the driver round trip and the indexes
+ * created on startup. Rating appends to the rated book's registry, so long runs slowly grow the documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LibraryServiceBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private EmbeddedLibrary library;
+    private LibraryService libraryService;
+    private String secondTitlePage;
+    private int nextRatedId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        library = EmbeddedLibrary.start(BookFixtures.bookEntities(catalogSize));
+        libraryService = library.getBean(LibraryService.class);
+        secondTitlePage = libraryService.sortBooksByTitle(null, PAGE_SIZE).getNextCursor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        library.close();
+    }
+
+    @Benchmark
+    public BookPageRepresentation sortBooksByAuthor() {
+        return libraryService.sortBooksByAuthor(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public BookPageRepresentation sortBooksByTitle() {
+        return libraryService.sortBooksByTitle(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public BookPageRepresentation sortBooksByTitleNextPage() {
+        return libraryService.sortBooksByTitle(secondTitlePage, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public BookPageRepresentation sortBooksByScoreAscending() {
+        return libraryService.sortBooksByScoreAscending(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public BookPageRepresentation sortBooksByScoreDescending() {
+        return libraryService.sortBooksByScoreDescending(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<BookRepresentation> highestRatedBook() throws Exception {
+        return libraryService.getHighestRatedBook();
+    }
+
+    @Benchmark
+    public List<BookRepresentation> mostPopularBook() throws Exception {
+        return libraryService.getMostPopularBook();
+    }
+
+    @Benchmark
+    public BookRepresentation rateBook() {
+        nextRatedId = nextRatedId % catalogSize + 1;
+        return libraryService.checkIdAndRateABook(nextRatedId, 1 + nextRatedId % 5);
+    }
+}
@@ -0,0 +1,73 @@
+package com.course.libraryapp;
+
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.CustomScopeConfigurer;
+import org.springframework.beans.factory.config.Scope;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the application on WebFlux ({@code spring.main.web-application-type=reactive} in
+ * {@code application-reactive.properties}). Netty is chosen explicitly, Tomcat is on the classpath for the
+ * servlet stack and would otherwise win.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * A reactive context has no servlet context to hold {@code @ApplicationScope} beans, one instance per
+     * context is the same thing here.
+     */
+    @Bean
+    public static CustomScopeConfigurer applicationScope() {
+        CustomScopeConfigurer configurer = new CustomScopeConfigurer();
+        configurer.addScope(WebApplicationContext.SCOPE_APPLICATION, new ContextScope());
+        return configurer;
+    }
+
+    private static final class ContextScope implements Scope {
+
+        private final Map<String, Object> beans = new HashMap<>();
+
+        @Override
+        public synchronized Object get(String name, ObjectFactory<?> objectFactory) {
+            Object bean = beans.get(name);
+            if (bean == null) {
+                bean = objectFactory.getObject();
+                beans.put(name, bean);
+            }
+            return bean;
+        }
+
+        @Override
+        public synchronized Object remove(String name) {
+            return beans.remove(name);
+        }
+
+        @Override
+        public void registerDestructionCallback(String name, Runnable callback) {
+        }
+
+        @Override
+        public Object resolveContextualObject(String key) {
+            return null;
+        }
+
+        @Override
+        public String getConversationId() {
+            return null;
+        }
+    }
+}
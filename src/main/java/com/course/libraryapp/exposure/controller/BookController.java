@@ -1,170 +1,370 @@
 package com.course.libraryapp.exposure.controller;
 
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRemovalRepresentation;
 import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
 import com.course.libraryapp.exposure.model.ErrorResponseRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookImportRepresentation;
+import com.course.libraryapp.exposure.service.BookFields;
+import com.course.libraryapp.exposure.service.BookImportFormat;
+import com.course.libraryapp.exposure.service.BookImporter;
+import com.course.libraryapp.exposure.service.BookSortOrder;
+import com.course.libraryapp.exposure.service.CatalogSnapshot;
 import com.course.libraryapp.exposure.service.LibraryService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Validated
 @RestController
+@Profile("!reactive")
 @RequestMapping("/library")
 public class BookController {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final Map<MediaType, String> TAGGED_FORMATS = taggedFormats();
+
     private final LibraryService libraryService;
+    private final BookImporter bookImporter;
+    private final ObjectWriter ndjsonWriter;
+    private final ContentNegotiationManager contentNegotiationManager;
 
     @Autowired
-    public BookController(LibraryService libraryService) {
+    public BookController(LibraryService libraryService, BookImporter bookImporter, ObjectMapper objectMapper,
+                          ContentNegotiationManager contentNegotiationManager) {
         this.libraryService = libraryService;
+        this.bookImporter = bookImporter;
+        this.contentNegotiationManager = contentNegotiationManager;
+        this.ndjsonWriter = objectMapper.writerFor(BookRepresentation.class)
+                .withRootValueSeparator((String) null)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @PostMapping("/books")
     public ResponseEntity<Object> addBook(@Valid @RequestBody BookRepresentation bookRepresentation) {
-        try {
-            BookRepresentation bookRepresentation1 = libraryService.checkSignatureAndAddBook(bookRepresentation);
-            return new ResponseEntity<>(bookRepresentation1, HttpStatus.CREATED);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.BAD_REQUEST, e);
-        }
+        BookRepresentation bookRepresentation1 = libraryService.checkSignatureAndAddBook(bookRepresentation);
+        return new ResponseEntity<>(bookRepresentation1, HttpStatus.CREATED);
     }
 
     @PostMapping("/books-by-list")
-    public  ResponseEntity<Object> addBooks(@Valid @RequestBody List<BookRepresentation> bookRepresentations) {
-        try {
-            libraryService.checkSignaturesAndAddBooks(bookRepresentations);
-            return new ResponseEntity<>(bookRepresentations, HttpStatus.CREATED);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.BAD_REQUEST, e);
-        }
+    public  ResponseEntity<Object> addBooks(@RequestBody List<BookRepresentation> bookRepresentations) {
+        List<BookBulkResultRepresentation> results = libraryService.checkSignaturesAndAddBooks(bookRepresentations);
+        boolean anyCreated = results.stream().anyMatch(result -> result.getStatus() == BulkItemStatus.CREATED);
+        return new ResponseEntity<>(results, anyCreated ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * The body is read as it arrives, never held whole. Sending the same {@code importId} again after a
+     * failed import resumes it after the rows it had already written.
+     */
+    @PostMapping(value = "/books/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<Object> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                              @RequestParam(value = "importId", required = false) String importId,
+                                              InputStream body) throws IOException, InterruptedException {
+        BookImportFormat format = MediaType.APPLICATION_NDJSON.includes(contentType) ? BookImportFormat.NDJSON : BookImportFormat.CSV;
+        BookImportRepresentation report = bookImporter.importBooks(body, format, importId);
+        return new ResponseEntity<>(report, report.getCreated() > 0 ? HttpStatus.CREATED : HttpStatus.OK);
     }
 
     @GetMapping("/books")
-    public ResponseEntity<Object> getBooks() {
-        List<BookRepresentation> allBookRepresentations = libraryService.getAllBooks();
-        return new ResponseEntity<>(allBookRepresentations, HttpStatus.OK);
+    public ResponseEntity<Object> getBooks(@RequestParam(value = "fields", required = false) String fields,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookFields bookFields = BookFields.parse(fields);
+        CatalogSnapshot catalog = libraryService.getCatalogSnapshot();
+        String etag = formatTag(EntityTags.ofCatalog(catalog));
+        if (EntityTags.matches(ifNoneMatch, etag)) {
+            return ConditionalResponses.notModified(etag);
+        }
+        return ConditionalResponses.tagged(HttpStatus.OK, etag, bookFields.select(catalog.getBooks()));
+    }
+
+    @GetMapping(value = "/books", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBooks() {
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<BookRepresentation> books = libraryService.streamAllBooks();
+                 JsonGenerator generator = ndjsonWriter.getFactory().createGenerator(outputStream)) {
+                boolean first = true;
+                for (Iterator<BookRepresentation> iterator = books.iterator(); iterator.hasNext(); ) {
+                    ndjsonWriter.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                    if (first) {
+                        generator.flush();
+                        first = false;
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
 
     @GetMapping("/books/{id}")
-    public ResponseEntity<Object> getBookById(@PathVariable int id) {
-        try {
-            BookRepresentation bookRepresentation = libraryService.getBookById(id);
-            return new ResponseEntity<>(bookRepresentation, HttpStatus.OK);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.NOT_FOUND, e);
+    public ResponseEntity<Object> getBookById(@PathVariable int id, @RequestParam(value = "fields", required = false) String fields,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookFields bookFields = BookFields.parse(fields);
+        if (ifNoneMatch != null) {
+            // a known version answers without reading the book
+            Long knownVersion = libraryService.findBookVersion(id);
+            if (knownVersion != null) {
+                String etag = formatTag(EntityTags.ofBook(id, knownVersion, bookFields));
+                if (EntityTags.matches(ifNoneMatch, etag)) {
+                    return ConditionalResponses.notModified(etag);
+                }
+            }
         }
+        BookRepresentation bookRepresentation = libraryService.getBookById(id);
+        String etag = formatTag(EntityTags.ofBook(id, bookRepresentation.getVersion(), bookFields));
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch, etag,
+                bookFields.isFull() ? bookRepresentation : bookFields.select(bookRepresentation));
     }
 
 
     @GetMapping("/books/by-title")
-    public ResponseEntity<Object> getBookByTitle(@RequestParam("title") String title) {
-        try {
-            List<BookRepresentation> booksByTitle = libraryService.getBookByTitle(title);
-            return new ResponseEntity<>(booksByTitle, HttpStatus.OK);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.NOT_FOUND, e);
-        }
+    public ResponseEntity<Object> getBookByTitle(@RequestParam("title") String title, @RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        List<BookRepresentation> booksByTitle = libraryService.getBookByTitle(title);
+        return new ResponseEntity<>(bookFields.select(booksByTitle), HttpStatus.OK);
+    }
+
+    @GetMapping("/books/autocomplete")
+    public ResponseEntity<Object> autocompleteTitle(@RequestParam("prefix") String prefix,
+                                                    @RequestParam(value = "limit", defaultValue = "${library.autocomplete.default-limit:10}") int limit,
+                                                    @RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        List<BookRepresentation> suggestions = libraryService.suggestBooksByTitle(prefix, limit);
+        return new ResponseEntity<>(bookFields.select(suggestions), HttpStatus.OK);
     }
 
     @GetMapping("/books/by-genre")
-    public ResponseEntity<Object> getBooksByGenre(@RequestParam("genre") String genre) {
-        try{
-            List<BookRepresentation> booksByGenre = libraryService.getBooksByGenre(genre);
-            return new ResponseEntity<>(booksByGenre, HttpStatus.OK);
-        } catch (Exception e){
-            return errorResponseEntity(HttpStatus.NOT_FOUND, e);
+    public ResponseEntity<Object> getBooksByGenre(@RequestParam("genre") String genre, @RequestParam(value = "fields", required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookFields bookFields = BookFields.parse(fields);
+        String queryTag = queryTag("by-genre", genre, bookFields);
+        if (queryTag != null && EntityTags.matches(ifNoneMatch, queryTag)) {
+            return ConditionalResponses.notModified(queryTag);
         }
+        List<?> books = bookFields.isFull() ? libraryService.getBooksByGenre(genre) : libraryService.getBooksByGenre(genre, bookFields);
+        return conditionalResponse(ifNoneMatch, queryTag, () -> EntityTags.ofBooks(books, null), books);
     }
 
     @GetMapping("/books/sorted-by-{param}")
-    public ResponseEntity<Object> getBooksSortedBy(@PathVariable String param) {
-        switch (param) {
-            case "author" -> {
-                List<BookRepresentation> booksByAuthor = libraryService.sortBooksByAuthor();
-                return new ResponseEntity<>(booksByAuthor, HttpStatus.OK);
-            }
-            case "title" -> {
-                List<BookRepresentation> booksByTitle = libraryService.sortBooksByTitle();
-                return new ResponseEntity<>(booksByTitle, HttpStatus.OK);
-            }
-            case "score-ascending" -> {
-                List<BookRepresentation> booksByScoreAscending = libraryService.sortBooksByScoreAscending();
-                return new ResponseEntity<>(booksByScoreAscending, HttpStatus.OK);
-            }
-            case "score-descending" -> {
-                List<BookRepresentation> booksByScoreDescending = libraryService.sortBooksByScoreDescending();
-                return new ResponseEntity<>(booksByScoreDescending, HttpStatus.OK);
-            }
-            default -> {
-                return errorResponseEntity(HttpStatus.INTERNAL_SERVER_ERROR, new Exception("No endpoint found."));
-            }
+    public ResponseEntity<Object> getBooksSortedBy(@PathVariable String param,
+                                                   @RequestParam(value = "after", required = false) String after,
+                                                   @RequestParam(value = "size", defaultValue = "${library.pagination.default-page-size:100}") int size,
+                                                   @RequestParam(value = "fields", required = false) String fields,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookFields bookFields = BookFields.parse(fields);
+        BookSortOrder sortOrder = BookSortOrder.ofPathName(param);
+        if (sortOrder == null) {
+            return errorResponseEntity(HttpStatus.INTERNAL_SERVER_ERROR, "No endpoint found.");
+        }
+        String queryTag = queryTag("sorted-by", sortOrder, after, size, bookFields);
+        if (queryTag != null && EntityTags.matches(ifNoneMatch, queryTag)) {
+            return ConditionalResponses.notModified(queryTag);
         }
+        if (!bookFields.isFull()) {
+            SparseBookPageRepresentation page = libraryService.sortBooks(sortOrder, after, size, bookFields);
+            return pageResponseEntity(page.getBooks(), page.getNextCursor(), ifNoneMatch, queryTag);
+        }
+        BookPageRepresentation page = switch (sortOrder) {
+            case AUTHOR -> libraryService.sortBooksByAuthor(after, size);
+            case TITLE -> libraryService.sortBooksByTitle(after, size);
+            case SCORE_ASCENDING -> libraryService.sortBooksByScoreAscending(after, size);
+            case SCORE_DESCENDING -> libraryService.sortBooksByScoreDescending(after, size);
+        };
+        return pageResponseEntity(page.getBooks(), page.getNextCursor(), ifNoneMatch, queryTag);
     }
 
-    @GetMapping("/books/most-popular")
-    public ResponseEntity<Object> getMostPopularBook() {
-        try {
-            List<BookRepresentation> mostPopularBookRepresentations = libraryService.getMostPopularBook();
-            return new ResponseEntity<>(mostPopularBookRepresentations, HttpStatus.OK);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.OK, e);
+    @GetMapping("/books/search")
+    public ResponseEntity<Object> searchBooks(@RequestParam(value = "genre", required = false) String genre,
+                                              @RequestParam(value = "author", required = false) String author,
+                                              @RequestParam(value = "title", required = false) String title,
+                                              @RequestParam(value = "minScore", required = false) Double minScore,
+                                              @RequestParam(value = "maxScore", required = false) Double maxScore,
+                                              @RequestParam(value = "sort", defaultValue = "score-descending") String sort,
+                                              @RequestParam(value = "after", required = false) String after,
+                                              @RequestParam(value = "size", defaultValue = "${library.pagination.default-page-size:100}") int size,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String queryTag = queryTag("search", genre, author, title, minScore, maxScore, sort, after, size);
+        if (queryTag != null && EntityTags.matches(ifNoneMatch, queryTag)) {
+            return ConditionalResponses.notModified(queryTag);
         }
+        BookSearchRepresentation search = libraryService.searchBooks(genre, author, title, minScore, maxScore, sort, after, size);
+        return conditionalResponse(ifNoneMatch, queryTag, () -> EntityTags.ofSearch(search), search);
+    }
+
+    @GetMapping("/books/most-popular")
+    public ResponseEntity<Object> getMostPopularBook(@RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        List<BookRepresentation> mostPopularBookRepresentations = libraryService.getMostPopularBook();
+        return new ResponseEntity<>(bookFields.select(mostPopularBookRepresentations), HttpStatus.OK);
     }
 
     @GetMapping("/books/sorted-by-score/{genre}")
-    public ResponseEntity<Object> getSortedScoreByGenre(@PathVariable String genre) {
-        List<BookRepresentation> booksByScoreByGenre = libraryService.getSortedScoreByGenre(genre);
-        return new ResponseEntity<>(booksByScoreByGenre, HttpStatus.OK);
+    public ResponseEntity<Object> getSortedScoreByGenre(@PathVariable String genre, @RequestParam(value = "fields", required = false) String fields,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookFields bookFields = BookFields.parse(fields);
+        String queryTag = queryTag("sorted-by-score", genre, bookFields);
+        if (queryTag != null && EntityTags.matches(ifNoneMatch, queryTag)) {
+            return ConditionalResponses.notModified(queryTag);
+        }
+        List<?> books = bookFields.isFull() ? libraryService.getSortedScoreByGenre(genre) : libraryService.getSortedScoreByGenre(genre, bookFields);
+        return conditionalResponse(ifNoneMatch, queryTag, () -> EntityTags.ofBooks(books, null), books);
     }
 
     @GetMapping("/books/highest-rated")
-    public ResponseEntity<Object> getHighestRatedBook() {
-        try {
-            List<BookRepresentation> highestRateBookRepresentations = libraryService.getHighestRatedBook();
-            return new ResponseEntity<>(highestRateBookRepresentations, HttpStatus.OK);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.OK, e);
-        }
+    public ResponseEntity<Object> getHighestRatedBook(@RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        List<BookRepresentation> highestRateBookRepresentations = libraryService.getHighestRatedBook();
+        return new ResponseEntity<>(bookFields.select(highestRateBookRepresentations), HttpStatus.OK);
     }
 
     @PutMapping("/books/{id}")
-    public ResponseEntity<Object> updateBook(@PathVariable int id, @RequestBody BookRepresentation newBookRepresentation) {
-        try {
+    public ResponseEntity<Object> updateBook(@PathVariable int id, @RequestBody BookRepresentation newBookRepresentation,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch == null ? null : EntityTags.bookVersionOf(id, ifMatch);
+        if (expectedVersion == null) {
             libraryService.checkIdAndUpdateBook(id, newBookRepresentation);
-            return new ResponseEntity<>(newBookRepresentation, HttpStatus.CREATED);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.NOT_FOUND, e);
+        } else {
+            libraryService.checkIdAndUpdateBook(id, newBookRepresentation, expectedVersion);
         }
+        return bookResponseEntity(newBookRepresentation, HttpStatus.CREATED);
     }
 
     @PutMapping("/books/{id}/rate")
     public ResponseEntity<Object> rateBook(@PathVariable int id, @RequestParam("rate") int rate) {
-        try {
-            BookRepresentation ratedBookRepresentation = libraryService.checkIdAndRateABook(id, rate);
-            return new ResponseEntity<>(ratedBookRepresentation, HttpStatus.OK);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.NOT_FOUND, e);
-        }
+        BookRepresentation ratedBookRepresentation = libraryService.checkIdAndRateABook(id, rate);
+        return bookResponseEntity(ratedBookRepresentation, HttpStatus.OK);
     }
 
     @DeleteMapping("/books/{id}")
     public ResponseEntity<Object> removeBook(@PathVariable int id) {
+        libraryService.checkIdAndRemoveBook(id);
+        return new ResponseEntity<>(null, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/books")
+    public ResponseEntity<Object> removeBooks(@RequestParam(value = "ids", required = false) List<Integer> ids,
+                                              @RequestParam(value = "genre", required = false) String genre) {
+        checkRemovalFilter(ids, genre);
+        BookRemovalRepresentation removal = ids != null ? libraryService.removeBooksById(ids) : libraryService.removeBooksByGenre(genre);
+        return new ResponseEntity<>(removal, HttpStatus.OK);
+    }
+
+    /**
+     * The tag of a list read with these parameters, to compare before the query runs, or null while the catalog
+     * has no collection tag to trust.
+     */
+    private String queryTag(Object... parameters) {
+        String collectionTag = libraryService.findCollectionTag();
+        return collectionTag == null ? null : formatTag(EntityTags.ofQuery(collectionTag, parameters));
+    }
+
+    /**
+     * The query tag was already compared before the query ran. Without one the tag is derived from the result,
+     * and a 304 then only saves sending the body.
+     */
+    private ResponseEntity<Object> conditionalResponse(String ifNoneMatch, String queryTag, Supplier<String> contentTag, Object body) {
+        if (queryTag != null) {
+            return ConditionalResponses.tagged(HttpStatus.OK, queryTag, body);
+        }
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch, formatTag(contentTag.get()), body);
+    }
+
+    /**
+     * The tag in the format the body will be written in, picked the way Spring MVC picks the converter: the
+     * most specific accepted type that a format matches, JSON first. A request no format can answer keeps the
+     * bare tag and is rejected by Spring MVC after the handler returns.
+     */
+    private String formatTag(String etag) {
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+        List<MediaType> acceptedTypes;
         try {
-            libraryService.checkIdAndRemoveBook(id);
-            return new ResponseEntity<>(null, HttpStatus.OK);
-        } catch (Exception e) {
-            return errorResponseEntity(HttpStatus.NOT_FOUND, e);
+            acceptedTypes = new ArrayList<>(contentNegotiationManager.resolveMediaTypes(new ServletWebRequest(request)));
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            return etag;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            for (Map.Entry<MediaType, String> format : TAGGED_FORMATS.entrySet()) {
+                if (acceptedType.isCompatibleWith(format.getKey())) {
+                    return EntityTags.inFormat(etag, format.getValue());
+                }
+            }
+        }
+        return etag;
+    }
+
+    private static Map<MediaType, String> taggedFormats() {
+        Map<MediaType, String> formats = new LinkedHashMap<>();
+        formats.put(MediaType.APPLICATION_JSON, null);
+        formats.put(MediaType.APPLICATION_CBOR, "cbor");
+        formats.put(new MediaType("application", "x-jackson-smile"), "smile");
+        return formats;
+    }
+
+    private ResponseEntity<Object> bookResponseEntity(BookRepresentation bookRepresentation, HttpStatus httpStatus) {
+        return ConditionalResponses.tagged(httpStatus,
+                formatTag(EntityTags.ofBook(bookRepresentation.getId(), bookRepresentation.getVersion())), bookRepresentation);
+    }
+
+    private ResponseEntity<Object> pageResponseEntity(List<?> books, String nextCursor, String ifNoneMatch, String queryTag) {
+        String etag = queryTag != null ? queryTag : formatTag(EntityTags.ofBooks(books, nextCursor));
+        if (queryTag == null && EntityTags.matches(ifNoneMatch, etag)) {
+            return ConditionalResponses.notModified(etag);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setVary(List.of(HttpHeaders.ACCEPT));
+        if (nextCursor != null) {
+            headers.add(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return new ResponseEntity<>(books, headers, HttpStatus.OK);
+    }
+
+    static void checkRemovalFilter(List<Integer> ids, String genre) {
+        if ((ids == null) == (genre == null)) {
+            throw new InvalidRequestException("Exactly one of ids and genre must be given.");
         }
     }
 
-    private ResponseEntity<Object> errorResponseEntity(HttpStatus httpStatus, Exception e){
+    private ResponseEntity<Object> errorResponseEntity(HttpStatus httpStatus, String message){
         return new ResponseEntity<>(new ErrorResponseRepresentation(httpStatus.value(),
-                httpStatus.getReasonPhrase(), e.getMessage(), Arrays.toString(e.getStackTrace())), httpStatus);
+                httpStatus.getReasonPhrase(), message, null), httpStatus);
     }
 }
@@ -0,0 +1,30 @@
+package com.course.libraryapp.exposure.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Tagged and 304 responses of {@link BookController} and {@link ReactiveBookController}. They vary by
+ * {@code Accept}, the tag depends on the format the body is written in, see {@link EntityTags}.
+ */
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    static <T> ResponseEntity<T> tagged(HttpStatus httpStatus, String etag, T body) {
+        return ResponseEntity.status(httpStatus).eTag(etag).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+
+    /**
+     * A 304 when {@code If-None-Match} names the tag, else the body with the tag.
+     */
+    static <T> ResponseEntity<T> ifNoneMatch(String ifNoneMatch, String etag, T body) {
+        return EntityTags.matches(ifNoneMatch, etag) ? notModified(etag) : tagged(HttpStatus.OK, etag, body);
+    }
+
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+    }
+}
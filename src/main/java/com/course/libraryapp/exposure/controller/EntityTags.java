@@ -0,0 +1,160 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import com.course.libraryapp.exposure.model.FacetCountRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
+import com.course.libraryapp.exposure.service.BookFields;
+import com.course.libraryapp.exposure.service.CatalogSnapshot;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Strong entity tags for books and book lists. A book tag is derived from the stored version. A list tag is
+ * derived from the collection tag and the request parameters when the catalog has one, so a 304 is answered
+ * without reading the list, else from a digest of the ids and versions the list holds. Lists are never
+ * serialized just to be tagged.
+ * <p>
+ * JSON bodies carry the bare tag, binary formats add their name, e.g. {@code "7.3-cbor"}: the bytes differ,
+ * so a strong tag must too.
+ */
+final class EntityTags {
+
+    static final long NO_VERSION = -1;
+
+    private EntityTags() {
+    }
+
+    static String ofBook(int id, long version) {
+        return "\"" + id + "." + version + "\"";
+    }
+
+    /**
+     * A book trimmed with {@code fields=} is another representation, it adds the field names like a format,
+     * e.g. {@code "7.3-title+author"}, and {@link #bookVersionOf} still reads its version.
+     */
+    static String ofBook(int id, long version, BookFields fields) {
+        String tag = ofBook(id, version);
+        return fields.isFull() ? tag : inFormat(tag, String.join("+", fields.getNames()));
+    }
+
+    static String ofCatalog(CatalogSnapshot catalog) {
+        return "\"" + catalog.getContentHash() + "\"";
+    }
+
+    /**
+     * A list of {@link BookRepresentation} or {@link SparseBookRepresentation}; the cursor counts too, it
+     * tells whether more books follow and a page that stays the same can still gain one.
+     */
+    static String ofBooks(List<?> books, String nextCursor) {
+        return ofBooks(books, nextCursor, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * The facet counts count too, they change with books outside the page.
+     */
+    static String ofSearch(BookSearchRepresentation search) {
+        return ofBooks(search.getBooks(), search.getNextCursor(), search.getGenres(), search.getScores());
+    }
+
+    private static String ofBooks(List<?> books, String nextCursor, List<FacetCountRepresentation> genres,
+                                  List<FacetCountRepresentation> scores) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(books.size() * (Integer.BYTES + Long.BYTES) + 64);
+        try (DataOutputStream out = new DataOutputStream(content)) {
+            for (Object book : books) {
+                if (book instanceof BookRepresentation bookRepresentation) {
+                    out.writeInt(bookRepresentation.getId());
+                    out.writeLong(bookRepresentation.getVersion());
+                } else {
+                    SparseBookRepresentation sparseBook = (SparseBookRepresentation) book;
+                    out.writeInt(sparseBook.getId());
+                    out.writeLong(sparseBook.getVersion());
+                }
+            }
+            out.writeBoolean(nextCursor != null);
+            out.writeUTF(nextCursor == null ? "" : nextCursor);
+            writeFacets(out, genres);
+            writeFacets(out, scores);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(content.toByteArray()) + "\"";
+    }
+
+    private static void writeFacets(DataOutputStream out, List<FacetCountRepresentation> facets) throws IOException {
+        out.writeInt(facets.size());
+        for (FacetCountRepresentation facet : facets) {
+            out.writeUTF(facet.getValue());
+            out.writeLong(facet.getCount());
+        }
+    }
+
+    /**
+     * A list by the collection tag it is read under and the request parameters selecting it, so a conditional
+     * request can be answered before the query runs. The list read after the tag can only be newer than it.
+     */
+    static String ofQuery(String collectionTag, Object... parameters) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(content)) {
+            out.writeUTF(collectionTag);
+            for (Object parameter : parameters) {
+                out.writeBoolean(parameter != null);
+                out.writeUTF(parameter == null ? "" : parameter.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "\"q" + DigestUtils.md5DigestAsHex(content.toByteArray()) + "\"";
+    }
+
+    static String inFormat(String tag, String format) {
+        return format == null ? tag : tag.substring(0, tag.length() - 1) + "-" + format + "\"";
+    }
+
+    /**
+     * The book version named by an {@code If-Match} header in any format, null for {@code *}. A weak tag, a
+     * tag of another book or anything unreadable can never match, so it yields {@link #NO_VERSION}.
+     */
+    static Long bookVersionOf(int id, String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + id + ".";
+        if (!tag.startsWith(prefix) || !tag.endsWith("\"") || tag.length() <= prefix.length() + 1) {
+            return NO_VERSION;
+        }
+        String version = tag.substring(prefix.length(), tag.length() - 1);
+        int format = version.indexOf('-');
+        try {
+            return Long.parseLong(format < 0 ? version : version.substring(0, format));
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header value names the tag; weak tags compare by their opaque part.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,6 +1,14 @@
 package com.course.libraryapp.exposure.controller;
 
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.exception.LibraryException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
 import com.course.libraryapp.exposure.model.ErrorResponseRepresentation;
+import org.springframework.context.annotation.Profile;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -8,17 +16,40 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
+@Profile("!reactive")
 class ErrorController extends ResponseEntityExceptionHandler {
 
+    @ExceptionHandler({BookNotFoundException.class, GenreNotFoundException.class})
+    ResponseEntity<Object> handleNotFound(LibraryException ex) {
+        return errorResponseEntity(HttpStatus.NOT_FOUND, ex);
+    }
+
+    @ExceptionHandler({DuplicateSignatureException.class, InvalidRequestException.class})
+    ResponseEntity<Object> handleBadRequest(LibraryException ex) {
+        return errorResponseEntity(HttpStatus.BAD_REQUEST, ex);
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    ResponseEntity<Object> handleConflict(VersionConflictException ex) {
+        return errorResponseEntity(HttpStatus.CONFLICT, ex);
+    }
+
+    @ExceptionHandler(NoRatingsException.class)
+    ResponseEntity<Object> handleNoRatings(NoRatingsException ex) {
+        return errorResponseEntity(HttpStatus.OK, ex);
+    }
+
     @Override
     protected ResponseEntity<Object> handleHttpMessageNotReadable(HttpMessageNotReadableException ex, HttpHeaders headers,
                                                                   HttpStatus status, WebRequest request) {
@@ -42,4 +73,10 @@ class ErrorController extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(new Exception(errorResponse.getMessage()), errorResponse,
                 new HttpHeaders(), HttpStatus.BAD_REQUEST, request);
     }
+
+    private ResponseEntity<Object> errorResponseEntity(HttpStatus httpStatus, Exception ex) {
+        String stackTrace = LibraryException.capturesStackTraces() ? Arrays.toString(ex.getStackTrace()) : null;
+        return new ResponseEntity<>(new ErrorResponseRepresentation(httpStatus.value(),
+                httpStatus.getReasonPhrase(), ex.getMessage(), stackTrace), httpStatus);
+    }
 }
@@ -0,0 +1,30 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.service.GenreService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code DELETE /actuator/genrecache} drops the cached genre list. It is an actuator endpoint rather than part
+ * of the library API so it stays behind the management server: it is only reachable once listed in
+ * {@code management.endpoints.web.exposure.include}, which should go with a {@code management.server.port}
+ * that is not public.
+ */
+@Component
+@Endpoint(id = "genrecache")
+public class GenreCacheEndpoint {
+
+    private final GenreService genreService;
+
+    @Autowired
+    public GenreCacheEndpoint(GenreService genreService) {
+        this.genreService = genreService;
+    }
+
+    @DeleteOperation
+    public void invalidate() {
+        genreService.invalidate();
+    }
+}
@@ -2,15 +2,16 @@ package com.course.libraryapp.exposure.controller;
 
 import com.course.libraryapp.exposure.service.GenreService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
+@Profile("!reactive")
 @RequestMapping("/library")
 public class GenreController {
 
@@ -21,9 +22,9 @@ public class GenreController {
         this.genreService = genreService;
     }
 
-    @GetMapping("/genres")
-    public ResponseEntity<Object> getBooks() {
-        List<String> genres = genreService.getAllGenres();
+    @GetMapping(value = "/genres", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getBooks() {
+        byte[] genres = genreService.getAllGenresJson();
         return new ResponseEntity<>(genres, HttpStatus.OK);
     }
 }
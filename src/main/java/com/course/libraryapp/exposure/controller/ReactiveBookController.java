@@ -0,0 +1,234 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRemovalRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
+import com.course.libraryapp.exposure.model.ErrorResponseRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
+import com.course.libraryapp.exposure.service.BookFields;
+import com.course.libraryapp.exposure.service.ReactiveLibraryService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link BookController} on WebFlux, active with the {@code reactive} profile. Paths, statuses, bodies,
+ * {@code fields=} and book tags are the same; list bodies are written as a JSON array one book at a time, as
+ * the client reads them, and are trimmed to the requested fields after they are read.
+ * <p>
+ * Lists carry no tags: they are sent before they are read to the end, and this profile keeps no collection
+ * tag to answer from. Binary formats are not offered here, so every tag is the JSON one.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/library")
+public class ReactiveBookController {
+
+    private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_END = "]".getBytes(StandardCharsets.UTF_8);
+
+    private final ReactiveLibraryService reactiveLibraryService;
+    private final ObjectWriter bookWriter;
+    private final ObjectWriter sparseBookWriter;
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Autowired
+    public ReactiveBookController(ReactiveLibraryService reactiveLibraryService, ObjectMapper objectMapper) {
+        this.reactiveLibraryService = reactiveLibraryService;
+        this.bookWriter = objectMapper.writerFor(BookRepresentation.class);
+        this.sparseBookWriter = objectMapper.writerFor(SparseBookRepresentation.class);
+    }
+
+    @PostMapping("/books")
+    public Mono<ResponseEntity<BookRepresentation>> addBook(@Valid @RequestBody BookRepresentation bookRepresentation) {
+        return reactiveLibraryService.checkSignatureAndAddBook(bookRepresentation)
+                .map(added -> new ResponseEntity<>(added, HttpStatus.CREATED));
+    }
+
+    @PostMapping("/books-by-list")
+    public Mono<ResponseEntity<List<BookBulkResultRepresentation>>> addBooks(@RequestBody List<BookRepresentation> bookRepresentations) {
+        return reactiveLibraryService.checkSignaturesAndAddBooks(bookRepresentations)
+                .map(results -> {
+                    boolean anyCreated = results.stream().anyMatch(result -> result.getStatus() == BulkItemStatus.CREATED);
+                    return new ResponseEntity<>(results, anyCreated ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST);
+                });
+    }
+
+    @GetMapping("/books")
+    public ResponseEntity<Flux<DataBuffer>> getBooks(@RequestParam(value = "fields", required = false) String fields) {
+        return jsonArrayResponse(reactiveLibraryService.getAllBooks(), BookFields.parse(fields));
+    }
+
+    @GetMapping(value = "/books", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookRepresentation> streamBooks() {
+        return reactiveLibraryService.getAllBooks();
+    }
+
+    /**
+     * Unlike {@link BookController} there is no cache of versions to answer a conditional request from, the
+     * book is always read.
+     */
+    @GetMapping("/books/{id}")
+    public Mono<ResponseEntity<Object>> getBookById(@PathVariable int id, @RequestParam(value = "fields", required = false) String fields,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookFields bookFields = BookFields.parse(fields);
+        return reactiveLibraryService.getBookById(id)
+                .map(book -> ConditionalResponses.ifNoneMatch(ifNoneMatch, EntityTags.ofBook(id, book.getVersion(), bookFields),
+                        bookFields.isFull() ? book : bookFields.select(book)));
+    }
+
+    @GetMapping("/books/by-title")
+    public Mono<List<?>> getBookByTitle(@RequestParam("title") String title, @RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        return reactiveLibraryService.getBookByTitle(title).map(bookFields::select);
+    }
+
+    @GetMapping("/books/autocomplete")
+    public Mono<List<?>> autocompleteTitle(@RequestParam("prefix") String prefix,
+                                           @RequestParam(value = "limit", defaultValue = "${library.autocomplete.default-limit:10}") int limit,
+                                           @RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        return reactiveLibraryService.suggestBooksByTitle(prefix, limit).map(bookFields::select);
+    }
+
+    @GetMapping("/books/by-genre")
+    public ResponseEntity<Flux<DataBuffer>> getBooksByGenre(@RequestParam("genre") String genre,
+                                                            @RequestParam(value = "fields", required = false) String fields) {
+        return jsonArrayResponse(reactiveLibraryService.getBooksByGenre(genre), BookFields.parse(fields));
+    }
+
+    @GetMapping("/books/sorted-by-{param}")
+    public Mono<ResponseEntity<Object>> getBooksSortedBy(@PathVariable String param,
+                                                         @RequestParam(value = "after", required = false) String after,
+                                                         @RequestParam(value = "size", defaultValue = "${library.pagination.default-page-size:100}") int size,
+                                                         @RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        Mono<BookPageRepresentation> page;
+        switch (param) {
+            case "author" -> page = reactiveLibraryService.sortBooksByAuthor(after, size);
+            case "title" -> page = reactiveLibraryService.sortBooksByTitle(after, size);
+            case "score-ascending" -> page = reactiveLibraryService.sortBooksByScoreAscending(after, size);
+            case "score-descending" -> page = reactiveLibraryService.sortBooksByScoreDescending(after, size);
+            default -> {
+                HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+                return Mono.just(new ResponseEntity<>(new ErrorResponseRepresentation(status.value(), status.getReasonPhrase(),
+                        "No endpoint found.", null), status));
+            }
+        }
+        return page.map(sortedPage -> pageResponseEntity(sortedPage, bookFields));
+    }
+
+    @GetMapping("/books/most-popular")
+    public Mono<List<?>> getMostPopularBook(@RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        return reactiveLibraryService.getMostPopularBook().map(bookFields::select);
+    }
+
+    @GetMapping("/books/sorted-by-score/{genre}")
+    public ResponseEntity<Flux<DataBuffer>> getSortedScoreByGenre(@PathVariable String genre,
+                                                                  @RequestParam(value = "fields", required = false) String fields) {
+        return jsonArrayResponse(reactiveLibraryService.getSortedScoreByGenre(genre), BookFields.parse(fields));
+    }
+
+    @GetMapping("/books/highest-rated")
+    public Mono<List<?>> getHighestRatedBook(@RequestParam(value = "fields", required = false) String fields) {
+        BookFields bookFields = BookFields.parse(fields);
+        return reactiveLibraryService.getHighestRatedBook().map(bookFields::select);
+    }
+
+    @PutMapping("/books/{id}")
+    public Mono<ResponseEntity<BookRepresentation>> updateBook(@PathVariable int id, @RequestBody BookRepresentation newBookRepresentation,
+                                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch == null ? null : EntityTags.bookVersionOf(id, ifMatch);
+        Mono<BookRepresentation> updated = expectedVersion == null
+                ? reactiveLibraryService.checkIdAndUpdateBook(id, newBookRepresentation)
+                : reactiveLibraryService.checkIdAndUpdateBook(id, newBookRepresentation, expectedVersion);
+        return updated
+                .map(book -> bookResponseEntity(book, HttpStatus.CREATED));
+    }
+
+    @PutMapping("/books/{id}/rate")
+    public Mono<ResponseEntity<BookRepresentation>> rateBook(@PathVariable int id, @RequestParam("rate") int rate) {
+        return reactiveLibraryService.checkIdAndRateABook(id, rate)
+                .map(book -> bookResponseEntity(book, HttpStatus.OK));
+    }
+
+    @DeleteMapping("/books/{id}")
+    public Mono<ResponseEntity<Void>> removeBook(@PathVariable int id) {
+        return reactiveLibraryService.checkIdAndRemoveBook(id)
+                .thenReturn(ResponseEntity.ok().build());
+    }
+
+    @DeleteMapping("/books")
+    public Mono<BookRemovalRepresentation> removeBooks(@RequestParam(value = "ids", required = false) List<Integer> ids,
+                                                       @RequestParam(value = "genre", required = false) String genre) {
+        BookController.checkRemovalFilter(ids, genre);
+        return ids != null ? reactiveLibraryService.removeBooksById(ids) : reactiveLibraryService.removeBooksByGenre(genre);
+    }
+
+    private ResponseEntity<BookRepresentation> bookResponseEntity(BookRepresentation book, HttpStatus httpStatus) {
+        return ConditionalResponses.tagged(httpStatus, EntityTags.ofBook(book.getId(), book.getVersion()), book);
+    }
+
+    private ResponseEntity<Object> pageResponseEntity(BookPageRepresentation page, BookFields fields) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.add(BookController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return new ResponseEntity<>(fields.select(page.getBooks()), headers, HttpStatus.OK);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> jsonArrayResponse(Flux<BookRepresentation> books, BookFields fields) {
+        Flux<DataBuffer> body = fields.isFull() ? jsonArray(books, bookWriter) : jsonArray(books.map(fields::select), sparseBookWriter);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Serializes the books one by one into the same bytes Jackson writes for a list. Nothing is emitted
+     * before the first book, so an error raised before it still gets a regular error response.
+     */
+    private Flux<DataBuffer> jsonArray(Flux<?> books, ObjectWriter writer) {
+        return Flux.defer(() -> {
+            AtomicBoolean empty = new AtomicBoolean(true);
+            return books
+                    .map(book -> {
+                        byte separator = (byte) (empty.getAndSet(false) ? '[' : ',');
+                        return toBuffer(separator, book, writer);
+                    })
+                    .concatWith(Mono.fromSupplier(() -> bufferFactory.wrap(empty.get() ? EMPTY_ARRAY : ARRAY_END)));
+        });
+    }
+
+    private DataBuffer toBuffer(byte separator, Object book, ObjectWriter writer) {
+        byte[] json;
+        try {
+            json = writer.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw Exceptions.propagate(e);
+        }
+        DataBuffer buffer = bufferFactory.allocateBuffer(json.length + 1);
+        buffer.write(separator);
+        buffer.write(json);
+        return buffer;
+    }
+}
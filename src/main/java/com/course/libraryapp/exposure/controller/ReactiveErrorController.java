@@ -0,0 +1,68 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.exception.LibraryException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.model.ErrorResponseRepresentation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ErrorController} for the {@code reactive} profile, producing the same error bodies.
+ */
+@RestControllerAdvice
+@Profile("reactive")
+class ReactiveErrorController {
+
+    @ExceptionHandler({BookNotFoundException.class, GenreNotFoundException.class})
+    ResponseEntity<Object> handleNotFound(LibraryException ex) {
+        return errorResponseEntity(HttpStatus.NOT_FOUND, ex, ex.getMessage());
+    }
+
+    @ExceptionHandler({DuplicateSignatureException.class, InvalidRequestException.class})
+    ResponseEntity<Object> handleBadRequest(LibraryException ex) {
+        return errorResponseEntity(HttpStatus.BAD_REQUEST, ex, ex.getMessage());
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    ResponseEntity<Object> handleConflict(VersionConflictException ex) {
+        return errorResponseEntity(HttpStatus.CONFLICT, ex, ex.getMessage());
+    }
+
+    @ExceptionHandler(NoRatingsException.class)
+    ResponseEntity<Object> handleNoRatings(NoRatingsException ex) {
+        return errorResponseEntity(HttpStatus.OK, ex, ex.getMessage());
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    ResponseEntity<Object> handleValidation(WebExchangeBindException ex) {
+        String message = ex.getBindingResult().getAllErrors().stream()
+                .map(DefaultMessageSourceResolvable::getDefaultMessage)
+                .collect(Collectors.joining(", "));
+        return errorResponseEntity(HttpStatus.BAD_REQUEST, ex, message);
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    ResponseEntity<Object> handleUnreadable(ServerWebInputException ex) {
+        return errorResponseEntity(HttpStatus.BAD_REQUEST, ex, ex.getReason());
+    }
+
+    private ResponseEntity<Object> errorResponseEntity(HttpStatus httpStatus, Exception ex, String message) {
+        String stackTrace = LibraryException.capturesStackTraces() ? Arrays.toString(ex.getStackTrace()) : null;
+        return new ResponseEntity<>(new ErrorResponseRepresentation(httpStatus.value(),
+                httpStatus.getReasonPhrase(), message, stackTrace), httpStatus);
+    }
+}
@@ -0,0 +1,34 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.service.GenreService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link GenreController} on WebFlux. A warm cache is answered on the event loop; a missing or expired list
+ * is loaded on a worker thread.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/library")
+public class ReactiveGenreController {
+
+    private final GenreService genreService;
+
+    @Autowired
+    public ReactiveGenreController(GenreService genreService) {
+        this.genreService = genreService;
+    }
+
+    @GetMapping(value = "/genres", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<byte[]> getGenres() {
+        return Mono.justOrEmpty(genreService.getCachedGenresJson())
+                .switchIfEmpty(Mono.fromCallable(genreService::getAllGenresJson).subscribeOn(Schedulers.boundedElastic()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how many items every list response carries, the page of a search response included, tagged with the
+ * matched URI pattern ({@code /library/books/by-genre}, not the concrete path), so the series stay bounded.
+ */
+@ControllerAdvice(assignableTypes = BookController.class)
+@Profile("!reactive")
+public class ResultSizeMetricsAdvice implements ResponseBodyAdvice<Object> {
+
+    static final String RESULT_SIZE_METRIC = "library.response.items";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ResultSizeMetricsAdvice(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        Collection<?> items = body instanceof BookSearchRepresentation search ? search.getBooks()
+                : body instanceof Collection<?> list ? list : null;
+        if (items != null && request instanceof ServletServerHttpRequest servletRequest) {
+            Object pattern = servletRequest.getServletRequest().getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                summaryFor(pattern.toString()).record(items.size());
+            }
+        }
+        return body;
+    }
+
+    private DistributionSummary summaryFor(String uri) {
+        DistributionSummary summary = summaries.get(uri);
+        if (summary == null) {
+            summary = summaries.computeIfAbsent(uri, key -> DistributionSummary.builder(RESULT_SIZE_METRIC)
+                    .description("Number of items in list responses")
+                    .baseUnit("items")
+                    .tag("uri", key)
+                    .register(meterRegistry));
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,39 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.model.BookSnapshotRepresentation;
+import com.course.libraryapp.exposure.service.BookSnapshots;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * {@code POST /actuator/snapshots} writes the snapshot file other instances warm start from, see
+ * {@link BookSnapshots}. Like {@link GenreCacheEndpoint} it is only reachable once listed in
+ * {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Profile("!reactive & !embedded")
+@Endpoint(id = "snapshots")
+public class SnapshotEndpoint {
+
+    private final BookSnapshots bookSnapshots;
+
+    @Autowired
+    public SnapshotEndpoint(BookSnapshots bookSnapshots) {
+        this.bookSnapshots = bookSnapshots;
+    }
+
+    @WriteOperation
+    public BookSnapshotRepresentation export() {
+        try {
+            return bookSnapshots.export();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
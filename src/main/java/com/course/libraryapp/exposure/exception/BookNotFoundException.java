@@ -0,0 +1,12 @@
+package com.course.libraryapp.exposure.exception;
+
+public class BookNotFoundException extends LibraryException {
+
+    public BookNotFoundException(int id) {
+        super("No requested book with id=" + id + " in a library.");
+    }
+
+    public BookNotFoundException(String title) {
+        super("No requested book with title " + title + " in a library.");
+    }
+}
@@ -0,0 +1,8 @@
+package com.course.libraryapp.exposure.exception;
+
+public class DuplicateSignatureException extends LibraryException {
+
+    public DuplicateSignatureException(String signature) {
+        super("Book with provided signature " + signature + " already in a library.");
+    }
+}
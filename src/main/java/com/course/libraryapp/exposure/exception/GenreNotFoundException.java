@@ -0,0 +1,8 @@
+package com.course.libraryapp.exposure.exception;
+
+public class GenreNotFoundException extends LibraryException {
+
+    public GenreNotFoundException(String genre) {
+        super("No genre " + genre + " in a library.");
+    }
+}
@@ -0,0 +1,11 @@
+package com.course.libraryapp.exposure.exception;
+
+/**
+ * A request parameter or body the library cannot act on, like an unknown field or a malformed page cursor.
+ */
+public class InvalidRequestException extends LibraryException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
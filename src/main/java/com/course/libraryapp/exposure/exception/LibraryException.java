@@ -0,0 +1,25 @@
+package com.course.libraryapp.exposure.exception;
+
+/**
+ * Base of the expected, client-caused outcomes of the library API. They are ordinary control flow, so by
+ * default they neither capture a stack trace nor support suppression. For debugging, stack traces are captured
+ * when {@code library.errors.include-stack-trace} is set to true; {@link StackTraceSettings} applies it once at
+ * startup, and the error controllers include stack traces in error bodies from {@link #capturesStackTraces()},
+ * so both always agree.
+ */
+public abstract class LibraryException extends RuntimeException {
+
+    private static volatile boolean captureStackTraces;
+
+    protected LibraryException(String message) {
+        super(message, null, false, captureStackTraces);
+    }
+
+    public static boolean capturesStackTraces() {
+        return captureStackTraces;
+    }
+
+    static void captureStackTraces(boolean captureStackTraces) {
+        LibraryException.captureStackTraces = captureStackTraces;
+    }
+}
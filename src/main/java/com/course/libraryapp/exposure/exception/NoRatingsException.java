@@ -0,0 +1,14 @@
+package com.course.libraryapp.exposure.exception;
+
+/**
+ * There is no best book to report yet. Not an error for the client, the endpoints answer 200 with the message.
+ */
+public class NoRatingsException extends LibraryException {
+
+    public static final String NO_VOTES = "Couldn't get the most popular book. No votes yet.";
+    public static final String NO_SCORES = "Couldn't get the highest rated book. All rate to 0.0";
+
+    public NoRatingsException(String message) {
+        super(message);
+    }
+}
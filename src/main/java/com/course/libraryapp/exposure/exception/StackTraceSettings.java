@@ -0,0 +1,18 @@
+package com.course.libraryapp.exposure.exception;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies {@code library.errors.include-stack-trace} to {@link LibraryException} when the context starts, so it
+ * can be set like any other property; exceptions thrown before that never capture a stack trace.
+ */
+@Component
+class StackTraceSettings {
+
+    @Autowired
+    StackTraceSettings(@Value("${library.errors.include-stack-trace:false}") boolean includeStackTrace) {
+        LibraryException.captureStackTraces(includeStackTrace);
+    }
+}
@@ -0,0 +1,8 @@
+package com.course.libraryapp.exposure.exception;
+
+public class VersionConflictException extends LibraryException {
+
+    public VersionConflictException(int id, long currentVersion) {
+        super("Book with id=" + id + " was modified by another request, its current version is " + currentVersion + ".");
+    }
+}
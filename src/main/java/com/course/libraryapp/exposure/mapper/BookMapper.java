@@ -3,8 +3,10 @@ package com.course.libraryapp.exposure.mapper;
 import com.course.libraryapp.exposure.model.BookRepresentation;
 import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
 import com.course.libraryapp.persistance.model.BookEntity;
+import org.mapstruct.AfterMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import org.mapstruct.Named;
 import org.mapstruct.factory.Mappers;
 
@@ -14,14 +16,21 @@ public interface BookMapper {
     BookMapper INSTANCE = Mappers.getMapper(BookMapper.class);
 
     @Mapping(source = "genre", target = "genre", qualifiedByName = "enumToStringMapper")
+    @Mapping(target = "scoreSum", ignore = true)
+    @Mapping(target = "votesCount", ignore = true)
     BookEntity bookRepToEntity(BookRepresentation bookRepresentation);
 
     @Mapping(source = "genre", target = "genre", qualifiedByName = "stringToEnumMapper")
     BookRepresentation entityToBookRep(BookEntity bookEntity);
 
+    @AfterMapping
+    default void updateScoreTotals(@MappingTarget BookEntity bookEntity) {
+        bookEntity.updateScoreTotals();
+    }
+
     @Named("stringToEnumMapper")
     static GenreEnumRepresentation map(String genre) {
-        return GenreEnumRepresentation.of(genre.toLowerCase());
+        return GenreEnumRepresentation.of(genre);
     }
 
     @Named("enumToStringMapper")
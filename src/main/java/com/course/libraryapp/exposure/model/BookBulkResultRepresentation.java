@@ -0,0 +1,17 @@
+package com.course.libraryapp.exposure.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookBulkResultRepresentation {
+
+    private int index;
+    private String signature;
+    private BulkItemStatus status;
+    private Integer id;
+    private String message;
+}
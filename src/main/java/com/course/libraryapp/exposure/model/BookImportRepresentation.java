@@ -0,0 +1,22 @@
+package com.course.libraryapp.exposure.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookImportRepresentation {
+
+    private String importId;
+    private long resumedAtRow;
+    private long rows;
+    private long created;
+    private long rejected;
+    private List<BookBulkResultRepresentation> rejections;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
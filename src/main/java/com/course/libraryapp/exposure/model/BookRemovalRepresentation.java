@@ -0,0 +1,11 @@
+package com.course.libraryapp.exposure.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BookRemovalRepresentation {
+
+    private long removed;
+}
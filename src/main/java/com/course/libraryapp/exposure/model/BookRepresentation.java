@@ -1,8 +1,10 @@
 package com.course.libraryapp.exposure.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,9 +19,18 @@ public class BookRepresentation {
     private String author;
     @NotBlank(message = "Description cannot be empty")
     private String description;
+    @NotNull(message = "Genre cannot be empty")
     private GenreEnumRepresentation genre;
     private double score;
     private List<Integer> scoreRegistry;
+    @JsonIgnore
+    private long version;
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long scoreSum;
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private int votesCount;
 
     // public no-arg constructor required by Spring
     public BookRepresentation() {
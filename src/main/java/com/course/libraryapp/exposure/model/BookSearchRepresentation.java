@@ -0,0 +1,16 @@
+package com.course.libraryapp.exposure.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BookSearchRepresentation {
+
+    private List<BookRepresentation> books;
+    private String nextCursor;
+    private List<FacetCountRepresentation> genres;
+    private List<FacetCountRepresentation> scores;
+}
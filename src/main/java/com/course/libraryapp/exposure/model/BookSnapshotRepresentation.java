@@ -0,0 +1,17 @@
+package com.course.libraryapp.exposure.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class BookSnapshotRepresentation {
+
+    private String path;
+    private int books;
+    private long bytes;
+    private Instant createdAt;
+    private long elapsedMillis;
+}
@@ -0,0 +1,8 @@
+package com.course.libraryapp.exposure.model;
+
+public enum BulkItemStatus {
+    CREATED,
+    DUPLICATE,
+    INVALID,
+    FAILED
+}
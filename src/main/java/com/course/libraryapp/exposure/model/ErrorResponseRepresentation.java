@@ -1,10 +1,12 @@
 package com.course.libraryapp.exposure.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ErrorResponseRepresentation {
 
     private int status;
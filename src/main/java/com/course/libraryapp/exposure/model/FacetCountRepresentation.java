@@ -0,0 +1,12 @@
+package com.course.libraryapp.exposure.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FacetCountRepresentation {
+
+    private String value;
+    private long count;
+}
@@ -1,9 +1,10 @@
 package com.course.libraryapp.exposure.model;
 
+import com.course.libraryapp.exposure.util.TextFolding;
 import com.fasterxml.jackson.annotation.JsonValue;
 
-import java.util.Arrays;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.Map;
 
 public enum GenreEnumRepresentation {
 
@@ -14,6 +15,16 @@ public enum GenreEnumRepresentation {
     LIT_POPULARNO_NAUKOWA("literatura popularno-naukowa"),
     POEZJA("poezja");
 
+    private static final Map<String, GenreEnumRepresentation> BY_NAME = new HashMap<>();
+    private static final Map<String, GenreEnumRepresentation> BY_FOLDED_NAME = new HashMap<>();
+
+    static {
+        for (GenreEnumRepresentation genreEnumRep : values()) {
+            BY_NAME.put(genreEnumRep.genre, genreEnumRep);
+            BY_FOLDED_NAME.put(TextFolding.fold(genreEnumRep.genre), genreEnumRep);
+        }
+    }
+
     @JsonValue
     private final String genre;
 
@@ -21,10 +32,16 @@ public enum GenreEnumRepresentation {
         this.genre = genre;
     }
 
+    /**
+     * Resolves a genre name ignoring case and diacritics, or returns null for an unknown genre.
+     * Canonical names, which is what the books collection stores, are resolved without allocating.
+     */
     public static GenreEnumRepresentation of(String genre) {
-        Optional<GenreEnumRepresentation> optionalGenreEnumRep = Arrays.stream(GenreEnumRepresentation.values())
-                .filter(genreEnumRep -> genreEnumRep.genre.equals(genre)).findFirst();
-        return optionalGenreEnumRep.orElse(null);
+        if (genre == null) {
+            return null;
+        }
+        GenreEnumRepresentation genreEnumRep = BY_NAME.get(genre);
+        return genreEnumRep != null ? genreEnumRep : BY_FOLDED_NAME.get(TextFolding.fold(genre));
     }
 
     public String getGenreName(){
@@ -0,0 +1,14 @@
+package com.course.libraryapp.exposure.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class SparseBookPageRepresentation {
+
+    private List<SparseBookRepresentation> books;
+    private String nextCursor;
+}
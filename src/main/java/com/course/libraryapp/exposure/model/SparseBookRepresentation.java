@@ -0,0 +1,26 @@
+package com.course.libraryapp.exposure.model;
+
+import java.util.LinkedHashMap;
+
+/**
+ * The requested fields of one book, written as a plain object. The id and version the book was read at are
+ * kept aside whether they were requested or not, list tags are derived from them.
+ */
+public class SparseBookRepresentation extends LinkedHashMap<String, Object> {
+
+    private final int id;
+    private final long version;
+
+    public SparseBookRepresentation(int id, long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,27 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.BsonDocument;
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Changes of the books collection, for book snapshots. Only Mongo keeps them; the embedded store restores
+ * every book from its own log on start and has no use for snapshots.
+ */
+public interface BookChangeStream {
+
+    /**
+     * Resume token of the books change stream at the current time, to replay the changes made after it with
+     * {@link #replayChangesAfter}. Change streams need a replica set.
+     */
+    BsonDocument findChangeStreamPosition();
+
+    /**
+     * Passes every book inserted or changed after {@code resumeToken} to {@code onSaved}, as it is now, and the
+     * id of every book removed since to {@code onRemoved}, until no changes are left. Returns how many changes
+     * were replayed.
+     */
+    long replayChangesAfter(BsonDocument resumeToken, Consumer<BookEntity> onSaved, IntConsumer onRemoved);
+}
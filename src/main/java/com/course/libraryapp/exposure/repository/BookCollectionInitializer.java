@@ -0,0 +1,147 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates the collection while the application context starts, before the web server takes requests.
+ * <p>
+ * Signatures are unique unless {@code library.signature-index.unique} is false: the migration replaces a plain
+ * signature index with a unique one, so an add racing past the signature check fails with a duplicate key, and
+ * refuses to start while books share a signature, since only an operator can tell which of them to keep. With
+ * the switch off duplicates are only reported and the index stays plain.
+ */
+@Component
+@Profile("!embedded")
+public class BookCollectionInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookCollectionInitializer.class);
+    private static final int REPORTED_DUPLICATES = 20;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean uniqueSignatures;
+
+    @Autowired
+    public BookCollectionInitializer(MongoTemplate mongoTemplate,
+                                     @Value("${library.signature-index.unique:true}") boolean uniqueSignatures) {
+        this.mongoTemplate = mongoTemplate;
+        this.uniqueSignatures = uniqueSignatures;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        ensureSignatureIndex();
+        ensureIndexes();
+        backfillScoreTotals();
+        normalizeGenres();
+    }
+
+    private void ensureSignatureIndex() {
+        IndexOperations indexOperations = mongoTemplate.indexOps(BookEntity.class);
+        IndexInfo existing = null;
+        for (IndexInfo indexInfo : indexOperations.getIndexInfo()) {
+            if (indexInfo.getName().equals("signature")) {
+                existing = indexInfo;
+            }
+        }
+        if (existing != null && (existing.isUnique() || !uniqueSignatures)) {
+            return;
+        }
+        List<String> duplicates = findDuplicateSignatures();
+        if (!uniqueSignatures) {
+            if (!duplicates.isEmpty()) {
+                LOGGER.warn("Books share signatures {}; remove the duplicates before enabling library.signature-index.unique.", duplicates);
+            }
+            indexOperations.ensureIndex(new Index().on("signature", Sort.Direction.ASC).named("signature"));
+            return;
+        }
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException("Cannot make signatures unique, books share signatures " + duplicates
+                    + ". Remove the duplicates or set library.signature-index.unique=false.");
+        }
+        // an index cannot be changed in place
+        if (existing != null) {
+            indexOperations.dropIndex("signature");
+        }
+        indexOperations.ensureIndex(new Index().on("signature", Sort.Direction.ASC).unique().named("signature")
+                .partial(PartialIndexFilter.of(Criteria.where("signature").type(JsonSchemaObject.Type.STRING))));
+    }
+
+    private void ensureIndexes() {
+        IndexOperations indexOperations = mongoTemplate.indexOps(BookEntity.class);
+        indexOperations.ensureIndex(new Index().on("author", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("author_id"));
+        indexOperations.ensureIndex(new Index().on("title", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("title_id"));
+        indexOperations.ensureIndex(new Index().on("score", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("score_id"));
+        indexOperations.ensureIndex(new Index().on("score", Sort.Direction.DESC).on("_id", Sort.Direction.ASC).named("score_desc_id"));
+        indexOperations.ensureIndex(new Index().on("votesCount", Sort.Direction.DESC).on("_id", Sort.Direction.ASC).named("votesCount_desc_id"));
+        indexOperations.ensureIndex(new Index().on("genre", Sort.Direction.ASC).on("score", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.ASC).named("genre_score_desc_id"));
+        // search filters: equality fields first, then the score range; genre+score and score alone are covered above
+        indexOperations.ensureIndex(new Index().on("author", Sort.Direction.ASC).on("score", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.ASC).named("author_score_desc_id"));
+        indexOperations.ensureIndex(new Index().on("genre", Sort.Direction.ASC).on("author", Sort.Direction.ASC)
+                .on("score", Sort.Direction.DESC).on("_id", Sort.Direction.ASC).named("genre_author_score_desc_id"));
+    }
+
+    /**
+     * Up to {@value #REPORTED_DUPLICATES} signatures held by more than one book.
+     */
+    private List<String> findDuplicateSignatures() {
+        AggregationOperation groupBySignature = context -> new Document("$group", new Document("_id", "$signature")
+                .append("count", new Document("$sum", 1)));
+        Aggregation duplicates = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("signature").type(JsonSchemaObject.Type.STRING)),
+                groupBySignature,
+                Aggregation.match(Criteria.where("count").gt(1)),
+                Aggregation.limit(REPORTED_DUPLICATES));
+        List<String> signatures = new ArrayList<>();
+        for (Document duplicate : mongoTemplate.aggregate(duplicates, BookEntity.class, Document.class)) {
+            signatures.add(duplicate.getString("_id"));
+        }
+        return signatures;
+    }
+
+    // books written before the running totals existed only carry scoreRegistry
+    private void backfillScoreTotals() {
+        AggregationOperation deriveTotals = context -> new Document("$set", new Document()
+                .append("scoreSum", new Document("$sum", "$scoreRegistry"))
+                .append("votesCount", new Document("$size", new Document("$ifNull", List.of("$scoreRegistry", List.of())))));
+        mongoTemplate.updateMulti(new Query(Criteria.where("votesCount").exists(false)),
+                AggregationUpdate.from(List.of(deriveTotals)), BookEntity.class);
+    }
+
+    // genre queries match exactly, so older spellings like "Fantasy" or "powiesc przygodowa" are rewritten
+    private void normalizeGenres() {
+        for (String genre : mongoTemplate.findDistinct(new Query(), "genre", BookEntity.class, String.class)) {
+            GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+            if (genreEnumRep != null && !genreEnumRep.getGenreName().equals(genre)) {
+                mongoTemplate.updateMulti(new Query(Criteria.where("genre").is(genre)),
+                        new Update().set("genre", genreEnumRep.getGenreName()), BookEntity.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.course.libraryapp.exposure.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out book ids from blocks reserved in the {@code counters} collection. Ids are taken from the
+ * current block with a single CAS; the next block is fetched in the background once the current one
+ * runs low, so callers only wait on Mongo when a refill did not arrive in time (a stall). Refills run on a
+ * thread of their own rather than the common pool, since they block on Mongo.
+ */
+@Component
+public class BookIdAllocator implements MeterBinder {
+
+    static final String BOOK_SEQUENCE = "bookId";
+
+    private final SequenceIdRepository sequenceIdRepository;
+    private final int blockSize;
+    private final int prefetchThreshold;
+    private final ExecutorService refiller;
+
+    private final AtomicReference<IdBlock> currentBlock = new AtomicReference<>(new IdBlock(1, 0));
+    private final AtomicReference<CompletableFuture<IdBlock>> nextBlock = new AtomicReference<>();
+    private final AtomicLong refillCount = new AtomicLong();
+    private final AtomicLong stallCount = new AtomicLong();
+
+    @Autowired
+    public BookIdAllocator(SequenceIdRepository sequenceIdRepository,
+                           @Value("${library.book-id.block-size:100}") int blockSize,
+                           @Value("${library.book-id.prefetch-threshold:20}") int prefetchThreshold) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Book id block size must be positive.");
+        }
+        this.sequenceIdRepository = sequenceIdRepository;
+        this.blockSize = blockSize;
+        this.prefetchThreshold = Math.min(Math.max(prefetchThreshold, 0), blockSize - 1);
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-id-refiller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int nextId() {
+        while (true) {
+            IdBlock block = currentBlock.get();
+            int id = block.next.getAndIncrement();
+            if (id <= block.last) {
+                if (block.last - id == prefetchThreshold) {
+                    prefetchNextBlock();
+                }
+                return id;
+            }
+            advance(block);
+        }
+    }
+
+    /**
+     * Returns {@code count} fresh ids. Requests of at least one block are served from a dedicated
+     * contiguous range reserved in a single round trip instead of draining the shared block.
+     */
+    public int[] nextIds(int count) {
+        int[] ids = new int[count];
+        if (count >= blockSize) {
+            int last = sequenceIdRepository.reserveSequenceBlock(BOOK_SEQUENCE, count);
+            refillCount.incrementAndGet();
+            for (int i = 0; i < count; i++) {
+                ids[i] = last - count + 1 + i;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                ids[i] = nextId();
+            }
+        }
+        return ids;
+    }
+
+    public long getRefillCount() {
+        return refillCount.get();
+    }
+
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.book.id.refills", refillCount, AtomicLong::get)
+                .description("Blocks of book ids reserved in the counters collection")
+                .register(registry);
+        FunctionCounter.builder("library.book.id.stalls", stallCount, AtomicLong::get)
+                .description("Id requests that had to wait for a block to be reserved")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private void advance(IdBlock exhausted) {
+        if (currentBlock.get() != exhausted) {
+            return;
+        }
+        CompletableFuture<IdBlock> pending = prefetchNextBlock();
+        if (!pending.isDone()) {
+            stallCount.incrementAndGet();
+        }
+        IdBlock fresh;
+        try {
+            fresh = pending.join();
+        } catch (CompletionException e) {
+            nextBlock.compareAndSet(pending, null);
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        if (currentBlock.compareAndSet(exhausted, fresh)) {
+            nextBlock.compareAndSet(pending, null);
+        }
+    }
+
+    private CompletableFuture<IdBlock> prefetchNextBlock() {
+        CompletableFuture<IdBlock> created = new CompletableFuture<>();
+        while (!nextBlock.compareAndSet(null, created)) {
+            CompletableFuture<IdBlock> pending = nextBlock.get();
+            if (pending != null) {
+                return pending;
+            }
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                int last = sequenceIdRepository.reserveSequenceBlock(BOOK_SEQUENCE, blockSize);
+                refillCount.incrementAndGet();
+                created.complete(new IdBlock(last - blockSize + 1, last));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+        }, refiller);
+        return created;
+    }
+
+    private static final class IdBlock {
+        private final AtomicInteger next;
+        private final int last;
+
+        private IdBlock(int first, int last) {
+            this.next = new AtomicInteger(first);
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookImportCheckpointEntity;
+
+import java.util.Optional;
+
+public interface BookImportCheckpointRepository {
+
+    Optional<BookImportCheckpointEntity> findById(String importId);
+
+    <S extends BookImportCheckpointEntity> S save(S checkpoint);
+}
@@ -1,22 +1,28 @@
 package com.course.libraryapp.exposure.repository;
 
 import com.course.libraryapp.persistance.model.BookEntity;
-import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
-import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-@Repository
-public interface BookRepository extends MongoRepository<BookEntity, Long>, BookRepositoryCustom {
-
-    @Query(value = "{'title': {$regex : ?0, $options: 'i'}}")
-    List<BookEntity> findAllByTitle(String title);
+/**
+ * The books as the services read and write them, stored in Mongo through {@link MongoBookRepository} or in the
+ * embedded store.
+ */
+public interface BookRepository extends BookRepositoryCustom {
 
     BookEntity findBySignature(String signature);
 
     BookEntity findById(int id);
 
-    @Query(value = "{'genre': {$regex : ?0, $options: 'i'}}")
+    List<BookEntity> findAll();
+
+    List<BookEntity> findAllByIdIn(Collection<Integer> ids);
+
     List<BookEntity> findAllByGenre(String genre);
+
+    List<BookEntity> findAllByGenreOrderByScoreDescIdAsc(String genre);
+
+    Stream<BookEntity> streamAllBy();
 }
@@ -1,10 +1,91 @@
 package com.course.libraryapp.exposure.repository;
 
 import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Repository
 public interface BookRepositoryCustom {
 
     BookEntity saveCustomized(BookEntity bookEntity);
+
+    /**
+     * Assigns ids to all given books and inserts them in chunks. Returns the books that could not be
+     * written, indexed by their position in {@code bookEntities}.
+     */
+    List<BulkInsertFailure> insertAllCustomized(List<BookEntity> bookEntities);
+
+    /**
+     * Adds a single rate to the running totals and recomputes the score in one atomic update.
+     * Returns the updated book or null when there is no book with the given id.
+     */
+    BookEntity rateBook(int id, int rate);
+
+    /**
+     * Adds the rates of many books with one unordered bulk write, one pipeline update per book as in
+     * {@link #rateBook}. Returns the ids of the books whose update failed; missing books are skipped.
+     */
+    Set<Integer> addRates(Map<Integer, List<Integer>> ratesByBook);
+
+    /**
+     * Replaces the book only while it is still at {@code expectedVersion}. Returns the replaced book, or null
+     * when the book is gone or has been changed in the meantime.
+     */
+    BookEntity replaceIfVersion(BookEntity bookEntity, long expectedVersion);
+
+    /**
+     * Deletes the book with one {@code deleteOne}. Returns false when there was no book with the given id.
+     */
+    boolean removeById(int id);
+
+    /**
+     * Deletes the books with one {@code deleteMany} and returns how many of them existed.
+     */
+    long removeAllById(Collection<Integer> ids);
+
+    /**
+     * Ids of all books of the genre, read from the genre index without fetching the books.
+     */
+    List<Integer> findIdsByGenre(String genre);
+
+    /**
+     * Books with the highest values of {@code field}, ties broken by ascending id.
+     */
+    List<BookEntity> findTopBooks(String field, int limit);
+
+    List<BookEntity> findAllByFieldValue(String field, Object value);
+
+    Set<String> findExistingSignatures(Collection<String> signatures);
+
+    /**
+     * Keyset page ordered by {@code sortField} and then by id in the same direction. Pass a null
+     * {@code lastId} for the first page, otherwise the sort key and id of the last book already returned.
+     */
+    List<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit);
+
+    /**
+     * Like {@link #findSortedAfter(String, Sort.Direction, Object, Integer, int)}, reading only {@code fields}
+     * and the sort field; all other fields of the returned books are left unset.
+     */
+    List<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit,
+                                     Collection<String> fields);
+
+    /**
+     * Books of the genre in the given order, reading only {@code fields}; all other fields are left unset.
+     */
+    List<BookEntity> findAllByGenre(String genre, Sort sort, Collection<String> fields);
+
+    /**
+     * One aggregation returning a keyset page of the books matching {@code filter}, like
+     * {@link #findSortedAfter(String, Sort.Direction, Object, Integer, int)}, together with the genre and
+     * score facet counts of all matching books.
+     */
+    BookSearchResult search(BookSearchFilter filter, String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit);
 }
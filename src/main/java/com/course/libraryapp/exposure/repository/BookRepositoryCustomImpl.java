@@ -1,29 +1,378 @@
 package com.course.libraryapp.exposure.repository;
 
 import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.*;
+
 @Repository
+@Profile("!embedded")
 public class BookRepositoryCustomImpl implements BookRepositoryCustom {
 
-    private final SequenceIdRepository sequenceIdRepository;
+    static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final BookIdAllocator bookIdAllocator;
     private final MongoTemplate mongoTemplate;
 
-    public BookRepositoryCustomImpl(SequenceIdRepository sequenceIdRepository, MongoTemplate mongoTemplate) {
-        this.sequenceIdRepository = sequenceIdRepository;
+    private final int bulkInsertBatchSize;
+    private final boolean bulkInsertOrdered;
+
+    @Autowired
+    public BookRepositoryCustomImpl(BookIdAllocator bookIdAllocator, MongoTemplate mongoTemplate,
+                                    @Value("${library.bulk-insert.batch-size:1000}") int bulkInsertBatchSize,
+                                    @Value("${library.bulk-insert.ordered:false}") boolean bulkInsertOrdered) {
+        if (bulkInsertBatchSize < 1) {
+            throw new IllegalArgumentException("Bulk insert batch size must be positive.");
+        }
+        this.bookIdAllocator = bookIdAllocator;
         this.mongoTemplate = mongoTemplate;
+        this.bulkInsertBatchSize = bulkInsertBatchSize;
+        this.bulkInsertOrdered = bulkInsertOrdered;
     }
 
-    @Value("${spring.data.mongodb.uri}")
-    private String uri;
-
     @Override
     public BookEntity saveCustomized(BookEntity bookEntity) {
-        int seq = sequenceIdRepository.getNextSequenceNumber(uri);
-        bookEntity.setId(seq);
+        bookEntity.setId(bookIdAllocator.nextId());
         mongoTemplate.save(bookEntity);
         return  bookEntity;
     }
+
+    @Override
+    public List<BulkInsertFailure> insertAllCustomized(List<BookEntity> bookEntities) {
+        if (bookEntities.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int[] ids = bookIdAllocator.nextIds(bookEntities.size());
+        for (int i = 0; i < ids.length; i++) {
+            bookEntities.get(i).setId(ids[i]);
+        }
+
+        BulkOperations.BulkMode mode = bulkInsertOrdered ? BulkOperations.BulkMode.ORDERED : BulkOperations.BulkMode.UNORDERED;
+        List<BulkInsertFailure> failures = new ArrayList<>();
+        for (int from = 0; from < bookEntities.size(); from += bulkInsertBatchSize) {
+            int to = Math.min(from + bulkInsertBatchSize, bookEntities.size());
+            try {
+                mongoTemplate.bulkOps(mode, BookEntity.class).insert(bookEntities.subList(from, to)).execute();
+            } catch (BulkOperationException e) {
+                addFailures(failures, from, to, e.getErrors(), bulkInsertOrdered);
+                if (bulkInsertOrdered) {
+                    skipRemaining(failures, to, bookEntities.size());
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * One round trip: the pipeline update returns the book with its registry, totals and score already updated.
+     */
+    @Override
+    public BookEntity rateBook(int id, int rate) {
+        FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true);
+        return mongoTemplate.findAndModify(byId(id), rateUpdate(List.of(rate)), options, BookEntity.class);
+    }
+
+    @Override
+    public Set<Integer> addRates(Map<Integer, List<Integer>> ratesByBook) {
+        List<Integer> ids = new ArrayList<>(ratesByBook.keySet());
+        List<UpdateOneModel<Document>> updates = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            updates.add(new UpdateOneModel<>(new Document("_id", id), rateUpdatePipeline(ratesByBook.get(id))));
+        }
+        Set<Integer> failedIds = new HashSet<>();
+        try {
+            mongoTemplate.getCollection(mongoTemplate.getCollectionName(BookEntity.class))
+                    .bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failedIds.add(ids.get(error.getIndex()));
+            }
+        }
+        return failedIds;
+    }
+
+    @Override
+    public BookEntity replaceIfVersion(BookEntity bookEntity, long expectedVersion) {
+        return mongoTemplate.findAndReplace(byIdAndVersion(bookEntity.getId(), expectedVersion), bookEntity);
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        return mongoTemplate.remove(byId(id), BookEntity.class).getDeletedCount() > 0;
+    }
+
+    @Override
+    public long removeAllById(Collection<Integer> ids) {
+        return mongoTemplate.remove(byIds(ids), BookEntity.class).getDeletedCount();
+    }
+
+    @Override
+    public List<Integer> findIdsByGenre(String genre) {
+        List<BookEntity> bookIds = mongoTemplate.find(idsByGenreQuery(genre), BookEntity.class);
+        List<Integer> ids = new ArrayList<>(bookIds.size());
+        for (BookEntity bookId : bookIds) {
+            ids.add(bookId.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public List<BookEntity> findTopBooks(String field, int limit) {
+        return mongoTemplate.find(topBooksQuery(field).limit(limit), BookEntity.class);
+    }
+
+    @Override
+    public List<BookEntity> findAllByFieldValue(String field, Object value) {
+        return mongoTemplate.find(fieldValueQuery(field, value), BookEntity.class);
+    }
+
+    @Override
+    public Set<String> findExistingSignatures(Collection<String> signatures) {
+        List<BookEntity> existing = mongoTemplate.find(signaturesQuery(signatures), BookEntity.class);
+        Set<String> existingSignatures = new HashSet<>(existing.size() * 2);
+        for (BookEntity bookEntity : existing) {
+            existingSignatures.add(bookEntity.getSignature());
+        }
+        return existingSignatures;
+    }
+
+    @Override
+    public List<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit) {
+        return mongoTemplate.find(sortedAfterQuery(sortField, direction, lastSortKey, lastId, limit), BookEntity.class);
+    }
+
+    @Override
+    public List<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit,
+                                            Collection<String> fields) {
+        Query query = include(sortedAfterQuery(sortField, direction, lastSortKey, lastId, limit), fields);
+        query.fields().include(sortField);
+        return mongoTemplate.find(query, BookEntity.class);
+    }
+
+    @Override
+    public List<BookEntity> findAllByGenre(String genre, Sort sort, Collection<String> fields) {
+        return mongoTemplate.find(include(new Query(Criteria.where("genre").is(genre)).with(sort), fields), BookEntity.class);
+    }
+
+    @Override
+    public BookSearchResult search(BookSearchFilter filter, String sortField, Sort.Direction direction, Object lastSortKey,
+                                   Integer lastId, int limit) {
+        Document facets = mongoTemplate.aggregate(searchAggregation(filter, sortField, direction, lastSortKey, lastId, limit),
+                BookEntity.class, Document.class).getUniqueMappedResult();
+        List<BookEntity> books = new ArrayList<>();
+        for (Document book : facets.getList("books", Document.class)) {
+            books.add(mongoTemplate.getConverter().read(BookEntity.class, book));
+        }
+        Map<String, Long> genreCounts = new LinkedHashMap<>();
+        for (Document genre : facets.getList("genres", Document.class)) {
+            genreCounts.put(genre.getString("_id"), genre.get("count", Number.class).longValue());
+        }
+        Map<Integer, Long> scoreBucketCounts = new TreeMap<>();
+        for (Document bucket : facets.getList("scores", Document.class)) {
+            scoreBucketCounts.put(bucket.get("_id", Number.class).intValue(), bucket.get("count", Number.class).longValue());
+        }
+        return new BookSearchResult(books, genreCounts, scoreBucketCounts);
+    }
+
+    static Query byId(int id) {
+        return new Query(Criteria.where("_id").is(id));
+    }
+
+    static Query byIds(Collection<Integer> ids) {
+        return new Query(Criteria.where("_id").in(ids));
+    }
+
+    static Query idsByGenreQuery(String genre) {
+        Query query = new Query(Criteria.where("genre").is(genre));
+        query.fields().include("_id");
+        return query;
+    }
+
+    /**
+     * Books written before versioning have no version field, they count as version 0.
+     */
+    static Query byIdAndVersion(int id, long version) {
+        Criteria versionCriteria = version == 0
+                ? new Criteria().orOperator(Criteria.where("version").is(0), Criteria.where("version").exists(false))
+                : Criteria.where("version").is(version);
+        return new Query(Criteria.where("_id").is(id).andOperator(versionCriteria));
+    }
+
+    /**
+     * Appends the rates to the registry, adds them to the running totals and sets the score from the new
+     * totals, in one pipeline update, so the score is never read apart from the totals it was computed from.
+     * The version grows by one per rate, the same as rating one by one would. Books stored before the totals
+     * existed get them derived from the registry, whether or not the start-up backfill has reached them yet.
+     */
+    static AggregationUpdate rateUpdate(List<Integer> rates) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        for (Document stage : rateUpdatePipeline(rates)) {
+            stages.add(context -> stage);
+        }
+        return AggregationUpdate.from(stages);
+    }
+
+    /**
+     * {@link #rateUpdate(List)} as plain stages, for bulk writes sent to the collection directly.
+     */
+    static List<Document> rateUpdatePipeline(List<Integer> rates) {
+        long sum = 0;
+        for (int rate : rates) {
+            sum += rate;
+        }
+        Document registry = new Document("$ifNull", List.of("$scoreRegistry", List.of()));
+        Document addRates = new Document("$set", new Document()
+                .append("scoreSum", new Document("$add", List.of(
+                        new Document("$ifNull", List.of("$scoreSum", new Document("$sum", "$scoreRegistry"))), sum)))
+                .append("votesCount", new Document("$add", List.of(
+                        new Document("$ifNull", List.of("$votesCount", new Document("$size", registry))), rates.size())))
+                .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0)), rates.size())))
+                .append("scoreRegistry", new Document("$concatArrays", List.of(registry, rates))));
+        // rounded half up to two decimals, from the totals set by the stage before
+        Document setScore = new Document("$set", new Document("score",
+                new Document("$divide", List.of(new Document("$floor", new Document("$add", List.of(
+                        new Document("$multiply", List.of(new Document("$divide", List.of("$scoreSum", "$votesCount")), 100)),
+                        0.5))), 100))));
+        return List.of(addRates, setScore);
+    }
+
+    static Query topBooksQuery(String field) {
+        return new Query().with(Sort.by(Sort.Order.desc(field), Sort.Order.asc("_id")));
+    }
+
+    static Query fieldValueQuery(String field, Object value) {
+        return new Query(Criteria.where(field).is(value)).with(Sort.by(Sort.Direction.ASC, "_id"));
+    }
+
+    static Query signaturesQuery(Collection<String> signatures) {
+        Query query = new Query(Criteria.where("signature").in(signatures));
+        query.fields().include("signature");
+        return query;
+    }
+
+    static Query sortedAfterQuery(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit) {
+        Query query = new Query();
+        if (lastId != null) {
+            query.addCriteria(afterCriteria(sortField, direction, lastSortKey, lastId));
+        }
+        return query.with(Sort.by(direction, sortField, "_id")).limit(limit);
+    }
+
+    /**
+     * The books after the given position. Mongo sorts a null or missing value before any other, while
+     * comparisons with {@code $gt} and {@code $lt} never match one, so null keys are handled explicitly.
+     */
+    static Criteria afterCriteria(String sortField, Sort.Direction direction, Object lastSortKey, int lastId) {
+        if (lastSortKey == null) {
+            return direction.isAscending()
+                    ? new Criteria().orOperator(Criteria.where(sortField).ne(null),
+                    Criteria.where(sortField).is(null).and("_id").gt(lastId))
+                    : Criteria.where(sortField).is(null).and("_id").lt(lastId);
+        }
+        return direction.isAscending()
+                ? new Criteria().orOperator(Criteria.where(sortField).gt(lastSortKey),
+                Criteria.where(sortField).is(lastSortKey).and("_id").gt(lastId))
+                : new Criteria().orOperator(Criteria.where(sortField).lt(lastSortKey),
+                Criteria.where(sortField).is(lastSortKey).and("_id").lt(lastId),
+                Criteria.where(sortField).is(null));
+    }
+
+    /**
+     * All filters go into the first {@code $match}, the only stage that can use an index; the facets then
+     * share its result. The page is sorted inside its facet, after the filters have narrowed the books down.
+     */
+    static Aggregation searchAggregation(BookSearchFilter filter, String sortField, Sort.Direction direction, Object lastSortKey,
+                                         Integer lastId, int limit) {
+        List<AggregationOperation> page = new ArrayList<>();
+        if (lastId != null) {
+            page.add(Aggregation.match(afterCriteria(sortField, direction, lastSortKey, lastId)));
+        }
+        // aggregation stages are mapped through the entity, which knows the id only by its property name
+        page.add(Aggregation.sort(Sort.by(direction, sortField, "id")));
+        page.add(Aggregation.limit(limit));
+        AggregationOperation countByGenre = context -> new Document("$group", new Document("_id", "$genre")
+                .append("count", new Document("$sum", 1)));
+        AggregationOperation mostCommonFirst = context -> new Document("$sort", new Document("count", -1).append("_id", 1));
+        // 0 holds [0, 1), ..., 4 holds [4, 5] so that a perfect 5 does not get a bucket of its own
+        AggregationOperation countByScoreBucket = context -> new Document("$group", new Document("_id",
+                new Document("$min", List.of(new Document("$floor", "$score"), 4))).append("count", new Document("$sum", 1)));
+        return Aggregation.newAggregation(
+                Aggregation.match(searchCriteria(filter)),
+                Aggregation.facet(page.toArray(new AggregationOperation[0])).as("books")
+                        .and(countByGenre, mostCommonFirst).as("genres")
+                        .and(countByScoreBucket).as("scores"));
+    }
+
+    static Criteria searchCriteria(BookSearchFilter filter) {
+        Criteria criteria = new Criteria();
+        if (filter.getGenre() != null) {
+            criteria.and("genre").is(filter.getGenre());
+        }
+        if (filter.getAuthor() != null) {
+            criteria.and("author").is(filter.getAuthor());
+        }
+        if (filter.getBookIds() != null) {
+            criteria.and("_id").in(filter.getBookIds());
+        }
+        if (filter.getMinScore() != null || filter.getMaxScore() != null) {
+            Criteria score = criteria.and("score");
+            if (filter.getMinScore() != null) {
+                score.gte(filter.getMinScore());
+            }
+            if (filter.getMaxScore() != null) {
+                score.lte(filter.getMaxScore());
+            }
+        }
+        return criteria;
+    }
+
+    /**
+     * Restricts the query to the given fields; the id is always read.
+     */
+    static Query include(Query query, Collection<String> fields) {
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+        return query;
+    }
+
+    static void addFailures(List<BulkInsertFailure> failures, int from, int to, List<BulkWriteError> errors, boolean ordered) {
+        int lastFailed = -1;
+        for (BulkWriteError error : errors) {
+            lastFailed = Math.max(lastFailed, error.getIndex());
+            failures.add(new BulkInsertFailure(from + error.getIndex(),
+                    error.getCode() == DUPLICATE_KEY_ERROR, error.getMessage()));
+        }
+        if (ordered) {
+            // an ordered batch stops at the first error, so nothing after it was attempted
+            skipRemaining(failures, from + lastFailed + 1, to);
+        }
+    }
+
+    static void skipRemaining(List<BulkInsertFailure> failures, int from, int to) {
+        for (int index = from; index < to; index++) {
+            failures.add(new BulkInsertFailure(index, false, "Not inserted, an earlier book in the ordered batch failed."));
+        }
+    }
 }
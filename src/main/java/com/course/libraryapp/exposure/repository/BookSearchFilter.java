@@ -0,0 +1,22 @@
+package com.course.libraryapp.exposure.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Filters of a book search, each one optional. The genre is the canonical name and the author matches
+ * exactly; both score bounds are inclusive. Titles are matched by the caller, e.g. through the title index,
+ * and passed in as the ids of the books that may match, so no store has to scan every title.
+ */
+@Getter
+@Builder
+public class BookSearchFilter {
+
+    private String genre;
+    private String author;
+    private Set<Integer> bookIds;
+    private Double minScore;
+    private Double maxScore;
+}
@@ -1,9 +1,10 @@
 package com.course.libraryapp.exposure.repository;
 
 import com.course.libraryapp.persistance.model.GenreEntity;
-import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.stereotype.Repository;
 
-@Repository
-public interface GenreRepository extends MongoRepository<GenreEntity, String> {
+import java.util.List;
+
+public interface GenreRepository {
+
+    List<GenreEntity> findAll();
 }
@@ -0,0 +1,78 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+@Repository
+@Profile("!embedded")
+public class MongoBookChangeStream implements BookChangeStream {
+
+    static final long CHANGE_STREAM_MAX_AWAIT_MILLIS = 200;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public MongoBookChangeStream(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public BsonDocument findChangeStreamPosition() {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = watchBooks().cursor()) {
+            cursor.tryNext();
+            BsonDocument resumeToken = cursor.getResumeToken();
+            if (resumeToken == null) {
+                throw new IllegalStateException("The books change stream returned no resume token, MongoDB 4.0.7 or newer is needed.");
+            }
+            return resumeToken;
+        }
+    }
+
+    /**
+     * Replays until an await of {@link #CHANGE_STREAM_MAX_AWAIT_MILLIS} brings no change. A change whose book is
+     * gone by the time it is looked up counts as a removal, the book's own delete comes later in the stream.
+     */
+    @Override
+    public long replayChangesAfter(BsonDocument resumeToken, Consumer<BookEntity> onSaved, IntConsumer onRemoved) {
+        long replayed = 0;
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = watchBooks()
+                .resumeAfter(resumeToken)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .cursor()) {
+            for (ChangeStreamDocument<Document> change = cursor.tryNext(); change != null; change = cursor.tryNext()) {
+                switch (change.getOperationType()) {
+                    case INSERT, UPDATE, REPLACE -> {
+                        if (change.getFullDocument() != null) {
+                            onSaved.accept(mongoTemplate.getConverter().read(BookEntity.class, change.getFullDocument()));
+                        } else {
+                            onRemoved.accept(change.getDocumentKey().getNumber("_id").intValue());
+                        }
+                    }
+                    case DELETE -> onRemoved.accept(change.getDocumentKey().getNumber("_id").intValue());
+                    default -> throw new IllegalStateException("The books collection had a " + change.getOperationType().getValue()
+                            + " event, its changes cannot be replayed.");
+                }
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private ChangeStreamIterable<Document> watchBooks() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(BookEntity.class)).watch()
+                .maxAwaitTime(CHANGE_STREAM_MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
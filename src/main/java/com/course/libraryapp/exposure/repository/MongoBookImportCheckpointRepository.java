@@ -0,0 +1,9 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookImportCheckpointEntity;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MongoBookImportCheckpointRepository extends MongoRepository<BookImportCheckpointEntity, String>, BookImportCheckpointRepository {
+}
@@ -0,0 +1,20 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+/**
+ * {@link BookRepository} derived by Spring Data; {@link BookRepositoryCustom} is listed again because only
+ * directly extended interfaces are matched with their {@code Impl}.
+ */
+@Repository
+public interface MongoBookRepository extends MongoRepository<BookEntity, Long>, BookRepository, BookRepositoryCustom {
+
+    @Override
+    @Meta(cursorBatchSize = 500)
+    Stream<BookEntity> streamAllBy();
+}
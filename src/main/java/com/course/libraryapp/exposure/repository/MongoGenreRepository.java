@@ -0,0 +1,9 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.GenreEntity;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MongoGenreRepository extends MongoRepository<GenreEntity, String>, GenreRepository {
+}
@@ -0,0 +1,9 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.SequenceIdEntity;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MongoSequenceIdRepository extends MongoRepository<SequenceIdEntity, String>, SequenceIdRepository, SequenceIdRepositoryCustom {
+}
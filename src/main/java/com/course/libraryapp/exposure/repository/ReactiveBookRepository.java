@@ -0,0 +1,23 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("reactive")
+public interface ReactiveBookRepository extends ReactiveMongoRepository<BookEntity, Integer>, ReactiveBookRepositoryCustom {
+
+    Mono<BookEntity> findBySignature(String signature);
+
+    @Meta(cursorBatchSize = 500)
+    Flux<BookEntity> findAllBy();
+
+    Flux<BookEntity> findAllByGenre(String genre);
+
+    Flux<BookEntity> findAllByGenreOrderByScoreDescIdAsc(String genre);
+}
@@ -0,0 +1,61 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of {@link BookRepositoryCustom}, issuing the same queries and updates.
+ */
+public interface ReactiveBookRepositoryCustom {
+
+    Mono<BookEntity> insertCustomized(BookEntity bookEntity);
+
+    /**
+     * Assigns ids to all given books and inserts them in chunks. Emits the books that could not be
+     * written, indexed by their position in {@code bookEntities}.
+     */
+    Mono<List<BulkInsertFailure>> insertAllCustomized(List<BookEntity> bookEntities);
+
+    /**
+     * Emits the updated book, or completes empty when there is no book with the given id.
+     */
+    Mono<BookEntity> rateBook(int id, int rate);
+
+    /**
+     * Emits the replaced book, or completes empty when the book is gone or is no longer at {@code expectedVersion}.
+     */
+    Mono<BookEntity> replaceIfVersion(BookEntity bookEntity, long expectedVersion);
+
+    /**
+     * Emits whether a book with the given id existed and was deleted.
+     */
+    Mono<Boolean> removeById(int id);
+
+    /**
+     * Emits how many of the books existed and were deleted by the single {@code deleteMany}.
+     */
+    Mono<Long> removeAllById(Collection<Integer> ids);
+
+    Flux<Integer> findIdsByGenre(String genre);
+
+    /**
+     * Books with the highest values of {@code field}, ties broken by ascending id.
+     */
+    Flux<BookEntity> findTopBooks(String field, int limit);
+
+    /**
+     * Books whose {@code field} equals {@code value}, by ascending id.
+     */
+    Flux<BookEntity> findAllByFieldValue(String field, Object value);
+
+    Mono<Set<String>> findExistingSignatures(Collection<String> signatures);
+
+    Flux<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit);
+}
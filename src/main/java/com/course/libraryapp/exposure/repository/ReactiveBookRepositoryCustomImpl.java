@@ -0,0 +1,176 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
+import com.course.libraryapp.persistance.model.SequenceIdEntity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+
+@Repository
+@Profile("reactive")
+public class ReactiveBookRepositoryCustomImpl implements ReactiveBookRepositoryCustom {
+
+    private final BookIdAllocator bookIdAllocator;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private final int bulkInsertBatchSize;
+    private final boolean bulkInsertOrdered;
+
+    @Autowired
+    public ReactiveBookRepositoryCustomImpl(BookIdAllocator bookIdAllocator, ReactiveMongoTemplate reactiveMongoTemplate,
+                                            @Value("${library.bulk-insert.batch-size:1000}") int bulkInsertBatchSize,
+                                            @Value("${library.bulk-insert.ordered:false}") boolean bulkInsertOrdered) {
+        if (bulkInsertBatchSize < 1) {
+            throw new IllegalArgumentException("Bulk insert batch size must be positive.");
+        }
+        this.bookIdAllocator = bookIdAllocator;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.bulkInsertBatchSize = bulkInsertBatchSize;
+        this.bulkInsertOrdered = bulkInsertOrdered;
+    }
+
+    /**
+     * The id comes from the shared {@link BookIdAllocator}, which waits on Mongo when its prefetched block did
+     * not arrive in time, as for the first insert after start-up, so it is taken on the bounded elastic
+     * scheduler and never blocks the event loop.
+     */
+    @Override
+    public Mono<BookEntity> insertCustomized(BookEntity bookEntity) {
+        return Mono.fromSupplier(bookIdAllocator::nextId)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(id -> {
+                    bookEntity.setId(id);
+                    return reactiveMongoTemplate.insert(bookEntity);
+                });
+    }
+
+    @Override
+    public Mono<List<BulkInsertFailure>> insertAllCustomized(List<BookEntity> bookEntities) {
+        if (bookEntities.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        return reserveIds(bookEntities.size())
+                .flatMap(last -> {
+                    int first = last - bookEntities.size() + 1;
+                    for (int i = 0; i < bookEntities.size(); i++) {
+                        bookEntities.get(i).setId(first + i);
+                    }
+                    return insertBatches(bookEntities, 0, new ArrayList<>());
+                });
+    }
+
+    @Override
+    public Mono<BookEntity> rateBook(int id, int rate) {
+        FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true);
+        return reactiveMongoTemplate.findAndModify(BookRepositoryCustomImpl.byId(id), BookRepositoryCustomImpl.rateUpdate(List.of(rate)),
+                options, BookEntity.class);
+    }
+
+    @Override
+    public Mono<BookEntity> replaceIfVersion(BookEntity bookEntity, long expectedVersion) {
+        return reactiveMongoTemplate.findAndReplace(BookRepositoryCustomImpl.byIdAndVersion(bookEntity.getId(), expectedVersion), bookEntity);
+    }
+
+    @Override
+    public Mono<Boolean> removeById(int id) {
+        return reactiveMongoTemplate.remove(BookRepositoryCustomImpl.byId(id), BookEntity.class)
+                .map(result -> result.getDeletedCount() > 0);
+    }
+
+    @Override
+    public Mono<Long> removeAllById(Collection<Integer> ids) {
+        return reactiveMongoTemplate.remove(BookRepositoryCustomImpl.byIds(ids), BookEntity.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Flux<Integer> findIdsByGenre(String genre) {
+        return reactiveMongoTemplate.find(BookRepositoryCustomImpl.idsByGenreQuery(genre), BookEntity.class)
+                .map(BookEntity::getId);
+    }
+
+    @Override
+    public Flux<BookEntity> findTopBooks(String field, int limit) {
+        return reactiveMongoTemplate.find(BookRepositoryCustomImpl.topBooksQuery(field).limit(limit), BookEntity.class);
+    }
+
+    @Override
+    public Flux<BookEntity> findAllByFieldValue(String field, Object value) {
+        return reactiveMongoTemplate.find(BookRepositoryCustomImpl.fieldValueQuery(field, value), BookEntity.class);
+    }
+
+    @Override
+    public Mono<Set<String>> findExistingSignatures(Collection<String> signatures) {
+        return reactiveMongoTemplate.find(BookRepositoryCustomImpl.signaturesQuery(signatures), BookEntity.class)
+                .map(BookEntity::getSignature)
+                .collect(HashSet::new, Set::add);
+    }
+
+    @Override
+    public Flux<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit) {
+        return reactiveMongoTemplate.find(BookRepositoryCustomImpl.sortedAfterQuery(sortField, direction, lastSortKey, lastId, limit),
+                BookEntity.class);
+    }
+
+    /**
+     * Reserves a dedicated range on the same counter {@link BookIdAllocator} draws its blocks from, so the
+     * ids never collide with the ones it hands out. Emits the last id of the range.
+     */
+    private Mono<Integer> reserveIds(int count) {
+        Update update = new Update().inc("seq", count);
+        FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true).upsert(true);
+        Query query = new Query(Criteria.where("_id").is(BookIdAllocator.BOOK_SEQUENCE));
+        return reactiveMongoTemplate.findAndModify(query, update, options, SequenceIdEntity.class)
+                .map(SequenceIdEntity::getSeq);
+    }
+
+    private Mono<List<BulkInsertFailure>> insertBatches(List<BookEntity> bookEntities, int from, List<BulkInsertFailure> failures) {
+        if (from >= bookEntities.size()) {
+            return Mono.just(failures);
+        }
+        int to = Math.min(from + bulkInsertBatchSize, bookEntities.size());
+        return insertBatch(bookEntities.subList(from, to))
+                .thenReturn(true)
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    BookRepositoryCustomImpl.addFailures(failures, from, to, e.getWriteErrors(), bulkInsertOrdered);
+                    return Mono.just(false);
+                })
+                .flatMap(inserted -> {
+                    if (!inserted && bulkInsertOrdered) {
+                        BookRepositoryCustomImpl.skipRemaining(failures, to, bookEntities.size());
+                        return Mono.just(failures);
+                    }
+                    return insertBatches(bookEntities, to, failures);
+                });
+    }
+
+    private Mono<Void> insertBatch(List<BookEntity> batch) {
+        List<Document> documents = new ArrayList<>(batch.size());
+        for (BookEntity bookEntity : batch) {
+            Document document = new Document();
+            reactiveMongoTemplate.getConverter().write(bookEntity, document);
+            documents.add(document);
+        }
+        InsertManyOptions options = new InsertManyOptions().ordered(bulkInsertOrdered);
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(BookEntity.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, options)))
+                .then();
+    }
+}
@@ -0,0 +1,13 @@
+package com.course.libraryapp.exposure.repository;
+
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SequenceIdRepositoryCustom {
+
+    /**
+     * Atomically advances the named sequence by {@code blockSize} and returns the new (highest) value,
+     * so the caller owns the range {@code (returned - blockSize, returned]}.
+     */
+    int reserveSequenceBlock(String sequenceName, int blockSize);
+}
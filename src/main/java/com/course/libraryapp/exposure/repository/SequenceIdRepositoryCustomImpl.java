@@ -0,0 +1,32 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.SequenceIdEntity;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Objects;
+
+@Repository
+@Profile("!embedded")
+public class SequenceIdRepositoryCustomImpl implements SequenceIdRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public SequenceIdRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int reserveSequenceBlock(String sequenceName, int blockSize) {
+        Query query = new Query(Criteria.where("_id").is(sequenceName));
+        Update update = new Update().inc("seq", blockSize);
+        FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true).upsert(true);
+        SequenceIdEntity sequence = mongoTemplate.findAndModify(query, update, options, SequenceIdEntity.class);
+        return Objects.requireNonNull(sequence).getSeq();
+    }
+}
@@ -0,0 +1,214 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * File of records that are only ever appended. Each append is one frame, prefixed with its length and CRC32, so a
+ * batch of records is replayed either whole or not at all. Opening a log replays its frames in order; a torn or
+ * corrupt tail, as a crash in the middle of an append leaves behind, is cut off. An append that fails is cut off
+ * right away, so the records appended after it are not lost behind a broken frame.
+ * {@link #rewrite(List)} replaces all records with fewer ones, writing them next to the log and moving the new
+ * file into place, so a crash during a rewrite leaves the old log intact.
+ */
+final class AppendOnlyLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppendOnlyLog.class);
+    private static final int HEADER_SIZE = 8;
+
+    interface Record {
+        void write(DataOutput out) throws IOException;
+    }
+
+    interface Replay {
+        void read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Writes some of the bytes to the channel, like {@link FileChannel#write(ByteBuffer)}.
+     */
+    interface ChannelWriter {
+        int write(FileChannel channel, ByteBuffer bytes) throws IOException;
+    }
+
+    private final Path path;
+    private final boolean fsync;
+    private final ChannelWriter writer;
+    private FileChannel channel;
+    private long records;
+    // set when a failed append could not be cut off, the log has to be opened again
+    private IOException broken;
+
+    private AppendOnlyLog(Path path, boolean fsync, ChannelWriter writer) {
+        this.path = path;
+        this.fsync = fsync;
+        this.writer = writer;
+    }
+
+    /**
+     * With {@code fsync}, every append is forced to the disk before it returns; without it, appends survive a
+     * crash of the application but not necessarily one of the machine.
+     */
+    static AppendOnlyLog open(Path path, boolean fsync, Replay replay) throws IOException {
+        return open(path, fsync, replay, FileChannel::write);
+    }
+
+    static AppendOnlyLog open(Path path, boolean fsync, Replay replay, ChannelWriter writer) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        AppendOnlyLog log = new AppendOnlyLog(path, fsync, writer);
+        long valid = Files.exists(path) ? log.replay(replay) : 0;
+        log.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (log.channel.size() > valid) {
+            LOGGER.warn("Cutting {} bytes of a torn record off the end of {}.", log.channel.size() - valid, path);
+            log.channel.truncate(valid);
+        }
+        log.channel.position(valid);
+        return log;
+    }
+
+    synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Appends all records as one frame. When the write fails, the file is cut back to where the frame started.
+     */
+    synchronized void append(List<Record> batch) throws IOException {
+        if (broken != null) {
+            throw new IOException("The log " + path + " could not be repaired after a failed append.", broken);
+        }
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        writeFrame(new DataOutputStream(frames), batch);
+        ByteBuffer bytes = ByteBuffer.wrap(frames.toByteArray());
+        long start = channel.position();
+        try {
+            while (bytes.hasRemaining()) {
+                writer.write(channel, bytes);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            cutOff(start, e);
+            throw e;
+        }
+        records += batch.size();
+    }
+
+    synchronized void rewrite(List<Record> live) throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(encodeOnePerFrame(live));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        records = live.size();
+        broken = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void cutOff(long start, IOException failure) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+            broken = failure;
+        }
+    }
+
+    /**
+     * Returns the length of the valid part of the file.
+     */
+    private long replay(Replay replay) throws IOException {
+        long size = Files.size(path);
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (valid + HEADER_SIZE <= size) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || valid + HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checksum(payload) != checksum) {
+                    break;
+                }
+                records += replayFrame(payload, replay);
+                valid += HEADER_SIZE + length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * A frame holds the number of its records, then each record prefixed with its length.
+     */
+    private static int replayFrame(byte[] payload, Replay replay) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+            replay.read(new DataInputStream(new ByteArrayInputStream(record)));
+        }
+        return count;
+    }
+
+    private static void writeFrame(DataOutputStream out, List<Record> batch) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payloadBytes);
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(recordBytes);
+        payloadOut.writeInt(batch.size());
+        for (Record record : batch) {
+            recordBytes.reset();
+            record.write(recordOut);
+            payloadOut.writeInt(recordBytes.size());
+            recordBytes.writeTo(payloadOut);
+        }
+        byte[] payload = payloadBytes.toByteArray();
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    /**
+     * A rewrite needs no batches: the whole file appears at once, and small frames keep replay memory low.
+     */
+    private static byte[] encodeOnePerFrame(List<Record> live) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Record record : live) {
+            writeFrame(out, List.of(record));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,50 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.repository.BookImportCheckpointRepository;
+import com.course.libraryapp.persistance.model.BookImportCheckpointEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedBookImportCheckpointRepository extends EmbeddedDocumentRepository<BookImportCheckpointEntity>
+        implements BookImportCheckpointRepository {
+
+    @Autowired
+    public EmbeddedBookImportCheckpointRepository(@Value("${library.embedded.directory:library-data}") Path directory,
+                                                  @Value("${library.embedded.fsync:false}") boolean fsync) {
+        open(directory.resolve("book-imports.log"), fsync);
+    }
+
+    @Override
+    protected String idOf(BookImportCheckpointEntity entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void writeEntity(DataOutput out, BookImportCheckpointEntity entity) throws IOException {
+        writeString(out, entity.getId());
+        out.writeLong(entity.getCommittedRows());
+        out.writeBoolean(entity.getUpdatedAt() != null);
+        if (entity.getUpdatedAt() != null) {
+            out.writeLong(entity.getUpdatedAt().getEpochSecond());
+            out.writeInt(entity.getUpdatedAt().getNano());
+        }
+    }
+
+    @Override
+    protected BookImportCheckpointEntity readEntity(DataInput in) throws IOException {
+        String id = readString(in);
+        long committedRows = in.readLong();
+        Instant updatedAt = in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+        return new BookImportCheckpointEntity(id, committedRows, updatedAt);
+    }
+}
@@ -0,0 +1,593 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.repository.BookIdAllocator;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.exposure.repository.BookSearchFilter;
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Books of the embedded store, keyed by their int id, with secondary indexes on signature, title and genre that
+ * map each value to the sorted ids of its books. Queries on other fields, and sorted queries, scan all books,
+ * which is fine for the catalogs this store is meant for.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedBookRepository extends EmbeddedRepository<BookEntity, Long> implements BookRepository {
+
+    private final BookIdAllocator bookIdAllocator;
+    private final boolean bulkInsertOrdered;
+
+    private final IntObjectMap<BookEntity> books = new IntObjectMap<>();
+    private final IntSortedSet ids = new IntSortedSet();
+    private final Map<String, IntSortedSet> idsBySignature = new HashMap<>();
+    private final Map<String, IntSortedSet> idsByTitle = new HashMap<>();
+    private final Map<String, IntSortedSet> idsByGenre = new HashMap<>();
+
+    @Autowired
+    public EmbeddedBookRepository(BookIdAllocator bookIdAllocator,
+                                  @Value("${library.embedded.directory:library-data}") Path directory,
+                                  @Value("${library.embedded.fsync:false}") boolean fsync,
+                                  @Value("${library.bulk-insert.ordered:false}") boolean bulkInsertOrdered) {
+        this.bookIdAllocator = bookIdAllocator;
+        this.bulkInsertOrdered = bulkInsertOrdered;
+        open(directory.resolve("books.log"), fsync);
+    }
+
+    @Override
+    public BookEntity findBySignature(String signature) {
+        lock.readLock().lock();
+        try {
+            IntSortedSet matching = idsBySignature.get(signature);
+            return matching == null ? null : copy(books.get(matching.first()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public BookEntity findById(int id) {
+        lock.readLock().lock();
+        try {
+            BookEntity book = books.get(id);
+            return book == null ? null : copy(book);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findAllByIdIn(Collection<Integer> ids) {
+        lock.readLock().lock();
+        try {
+            List<BookEntity> found = new ArrayList<>();
+            for (int id : new TreeSet<>(ids)) {
+                BookEntity book = books.get(id);
+                if (book != null) {
+                    found.add(copy(book));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findAllByGenre(String genre) {
+        lock.readLock().lock();
+        try {
+            return copies(indexed(idsByGenre, genre));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findAllByGenreOrderByScoreDescIdAsc(String genre) {
+        List<BookEntity> found = findAllByGenre(genre);
+        found.sort(comparator(Sort.by(Sort.Order.desc("score"), Sort.Order.asc("_id"))));
+        return found;
+    }
+
+    @Override
+    public Stream<BookEntity> streamAllBy() {
+        return findAll().stream();
+    }
+
+    @Override
+    public BookEntity saveCustomized(BookEntity bookEntity) {
+        bookEntity.setId(bookIdAllocator.nextId());
+        return save(bookEntity);
+    }
+
+    /**
+     * The ids are fresh, so the only failure is an id that a book already has, as when the counters were reset.
+     */
+    @Override
+    public List<BulkInsertFailure> insertAllCustomized(List<BookEntity> bookEntities) {
+        if (bookEntities.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int[] newIds = bookIdAllocator.nextIds(bookEntities.size());
+        for (int i = 0; i < newIds.length; i++) {
+            bookEntities.get(i).setId(newIds[i]);
+        }
+        List<BulkInsertFailure> failures = new ArrayList<>();
+        List<BookEntity> inserted = new ArrayList<>(bookEntities.size());
+        lock.writeLock().lock();
+        try {
+            for (int index = 0; index < bookEntities.size(); index++) {
+                BookEntity bookEntity = bookEntities.get(index);
+                if (books.get(bookEntity.getId()) == null) {
+                    inserted.add(bookEntity);
+                    continue;
+                }
+                failures.add(new BulkInsertFailure(index, true, "Duplicate id " + bookEntity.getId() + "."));
+                if (bulkInsertOrdered) {
+                    for (int skipped = index + 1; skipped < bookEntities.size(); skipped++) {
+                        failures.add(new BulkInsertFailure(skipped, false, "Not inserted, an earlier book in the ordered batch failed."));
+                    }
+                    break;
+                }
+            }
+            persist(inserted);
+            return failures;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public BookEntity rateBook(int id, int rate) {
+        lock.writeLock().lock();
+        try {
+            BookEntity book = books.get(id);
+            if (book == null) {
+                return null;
+            }
+            BookEntity rated = withRates(book, List.of(rate));
+            persist(List.of(rated));
+            return rated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Integer> addRates(Map<Integer, List<Integer>> ratesByBook) {
+        lock.writeLock().lock();
+        try {
+            List<BookEntity> rated = new ArrayList<>(ratesByBook.size());
+            ratesByBook.forEach((id, rates) -> {
+                BookEntity book = books.get(id);
+                if (book != null) {
+                    rated.add(withRates(book, rates));
+                }
+            });
+            persist(rated);
+            return Collections.emptySet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public BookEntity replaceIfVersion(BookEntity bookEntity, long expectedVersion) {
+        lock.writeLock().lock();
+        try {
+            BookEntity book = books.get(bookEntity.getId());
+            if (book == null || book.getVersion() != expectedVersion) {
+                return null;
+            }
+            persist(List.of(bookEntity));
+            return book;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        return removeAllById(List.of(id)) > 0;
+    }
+
+    @Override
+    public long removeAllById(Collection<Integer> ids) {
+        List<Long> toRemove = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            toRemove.add((long) id);
+        }
+        lock.writeLock().lock();
+        try {
+            return persistRemovals(toRemove).size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Integer> findIdsByGenre(String genre) {
+        lock.readLock().lock();
+        try {
+            List<Integer> found = new ArrayList<>();
+            IntSortedSet matching = idsByGenre.get(genre);
+            if (matching != null) {
+                matching.forEach(found::add);
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findTopBooks(String field, int limit) {
+        List<BookEntity> all = findAll(Sort.by(Sort.Order.desc(field), Sort.Order.asc("_id")));
+        return new ArrayList<>(all.subList(0, Math.min(limit, all.size())));
+    }
+
+    @Override
+    public List<BookEntity> findAllByFieldValue(String field, Object value) {
+        lock.readLock().lock();
+        try {
+            Map<String, IntSortedSet> index = indexOn(field);
+            if (index != null && (value == null || value instanceof String)) {
+                return copies(indexed(index, (String) value));
+            }
+            List<BookEntity> found = new ArrayList<>();
+            Function<BookEntity, Object> accessor = accessor(field);
+            for (BookEntity book : stored()) {
+                if (valueEquals(accessor.apply(book), value)) {
+                    found.add(copy(book));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> findExistingSignatures(Collection<String> signatures) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String signature : signatures) {
+                if (idsBySignature.containsKey(signature)) {
+                    existing.add(signature);
+                }
+            }
+            return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit) {
+        lock.readLock().lock();
+        try {
+            return copies(sortedAfter(stored(), sortField, direction, lastSortKey, lastId, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findSortedAfter(String sortField, Sort.Direction direction, Object lastSortKey, Integer lastId, int limit,
+                                            Collection<String> fields) {
+        Set<String> included = new HashSet<>(fields);
+        included.add(sortField);
+        lock.readLock().lock();
+        try {
+            return projections(sortedAfter(stored(), sortField, direction, lastSortKey, lastId, limit), included);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookEntity> findAllByGenre(String genre, Sort sort, Collection<String> fields) {
+        lock.readLock().lock();
+        try {
+            List<BookEntity> found = indexed(idsByGenre, genre);
+            found.sort(comparator(sort));
+            return projections(found, fields);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public BookSearchResult search(BookSearchFilter filter, String sortField, Sort.Direction direction, Object lastSortKey,
+                                   Integer lastId, int limit) {
+        Predicate<BookEntity> matches = searchPredicate(filter);
+        lock.readLock().lock();
+        try {
+            List<BookEntity> candidates = filter.getGenre() == null ? stored() : indexed(idsByGenre, filter.getGenre());
+            List<BookEntity> matching = new ArrayList<>();
+            Map<String, Long> genreCounts = new HashMap<>();
+            Map<Integer, Long> scoreBucketCounts = new TreeMap<>();
+            for (BookEntity book : candidates) {
+                if (matches.test(book)) {
+                    matching.add(book);
+                    genreCounts.merge(book.getGenre(), 1L, Long::sum);
+                    scoreBucketCounts.merge((int) Math.min(Math.floor(book.getScore()), 4), 1L, Long::sum);
+                }
+            }
+            List<Map.Entry<String, Long>> byCount = new ArrayList<>(genreCounts.entrySet());
+            byCount.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                    .thenComparing(Map.Entry::getKey, Comparator.nullsFirst(Comparator.naturalOrder())));
+            Map<String, Long> sortedGenreCounts = new LinkedHashMap<>();
+            byCount.forEach(entry -> sortedGenreCounts.put(entry.getKey(), entry.getValue()));
+            List<BookEntity> page = copies(sortedAfter(matching, sortField, direction, lastSortKey, lastId, limit));
+            return new BookSearchResult(page, sortedGenreCounts, scoreBucketCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected Long idOf(BookEntity entity) {
+        return (long) entity.getId();
+    }
+
+    @Override
+    protected BookEntity find(Long id) {
+        return id < Integer.MIN_VALUE || id > Integer.MAX_VALUE ? null : books.get(id.intValue());
+    }
+
+    @Override
+    protected List<BookEntity> stored() {
+        List<BookEntity> all = new ArrayList<>(books.size());
+        ids.forEach(id -> all.add(books.get(id)));
+        return all;
+    }
+
+    @Override
+    protected void store(BookEntity entity) {
+        BookEntity previous = books.put(entity.getId(), entity);
+        if (previous != null) {
+            unindex(previous);
+        }
+        ids.add(entity.getId());
+        index(idsBySignature, entity.getSignature(), entity.getId());
+        index(idsByTitle, entity.getTitle(), entity.getId());
+        index(idsByGenre, entity.getGenre(), entity.getId());
+    }
+
+    @Override
+    protected BookEntity discard(Long id) {
+        BookEntity removed = books.remove(id.intValue());
+        if (removed != null) {
+            ids.remove(removed.getId());
+            unindex(removed);
+        }
+        return removed;
+    }
+
+    @Override
+    protected void writeEntity(DataOutput out, BookEntity entity) throws IOException {
+        out.writeInt(entity.getId());
+        out.writeLong(entity.getVersion());
+        out.writeDouble(entity.getScore());
+        out.writeLong(entity.getScoreSum());
+        out.writeInt(entity.getVotesCount());
+        writeString(out, entity.getSignature());
+        writeString(out, entity.getTitle());
+        writeString(out, entity.getAuthor());
+        writeString(out, entity.getDescription());
+        writeString(out, entity.getGenre());
+        List<Integer> registry = entity.getScoreRegistry();
+        out.writeInt(registry == null ? -1 : registry.size());
+        if (registry != null) {
+            for (int rate : registry) {
+                out.writeInt(rate);
+            }
+        }
+    }
+
+    @Override
+    protected BookEntity readEntity(DataInput in) throws IOException {
+        BookEntity entity = new BookEntity();
+        entity.setId(in.readInt());
+        entity.setVersion(in.readLong());
+        entity.setScore(in.readDouble());
+        entity.setScoreSum(in.readLong());
+        entity.setVotesCount(in.readInt());
+        entity.setSignature(readString(in));
+        entity.setTitle(readString(in));
+        entity.setAuthor(readString(in));
+        entity.setDescription(readString(in));
+        entity.setGenre(readString(in));
+        int votes = in.readInt();
+        if (votes >= 0) {
+            List<Integer> registry = new ArrayList<>(votes);
+            for (int vote = 0; vote < votes; vote++) {
+                registry.add(in.readInt());
+            }
+            entity.setScoreRegistry(registry);
+        }
+        return entity;
+    }
+
+    @Override
+    protected void writeId(DataOutput out, Long id) throws IOException {
+        out.writeInt(id.intValue());
+    }
+
+    @Override
+    protected Long readId(DataInput in) throws IOException {
+        return (long) in.readInt();
+    }
+
+    @Override
+    protected BookEntity copy(BookEntity entity) {
+        BookEntity copy = new BookEntity();
+        copy.setId(entity.getId());
+        copy.setSignature(entity.getSignature());
+        copy.setTitle(entity.getTitle());
+        copy.setAuthor(entity.getAuthor());
+        copy.setDescription(entity.getDescription());
+        copy.setGenre(entity.getGenre());
+        copy.setScore(entity.getScore());
+        copy.setScoreRegistry(entity.getScoreRegistry() == null ? null : new ArrayList<>(entity.getScoreRegistry()));
+        copy.setScoreSum(entity.getScoreSum());
+        copy.setVotesCount(entity.getVotesCount());
+        copy.setVersion(entity.getVersion());
+        return copy;
+    }
+
+    @Override
+    protected Function<BookEntity, Object> accessor(String name) {
+        return switch (name) {
+            case "id", "_id" -> BookEntity::getId;
+            case "signature" -> BookEntity::getSignature;
+            case "title" -> BookEntity::getTitle;
+            case "author" -> BookEntity::getAuthor;
+            case "description" -> BookEntity::getDescription;
+            case "genre" -> BookEntity::getGenre;
+            case "score" -> BookEntity::getScore;
+            case "scoreSum" -> BookEntity::getScoreSum;
+            case "votesCount" -> BookEntity::getVotesCount;
+            case "version" -> BookEntity::getVersion;
+            default -> super.accessor(name);
+        };
+    }
+
+    /**
+     * A copy of the book with the rates added to its registry and totals, its score recomputed and its version
+     * bumped once per rate, as the Mongo rate update does.
+     */
+    private BookEntity withRates(BookEntity book, List<Integer> rates) {
+        BookEntity rated = copy(book);
+        List<Integer> registry = rated.getScoreRegistry() == null ? new ArrayList<>() : rated.getScoreRegistry();
+        long sum = rated.getScoreSum();
+        for (int rate : rates) {
+            registry.add(rate);
+            sum += rate;
+        }
+        rated.setScoreRegistry(registry);
+        rated.setScoreSum(sum);
+        rated.setVotesCount(rated.getVotesCount() + rates.size());
+        rated.setScore(Math.round((double) sum / rated.getVotesCount() * 100) / 100.0);
+        rated.setVersion(rated.getVersion() + rates.size());
+        return rated;
+    }
+
+    private List<BookEntity> sortedAfter(List<BookEntity> candidates, String sortField, Sort.Direction direction, Object lastSortKey,
+                                         Integer lastId, int limit) {
+        List<BookEntity> after = new ArrayList<>();
+        Function<BookEntity, Object> sortKey = accessor(sortField);
+        for (BookEntity book : candidates) {
+            if (lastId == null || isAfter(sortKey.apply(book), book.getId(), direction, lastSortKey, lastId)) {
+                after.add(book);
+            }
+        }
+        after.sort(comparator(Sort.by(direction, sortField, "_id")));
+        return after.subList(0, Math.min(limit, after.size()));
+    }
+
+    private static boolean isAfter(Object sortKey, int id, Sort.Direction direction, Object lastSortKey, int lastId) {
+        int byKey = compareValues(sortKey, lastSortKey);
+        int order = byKey != 0 ? byKey : Integer.compare(id, lastId);
+        return direction.isAscending() ? order > 0 : order < 0;
+    }
+
+    private static Predicate<BookEntity> searchPredicate(BookSearchFilter filter) {
+        return book -> (filter.getGenre() == null || filter.getGenre().equals(book.getGenre()))
+                && (filter.getAuthor() == null || filter.getAuthor().equals(book.getAuthor()))
+                && (filter.getBookIds() == null || filter.getBookIds().contains(book.getId()))
+                && (filter.getMinScore() == null || book.getScore() >= filter.getMinScore())
+                && (filter.getMaxScore() == null || book.getScore() <= filter.getMaxScore());
+    }
+
+    /**
+     * Copies holding only the id and {@code fields}, as a Mongo projection returns them.
+     */
+    private static List<BookEntity> projections(List<BookEntity> found, Collection<String> fields) {
+        List<BookEntity> projected = new ArrayList<>(found.size());
+        for (BookEntity book : found) {
+            BookEntity projection = new BookEntity();
+            projection.setId(book.getId());
+            for (String field : fields) {
+                switch (field) {
+                    case "signature" -> projection.setSignature(book.getSignature());
+                    case "title" -> projection.setTitle(book.getTitle());
+                    case "author" -> projection.setAuthor(book.getAuthor());
+                    case "description" -> projection.setDescription(book.getDescription());
+                    case "genre" -> projection.setGenre(book.getGenre());
+                    case "score" -> projection.setScore(book.getScore());
+                    case "scoreRegistry" -> projection.setScoreRegistry(
+                            book.getScoreRegistry() == null ? null : new ArrayList<>(book.getScoreRegistry()));
+                    case "scoreSum" -> projection.setScoreSum(book.getScoreSum());
+                    case "votesCount" -> projection.setVotesCount(book.getVotesCount());
+                    case "version" -> projection.setVersion(book.getVersion());
+                    default -> {
+                    }
+                }
+            }
+            projected.add(projection);
+        }
+        return projected;
+    }
+
+    private Map<String, IntSortedSet> indexOn(String field) {
+        return switch (field) {
+            case "signature" -> idsBySignature;
+            case "title" -> idsByTitle;
+            case "genre" -> idsByGenre;
+            default -> null;
+        };
+    }
+
+    private List<BookEntity> indexed(Map<String, IntSortedSet> index, String value) {
+        IntSortedSet matching = index.get(value);
+        if (matching == null) {
+            return new ArrayList<>();
+        }
+        List<BookEntity> found = new ArrayList<>(matching.size());
+        matching.forEach(id -> found.add(books.get(id)));
+        return found;
+    }
+
+    private void unindex(BookEntity entity) {
+        unindex(idsBySignature, entity.getSignature(), entity.getId());
+        unindex(idsByTitle, entity.getTitle(), entity.getId());
+        unindex(idsByGenre, entity.getGenre(), entity.getId());
+    }
+
+    private static void index(Map<String, IntSortedSet> index, String value, int id) {
+        index.computeIfAbsent(value, key -> new IntSortedSet()).add(id);
+    }
+
+    private static void unindex(Map<String, IntSortedSet> index, String value, int id) {
+        IntSortedSet matching = index.get(value);
+        if (matching != null && matching.remove(id) && matching.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    private static boolean valueEquals(Object actual, Object value) {
+        if (actual instanceof Number number && value instanceof Number other) {
+            return number.doubleValue() == other.doubleValue();
+        }
+        return Objects.equals(actual, value);
+    }
+}
@@ -0,0 +1,62 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically rewrites the log of every embedded repository that has grown to {@code compaction-ratio} times
+ * the records it needs, so that logs of often rated books do not grow without bound.
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedCompactor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedCompactor.class);
+
+    private final List<EmbeddedRepository<?, ?>> repositories;
+    private final double ratio;
+    private final long minRecords;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public EmbeddedCompactor(List<EmbeddedRepository<?, ?>> repositories,
+                             @Value("${library.embedded.compaction-interval:1m}") Duration interval,
+                             @Value("${library.embedded.compaction-ratio:2}") double ratio,
+                             @Value("${library.embedded.compaction-min-records:1000}") long minRecords) {
+        this.repositories = repositories;
+        this.ratio = ratio;
+        this.minRecords = minRecords;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compact, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void compact() {
+        for (EmbeddedRepository<?, ?> repository : repositories) {
+            try {
+                repository.compactIfWorthIt(ratio, minRecords);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Compaction failed, it is retried on the next run.", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Embedded repository of small documents with string ids, which it keeps in id order. The documents have no
+ * setters, so they are shared rather than copied.
+ */
+abstract class EmbeddedDocumentRepository<T> extends EmbeddedRepository<T, String> {
+
+    private final Map<String, T> documents = new TreeMap<>();
+
+    @Override
+    protected T find(String id) {
+        return documents.get(id);
+    }
+
+    @Override
+    protected List<T> stored() {
+        return new ArrayList<>(documents.values());
+    }
+
+    @Override
+    protected void store(T entity) {
+        documents.put(idOf(entity), entity);
+    }
+
+    @Override
+    protected T discard(String id) {
+        return documents.remove(id);
+    }
+
+    @Override
+    protected void writeId(DataOutput out, String id) throws IOException {
+        writeString(out, id);
+    }
+
+    @Override
+    protected String readId(DataInput in) throws IOException {
+        return readString(in);
+    }
+}
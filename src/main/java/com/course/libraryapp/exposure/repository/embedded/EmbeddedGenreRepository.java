@@ -0,0 +1,54 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.exposure.repository.GenreRepository;
+import com.course.libraryapp.persistance.model.GenreEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Genres of the embedded store. A new store starts out with the known genres, which a Mongo database has been
+ * given by hand.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedGenreRepository extends EmbeddedDocumentRepository<GenreEntity> implements GenreRepository {
+
+    @Autowired
+    public EmbeddedGenreRepository(@Value("${library.embedded.directory:library-data}") Path directory,
+                                   @Value("${library.embedded.fsync:false}") boolean fsync) {
+        open(directory.resolve("genres.log"), fsync);
+        if (count() == 0) {
+            List<GenreEntity> genres = new ArrayList<>();
+            for (GenreEnumRepresentation genreEnumRep : GenreEnumRepresentation.values()) {
+                genres.add(new GenreEntity(genreEnumRep.name(), genreEnumRep.getGenreName()));
+            }
+            saveAll(genres);
+        }
+    }
+
+    @Override
+    protected String idOf(GenreEntity entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void writeEntity(DataOutput out, GenreEntity entity) throws IOException {
+        writeString(out, entity.getId());
+        writeString(out, entity.getGenreName());
+    }
+
+    @Override
+    protected GenreEntity readEntity(DataInput in) throws IOException {
+        return new GenreEntity(readString(in), readString(in));
+    }
+}
@@ -0,0 +1,405 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.NotReadablePropertyException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PreDestroy;
+import java.beans.PropertyDescriptor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Base of the repositories of the embedded store: entities live in memory, and every change is appended to the
+ * repository's {@link AppendOnlyLog} before it is applied, so replaying the log when the repository is created
+ * restores them. Reads return copies, so callers may change what they get, as they may with entities read from
+ * Mongo. The generic methods below serve the repository interfaces of the services, from the entities in id order.
+ */
+abstract class EmbeddedRepository<T, ID> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedRepository.class);
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private AppendOnlyLog log;
+    private Path path;
+
+    protected abstract ID idOf(T entity);
+
+    /**
+     * The stored entity, not a copy.
+     */
+    protected abstract T find(ID id);
+
+    /**
+     * The stored entities in id order, not copies.
+     */
+    protected abstract List<T> stored();
+
+    /**
+     * Keeps the entity in memory, replacing any with the same id.
+     */
+    protected abstract void store(T entity);
+
+    /**
+     * Drops the entity from memory and returns it, or null when there was none.
+     */
+    protected abstract T discard(ID id);
+
+    protected abstract void writeEntity(DataOutput out, T entity) throws IOException;
+
+    protected abstract T readEntity(DataInput in) throws IOException;
+
+    protected abstract void writeId(DataOutput out, ID id) throws IOException;
+
+    protected abstract ID readId(DataInput in) throws IOException;
+
+    protected T copy(T entity) {
+        return entity;
+    }
+
+    /**
+     * Reads a property, for sorting and filtering; {@code _id} is the id. Resolve it once and apply it to every
+     * entity: the getter is looked up on first use only.
+     */
+    protected Function<T, Object> accessor(String name) {
+        String property = name.equals("_id") ? "id" : name;
+        return new Function<>() {
+            private Method getter;
+
+            @Override
+            public Object apply(T entity) {
+                if (getter == null) {
+                    PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entity.getClass(), property);
+                    if (descriptor == null || descriptor.getReadMethod() == null) {
+                        throw new NotReadablePropertyException(entity.getClass(), property);
+                    }
+                    getter = descriptor.getReadMethod();
+                }
+                return ReflectionUtils.invokeMethod(getter, entity);
+            }
+        };
+    }
+
+    /**
+     * Replays the log at {@code path}; subclasses call it once their in-memory structures exist.
+     */
+    protected final void open(Path path, boolean fsync) {
+        this.path = path;
+        try {
+            log = AppendOnlyLog.open(path, fsync, this::replay);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not open the embedded store log " + path + ".", e);
+        }
+    }
+
+    /**
+     * Logs and stores the entities; the caller holds the write lock.
+     */
+    protected final void persist(List<? extends T> entities) {
+        List<AppendOnlyLog.Record> records = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            records.add(putRecord(copy(entity)));
+        }
+        append(records);
+        for (T entity : entities) {
+            store(copy(entity));
+        }
+    }
+
+    /**
+     * Logs the removal of the entities that exist and returns them; the caller holds the write lock.
+     */
+    protected final List<T> persistRemovals(Collection<ID> ids) {
+        List<AppendOnlyLog.Record> records = new ArrayList<>(ids.size());
+        Set<ID> existing = new LinkedHashSet<>();
+        for (ID id : ids) {
+            if (find(id) != null && existing.add(id)) {
+                records.add(out -> {
+                    out.writeByte(REMOVE);
+                    writeId(out, id);
+                });
+            }
+        }
+        if (records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        append(records);
+        List<T> removed = new ArrayList<>(existing.size());
+        for (ID id : existing) {
+            removed.add(discard(id));
+        }
+        return removed;
+    }
+
+    /**
+     * Rewrites the log with one record per stored entity once it holds at least {@code ratio} times as many
+     * records as there are entities, and at least {@code minGarbage} of them are outdated.
+     */
+    final void compactIfWorthIt(double ratio, long minGarbage) {
+        lock.writeLock().lock();
+        try {
+            List<T> live = stored();
+            long records = log.getRecords();
+            if (records - live.size() < minGarbage || records < ratio * live.size()) {
+                return;
+            }
+            List<AppendOnlyLog.Record> liveRecords = new ArrayList<>(live.size());
+            for (T entity : live) {
+                liveRecords.add(putRecord(entity));
+            }
+            log.rewrite(liveRecords);
+            LOGGER.info("Compacted {} from {} to {} records.", path, records, live.size());
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not compact the embedded store log " + path + ".", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    final long getLogRecords() {
+        return log.getRecords();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    protected final List<T> copies(Collection<T> entities) {
+        List<T> copies = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            copies.add(copy(entity));
+        }
+        return copies;
+    }
+
+    protected final Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (first, second) -> 0;
+        for (Sort.Order order : sort) {
+            Function<T, Object> accessor = accessor(order.getProperty());
+            Comparator<T> byProperty = (first, second) -> compareValues(accessor.apply(first), accessor.apply(second));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    /**
+     * Orders values as Mongo does for the types entities use: null first, numbers by value whatever their type.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object first, Object second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        if (first instanceof Number number && second instanceof Number other) {
+            return Double.compare(number.doubleValue(), other.doubleValue());
+        }
+        return ((Comparable<Object>) first).compareTo(second);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public <S extends T> S save(S entity) {
+        lock.writeLock().lock();
+        try {
+            persist(List.of(entity));
+            return entity;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> toSave = new ArrayList<>();
+        entities.forEach(toSave::add);
+        lock.writeLock().lock();
+        try {
+            persist(toSave);
+            return toSave;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public <S extends T> S insert(S entity) {
+        return insert(List.of(entity)).get(0);
+    }
+
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        List<S> toInsert = new ArrayList<>();
+        entities.forEach(toInsert::add);
+        lock.writeLock().lock();
+        try {
+            Set<ID> ids = new HashSet<>();
+            for (S entity : toInsert) {
+                if (find(idOf(entity)) != null || !ids.add(idOf(entity))) {
+                    throw new DuplicateKeyException("Duplicate id " + idOf(entity) + ".");
+                }
+            }
+            persist(toInsert);
+            return toInsert;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<T> findById(ID id) {
+        lock.readLock().lock();
+        try {
+            T entity = find(id);
+            return entity == null ? Optional.empty() : Optional.of(copy(entity));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean existsById(ID id) {
+        lock.readLock().lock();
+        try {
+            return find(id) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<T> findAll() {
+        lock.readLock().lock();
+        try {
+            return copies(stored());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<T> findAll(Sort sort) {
+        List<T> all = findAll();
+        all.sort(comparator(sort));
+        return all;
+    }
+
+    public List<T> findAllById(Iterable<ID> ids) {
+        lock.readLock().lock();
+        try {
+            List<T> found = new ArrayList<>();
+            for (ID id : ids) {
+                T entity = find(id);
+                if (entity != null) {
+                    found.add(copy(entity));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return stored().size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void deleteById(ID id) {
+        deleteAllById(List.of(id));
+    }
+
+    public void delete(T entity) {
+        deleteById(idOf(entity));
+    }
+
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        List<ID> toDelete = new ArrayList<>();
+        ids.forEach(toDelete::add);
+        lock.writeLock().lock();
+        try {
+            persistRemovals(toDelete);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteAll(Iterable<? extends T> entities) {
+        List<ID> toDelete = new ArrayList<>();
+        entities.forEach(entity -> toDelete.add(idOf(entity)));
+        deleteAllById(toDelete);
+    }
+
+    public void deleteAll() {
+        lock.writeLock().lock();
+        try {
+            List<ID> ids = new ArrayList<>();
+            for (T entity : stored()) {
+                ids.add(idOf(entity));
+            }
+            persistRemovals(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private AppendOnlyLog.Record putRecord(T entity) {
+        return out -> {
+            out.writeByte(PUT);
+            writeEntity(out, entity);
+        };
+    }
+
+    private void append(List<AppendOnlyLog.Record> records) {
+        try {
+            log.append(records);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not write to the embedded store log " + path + ".", e);
+        }
+    }
+
+    private void replay(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case PUT -> store(readEntity(in));
+            case REMOVE -> discard(readId(in));
+            default -> throw new IOException("Unknown record type " + type + " in " + path + ".");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.repository.SequenceIdRepository;
+import com.course.libraryapp.persistance.model.SequenceIdEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+@Repository
+@Profile("embedded")
+public class EmbeddedSequenceIdRepository extends EmbeddedDocumentRepository<SequenceIdEntity> implements SequenceIdRepository {
+
+    @Autowired
+    public EmbeddedSequenceIdRepository(@Value("${library.embedded.directory:library-data}") Path directory,
+                                        @Value("${library.embedded.fsync:false}") boolean fsync) {
+        open(directory.resolve("counters.log"), fsync);
+    }
+
+    /**
+     * The new value is logged before it is handed out, so a restart never hands out a block twice.
+     */
+    @Override
+    public int reserveSequenceBlock(String sequenceName, int blockSize) {
+        lock.writeLock().lock();
+        try {
+            SequenceIdEntity sequence = find(sequenceName);
+            SequenceIdEntity advanced = new SequenceIdEntity(sequenceName, (sequence == null ? 0 : sequence.getSeq()) + blockSize);
+            persist(List.of(advanced));
+            return advanced.getSeq();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected String idOf(SequenceIdEntity entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void writeEntity(DataOutput out, SequenceIdEntity entity) throws IOException {
+        writeString(out, entity.getId());
+        out.writeInt(entity.getSeq());
+    }
+
+    @Override
+    protected SequenceIdEntity readEntity(DataInput in) throws IOException {
+        return new SequenceIdEntity(readString(in), in.readInt());
+    }
+}
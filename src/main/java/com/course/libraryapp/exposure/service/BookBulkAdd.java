@@ -0,0 +1,104 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The storage independent part of adding a list of books: validation, duplicate detection and the
+ * per-book results. The caller looks up the existing signatures and performs the insert in between.
+ */
+final class BookBulkAdd {
+
+    private final List<BookRepresentation> booksToAdd;
+    private final BookBulkResultRepresentation[] results;
+    private final Set<String> signatures;
+    private final List<BookEntity> bookEntitiesToInsert;
+    private int[] insertedIndexes;
+
+    BookBulkAdd(List<BookRepresentation> booksToAdd, Validator validator) {
+        this.booksToAdd = booksToAdd;
+        this.results = new BookBulkResultRepresentation[booksToAdd.size()];
+        this.signatures = new HashSet<>(booksToAdd.size() * 2);
+        for (int i = 0; i < booksToAdd.size(); i++) {
+            BookRepresentation bookRepresentation = booksToAdd.get(i);
+            Set<ConstraintViolation<BookRepresentation>> violations = validator.validate(bookRepresentation);
+            if (!violations.isEmpty()) {
+                results[i] = bulkResult(i, bookRepresentation, BulkItemStatus.INVALID, violations.stream()
+                        .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", ")));
+            } else {
+                signatures.add(bookRepresentation.getSignature());
+            }
+        }
+        this.bookEntitiesToInsert = new ArrayList<>(signatures.size());
+    }
+
+    /**
+     * Signatures of the valid books, to be checked against the library.
+     */
+    Set<String> getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * Rejects the books whose signature is already taken, in the library or earlier in the list, and
+     * returns the rest for insertion.
+     */
+    List<BookEntity> selectBooksToInsert(Set<String> existingSignatures) {
+        Set<String> acceptedSignatures = new HashSet<>(signatures.size() * 2);
+        insertedIndexes = new int[signatures.size()];
+        for (int i = 0; i < booksToAdd.size(); i++) {
+            BookRepresentation bookRepresentation = booksToAdd.get(i);
+            if (results[i] != null) {
+                continue;
+            }
+            if (existingSignatures.contains(bookRepresentation.getSignature()) || !acceptedSignatures.add(bookRepresentation.getSignature())) {
+                results[i] = bulkResult(i, bookRepresentation, BulkItemStatus.DUPLICATE,
+                        "Book with provided signature " + bookRepresentation.getSignature() + " already in a library.");
+            } else {
+                insertedIndexes[bookEntitiesToInsert.size()] = i;
+                bookEntitiesToInsert.add(BookMapper.INSTANCE.bookRepToEntity(bookRepresentation));
+            }
+        }
+        return bookEntitiesToInsert;
+    }
+
+    /**
+     * Builds the results in request order, passing every book that was written to {@code onInserted}.
+     */
+    List<BookBulkResultRepresentation> complete(List<BulkInsertFailure> failures, Consumer<BookEntity> onInserted) {
+        for (BulkInsertFailure failure : failures) {
+            int i = insertedIndexes[failure.getIndex()];
+            results[i] = bulkResult(i, booksToAdd.get(i), failure.isDuplicateKey() ? BulkItemStatus.DUPLICATE : BulkItemStatus.FAILED,
+                    failure.getMessage());
+        }
+        for (int inserted = 0; inserted < bookEntitiesToInsert.size(); inserted++) {
+            int i = insertedIndexes[inserted];
+            if (results[i] == null) {
+                results[i] = bulkResult(i, booksToAdd.get(i), BulkItemStatus.CREATED, null);
+                results[i].setId(bookEntitiesToInsert.get(inserted).getId());
+                onInserted.accept(bookEntitiesToInsert.get(inserted));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static BookBulkResultRepresentation bulkResult(int index, BookRepresentation bookRepresentation, BulkItemStatus status,
+                                                           String message) {
+        return BookBulkResultRepresentation.builder()
+                .index(index)
+                .signature(bookRepresentation.getSignature())
+                .status(status)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Mapped books by id, bounded by {@code library.book-cache.max-size}. Caffeine's W-TinyLFU policy only admits a
+ * book in place of another one when it is requested more often, so a scan over many cold ids cannot flush the
+ * hot ones. Books expire {@code library.book-cache.expire-after-write} after they were cached, which bounds
+ * how long a write made through another instance can go unseen. Hits, misses and evictions are exported as the
+ * {@code cache.*} metrics of the {@code books} cache. Cached books are shared between requests and must not be
+ * modified.
+ */
+@Component
+@Profile("!reactive")
+public class BookCache implements MeterBinder {
+
+    private final Cache<Integer, BookRepresentation> books;
+
+    @Autowired
+    public BookCache(@Value("${library.book-cache.max-size:10000}") long maxSize,
+                     @Value("${library.book-cache.expire-after-write:30s}") Duration expireAfterWrite) {
+        this.books = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    BookRepresentation find(int bookId) {
+        return books.getIfPresent(bookId);
+    }
+
+    /**
+     * Keeps whichever of the cached and the given book has the higher version, so a read that raced a write
+     * never replaces the written book.
+     */
+    void put(BookRepresentation book) {
+        books.asMap().merge(book.getId(), book, (cached, fresh) -> fresh.getVersion() >= cached.getVersion() ? fresh : cached);
+    }
+
+    void invalidate(int bookId) {
+        books.invalidate(bookId);
+    }
+
+    void invalidateAll(Collection<Integer> bookIds) {
+        books.invalidateAll(bookIds);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, books, "books");
+    }
+}
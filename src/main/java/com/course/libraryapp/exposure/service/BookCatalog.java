@@ -0,0 +1,155 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current {@link CatalogSnapshot}. Writes only bump a counter and schedule a refresh, which runs
+ * on a background thread at most once per refresh interval; readers always get the last published
+ * snapshot and only wait for the very first load.
+ * <p>
+ * Writes made through other instances are not counted here, so a snapshot older than
+ * {@code library.catalog.max-age} is refreshed in the background as well when it is read.
+ */
+@Component
+@Profile("!reactive")
+public class BookCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookCatalog.class);
+
+    private final BookRepository bookRepository;
+    private final long refreshIntervalMillis;
+    private final long maxAgeMillis;
+    private final ScheduledExecutorService refresher;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicLong writeVersion = new AtomicLong();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile long lastRefreshStartedAt;
+    private volatile CatalogSnapshot snapshot;
+
+    @Autowired
+    public BookCatalog(BookRepository bookRepository,
+                       @Value("${library.catalog.refresh-interval:2s}") Duration refreshInterval,
+                       @Value("${library.catalog.max-age:30s}") Duration maxAge) {
+        this.bookRepository = bookRepository;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.maxAgeMillis = maxAge.toMillis();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CatalogSnapshot current() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        } else if (System.currentTimeMillis() - current.getLoadedAt() >= maxAgeMillis) {
+            scheduleRefresh();
+        }
+        return current;
+    }
+
+    /**
+     * A tag for the whole collection as this instance knows it, cheap enough to compare before a query runs:
+     * the content hash while the snapshot holds every write counted here, which any instance holding the same
+     * books agrees on, else this instance's write counter. Writes made through other instances change it once
+     * the snapshot is refreshed, so a snapshot older than {@code library.catalog.max-age} gives no tag. Null
+     * until a snapshot is loaded; the first call loads one in the background.
+     */
+    public String findCollectionTag() {
+        CatalogSnapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.getLoadedAt() >= maxAgeMillis) {
+            scheduleRefresh();
+            return null;
+        }
+        long version = writeVersion.get();
+        return version == current.getVersion() ? current.getContentHash() : instanceId + "." + version;
+    }
+
+    public long getWriteVersion() {
+        return writeVersion.get();
+    }
+
+    public void markChanged() {
+        writeVersion.incrementAndGet();
+        if (snapshot != null) {
+            scheduleRefresh();
+        }
+    }
+
+    /**
+     * Publishes books loaded from somewhere else than the books collection, like a snapshot file, unless a
+     * snapshot has been loaded already. As for a refresh, {@code version} is the write counter read before the
+     * books were; when writes were counted since, a refresh is scheduled at once.
+     */
+    public synchronized void seed(long version, List<BookRepresentation> books) {
+        if (snapshot != null) {
+            return;
+        }
+        lastRefreshStartedAt = System.currentTimeMillis();
+        snapshot = new CatalogSnapshot(version, books, System.currentTimeMillis());
+        if (writeVersion.get() != version && refreshScheduled.compareAndSet(false, true)) {
+            refresher.execute(this::scheduledRefresh);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            long delay = lastRefreshStartedAt + refreshIntervalMillis - System.currentTimeMillis();
+            refresher.schedule(this::scheduledRefresh, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledRefresh() {
+        refreshScheduled.set(false);
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            CatalogSnapshot current = snapshot;
+            LOGGER.warn("Catalog snapshot refresh failed, keeping version {}.", current == null ? null : current.getVersion(), e);
+        }
+    }
+
+    private synchronized void refresh() {
+        lastRefreshStartedAt = System.currentTimeMillis();
+        long version = writeVersion.get();
+        List<BookEntity> bookEntities = bookRepository.findAll();
+        List<BookRepresentation> books = new ArrayList<>(bookEntities.size());
+        for (BookEntity bookEntity : bookEntities) {
+            books.add(BookMapper.INSTANCE.entityToBookRep(bookEntity));
+        }
+        snapshot = new CatalogSnapshot(version, books, System.currentTimeMillis());
+    }
+}
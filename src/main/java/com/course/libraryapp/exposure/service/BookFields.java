@@ -0,0 +1,144 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
+import com.course.libraryapp.persistance.model.BookEntity;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The book fields a list request asked for with {@code fields=}, either a comma separated list of field
+ * names or one of the views {@code summary} and {@code full}. Only these fields and the version are read from
+ * Mongo, and only these fields are written to the response, in the order of {@link BookRepresentation}.
+ */
+public final class BookFields {
+
+    private static final Map<String, Function<BookEntity, Object>> ENTITY_FIELDS = new LinkedHashMap<>();
+    private static final Map<String, Function<BookRepresentation, Object>> REPRESENTATION_FIELDS = new LinkedHashMap<>();
+
+    static {
+        field("id", BookEntity::getId, BookRepresentation::getId);
+        field("signature", BookEntity::getSignature, BookRepresentation::getSignature);
+        field("title", BookEntity::getTitle, BookRepresentation::getTitle);
+        field("author", BookEntity::getAuthor, BookRepresentation::getAuthor);
+        field("description", BookEntity::getDescription, BookRepresentation::getDescription);
+        field("genre", bookEntity -> GenreEnumRepresentation.of(bookEntity.getGenre()), BookRepresentation::getGenre);
+        field("score", BookEntity::getScore, BookRepresentation::getScore);
+        field("scoreRegistry", BookEntity::getScoreRegistry, BookRepresentation::getScoreRegistry);
+    }
+
+    public static final BookFields SUMMARY = new BookFields(List.of("id", "title", "author", "genre", "score"));
+    public static final BookFields FULL = new BookFields(new ArrayList<>(ENTITY_FIELDS.keySet()));
+
+    private final List<String> names;
+    private final List<String> projection;
+
+    private BookFields(List<String> names) {
+        this.names = Collections.unmodifiableList(names);
+        List<String> projection = new ArrayList<>(names);
+        projection.add("version");
+        this.projection = Collections.unmodifiableList(projection);
+    }
+
+    /**
+     * Null asks for all fields, the same as {@code full}.
+     */
+    public static BookFields parse(String fields) {
+        if (fields == null || fields.equals("full")) {
+            return FULL;
+        }
+        if (fields.equals("summary")) {
+            return SUMMARY;
+        }
+        Set<String> requested = new HashSet<>();
+        for (String name : fields.split(",")) {
+            String field = name.trim();
+            if (!ENTITY_FIELDS.containsKey(field)) {
+                throw new InvalidRequestException("Unknown book field '" + field + "', use the views summary or full or any of "
+                        + String.join(", ", ENTITY_FIELDS.keySet()) + ".");
+            }
+            requested.add(field);
+        }
+        if (requested.size() == ENTITY_FIELDS.size()) {
+            return FULL;
+        }
+        List<String> names = new ArrayList<>(requested.size());
+        for (String field : ENTITY_FIELDS.keySet()) {
+            if (requested.contains(field)) {
+                names.add(field);
+            }
+        }
+        return new BookFields(names);
+    }
+
+    public boolean isFull() {
+        return names.size() == ENTITY_FIELDS.size();
+    }
+
+    /**
+     * Field names as stored in the books collection.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * The names plus the version, for the query projection: list tags are derived from the versions read.
+     */
+    public List<String> getProjection() {
+        return projection;
+    }
+
+    public SparseBookRepresentation select(BookEntity bookEntity) {
+        SparseBookRepresentation book = new SparseBookRepresentation(bookEntity.getId(), bookEntity.getVersion());
+        for (String name : names) {
+            book.put(name, ENTITY_FIELDS.get(name).apply(bookEntity));
+        }
+        return book;
+    }
+
+    public SparseBookRepresentation select(BookRepresentation bookRepresentation) {
+        SparseBookRepresentation book = new SparseBookRepresentation(bookRepresentation.getId(), bookRepresentation.getVersion());
+        for (String name : names) {
+            book.put(name, REPRESENTATION_FIELDS.get(name).apply(bookRepresentation));
+        }
+        return book;
+    }
+
+    /**
+     * Books already held in memory, only trimmed to these fields; with all fields the list is returned as it is.
+     */
+    public List<?> select(List<BookRepresentation> books) {
+        if (isFull()) {
+            return books;
+        }
+        List<SparseBookRepresentation> selected = new ArrayList<>(books.size());
+        for (BookRepresentation book : books) {
+            selected.add(select(book));
+        }
+        return selected;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof BookFields && names.equals(((BookFields) other).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return names.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names);
+    }
+
+    private static void field(String name, Function<BookEntity, Object> ofEntity, Function<BookRepresentation, Object> ofRepresentation) {
+        ENTITY_FIELDS.put(name, ofEntity);
+        REPRESENTATION_FIELDS.put(name, ofRepresentation);
+    }
+}
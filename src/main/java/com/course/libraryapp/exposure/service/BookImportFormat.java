@@ -0,0 +1,11 @@
+package com.course.libraryapp.exposure.service;
+
+/**
+ * Formats {@link BookImporter} reads. NDJSON holds one {@code BookRepresentation} per line, CSV a header
+ * naming the columns ({@code signature,title,author,description,genre}, optionally {@code score} and a
+ * {@code scoreRegistry} of rates separated by {@code ;}) and one book per record.
+ */
+public enum BookImportFormat {
+    NDJSON,
+    CSV
+}
@@ -0,0 +1,379 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookImportRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
+import com.course.libraryapp.exposure.repository.BookImportCheckpointRepository;
+import com.course.libraryapp.persistance.model.BookImportCheckpointEntity;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams books from an NDJSON or CSV input into the library. Rows are read one at a time and added in
+ * batches through {@link LibraryService#checkSignaturesAndAddBooks(List)}, so they are validated and checked
+ * for duplicates like any list of books. At most {@code parallelism} batches are written at once and reading
+ * waits for a free slot, so memory is bounded by the batches in flight, not by the size of the input.
+ * Batches sharing a signature are never written at the same time: the later one waits for the earlier one,
+ * so its check for duplicates sees the book the earlier one added.
+ * <p>
+ * With an import id, the number of rows already written or rejected is saved whenever the batches before
+ * it are all done. Importing the same input with the same id again starts after those rows. Batches that
+ * were being written when an import stopped are read again; the books of them that did make it come back
+ * as duplicates.
+ */
+@Component
+@Profile("!reactive")
+public class BookImporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookImporter.class);
+
+    private final LibraryService libraryService;
+    private final BookImportCheckpointRepository checkpointRepository;
+    private final ObjectReader ndjsonReader;
+    private final ObjectReader csvReader;
+    private final int batchSize;
+    private final int parallelism;
+    private final int maxReportedRejections;
+
+    @Autowired
+    public BookImporter(LibraryService libraryService, BookImportCheckpointRepository checkpointRepository, ObjectMapper objectMapper,
+                        @Value("${library.import.batch-size:1000}") int batchSize,
+                        @Value("${library.import.parallelism:4}") int parallelism,
+                        @Value("${library.import.max-reported-rejections:1000}") int maxReportedRejections) {
+        this.libraryService = libraryService;
+        this.checkpointRepository = checkpointRepository;
+        this.ndjsonReader = objectMapper.readerFor(BookRepresentation.class);
+        CsvMapper csvMapper = CsvMapper.builder()
+                .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS, objectMapper.isEnabled(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS))
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, objectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES))
+                .build();
+        this.csvReader = csvMapper.readerFor(BookRepresentation.class)
+                .with(CsvSchema.emptySchema().withHeader().withArrayElementSeparator(";"));
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    /**
+     * Imports all rows of {@code input}, or only those after the checkpoint of {@code importId} when one was
+     * saved. A null id imports everything and saves no checkpoint. Rejected rows are reported by their index
+     * in the input, counting from 0 and leaving out the CSV header.
+     */
+    public BookImportRepresentation importBooks(InputStream input, BookImportFormat format, String importId)
+            throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        long resumeAt = importId == null ? 0 : checkpointRepository.findById(importId)
+                .map(BookImportCheckpointEntity::getCommittedRows).orElse(0L);
+        ImportRun run = new ImportRun(importId, resumeAt);
+        ExecutorService writers = Executors.newFixedThreadPool(parallelism, new WriterThreads());
+        Semaphore slots = new Semaphore(parallelism);
+        long rowIndex = 0;
+        try (RowReader rows = format == BookImportFormat.NDJSON ? new NdjsonRowReader(input) : new CsvRowReader(input)) {
+            Batch batch = new Batch(resumeAt);
+            for (Row row = rows.next(); row != null && run.failure == null; row = rows.next()) {
+                if (rowIndex++ < resumeAt) {
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    submit(batch, run, writers, slots);
+                    batch = new Batch(rowIndex);
+                }
+            }
+            if (batch.size() > 0 && run.failure == null) {
+                submit(batch, run, writers, slots);
+            }
+        } finally {
+            writers.shutdown();
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        if (run.failure != null) {
+            throw run.failure;
+        }
+        return run.report(Math.max(0, rowIndex - resumeAt), System.nanoTime() - startedAt);
+    }
+
+    private void submit(Batch batch, ImportRun run, ExecutorService writers, Semaphore slots) throws InterruptedException {
+        run.claimSignatures(batch);
+        slots.acquire();
+        writers.execute(() -> {
+            try {
+                run.complete(batch, batch.books.isEmpty()
+                        ? Collections.emptyList() : libraryService.checkSignaturesAndAddBooks(batch.books));
+            } catch (RuntimeException e) {
+                run.fail(e);
+            } finally {
+                run.releaseSignatures(batch);
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * Counts the results of one import and moves its checkpoint forward as the batches finish, in any order.
+     */
+    private final class ImportRun {
+
+        private final String importId;
+        private final long resumeAt;
+        private final Map<Long, Long> finishedBatches = new HashMap<>();
+        private final List<BookBulkResultRepresentation> rejections = new ArrayList<>();
+        private final Set<String> signaturesInFlight = new HashSet<>();
+        private long committedRows;
+        private long created;
+        private long rejected;
+        private volatile RuntimeException failure;
+
+        ImportRun(String importId, long resumeAt) {
+            this.importId = importId;
+            this.resumeAt = resumeAt;
+            this.committedRows = resumeAt;
+        }
+
+        synchronized void complete(Batch batch, List<BookBulkResultRepresentation> results) {
+            for (BookBulkResultRepresentation rejection : batch.rejections) {
+                reject(rejection);
+            }
+            for (BookBulkResultRepresentation result : results) {
+                result.setIndex((int) batch.rowIndexes[result.getIndex()]);
+                if (result.getStatus() == BulkItemStatus.CREATED) {
+                    created++;
+                } else {
+                    reject(result);
+                }
+            }
+            finishedBatches.put(batch.firstRow, batch.firstRow + batch.rows);
+            long previouslyCommitted = committedRows;
+            Long next;
+            while ((next = finishedBatches.remove(committedRows)) != null) {
+                committedRows = next;
+            }
+            if (importId != null && committedRows > previouslyCommitted) {
+                checkpointRepository.save(new BookImportCheckpointEntity(importId, committedRows, Instant.now()));
+            }
+        }
+
+        /**
+         * Waits until no batch being written shares a signature with {@code batch}, then marks its signatures
+         * as being written.
+         */
+        synchronized void claimSignatures(Batch batch) throws InterruptedException {
+            while (!Collections.disjoint(signaturesInFlight, batch.signatures)) {
+                wait();
+            }
+            signaturesInFlight.addAll(batch.signatures);
+        }
+
+        synchronized void releaseSignatures(Batch batch) {
+            signaturesInFlight.removeAll(batch.signatures);
+            notifyAll();
+        }
+
+        synchronized void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        synchronized BookImportRepresentation report(long rows, long elapsedNanos) {
+            rejections.sort(Comparator.comparingInt(BookBulkResultRepresentation::getIndex));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            double rowsPerSecond = elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+            if (importId == null) {
+                LOGGER.info("Import read {} rows in {} ms ({} rows/s): {} created, {} rejected.",
+                        rows, elapsedMillis, Math.round(rowsPerSecond), created, rejected);
+            } else {
+                LOGGER.info("Import {} read {} rows in {} ms ({} rows/s): {} created, {} rejected.",
+                        importId, rows, elapsedMillis, Math.round(rowsPerSecond), created, rejected);
+            }
+            return BookImportRepresentation.builder()
+                    .importId(importId)
+                    .resumedAtRow(resumeAt)
+                    .rows(rows)
+                    .created(created)
+                    .rejected(rejected)
+                    .rejections(rejections)
+                    .elapsedMillis(elapsedMillis)
+                    .rowsPerSecond(Math.round(rowsPerSecond * 10) / 10.0)
+                    .build();
+        }
+
+        private void reject(BookBulkResultRepresentation rejection) {
+            rejected++;
+            if (rejections.size() < maxReportedRejections) {
+                rejections.add(rejection);
+            }
+        }
+    }
+
+    /**
+     * Consecutive rows of the input: the books to add and the rows that could not even be read.
+     */
+    private static final class Batch {
+
+        private final long firstRow;
+        private final List<BookRepresentation> books = new ArrayList<>();
+        private final Set<String> signatures = new HashSet<>();
+        private final List<BookBulkResultRepresentation> rejections = new ArrayList<>();
+        private long[] rowIndexes = new long[16];
+        private int rows;
+
+        Batch(long firstRow) {
+            this.firstRow = firstRow;
+        }
+
+        int size() {
+            return rows;
+        }
+
+        void add(Row row) {
+            long rowIndex = firstRow + rows++;
+            if (row.book == null) {
+                rejections.add(BookBulkResultRepresentation.builder()
+                        .index((int) rowIndex)
+                        .status(BulkItemStatus.INVALID)
+                        .message(row.error)
+                        .build());
+                return;
+            }
+            if (books.size() == rowIndexes.length) {
+                rowIndexes = Arrays.copyOf(rowIndexes, rowIndexes.length * 2);
+            }
+            rowIndexes[books.size()] = rowIndex;
+            books.add(row.book);
+            if (row.book.getSignature() != null) {
+                signatures.add(row.book.getSignature());
+            }
+        }
+    }
+
+    private static final class Row {
+
+        private final BookRepresentation book;
+        private final String error;
+
+        private Row(BookRepresentation book, String error) {
+            this.book = book;
+            this.error = error;
+        }
+
+        static Row of(BookRepresentation book) {
+            return new Row(book, null);
+        }
+
+        static Row unreadable(JsonProcessingException e) {
+            return new Row(null, "Unreadable row: " + e.getOriginalMessage());
+        }
+    }
+
+    private interface RowReader extends Closeable {
+
+        /**
+         * The next row, null at the end of the input.
+         */
+        Row next() throws IOException;
+    }
+
+    private final class NdjsonRowReader implements RowReader {
+
+        private final BufferedReader lines;
+
+        NdjsonRowReader(InputStream input) {
+            this.lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line;
+            do {
+                line = lines.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                return Row.of(ndjsonReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                return Row.unreadable(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lines.close();
+        }
+    }
+
+    /**
+     * A record that does not bind is reported and skipped; broken CSV syntax ends the import.
+     */
+    private final class CsvRowReader implements RowReader {
+
+        private final MappingIterator<BookRepresentation> records;
+
+        CsvRowReader(InputStream input) throws IOException {
+            this.records = csvReader.readValues(input);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            try {
+                if (!records.hasNextValue()) {
+                    return null;
+                }
+                return Row.of(records.nextValue());
+            } catch (JsonParseException e) {
+                throw new InvalidRequestException("Unreadable CSV: " + e.getOriginalMessage());
+            } catch (JsonMappingException e) {
+                return Row.unreadable(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            records.close();
+        }
+    }
+
+    private static final class WriterThreads implements ThreadFactory {
+
+        private static final AtomicInteger IMPORTS = new AtomicInteger();
+
+        private final int importNumber = IMPORTS.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "book-import-" + importNumber + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Top-K books by one numeric field, ordered by that field descending and by id ascending.
+ * Reads use a published immutable board; writes rebuild the board under the monitor in O(K).
+ * Whenever a change could let a book outside the board move in, the board is marked stale and
+ * reseeded from one indexed query on the next read.
+ */
+class BookLeaderboard {
+
+    private final String field;
+    private final ToDoubleFunction<BookEntity> key;
+    private final Comparator<BookEntity> ranking;
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final BookRepository bookRepository;
+
+    private volatile Board board = Board.STALE;
+
+    BookLeaderboard(String field, ToDoubleFunction<BookEntity> key, int capacity, long maxAgeMillis, BookRepository bookRepository) {
+        this.field = field;
+        this.key = key;
+        this.ranking = Comparator.<BookEntity>comparingDouble(key).reversed().thenComparingInt(BookEntity::getId);
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAgeMillis;
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * Returns every book sharing the highest value, or an empty list when there are no books. When the highest
+     * value is 0, nothing has been rated yet and callers report just that, so only the board is returned rather
+     * than every book of the collection.
+     */
+    List<BookEntity> findLeaders() {
+        Board current = currentBoard();
+        BookEntity[] entries = current.entries;
+        if (entries.length == 0) {
+            return Collections.emptyList();
+        }
+        double top = key.applyAsDouble(entries[0]);
+        int leaders = 1;
+        while (leaders < entries.length && key.applyAsDouble(entries[leaders]) == top) {
+            leaders++;
+        }
+        if (leaders == entries.length && !current.complete && top != 0) {
+            // the whole board is tied, more books with the same value may sit outside of it
+            return bookRepository.findAllByFieldValue(field, top);
+        }
+        return Arrays.asList(Arrays.copyOf(entries, leaders));
+    }
+
+    synchronized void onBookSaved(BookEntity bookEntity) {
+        Board current = board;
+        if (current.stale) {
+            return;
+        }
+        List<BookEntity> entries = new ArrayList<>(Arrays.asList(current.entries));
+        BookEntity boundary = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+        boolean wasOnBoard = entries.removeIf(entry -> entry.getId() == bookEntity.getId());
+        boolean complete = current.complete;
+
+        if (!complete && boundary != null && ranking.compare(bookEntity, boundary) > 0) {
+            if (wasOnBoard) {
+                board = Board.STALE;
+            }
+            return;
+        }
+        int position = Collections.binarySearch(entries, bookEntity, ranking);
+        entries.add(position < 0 ? -position - 1 : position, bookEntity);
+        if (entries.size() > capacity) {
+            entries.remove(entries.size() - 1);
+            complete = false;
+        }
+        board = new Board(entries.toArray(new BookEntity[0]), complete, false, current.loadedAt);
+    }
+
+    synchronized void onBooksRemoved(Collection<Integer> bookIds) {
+        Board current = board;
+        if (current.stale) {
+            return;
+        }
+        List<BookEntity> entries = new ArrayList<>(Arrays.asList(current.entries));
+        if (entries.removeIf(entry -> bookIds.contains(entry.getId()))) {
+            board = current.complete ? new Board(entries.toArray(new BookEntity[0]), true, false, current.loadedAt) : Board.STALE;
+        }
+    }
+
+    synchronized void reseed() {
+        List<BookEntity> top = bookRepository.findTopBooks(field, capacity + 1);
+        boolean complete = top.size() <= capacity;
+        BookEntity[] entries = top.subList(0, Math.min(top.size(), capacity)).toArray(new BookEntity[0]);
+        board = new Board(entries, complete, false, System.currentTimeMillis());
+    }
+
+    private Board currentBoard() {
+        Board current = board;
+        if (isOutdated(current)) {
+            synchronized (this) {
+                if (isOutdated(board)) {
+                    reseed();
+                }
+                current = board;
+            }
+        }
+        return current;
+    }
+
+    private boolean isOutdated(Board current) {
+        return current.stale || System.currentTimeMillis() - current.loadedAt > maxAgeMillis;
+    }
+
+    private static final class Board {
+        private static final Board STALE = new Board(new BookEntity[0], false, true, 0);
+
+        private final BookEntity[] entries;
+        private final boolean complete;
+        private final boolean stale;
+        private final long loadedAt;
+
+        private Board(BookEntity[] entries, boolean complete, boolean stale, long loadedAt) {
+            this.entries = entries;
+            this.complete = complete;
+            this.stale = stale;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+@Component
+@Profile("!reactive")
+public class BookLeaderboards {
+
+    private final BookLeaderboard mostVoted;
+    private final BookLeaderboard highestRated;
+
+    @Autowired
+    public BookLeaderboards(BookRepository bookRepository,
+                            @Value("${library.leaderboard.size:10}") int size,
+                            @Value("${library.leaderboard.max-age:30s}") Duration maxAge) {
+        this.mostVoted = new BookLeaderboard("votesCount", BookEntity::getVotesCount, size, maxAge.toMillis(), bookRepository);
+        this.highestRated = new BookLeaderboard("score", BookEntity::getScore, size, maxAge.toMillis(), bookRepository);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        mostVoted.reseed();
+        highestRated.reseed();
+    }
+
+    public List<BookEntity> findMostVoted() {
+        return mostVoted.findLeaders();
+    }
+
+    public List<BookEntity> findHighestRated() {
+        return highestRated.findLeaders();
+    }
+
+    public void onBookSaved(BookEntity bookEntity) {
+        mostVoted.onBookSaved(bookEntity);
+        highestRated.onBookSaved(bookEntity);
+    }
+
+    public void onBookRemoved(int bookId) {
+        onBooksRemoved(List.of(bookId));
+    }
+
+    public void onBooksRemoved(Collection<Integer> bookIds) {
+        mostVoted.onBooksRemoved(bookIds);
+        highestRated.onBooksRemoved(bookIds);
+    }
+}
@@ -0,0 +1,97 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookPageRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
+import com.course.libraryapp.exposure.util.PageCursor;
+import com.course.libraryapp.persistance.model.BookEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A validated keyset page request. Fetch {@link #getFetchSize()} books after the cursor position, one more
+ * than the page holds, so {@link #toPage(List)} can tell whether another page follows.
+ */
+final class BookPageQuery {
+
+    private final BookSortOrder sortOrder;
+    private final int pageSize;
+    private final Object lastSortKey;
+    private final Integer lastId;
+
+    private BookPageQuery(BookSortOrder sortOrder, int pageSize, Object lastSortKey, Integer lastId) {
+        this.sortOrder = sortOrder;
+        this.pageSize = pageSize;
+        this.lastSortKey = lastSortKey;
+        this.lastId = lastId;
+    }
+
+    static BookPageQuery of(BookSortOrder sortOrder, String after, int pageSize) {
+        if (pageSize < 1 || pageSize > LibraryService.MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("Page size must be between 1 and " + LibraryService.MAX_PAGE_SIZE + ".");
+        }
+        if (after == null) {
+            return new BookPageQuery(sortOrder, pageSize, null, null);
+        }
+        PageCursor cursor = PageCursor.decode(after);
+        Object lastSortKey;
+        try {
+            lastSortKey = cursor.getLastSortKey() == null ? null : sortOrder.parseSortKey(cursor.getLastSortKey());
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid page cursor " + after + ".");
+        }
+        return new BookPageQuery(sortOrder, pageSize, lastSortKey, cursor.getLastId());
+    }
+
+    BookSortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    Object getLastSortKey() {
+        return lastSortKey;
+    }
+
+    Integer getLastId() {
+        return lastId;
+    }
+
+    int getFetchSize() {
+        return pageSize + 1;
+    }
+
+    BookPageRepresentation toPage(List<BookEntity> bookEntities) {
+        String nextCursor = nextCursor(bookEntities);
+        bookEntities = bookEntities.subList(0, Math.min(bookEntities.size(), pageSize));
+        List<BookRepresentation> page = new ArrayList<>(bookEntities.size());
+        for (BookEntity bookEntity : bookEntities) {
+            page.add(BookMapper.INSTANCE.entityToBookRep(bookEntity));
+        }
+        return new BookPageRepresentation(page, nextCursor);
+    }
+
+    /**
+     * Like {@link #toPage(List)}, the books read with a projection of {@code fields} and the sort field.
+     */
+    SparseBookPageRepresentation toPage(List<BookEntity> bookEntities, BookFields fields) {
+        String nextCursor = nextCursor(bookEntities);
+        bookEntities = bookEntities.subList(0, Math.min(bookEntities.size(), pageSize));
+        List<SparseBookRepresentation> page = new ArrayList<>(bookEntities.size());
+        for (BookEntity bookEntity : bookEntities) {
+            page.add(fields.select(bookEntity));
+        }
+        return new SparseBookPageRepresentation(page, nextCursor);
+    }
+
+    private String nextCursor(List<BookEntity> bookEntities) {
+        if (bookEntities.size() <= pageSize) {
+            return null;
+        }
+        BookEntity last = bookEntities.get(pageSize - 1);
+        Object lastSortKey = sortOrder.sortKeyOf(last);
+        return new PageCursor(last.getId(), lastSortKey == null ? null : String.valueOf(lastSortKey)).encode();
+    }
+}
@@ -0,0 +1,170 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * All books together with the change stream position they were read at, in a compact binary file. The file
+ * starts with a magic number and format version, its creation time, the number of books and the
+ * length-prefixed BSON resume token. Each book follows as id, version, score, five length-prefixed UTF-8
+ * strings (length -1 for null) and the count of its rates followed by the rates. Numbers are big-endian.
+ * <p>
+ * Files are written through a buffer to a partial file that is moved into place once complete, so a reader
+ * never sees half of one. They are read from a memory map.
+ */
+final class BookSnapshot {
+
+    private static final long MAGIC = 0x4C49425F534E4102L;
+    private static final int COUNT_OFFSET = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final long createdAt;
+    private final BsonDocument resumeToken;
+    private final List<BookEntity> books;
+
+    BookSnapshot(long createdAt, BsonDocument resumeToken, List<BookEntity> books) {
+        this.createdAt = createdAt;
+        this.resumeToken = resumeToken;
+        this.books = Collections.unmodifiableList(books);
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    BsonDocument getResumeToken() {
+        return resumeToken;
+    }
+
+    List<BookEntity> getBooks() {
+        return books;
+    }
+
+    /**
+     * Writes the books to {@code path}, replacing any earlier snapshot, and returns how many were written.
+     */
+    static int write(Path path, long createdAt, BsonDocument resumeToken, Iterator<BookEntity> books) throws IOException {
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer token = new RawBsonDocument(resumeToken, new BsonDocumentCodec()).getByteBuffer().asNIO();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, COUNT_OFFSET + 8 + token.remaining()));
+            buffer.putLong(MAGIC).putLong(createdAt).putInt(0).putInt(token.remaining()).put(token);
+            while (books.hasNext()) {
+                BookEntity book = books.next();
+                byte[][] strings = {utf8(book.getSignature()), utf8(book.getTitle()), utf8(book.getAuthor()),
+                        utf8(book.getDescription()), utf8(book.getGenre())};
+                List<Integer> rates = book.getScoreRegistry() == null ? Collections.emptyList() : book.getScoreRegistry();
+                int size = 4 + 8 + 8 + 4 * strings.length + 4 + 4 * rates.size();
+                for (byte[] string : strings) {
+                    size += string == null ? 0 : string.length;
+                }
+                if (buffer.remaining() < size) {
+                    flush(channel, buffer);
+                    if (buffer.capacity() < size) {
+                        buffer = ByteBuffer.allocate(size);
+                    }
+                }
+                buffer.putInt(book.getId()).putLong(book.getVersion()).putDouble(book.getScore());
+                for (byte[] string : strings) {
+                    if (string == null) {
+                        buffer.putInt(-1);
+                    } else {
+                        buffer.putInt(string.length).put(string);
+                    }
+                }
+                buffer.putInt(rates.size());
+                for (int rate : rates) {
+                    buffer.putInt(rate);
+                }
+                count++;
+            }
+            flush(channel, buffer);
+            channel.write(ByteBuffer.allocate(4).putInt(0, count), COUNT_OFFSET);
+            channel.force(false);
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    static BookSnapshot read(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getLong() != MAGIC) {
+                throw new IllegalStateException(path + " is not a book snapshot of this format version.");
+            }
+            long createdAt = buffer.getLong();
+            int count = buffer.getInt();
+            byte[] token = new byte[buffer.getInt()];
+            buffer.get(token);
+            List<BookEntity> books = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                BookEntity book = new BookEntity();
+                book.setId(buffer.getInt());
+                book.setVersion(buffer.getLong());
+                book.setScore(buffer.getDouble());
+                book.setSignature(string(buffer));
+                book.setTitle(string(buffer));
+                book.setAuthor(string(buffer));
+                book.setDescription(string(buffer));
+                book.setGenre(string(buffer));
+                int votes = buffer.getInt();
+                List<Integer> rates = new ArrayList<>(votes);
+                for (int vote = 0; vote < votes; vote++) {
+                    rates.add(buffer.getInt());
+                }
+                book.setScoreRegistry(rates);
+                book.updateScoreTotals();
+                books.add(book);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalStateException(path + " has data after its last book.");
+            }
+            return new BookSnapshot(createdAt, new RawBsonDocument(token), books);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IllegalStateException(path + " is not a complete book snapshot.", e);
+        }
+    }
+
+    private static byte[] utf8(String string) {
+        return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,123 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSnapshotRepresentation;
+import com.course.libraryapp.exposure.repository.BookChangeStream;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.BsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Exports the books collection to a {@link BookSnapshot} file and warm starts from it. A warm start loads the
+ * file, replays the changes made to the collection since it was exported from the change stream and seeds
+ * the catalog, the title index and the known book versions with the result, so none of them has to read
+ * the whole collection. When there is no file or it cannot be used, they load from Mongo as before.
+ */
+@Component
+@Profile("!reactive & !embedded")
+public class BookSnapshots {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookSnapshots.class);
+
+    private final BookRepository bookRepository;
+    private final BookChangeStream bookChangeStream;
+    private final BookCatalog bookCatalog;
+    private final BookTitleIndex bookTitleIndex;
+    private final BookVersions bookVersions;
+    private final Path path;
+    private final boolean warmStart;
+
+    @Autowired
+    public BookSnapshots(BookRepository bookRepository, BookChangeStream bookChangeStream, BookCatalog bookCatalog,
+                         BookTitleIndex bookTitleIndex, BookVersions bookVersions,
+                         @Value("${library.snapshot.path:books.snapshot}") Path path,
+                         @Value("${library.snapshot.warm-start:false}") boolean warmStart) {
+        this.bookRepository = bookRepository;
+        this.bookChangeStream = bookChangeStream;
+        this.bookCatalog = bookCatalog;
+        this.bookTitleIndex = bookTitleIndex;
+        this.bookVersions = bookVersions;
+        this.path = path;
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * The change stream position is taken before the books are read, so a book changed while they are read
+     * is replayed on warm start rather than missed.
+     */
+    public BookSnapshotRepresentation export() throws IOException {
+        long startedAt = System.nanoTime();
+        BsonDocument resumeToken = bookChangeStream.findChangeStreamPosition();
+        Instant createdAt = Instant.now();
+        int books;
+        try (Stream<BookEntity> bookEntities = bookRepository.streamAllBy()) {
+            books = BookSnapshot.write(path, createdAt.toEpochMilli(), resumeToken, bookEntities.iterator());
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        LOGGER.info("Exported {} books to {} in {} ms.", books, path, elapsedMillis);
+        return BookSnapshotRepresentation.builder()
+                .path(path.toAbsolutePath().toString())
+                .books(books)
+                .bytes(Files.size(path))
+                .createdAt(createdAt)
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    /**
+     * Runs before the application reports ready, and before the title index would load itself from Mongo.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmStart() {
+        if (!warmStart) {
+            return;
+        }
+        if (!Files.isRegularFile(path)) {
+            LOGGER.info("No book snapshot at {}, caches will be loaded from Mongo.", path);
+            return;
+        }
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Warm start from {} failed, caches will be loaded from Mongo.", path, e);
+        }
+    }
+
+    private void load() throws IOException {
+        long startedAt = System.nanoTime();
+        long writeVersion = bookCatalog.getWriteVersion();
+        BookSnapshot snapshot = BookSnapshot.read(path);
+        Map<Integer, BookEntity> books = new LinkedHashMap<>(snapshot.getBooks().size() * 4 / 3 + 1);
+        for (BookEntity book : snapshot.getBooks()) {
+            books.put(book.getId(), book);
+        }
+        long changes = bookChangeStream.replayChangesAfter(snapshot.getResumeToken(),
+                book -> books.put(book.getId(), book), books::remove);
+
+        bookTitleIndex.load(books.values());
+        List<BookRepresentation> bookRepresentations = new ArrayList<>(books.size());
+        for (BookEntity book : books.values()) {
+            bookVersions.record(book.getId(), book.getVersion());
+            bookRepresentations.add(BookMapper.INSTANCE.entityToBookRep(book));
+        }
+        bookCatalog.seed(writeVersion, bookRepresentations);
+        LOGGER.info("Warm started with {} books from the snapshot of {} and {} changes made since, in {} ms.",
+                books.size(), Instant.ofEpochMilli(snapshot.getCreatedAt()), changes, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+}
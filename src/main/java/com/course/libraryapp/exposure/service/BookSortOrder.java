@@ -0,0 +1,56 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.springframework.data.domain.Sort;
+
+import java.util.function.Function;
+
+public enum BookSortOrder {
+
+    AUTHOR("author", "author", Sort.Direction.ASC, BookEntity::getAuthor, value -> value),
+    TITLE("title", "title", Sort.Direction.ASC, BookEntity::getTitle, value -> value),
+    SCORE_ASCENDING("score-ascending", "score", Sort.Direction.ASC, BookEntity::getScore, Double::valueOf),
+    SCORE_DESCENDING("score-descending", "score", Sort.Direction.DESC, BookEntity::getScore, Double::valueOf);
+
+    private final String pathName;
+    private final String field;
+    private final Sort.Direction direction;
+    private final Function<BookEntity, Object> sortKey;
+    private final Function<String, Object> sortKeyParser;
+
+    BookSortOrder(String pathName, String field, Sort.Direction direction, Function<BookEntity, Object> sortKey, Function<String, Object> sortKeyParser) {
+        this.pathName = pathName;
+        this.field = field;
+        this.direction = direction;
+        this.sortKey = sortKey;
+        this.sortKeyParser = sortKeyParser;
+    }
+
+    /**
+     * The order named by the {@code sorted-by-} path of the list endpoints, or null for an unknown name.
+     */
+    public static BookSortOrder ofPathName(String pathName) {
+        for (BookSortOrder sortOrder : values()) {
+            if (sortOrder.pathName.equals(pathName)) {
+                return sortOrder;
+            }
+        }
+        return null;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    Object sortKeyOf(BookEntity bookEntity) {
+        return sortKey.apply(bookEntity);
+    }
+
+    Object parseSortKey(String sortKey) {
+        return sortKeyParser.apply(sortKey);
+    }
+}
@@ -0,0 +1,475 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.exposure.util.TextFolding;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-memory trigram index over book titles. Titles are {@link TextFolding folded} ("Żółć" matches "zolc")
+ * and indexed with a leading space, so trigrams starting with a space mark word starts and serve prefix lookups.
+ * The index is loaded on first use and then kept in sync by {@link LibraryService} on every write. It holds
+ * only ids, versions and titles and answers with ids, so callers read the books themselves and serve them as
+ * fresh as any other read.
+ * <p>
+ * A load reads the collection without holding the lock: writes reported meanwhile are applied to the current
+ * index and recorded, then replayed onto the loaded one before it replaces it, so none is lost. An older
+ * version of a book never replaces a newer one. Writes made through other instances are never reported,
+ * so an index older than {@code library.title-index.max-age} is reloaded in the background when it is read.
+ */
+@Component
+public class BookTitleIndex {
+
+    private static final int GRAM = 3;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookTitleIndex.class);
+
+    private final BookRepository bookRepository;
+    private final long maxAgeMillis;
+    private final ExecutorService reloader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock, replaced as a whole by a load
+    private Index index = new Index();
+    // guarded by itself, changes reported while a load reads the collection
+    private final List<Consumer<Index>> recordedChanges = new ArrayList<>();
+    private boolean recording;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private volatile boolean loaded;
+    private volatile long loadedAt;
+
+    @Autowired
+    public BookTitleIndex(BookRepository bookRepository,
+                          @Value("${library.title-index.max-age:10m}") Duration maxAge) {
+        this.bookRepository = bookRepository;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.reloader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "title-index-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        loadUnlessLoaded(bookRepository::findAll);
+    }
+
+    /**
+     * Loads the given books instead of reading the collection, unless the index has been loaded already.
+     */
+    public void load(Collection<BookEntity> bookEntities) {
+        loadUnlessLoaded(() -> bookEntities);
+    }
+
+    /**
+     * Ids of the books whose title contains {@code query}; when there are none, of the books whose title
+     * contains something at most one edit (insertion, deletion or substitution) away from it. Ids are ordered.
+     */
+    public List<Integer> findIdsByTitle(String query) {
+        String folded = TextFolding.fold(query);
+        if (folded.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<IndexedTitle> matches = read(() -> {
+            List<IndexedTitle> found = findContaining(folded);
+            return found.isEmpty() ? findOneEditAway(folded) : found;
+        });
+        matches.sort(Comparator.comparingInt(IndexedTitle::id));
+        return toIds(matches, matches.size());
+    }
+
+    /**
+     * Ids of the books whose title contains {@code fragment}, without falling back to typos.
+     */
+    public Set<Integer> findIdsContaining(String fragment) {
+        String folded = TextFolding.fold(fragment);
+        if (folded.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return read(() -> {
+            Set<Integer> ids = new HashSet<>();
+            for (IndexedTitle indexedTitle : findContaining(folded)) {
+                ids.add(indexedTitle.id());
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Ids of up to {@code limit} books for a partially typed title: titles starting with {@code prefix} come
+     * first, then titles with a word starting with it, then titles containing it anywhere, then titles
+     * containing a one-edit typo of it. Within a tier shorter titles win.
+     */
+    public List<Integer> suggestIds(String prefix, int limit) {
+        String folded = TextFolding.fold(prefix);
+        if (folded.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        List<IndexedTitle> suggestions = read(() -> {
+            List<IndexedTitle> ranked = new ArrayList<>();
+            Set<Integer> seen = new HashSet<>();
+            List<IndexedTitle> wordStarts = findContaining(" " + folded);
+            wordStarts.sort(Comparator.comparing((IndexedTitle title) -> !title.padded().startsWith(folded, 1))
+                    .thenComparing(IndexedTitle.BY_LENGTH));
+            addUpTo(ranked, seen, wordStarts, limit);
+            if (ranked.size() < limit) {
+                List<IndexedTitle> substrings = findContaining(folded);
+                substrings.sort(IndexedTitle.BY_LENGTH);
+                addUpTo(ranked, seen, substrings, limit);
+            }
+            if (ranked.size() < limit) {
+                List<IndexedTitle> typos = findOneEditAway(folded);
+                typos.sort(IndexedTitle.BY_LENGTH);
+                addUpTo(ranked, seen, typos, limit);
+            }
+            return ranked;
+        });
+        return toIds(suggestions, limit);
+    }
+
+    public void onBookSaved(BookEntity bookEntity) {
+        apply(index -> index.put(bookEntity));
+    }
+
+    public void onBookRemoved(int bookId) {
+        onBooksRemoved(List.of(bookId));
+    }
+
+    public void onBooksRemoved(Collection<Integer> bookIds) {
+        apply(index -> {
+            for (int bookId : bookIds) {
+                index.remove(bookId);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloader.shutdownNow();
+    }
+
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            synchronized (recordedChanges) {
+                if (recording) {
+                    recordedChanges.add(change);
+                }
+            }
+            if (loaded) {
+                change.accept(index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<IndexedTitle> findContaining(String needle) {
+        Set<String> grams = grams(needle);
+        List<IndexedTitle> matches = new ArrayList<>();
+        if (grams.isEmpty()) {
+            // too short for a trigram, scan the titles
+            for (IndexedTitle indexedTitle : index.titles.values()) {
+                if (indexedTitle.padded().contains(needle)) {
+                    matches.add(indexedTitle);
+                }
+            }
+            return matches;
+        }
+        List<Postings> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Postings ids = index.postings.get(gram);
+            if (ids == null) {
+                return matches;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(ids -> ids.size));
+        Postings shortest = lists.get(0);
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int id = shortest.ids[i];
+            for (int list = 1; list < lists.size(); list++) {
+                if (!lists.get(list).contains(id)) {
+                    continue candidates;
+                }
+            }
+            IndexedTitle indexedTitle = index.titles.get(id);
+            if (indexedTitle.padded().contains(needle)) {
+                matches.add(indexedTitle);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Only titles sharing enough trigrams with the query get the edit distance check. An edit destroys the
+     * trigrams overlapping it, at most {@value #GRAM} and never more than the query has, so a match keeps all
+     * the others. A query too short to keep any, up to five letters, is checked against every title.
+     */
+    private List<IndexedTitle> findOneEditAway(String query) {
+        Set<String> grams = grams(query);
+        List<IndexedTitle> matches = new ArrayList<>();
+        if (grams.isEmpty()) {
+            return matches;
+        }
+        int required = grams.size() - destroyedByOneEdit(query.length());
+        if (required < 1) {
+            for (IndexedTitle indexedTitle : index.titles.values()) {
+                if (containsWithinOneEdit(indexedTitle.padded(), query)) {
+                    matches.add(indexedTitle);
+                }
+            }
+            return matches;
+        }
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Postings ids = index.postings.get(gram);
+            if (ids != null) {
+                for (int i = 0; i < ids.size; i++) {
+                    shared.merge(ids.ids[i], 1, Integer::sum);
+                }
+            }
+        }
+        for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+            if (candidate.getValue() >= required) {
+                IndexedTitle indexedTitle = index.titles.get(candidate.getKey());
+                if (containsWithinOneEdit(indexedTitle.padded(), query)) {
+                    matches.add(indexedTitle);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * The most trigram positions one edit of a text of {@code length} characters can overlap: a substitution or
+     * deletion touches those covering the character, an insertion the two spanning the gap.
+     */
+    static int destroyedByOneEdit(int length) {
+        return Math.min(GRAM, length - GRAM + 1);
+    }
+
+    /**
+     * Whether some substring of {@code text} is at most one edit away from {@code pattern}: the edit distance
+     * table runs along the text and may start matching at any position.
+     */
+    static boolean containsWithinOneEdit(String text, String pattern) {
+        int m = pattern.length();
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i;
+        }
+        if (previous[m] <= 1) {
+            return true;
+        }
+        for (int j = 1; j <= text.length(); j++) {
+            current[0] = 0;
+            char c = text.charAt(j - 1);
+            for (int i = 1; i <= m; i++) {
+                int substitution = previous[i - 1] + (pattern.charAt(i - 1) == c ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            if (current[m] <= 1) {
+                return true;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return false;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static void addUpTo(List<IndexedTitle> ranked, Set<Integer> seen, List<IndexedTitle> tier, int limit) {
+        for (IndexedTitle indexedTitle : tier) {
+            if (ranked.size() == limit) {
+                return;
+            }
+            if (seen.add(indexedTitle.id())) {
+                ranked.add(indexedTitle);
+            }
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        if (!loaded) {
+            load();
+        } else if (System.currentTimeMillis() - loadedAt >= maxAgeMillis && reloadScheduled.compareAndSet(false, true)) {
+            reloader.execute(this::reload);
+        }
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private synchronized void loadUnlessLoaded(Supplier<? extends Iterable<BookEntity>> bookEntities) {
+        if (!loaded) {
+            rebuild(bookEntities);
+        }
+    }
+
+    private void reload() {
+        try {
+            rebuild(bookRepository::findAll);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Title index reload failed, keeping the index loaded at {}.", loadedAt, e);
+        } finally {
+            reloadScheduled.set(false);
+        }
+    }
+
+    private synchronized void rebuild(Supplier<? extends Iterable<BookEntity>> bookEntities) {
+        synchronized (recordedChanges) {
+            recording = true;
+        }
+        long startedAt = System.currentTimeMillis();
+        Index rebuilt = new Index();
+        try {
+            for (BookEntity bookEntity : bookEntities.get()) {
+                rebuilt.put(bookEntity);
+            }
+        } catch (RuntimeException e) {
+            synchronized (recordedChanges) {
+                recordedChanges.clear();
+                recording = false;
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            synchronized (recordedChanges) {
+                for (Consumer<Index> change : recordedChanges) {
+                    change.accept(rebuilt);
+                }
+                recordedChanges.clear();
+                recording = false;
+            }
+            index = rebuilt;
+            loadedAt = startedAt;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<Integer> toIds(List<IndexedTitle> indexedTitles, int limit) {
+        List<Integer> ids = new ArrayList<>(Math.min(limit, indexedTitles.size()));
+        for (int i = 0; i < indexedTitles.size() && i < limit; i++) {
+            ids.add(indexedTitles.get(i).id());
+        }
+        return ids;
+    }
+
+    private record IndexedTitle(int id, long version, String padded) {
+        private static final Comparator<IndexedTitle> BY_LENGTH = Comparator.comparingInt((IndexedTitle title) -> title.padded().length())
+                .thenComparing(IndexedTitle::padded)
+                .thenComparingInt(IndexedTitle::id);
+    }
+
+    /**
+     * Titles by book id and the postings of their trigrams.
+     */
+    private static final class Index {
+        private final Map<Integer, IndexedTitle> titles = new HashMap<>();
+        private final Map<String, Postings> postings = new HashMap<>();
+
+        void put(BookEntity bookEntity) {
+            String padded = " " + TextFolding.fold(bookEntity.getTitle());
+            IndexedTitle previous = titles.get(bookEntity.getId());
+            if (previous != null && previous.version() > bookEntity.getVersion()) {
+                return;
+            }
+            titles.put(bookEntity.getId(), new IndexedTitle(bookEntity.getId(), bookEntity.getVersion(), padded));
+            if (previous != null && previous.padded().equals(padded)) {
+                return;
+            }
+            if (previous != null) {
+                unlink(previous);
+            }
+            for (String gram : grams(padded)) {
+                postings.computeIfAbsent(gram, key -> new Postings()).add(bookEntity.getId());
+            }
+        }
+
+        void remove(int bookId) {
+            IndexedTitle removed = titles.remove(bookId);
+            if (removed != null) {
+                unlink(removed);
+            }
+        }
+
+        private void unlink(IndexedTitle indexedTitle) {
+            for (String gram : grams(indexedTitle.padded())) {
+                Postings ids = postings.get(gram);
+                if (ids != null && ids.remove(indexedTitle.id()) && ids.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorted, growable array of book ids.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.course.libraryapp.exposure.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Last known version of the books read or written through this service, used to answer a conditional GET
+ * without reading the book and to tell removed books apart from books a read may still cache. Versions only
+ * grow, so a slow reader can never put an older one back; removed books keep a tombstone that no version can
+ * replace.
+ * <p>
+ * Bounded like {@link BookCache}: at most {@code library.book-versions.max-size} books, each forgotten
+ * {@code library.book-versions.expire-after-write} after it was last recorded. A version written through
+ * another instance can go unseen that long, as can a removal for a read slower than that.
+ */
+@Component
+@Profile("!reactive")
+public class BookVersions {
+
+    private static final long REMOVED = Long.MAX_VALUE;
+
+    private final Cache<Integer, Long> versions;
+
+    @Autowired
+    public BookVersions(@Value("${library.book-versions.max-size:100000}") long maxSize,
+                        @Value("${library.book-versions.expire-after-write:30s}") Duration expireAfterWrite) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    /**
+     * The current version of the book, or null when it is not known.
+     */
+    public Long find(int bookId) {
+        Long version = versions.getIfPresent(bookId);
+        return version == null || version == REMOVED ? null : version;
+    }
+
+    void record(int bookId, long version) {
+        versions.asMap().merge(bookId, version, Math::max);
+    }
+
+    void remove(int bookId) {
+        versions.put(bookId, REMOVED);
+    }
+
+    void removeAll(Collection<Integer> bookIds) {
+        for (int bookId : bookIds) {
+            remove(bookId);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import org.springframework.util.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of the whole catalog. {@code version} is the write counter observed before the
+ * snapshot was loaded, so any write counted after it makes the snapshot outdated.
+ * <p>
+ * The content hash digests the id and version of every book in order. Every write to a book advances its
+ * version, so two snapshots have the same hash exactly when they hold the same books, whichever instance
+ * loaded them.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final List<BookRepresentation> books;
+    private final long loadedAt;
+    private final String contentHash;
+
+    public CatalogSnapshot(long version, List<BookRepresentation> books, long loadedAt) {
+        this.version = version;
+        this.books = Collections.unmodifiableList(books);
+        this.loadedAt = loadedAt;
+        this.contentHash = hash(books);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<BookRepresentation> getBooks() {
+        return books;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    private static String hash(List<BookRepresentation> books) {
+        ByteBuffer buffer = ByteBuffer.allocate(books.size() * (Integer.BYTES + Long.BYTES));
+        for (BookRepresentation book : books) {
+            buffer.putInt(book.getId()).putLong(book.getVersion());
+        }
+        return DigestUtils.md5DigestAsHex(buffer.array());
+    }
+}
@@ -2,28 +2,160 @@ package com.course.libraryapp.exposure.service;
 
 import com.course.libraryapp.exposure.repository.GenreRepository;
 import com.course.libraryapp.persistance.model.GenreEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.annotation.ApplicationScope;
 
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+/**
+ * Serves the genre list, and its JSON body, from memory. Once the list is older than the refresh interval a
+ * single background reload is started while callers keep getting the cached list; only a list older than
+ * the TTL, or an invalidated one, is reloaded on the caller's thread.
+ */
 @Service
 @ApplicationScope
 public class GenreService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenreService.class);
+
     private final GenreRepository genreRepository;
+    private final ObjectMapper objectMapper;
+    private final long refreshAfterMillis;
+    private final long ttlMillis;
+    private final ExecutorService refresher;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile CachedGenres cachedGenres;
 
     @Autowired
-    public GenreService(GenreRepository genreRepository) {
+    public GenreService(GenreRepository genreRepository, ObjectMapper objectMapper,
+                        @Value("${library.genres.cache.refresh-after:5m}") Duration refreshAfter,
+                        @Value("${library.genres.cache.ttl:1h}") Duration ttl) {
         this.genreRepository = genreRepository;
+        this.objectMapper = objectMapper;
+        this.refreshAfterMillis = refreshAfter.toMillis();
+        this.ttlMillis = ttl.toMillis();
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "genre-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public List<String> getAllGenres() {
+        return current().genres;
+    }
+
+    public byte[] getAllGenresJson() {
+        return current().json;
+    }
+
+    /**
+     * The cached JSON body, or null when the list is missing or older than the TTL; never loads on the
+     * caller's thread. A list due for a refresh is still returned while it reloads in the background.
+     */
+    public byte[] getCachedGenresJson() {
+        CachedGenres cached = cachedGenres;
+        long age = ageOf(cached);
+        if (age >= ttlMillis) {
+            return null;
+        }
+        refreshIfDue(age);
+        return cached.json;
+    }
+
+    /**
+     * Drops the cached list, the next call reloads it. Waits for a reload in progress, so it cannot publish
+     * the old list afterwards.
+     */
+    public synchronized void invalidate() {
+        cachedGenres = null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private CachedGenres current() {
+        CachedGenres cached = cachedGenres;
+        long age = ageOf(cached);
+        if (age >= ttlMillis) {
+            return loadIfExpired();
+        }
+        refreshIfDue(age);
+        return cached;
+    }
+
+    private void refreshIfDue(long age) {
+        if (age >= refreshAfterMillis && refreshing.compareAndSet(false, true)) {
+            try {
+                refresher.execute(this::refresh);
+            } catch (RejectedExecutionException e) {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    private void refresh() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Genre list refresh failed, serving the cached list.", e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private static long ageOf(CachedGenres cached) {
+        return cached == null ? Long.MAX_VALUE : System.currentTimeMillis() - cached.loadedAt;
+    }
+
+    private synchronized CachedGenres loadIfExpired() {
+        CachedGenres cached = cachedGenres;
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt < ttlMillis) {
+            return cached;
+        }
+        return load();
+    }
+
+    private synchronized CachedGenres load() {
         List<GenreEntity> genreEntities = genreRepository.findAll();
         List<String> genres = genreEntities.stream()
                 .map(GenreEntity::getGenreName).collect(Collectors.toList());
-        return genres;
+        try {
+            cachedGenres = new CachedGenres(Collections.unmodifiableList(genres), objectMapper.writeValueAsBytes(genres),
+                    System.currentTimeMillis());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return cachedGenres;
+    }
+
+    private static final class CachedGenres {
+        private final List<String> genres;
+        private final byte[] json;
+        private final long loadedAt;
+
+        private CachedGenres(List<String> genres, byte[] json, long loadedAt) {
+            this.genres = genres;
+            this.json = json;
+            this.loadedAt = loadedAt;
+        }
     }
 }
@@ -1,207 +1,473 @@
 package com.course.libraryapp.exposure.service;
 
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
 import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRemovalRepresentation;
 import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import com.course.libraryapp.exposure.model.FacetCountRepresentation;
 import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookPageRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
 import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.exposure.repository.BookSearchFilter;
 import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import com.course.libraryapp.persistance.model.BulkInsertFailure;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.annotation.ApplicationScope;
 
+import javax.validation.Validator;
+
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
 @ApplicationScope
+@Profile("!reactive")
 public class LibraryService {
 
-    private List<BookRepresentation> bookRepresentations;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_SUGGESTIONS = 50;
+    /**
+     * How often an update without {@code If-Match} starts over when the book keeps changing under it.
+     */
+    public static final int MAX_UPDATE_ATTEMPTS = 5;
+    private static final int SCORE_BUCKETS = 5;
+
     private final BookRepository bookRepository;
+    private final Validator validator;
+    private final BookLeaderboards bookLeaderboards;
+    private final BookCatalog bookCatalog;
+    private final BookTitleIndex bookTitleIndex;
+    private final BookVersions bookVersions;
+    private final BookCache bookCache;
+    private final RatingBuffer ratingBuffer;
 
     @Autowired
-    public LibraryService(BookRepository bookRepository) {
+    public LibraryService(BookRepository bookRepository, Validator validator, BookLeaderboards bookLeaderboards, BookCatalog bookCatalog,
+                          BookTitleIndex bookTitleIndex, BookVersions bookVersions, BookCache bookCache, RatingBuffer ratingBuffer) {
         this.bookRepository = bookRepository;
-        this.bookRepresentations = new ArrayList<>();
+        this.validator = validator;
+        this.bookLeaderboards = bookLeaderboards;
+        this.bookCatalog = bookCatalog;
+        this.bookTitleIndex = bookTitleIndex;
+        this.bookVersions = bookVersions;
+        this.bookCache = bookCache;
+        this.ratingBuffer = ratingBuffer;
+        ratingBuffer.onFlushed(this::onBookUpdated);
     }
 
-    public BookRepresentation checkSignatureAndAddBook(BookRepresentation bookRepresentation) throws Exception {
+    public BookRepresentation checkSignatureAndAddBook(BookRepresentation bookRepresentation) {
         BookEntity bookEntity = mapRepToEntity(bookRepresentation);
         if (isInLibraryBySignature(bookEntity)) {
-            throw new Exception("Book with provided signature " + bookEntity.getSignature() + " already in a library.");
+            throw new DuplicateSignatureException(bookEntity.getSignature());
         } else {
-            bookRepository.saveCustomized(bookEntity);
+            try {
+                bookRepository.saveCustomized(bookEntity);
+            } catch (DuplicateKeyException e) {
+                // added by another request since the check above
+                throw new DuplicateSignatureException(bookEntity.getSignature());
+            }
+            bookLeaderboards.onBookSaved(bookEntity);
+            bookTitleIndex.onBookSaved(bookEntity);
+            bookCatalog.markChanged();
             return mapEntityToRep(bookEntity);
         }
     }
 
-    public List<BookRepresentation> checkSignaturesAndAddBooks(List<BookRepresentation> booksToAdd) throws Exception {
-        for (BookRepresentation bookRepresentation : booksToAdd) {
-            checkSignatureAndAddBook(bookRepresentation);
+    public List<BookBulkResultRepresentation> checkSignaturesAndAddBooks(List<BookRepresentation> booksToAdd) {
+        BookBulkAdd bulkAdd = new BookBulkAdd(booksToAdd, validator);
+        Set<String> signatures = bulkAdd.getSignatures();
+        Set<String> existingSignatures = signatures.isEmpty() ? Collections.emptySet() : bookRepository.findExistingSignatures(signatures);
+        List<BookEntity> bookEntitiesToInsert = bulkAdd.selectBooksToInsert(existingSignatures);
+
+        List<BulkInsertFailure> failures = bookRepository.insertAllCustomized(bookEntitiesToInsert);
+        if (failures.size() < bookEntitiesToInsert.size()) {
+            bookCatalog.markChanged();
         }
-        return booksToAdd;
+        return bulkAdd.complete(failures, bookEntity -> {
+            bookLeaderboards.onBookSaved(bookEntity);
+            bookTitleIndex.onBookSaved(bookEntity);
+        });
     }
 
-    public List<BookRepresentation> checkIdAndRemoveBook(int bookId) {
-        BookRepresentation bookRepresentation = getBookById(bookId);
-        BookEntity bookEntity = mapRepToEntity(bookRepresentation);
-        bookRepository.delete(bookEntity);
-        return null;
+    public void checkIdAndRemoveBook(int bookId) {
+        if (!bookRepository.removeById(bookId)) {
+            throw new BookNotFoundException(bookId);
+        }
+        onBooksRemoved(List.of(bookId));
+    }
+
+    public BookRemovalRepresentation removeBooksById(List<Integer> bookIds) {
+        long removed = bookIds.isEmpty() ? 0 : bookRepository.removeAllById(bookIds);
+        if (removed > 0) {
+            onBooksRemoved(bookIds);
+        }
+        return new BookRemovalRepresentation(removed);
+    }
+
+    /**
+     * Removes the books the genre has when the request is made; books added to it meanwhile are kept.
+     */
+    public BookRemovalRepresentation removeBooksByGenre(String genre) {
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            throw new GenreNotFoundException(genre);
+        }
+        return removeBooksById(bookRepository.findIdsByGenre(genreEnumRep.getGenreName()));
     }
 
     // TODO dodac sprawdzenie sygnatury
     public BookRepresentation checkIdAndUpdateBook(int bookId, BookRepresentation newBookRepresentation) {
-        getBookById(bookId);
         newBookRepresentation.setId(bookId);
+        ratingBuffer.flush(List.of(bookId));
+        for (int attempt = 1; ; attempt++) {
+            // replace only the version just read, so concurrent updates never end up with the same version
+            long currentVersion = findStoredBook(bookId).getVersion();
+            newBookRepresentation.setVersion(currentVersion + 1);
+            BookEntity updatedBookEntity = mapRepToEntity(newBookRepresentation);
+            if (replaceIfVersion(updatedBookEntity, currentVersion)) {
+                onBookUpdated(updatedBookEntity);
+                return newBookRepresentation;
+            }
+            if (attempt == MAX_UPDATE_ATTEMPTS) {
+                throw new VersionConflictException(bookId, getBookById(bookId).getVersion());
+            }
+        }
+    }
+
+    /**
+     * Replaces the book only while it is still at {@code expectedVersion}, the version the client based its
+     * changes on.
+     */
+    public BookRepresentation checkIdAndUpdateBook(int bookId, BookRepresentation newBookRepresentation, long expectedVersion) {
+        newBookRepresentation.setId(bookId);
+        // the tag the client holds counts buffered votes, they have to be stored before it can match
+        ratingBuffer.flush(List.of(bookId));
+        newBookRepresentation.setVersion(expectedVersion + 1);
         BookEntity updatedBookEntity = mapRepToEntity(newBookRepresentation);
-        bookRepository.save(updatedBookEntity);
+        if (!replaceIfVersion(updatedBookEntity, expectedVersion)) {
+            throw new VersionConflictException(bookId, getBookById(bookId).getVersion());
+        }
+        onBookUpdated(updatedBookEntity);
         return newBookRepresentation;
     }
 
     public List<BookRepresentation> getAllBooks() {
-        return findAllBooksAndMapToRep();
+        return bookCatalog.current().getBooks();
+    }
+
+    /**
+     * The whole catalog together with the write counter it reflects.
+     */
+    public CatalogSnapshot getCatalogSnapshot() {
+        return bookCatalog.current();
+    }
+
+    /**
+     * A tag that changes with every write to the books collection, see {@link BookCatalog#findCollectionTag()};
+     * null when there is none to trust yet.
+     */
+    public String findCollectionTag() {
+        return bookCatalog.findCollectionTag();
+    }
+
+    /**
+     * Lazily maps books while the underlying Mongo cursor is read; the caller must close the stream.
+     */
+    public Stream<BookRepresentation> streamAllBooks() {
+        return bookRepository.streamAllBy().map(this::mapEntityToRep);
     }
 
     public List<BookRepresentation> getBookByTitle(String title) {
-        List<BookEntity> listOfBooksEntitiesByTitle = bookRepository.findAllByTitle(title);
-        if (listOfBooksEntitiesByTitle.isEmpty()) {
-            throw new NoSuchElementException("No requested book with title " + title + " in a library.");
+        List<BookRepresentation> booksByTitle = findBooks(bookTitleIndex.findIdsByTitle(title));
+        if (booksByTitle.isEmpty()) {
+            throw new BookNotFoundException(title);
         } else {
-            return listOfBooksEntitiesByTitle.stream().map(this::mapEntityToRep).collect(Collectors.toList());
+            return booksByTitle;
         }
     }
 
+    public List<BookRepresentation> suggestBooksByTitle(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new InvalidRequestException("Title prefix cannot be empty.");
+        }
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new InvalidRequestException("Limit must be between 1 and " + MAX_SUGGESTIONS + ".");
+        }
+        return findBooks(bookTitleIndex.suggestIds(prefix, limit));
+    }
+
     public BookRepresentation getBookById(int id) {
+        return ratingBuffer.withPendingRatings(id, () -> findStoredBook(id));
+    }
+
+    /**
+     * The version {@link #getBookById(int)} would answer with, when it is known without reading the book, else
+     * null. Like a cached book, it can miss a write made through another instance for as long as
+     * {@link BookVersions} keeps it.
+     */
+    public Long findBookVersion(int id) {
+        return ratingBuffer.withPendingVotes(id, () -> bookVersions.find(id));
+    }
+
+    /**
+     * The books with the given ids in that order, read like {@link #getBookById(int)} but with one query for
+     * all books missing from the cache. Books removed meanwhile are left out.
+     */
+    private List<BookRepresentation> findBooks(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ratingBuffer.withPendingRatings(ids, () -> findStoredBooks(ids));
+    }
+
+    private List<BookRepresentation> findStoredBooks(List<Integer> ids) {
+        Map<Integer, BookRepresentation> booksById = new HashMap<>();
+        List<Integer> missingIds = new ArrayList<>();
+        for (int id : ids) {
+            BookRepresentation cachedBookRepresentation = bookCache.find(id);
+            if (cachedBookRepresentation != null) {
+                booksById.put(id, cachedBookRepresentation);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            for (BookEntity bookEntity : bookRepository.findAllByIdIn(missingIds)) {
+                bookVersions.record(bookEntity.getId(), bookEntity.getVersion());
+                BookRepresentation bookRepresentation = mapEntityToRep(bookEntity);
+                cacheBook(bookRepresentation);
+                booksById.put(bookEntity.getId(), bookRepresentation);
+            }
+        }
+        List<BookRepresentation> books = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            BookRepresentation bookRepresentation = booksById.get(id);
+            if (bookRepresentation != null) {
+                books.add(bookRepresentation);
+            }
+        }
+        return books;
+    }
+
+    private BookRepresentation findStoredBook(int id) {
+        BookRepresentation cachedBookRepresentation = bookCache.find(id);
+        if (cachedBookRepresentation != null) {
+            return cachedBookRepresentation;
+        }
         BookEntity bookEntity = bookRepository.findById(id);
         if (bookEntity != null) {
-            return mapEntityToRep(bookEntity);
+            bookVersions.record(id, bookEntity.getVersion());
+            BookRepresentation bookRepresentation = mapEntityToRep(bookEntity);
+            cacheBook(bookRepresentation);
+            return bookRepresentation;
         } else {
-            throw new NoSuchElementException("No requested book with id=" + id + " in a library.");
+            throw new BookNotFoundException(id);
         }
     }
 
     public List<BookRepresentation> getBooksByGenre(String genre) {
-        try {
-            List<BookEntity> bookEntities = bookRepository.findAllByGenre(GenreEnumRepresentation.of(genre.toLowerCase()).getGenreName());
-            return bookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
-        } catch (Exception e) {
-            throw new NoSuchElementException("No genre " + genre + " in a library.");
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            throw new GenreNotFoundException(genre);
         }
+        List<BookEntity> bookEntities = bookRepository.findAllByGenre(genreEnumRep.getGenreName());
+        return bookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
     }
 
-    public List<BookRepresentation> sortBooksByAuthor() {
-        findAllBooksAndMapToRep();
-
-        return getSortedFunction(bookRepresentations, BookRepresentation::getAuthor).collect(Collectors.toList());
+    /**
+     * Like {@link #getBooksByGenre(String)}, reading and returning only the requested fields.
+     */
+    public List<SparseBookRepresentation> getBooksByGenre(String genre, BookFields fields) {
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            throw new GenreNotFoundException(genre);
+        }
+        List<BookEntity> bookEntities = bookRepository.findAllByGenre(genreEnumRep.getGenreName(), Sort.unsorted(), fields.getProjection());
+        return bookEntities.stream().map(fields::select).collect(Collectors.toList());
     }
 
-    public List<BookRepresentation> sortBooksByTitle() {
-        findAllBooksAndMapToRep();
-
-        return getSortedFunction(bookRepresentations, BookRepresentation::getTitle).collect(Collectors.toList());
+    public BookPageRepresentation sortBooksByAuthor(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.AUTHOR, after, pageSize);
     }
 
-    public List<BookRepresentation> sortBooksByScoreAscending() {
-        findAllBooksAndMapToRep();
+    public BookPageRepresentation sortBooksByTitle(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.TITLE, after, pageSize);
+    }
 
-        return getSortedDoubleFunction(bookRepresentations, BookRepresentation::getScore).collect(Collectors.toList());
+    public BookPageRepresentation sortBooksByScoreAscending(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.SCORE_ASCENDING, after, pageSize);
     }
 
-    public List<BookRepresentation> sortBooksByScoreDescending() {
-        findAllBooksAndMapToRep();
+    public BookPageRepresentation sortBooksByScoreDescending(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.SCORE_DESCENDING, after, pageSize);
+    }
 
-        return getSortedReversedFunction(bookRepresentations, BookRepresentation::getScore).collect(Collectors.toList());
+    /**
+     * A keyset page like the {@code sortBooksBy} methods, reading and returning only the requested fields.
+     */
+    public SparseBookPageRepresentation sortBooks(BookSortOrder sortOrder, String after, int pageSize, BookFields fields) {
+        BookPageQuery pageQuery = BookPageQuery.of(sortOrder, after, pageSize);
+        List<BookEntity> bookEntities = bookRepository.findSortedAfter(sortOrder.getField(), sortOrder.getDirection(),
+                pageQuery.getLastSortKey(), pageQuery.getLastId(), pageQuery.getFetchSize(), fields.getProjection());
+        return pageQuery.toPage(bookEntities, fields);
     }
 
-    public List<BookRepresentation> getMostPopularBook() throws Exception {
-        findAllBooksAndMapToRep();
+    /**
+     * Books matching all given filters as a keyset page in {@code sort} order, with the genre and score
+     * counts of every matching book; null or blank filters are not applied.
+     */
+    public BookSearchRepresentation searchBooks(String genre, String author, String title, Double minScore, Double maxScore,
+                                                String sort, String after, int pageSize) {
+        BookSortOrder sortOrder = BookSortOrder.ofPathName(sort);
+        if (sortOrder == null) {
+            throw new InvalidRequestException("Unknown sort order " + sort + ".");
+        }
+        GenreEnumRepresentation genreEnumRep = null;
+        if (genre != null) {
+            genreEnumRep = GenreEnumRepresentation.of(genre);
+            if (genreEnumRep == null) {
+                throw new GenreNotFoundException(genre);
+            }
+        }
+        if (minScore != null && maxScore != null && minScore > maxScore) {
+            throw new InvalidRequestException("Minimum score cannot be greater than maximum score.");
+        }
+        BookSearchFilter filter = BookSearchFilter.builder()
+                .genre(genreEnumRep == null ? null : genreEnumRep.getGenreName())
+                .author(author == null || author.isBlank() ? null : author)
+                .bookIds(title == null || title.isBlank() ? null : bookTitleIndex.findIdsContaining(title))
+                .minScore(minScore)
+                .maxScore(maxScore)
+                .build();
+        BookPageQuery pageQuery = BookPageQuery.of(sortOrder, after, pageSize);
+        BookSearchResult result = bookRepository.search(filter, sortOrder.getField(), sortOrder.getDirection(),
+                pageQuery.getLastSortKey(), pageQuery.getLastId(), pageQuery.getFetchSize());
+        BookPageRepresentation page = pageQuery.toPage(result.getBooks());
+
+        List<FacetCountRepresentation> genres = new ArrayList<>(result.getGenreCounts().size());
+        result.getGenreCounts().forEach((genreName, count) -> genres.add(new FacetCountRepresentation(genreName, count)));
+        List<FacetCountRepresentation> scores = new ArrayList<>(SCORE_BUCKETS);
+        for (int bucket = 0; bucket < SCORE_BUCKETS; bucket++) {
+            scores.add(new FacetCountRepresentation(bucket + "-" + (bucket + 1), result.getScoreBucketCounts().getOrDefault(bucket, 0L)));
+        }
+        return new BookSearchRepresentation(page.getBooks(), page.getNextCursor(), genres, scores);
+    }
 
-        int mostVoted = findMostVotesNumber(bookRepresentations);
-        if (mostVoted == 0) {
-            throw new Exception("Couldn't get the most popular book. No votes yet.");
+    public List<BookRepresentation> getMostPopularBook() {
+        List<BookEntity> mostVotedBookEntities = bookLeaderboards.findMostVoted();
+        if (!mostVotedBookEntities.isEmpty() && mostVotedBookEntities.get(0).getVotesCount() == 0) {
+            throw new NoRatingsException(NoRatingsException.NO_VOTES);
         } else {
-            List<BookRepresentation> mostVotedBookRepresentations = bookRepresentations.stream().filter(book -> book.getScoreRegistry().size() == mostVoted).collect(Collectors.toList());
-            return mostVotedBookRepresentations;
+            return mostVotedBookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
         }
     }
 
     public List<BookRepresentation> getSortedScoreByGenre(String genre) {
-        List<BookEntity> bookEntities = bookRepository.findAllByGenre(genre);
-        List<BookRepresentation> bookRepresentations = bookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
-
-        return getBookPredicate(bookRepresentations, book -> book.getGenre().getGenreName().equalsIgnoreCase(genre))
-                .sorted(Comparator.comparing(BookRepresentation::getScore).reversed()).collect(Collectors.toList());
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            return Collections.emptyList();
+        }
+        List<BookEntity> bookEntities = bookRepository.findAllByGenreOrderByScoreDescIdAsc(genreEnumRep.getGenreName());
+        return bookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
     }
 
-    public List<BookRepresentation> getHighestRatedBook() throws Exception {
-        findAllBooksAndMapToRep();
+    public List<SparseBookRepresentation> getSortedScoreByGenre(String genre, BookFields fields) {
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            return Collections.emptyList();
+        }
+        List<BookEntity> bookEntities = bookRepository.findAllByGenre(genreEnumRep.getGenreName(),
+                Sort.by(Sort.Order.desc("score"), Sort.Order.asc("_id")), fields.getProjection());
+        return bookEntities.stream().map(fields::select).collect(Collectors.toList());
+    }
 
-        double highestRate = findHighestRate(bookRepresentations);
-        if (highestRate == 0.0) {
-            throw new Exception("Couldn't get the highest rated book. All rate to 0.0");
+    public List<BookRepresentation> getHighestRatedBook() {
+        List<BookEntity> highestRatedBookEntities = bookLeaderboards.findHighestRated();
+        if (!highestRatedBookEntities.isEmpty() && highestRatedBookEntities.get(0).getScore() == 0.0) {
+            throw new NoRatingsException(NoRatingsException.NO_SCORES);
         } else {
-            List<BookRepresentation> highestRatedBookRepresentations = bookRepresentations.stream().filter(book -> book.getScore() == highestRate).collect(Collectors.toList());
-            return highestRatedBookRepresentations;
+            return highestRatedBookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
         }
     }
 
+    /**
+     * With write-behind on, the vote is only buffered and the returned book already counts it.
+     */
     public BookRepresentation checkIdAndRateABook(int bookId, int rate) {
-        BookRepresentation bookRepresentationToRate = getBookById(bookId);
-        calculateAverageScoreAndSetOnBook(bookRepresentationToRate, rate);
-        BookEntity bookEntity = mapRepToEntity(bookRepresentationToRate);
-        bookRepository.save(bookEntity);
-        return bookRepresentationToRate;
-    }
-
-    private boolean isInLibraryBySignature(BookEntity bookEntity) {
-        BookEntity book = bookRepository.findBySignature(bookEntity.getSignature());
-        return book != null;
-    }
-
-    private Stream<BookRepresentation> getBookPredicate(List<BookRepresentation> bookRepresentations, Predicate<BookRepresentation> predicate) {
-        return bookRepresentations.stream().filter(predicate);
+        if (ratingBuffer.isEnabled()) {
+            findStoredBook(bookId);
+            ratingBuffer.add(bookId, rate);
+            return getBookById(bookId);
+        }
+        BookEntity ratedBookEntity = bookRepository.rateBook(bookId, rate);
+        if (ratedBookEntity == null) {
+            throw new BookNotFoundException(bookId);
+        }
+        onBookUpdated(ratedBookEntity);
+        return mapEntityToRep(ratedBookEntity);
     }
 
-    private Stream<BookRepresentation> getSortedFunction(List<BookRepresentation> bookRepresentations, Function<BookRepresentation, String> function) {
-        return bookRepresentations.stream().sorted(Comparator.comparing(function));
+    /**
+     * A failed replacement also drops the cached book, it is older than the stored one and the next read
+     * has to see the stored one.
+     */
+    private boolean replaceIfVersion(BookEntity updatedBookEntity, long expectedVersion) {
+        if (bookRepository.replaceIfVersion(updatedBookEntity, expectedVersion) != null) {
+            return true;
+        }
+        bookCache.invalidate(updatedBookEntity.getId());
+        return false;
     }
 
-    private Stream<BookRepresentation> getSortedDoubleFunction(List<BookRepresentation> bookRepresentations, Function<BookRepresentation, Double> function) {
-        return bookRepresentations.stream().sorted(Comparator.comparing(function));
+    private void onBookUpdated(BookEntity updatedBookEntity) {
+        bookVersions.record(updatedBookEntity.getId(), updatedBookEntity.getVersion());
+        cacheBook(mapEntityToRep(updatedBookEntity));
+        bookLeaderboards.onBookSaved(updatedBookEntity);
+        bookTitleIndex.onBookSaved(updatedBookEntity);
+        bookCatalog.markChanged();
     }
 
-    private Stream<BookRepresentation> getSortedReversedFunction(List<BookRepresentation> bookRepresentations, Function<BookRepresentation, Double> function) {
-        return bookRepresentations.stream().sorted(Comparator.comparing(function).reversed());
+    private void onBooksRemoved(Collection<Integer> bookIds) {
+        bookVersions.removeAll(bookIds);
+        bookCache.invalidateAll(bookIds);
+        bookLeaderboards.onBooksRemoved(bookIds);
+        bookTitleIndex.onBooksRemoved(bookIds);
+        bookCatalog.markChanged();
     }
 
-    private int findMostVotesNumber(List<BookRepresentation> bookRepresentations) {
-        Optional<BookRepresentation> optionalBook = bookRepresentations.stream().max(Comparator.comparing(book -> book.getScoreRegistry().size()));
-        int mostVotes = -1;
-        if (optionalBook.isPresent()) {
-            mostVotes = optionalBook.get().getScoreRegistry().size();
+    private void cacheBook(BookRepresentation bookRepresentation) {
+        bookCache.put(bookRepresentation);
+        if (bookVersions.find(bookRepresentation.getId()) == null) {
+            // removed meanwhile, the removal may have invalidated the cache before this put
+            bookCache.invalidate(bookRepresentation.getId());
         }
-        return mostVotes;
     }
 
-    private double findHighestRate(List<BookRepresentation> bookRepresentations) {
-        Optional<BookRepresentation> optionalBook = bookRepresentations.stream().max(Comparator.comparing(BookRepresentation::getScore));
-        double highestRate = -1;
-        if (optionalBook.isPresent()) {
-            highestRate = optionalBook.get().getScore();
-            return highestRate;
-        }
-        return highestRate;
+    private boolean isInLibraryBySignature(BookEntity bookEntity) {
+        BookEntity book = bookRepository.findBySignature(bookEntity.getSignature());
+        return book != null;
     }
 
-    private void calculateAverageScoreAndSetOnBook(BookRepresentation bookRepresentation, int rate) {
-        bookRepresentation.getScoreRegistry().add(rate);
-        DoubleSummaryStatistics scoreSummary = bookRepresentation.getScoreRegistry().stream().mapToDouble(value -> value).summaryStatistics();
-        double newScore = scoreSummary.getAverage();
-        double newScoreRounded = Math.round(newScore * 100.0) / 100.0;
-        bookRepresentation.setScore(newScoreRounded);
+    private BookPageRepresentation findSortedPage(BookSortOrder sortOrder, String after, int pageSize) {
+        BookPageQuery pageQuery = BookPageQuery.of(sortOrder, after, pageSize);
+        List<BookEntity> bookEntities = bookRepository.findSortedAfter(sortOrder.getField(), sortOrder.getDirection(),
+                pageQuery.getLastSortKey(), pageQuery.getLastId(), pageQuery.getFetchSize());
+        return pageQuery.toPage(bookEntities);
     }
 
     private BookEntity mapRepToEntity(BookRepresentation bookRepresentation) {
@@ -212,10 +478,4 @@ public class LibraryService {
         return BookMapper.INSTANCE.entityToBookRep(bookEntity);
     }
 
-    private List<BookRepresentation> findAllBooksAndMapToRep() {
-        List<BookEntity> bookEntities = bookRepository.findAll();
-        bookRepresentations = bookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
-        return bookRepresentations;
-    }
-
 }
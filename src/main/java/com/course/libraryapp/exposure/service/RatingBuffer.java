@@ -0,0 +1,374 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for ratings, off unless {@code library.rating.write-behind.enabled} is set. Votes are
+ * queued per book in the order they arrive and summed in {@link LongAdder}s, and a background thread writes
+ * all of them with one bulk write every {@code flush-interval}, or as soon as {@code flush-threshold} votes
+ * are waiting. A book's registry lists its votes in arrival order, as if each had been written on its own.
+ * <p>
+ * Reads of a book with waiting votes include them, and a book is never read while its votes are being
+ * written, so a vote shows up exactly once. The buffer is drained when the application stops, and votes
+ * arriving after that are written straight through; votes still waiting when the process dies are lost.
+ */
+@Component
+@Profile("!reactive")
+public class RatingBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RatingBuffer.class);
+
+    private final BookRepository bookRepository;
+    private final boolean enabled;
+    private final long flushThreshold;
+    private final ScheduledExecutorService flusher;
+
+    private final Map<Integer, PendingRatings> pending = new ConcurrentHashMap<>();
+    private final LongAdder bufferedVotes = new LongAdder();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile Consumer<BookEntity> flushListener = bookEntity -> { };
+
+    @Autowired
+    public RatingBuffer(BookRepository bookRepository,
+                        @Value("${library.rating.write-behind.enabled:false}") boolean enabled,
+                        @Value("${library.rating.write-behind.flush-interval:100ms}") Duration flushInterval,
+                        @Value("${library.rating.write-behind.flush-threshold:1000}") long flushThreshold) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+        this.flushThreshold = flushThreshold;
+        if (enabled) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rating-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::scheduledFlush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called with every book right after its votes were written, to keep the caches in sync.
+     */
+    void onFlushed(Consumer<BookEntity> flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    void add(int bookId, int rate) {
+        while (!pending.computeIfAbsent(bookId, PendingRatings::new).add(rate)) {
+            // the entry was retired by the flusher in the meantime, the next one is fresh
+        }
+        bufferedVotes.increment();
+        if (!closed && bufferedVotes.sum() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::scheduledFlush);
+            } catch (RejectedExecutionException e) {
+                // shut down since the check above, closed is set by now and the vote is written through below
+                flushRequested.set(false);
+            }
+        }
+        if (closed) {
+            // the final flush may have missed this vote, nothing would write it later
+            flush(List.of(bookId));
+        }
+    }
+
+    /**
+     * The book as returned by {@code read}, with the votes waiting for it added.
+     */
+    BookRepresentation withPendingRatings(int bookId, Supplier<BookRepresentation> read) {
+        PendingRatings ratings = pending.get(bookId);
+        if (ratings == null) {
+            return read.get();
+        }
+        ratings.flushing.readLock().lock();
+        try {
+            BookRepresentation bookRepresentation = read.get();
+            return ratings.votes.sum() == 0 ? bookRepresentation : withRates(bookRepresentation, ratings);
+        } finally {
+            ratings.flushing.readLock().unlock();
+        }
+    }
+
+    /**
+     * The books as returned by {@code read}, each with the votes waiting for it added. The books are locked
+     * in id order like a flush locks them, so a read of many books never deadlocks with a flush.
+     */
+    List<BookRepresentation> withPendingRatings(Collection<Integer> bookIds, Supplier<List<BookRepresentation>> read) {
+        Map<Integer, PendingRatings> locked = new TreeMap<>();
+        for (int bookId : bookIds) {
+            PendingRatings ratings = pending.get(bookId);
+            if (ratings != null) {
+                locked.put(bookId, ratings);
+            }
+        }
+        if (locked.isEmpty()) {
+            return read.get();
+        }
+        for (PendingRatings ratings : locked.values()) {
+            ratings.flushing.readLock().lock();
+        }
+        try {
+            List<BookRepresentation> bookRepresentations = read.get();
+            List<BookRepresentation> merged = new ArrayList<>(bookRepresentations.size());
+            for (BookRepresentation bookRepresentation : bookRepresentations) {
+                PendingRatings ratings = locked.get(bookRepresentation.getId());
+                merged.add(ratings == null || ratings.votes.sum() == 0 ? bookRepresentation : withRates(bookRepresentation, ratings));
+            }
+            return merged;
+        } finally {
+            for (PendingRatings ratings : locked.values()) {
+                ratings.flushing.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The version as returned by {@code find}, counting the votes waiting for the book; null stays null.
+     */
+    Long withPendingVotes(int bookId, Supplier<Long> find) {
+        PendingRatings ratings = pending.get(bookId);
+        if (ratings == null) {
+            return find.get();
+        }
+        ratings.flushing.readLock().lock();
+        try {
+            Long version = find.get();
+            return version == null ? null : version + ratings.votes.sum();
+        } finally {
+            ratings.flushing.readLock().unlock();
+        }
+    }
+
+    long countPendingVotes(int bookId) {
+        PendingRatings ratings = pending.get(bookId);
+        return ratings == null ? 0 : ratings.votes.sum();
+    }
+
+    /**
+     * Writes the votes waiting for the given books, e.g. before a book is replaced as a whole.
+     */
+    void flush(Collection<Integer> bookIds) {
+        List<PendingRatings> toFlush = new ArrayList<>();
+        for (int bookId : bookIds) {
+            PendingRatings ratings = pending.get(bookId);
+            if (ratings != null) {
+                toFlush.add(ratings);
+            }
+        }
+        if (!toFlush.isEmpty()) {
+            flush(toFlush, flushListener);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        closed = true;
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        // the caches are going away together with the application, only the votes matter now
+        flush(new ArrayList<>(pending.values()), bookEntity -> { });
+    }
+
+    private void scheduledFlush() {
+        flushRequested.set(false);
+        try {
+            flush(new ArrayList<>(pending.values()), flushListener);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Writing buffered ratings failed, they are kept for the next flush.", e);
+        }
+    }
+
+    /**
+     * Readers of the flushed books wait until the written books are handed to the listener, so they never
+     * see a vote both in the stored book and in the buffer. Failed writes go back to the buffer.
+     */
+    private synchronized void flush(List<PendingRatings> toFlush, Consumer<BookEntity> listener) {
+        toFlush.sort(Comparator.comparingInt(PendingRatings::getBookId));
+        for (PendingRatings ratings : toFlush) {
+            ratings.flushing.writeLock().lock();
+        }
+        try {
+            Map<Integer, List<Integer>> ratesByBook = new LinkedHashMap<>();
+            for (PendingRatings ratings : toFlush) {
+                List<Integer> rates = ratings.drain();
+                if (rates.isEmpty()) {
+                    pending.remove(ratings.getBookId(), ratings);
+                } else {
+                    ratesByBook.put(ratings.getBookId(), rates);
+                    bufferedVotes.add(-rates.size());
+                }
+            }
+            if (ratesByBook.isEmpty()) {
+                return;
+            }
+            Set<Integer> failedIds;
+            try {
+                failedIds = bookRepository.addRates(ratesByBook);
+            } catch (RuntimeException e) {
+                restore(toFlush, ratesByBook, ratesByBook.keySet());
+                throw e;
+            }
+            restore(toFlush, ratesByBook, failedIds);
+            List<Integer> writtenIds = new ArrayList<>(ratesByBook.keySet());
+            writtenIds.removeAll(failedIds);
+            if (!writtenIds.isEmpty()) {
+                bookRepository.findAllByIdIn(writtenIds).forEach(listener);
+            }
+        } finally {
+            for (PendingRatings ratings : toFlush) {
+                ratings.flushing.writeLock().unlock();
+            }
+        }
+    }
+
+    private void restore(List<PendingRatings> flushed, Map<Integer, List<Integer>> ratesByBook, Set<Integer> bookIds) {
+        for (PendingRatings ratings : flushed) {
+            List<Integer> rates = ratesByBook.get(ratings.getBookId());
+            if (rates != null && bookIds.contains(ratings.getBookId())) {
+                ratings.restore(rates);
+                bufferedVotes.add(rates.size());
+            }
+        }
+    }
+
+    /**
+     * Adds the waiting votes to the stored totals instead of summing the whole registry again; a vote added
+     * while the book is read may already be counted in the score but not yet listed in the registry.
+     */
+    private static BookRepresentation withRates(BookRepresentation stored, PendingRatings ratings) {
+        long votes = ratings.votes.sum();
+        long sum = stored.getScoreSum() + ratings.sum.sum();
+        int votesCount = stored.getVotesCount() + (int) votes;
+        BookRepresentation merged = new BookRepresentation();
+        merged.setId(stored.getId());
+        merged.setSignature(stored.getSignature());
+        merged.setTitle(stored.getTitle());
+        merged.setAuthor(stored.getAuthor());
+        merged.setDescription(stored.getDescription());
+        merged.setGenre(stored.getGenre());
+        List<Integer> scoreRegistry = new ArrayList<>(votesCount);
+        scoreRegistry.addAll(stored.getScoreRegistry());
+        ratings.appendRates(scoreRegistry);
+        merged.setScoreRegistry(scoreRegistry);
+        merged.setScoreSum(sum);
+        merged.setVotesCount(votesCount);
+        // same rounding as the rating pipeline update
+        merged.setScore(Math.floor((double) sum / votesCount * 100 + 0.5) / 100);
+        merged.setVersion(stored.getVersion() + votes);
+        return merged;
+    }
+
+    /**
+     * Votes waiting for one book, in arrival order and in total. Adding takes the shared side of {@code lock}
+     * only to exclude retirement and the replacement of the queue; the queue and the counters take concurrent
+     * adds themselves.
+     */
+    private static final class PendingRatings {
+
+        private final int bookId;
+        // replaced under the exclusive side of lock, read under the shared side of lock or of flushing
+        private Queue<Integer> rates = new ConcurrentLinkedQueue<>();
+        private final LongAdder votes = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ReadWriteLock flushing = new ReentrantReadWriteLock();
+        private boolean retired;
+
+        PendingRatings(int bookId) {
+            this.bookId = bookId;
+        }
+
+        int getBookId() {
+            return bookId;
+        }
+
+        boolean add(int rate) {
+            lock.readLock().lock();
+            try {
+                if (retired) {
+                    return false;
+                }
+                rates.add(rate);
+                votes.increment();
+                sum.add(rate);
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Takes all waiting votes out; an entry without any is retired, so idle books do not stay in memory.
+         */
+        List<Integer> drain() {
+            lock.writeLock().lock();
+            try {
+                List<Integer> drained = new ArrayList<>(rates);
+                rates = new ConcurrentLinkedQueue<>();
+                votes.reset();
+                sum.reset();
+                retired = drained.isEmpty();
+                return drained;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Puts votes that failed to be written back in front of the ones that arrived meanwhile.
+         */
+        void restore(List<Integer> restored) {
+            lock.writeLock().lock();
+            try {
+                Queue<Integer> merged = new ConcurrentLinkedQueue<>(restored);
+                merged.addAll(rates);
+                rates = merged;
+                for (int rate : restored) {
+                    votes.increment();
+                    sum.add(rate);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void appendRates(List<Integer> registry) {
+            registry.addAll(rates);
+        }
+    }
+}
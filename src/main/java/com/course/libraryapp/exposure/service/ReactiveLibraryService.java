@@ -0,0 +1,287 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.mapper.BookMapper;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRemovalRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.exposure.repository.ReactiveBookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.Validator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking variant of {@link LibraryService} for the {@code reactive} profile, with the same rules and
+ * errors. Books are read from Mongo as they are consumed, title lookups are answered by the in-memory
+ * {@link BookTitleIndex}. Lookups run on the bounded elastic scheduler, as the index may have to be loaded
+ * from the blocking repository and waits for its lock; writes only hold that lock to update a few entries.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveLibraryService {
+
+    private final ReactiveBookRepository reactiveBookRepository;
+    private final Validator validator;
+    private final BookTitleIndex bookTitleIndex;
+    private final int leaderboardSize;
+
+    @Autowired
+    public ReactiveLibraryService(ReactiveBookRepository reactiveBookRepository, Validator validator, BookTitleIndex bookTitleIndex,
+                                  @Value("${library.leaderboard.size:10}") int leaderboardSize) {
+        this.reactiveBookRepository = reactiveBookRepository;
+        this.validator = validator;
+        this.bookTitleIndex = bookTitleIndex;
+        this.leaderboardSize = leaderboardSize;
+    }
+
+    public Mono<BookRepresentation> checkSignatureAndAddBook(BookRepresentation bookRepresentation) {
+        BookEntity bookEntity = mapRepToEntity(bookRepresentation);
+        return reactiveBookRepository.findBySignature(bookEntity.getSignature())
+                .flatMap(existing -> Mono.<BookEntity>error(new DuplicateSignatureException(bookEntity.getSignature())))
+                .switchIfEmpty(Mono.defer(() -> reactiveBookRepository.insertCustomized(bookEntity)
+                        .onErrorMap(DuplicateKeyException.class, e -> new DuplicateSignatureException(bookEntity.getSignature()))))
+                .doOnNext(bookTitleIndex::onBookSaved)
+                .map(this::mapEntityToRep);
+    }
+
+    public Mono<List<BookBulkResultRepresentation>> checkSignaturesAndAddBooks(List<BookRepresentation> booksToAdd) {
+        BookBulkAdd bulkAdd = new BookBulkAdd(booksToAdd, validator);
+        Set<String> signatures = bulkAdd.getSignatures();
+        Mono<Set<String>> existingSignatures = signatures.isEmpty()
+                ? Mono.just(Collections.emptySet())
+                : reactiveBookRepository.findExistingSignatures(signatures);
+        return existingSignatures
+                .map(bulkAdd::selectBooksToInsert)
+                .flatMap(reactiveBookRepository::insertAllCustomized)
+                .map(failures -> bulkAdd.complete(failures, bookTitleIndex::onBookSaved));
+    }
+
+    public Mono<Void> checkIdAndRemoveBook(int bookId) {
+        return reactiveBookRepository.removeById(bookId)
+                .flatMap(removed -> removed ? Mono.<Void>empty() : Mono.error(new BookNotFoundException(bookId)))
+                .doOnSuccess(removed -> bookTitleIndex.onBookRemoved(bookId));
+    }
+
+    public Mono<BookRemovalRepresentation> removeBooksById(List<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return Mono.just(new BookRemovalRepresentation(0));
+        }
+        return reactiveBookRepository.removeAllById(bookIds)
+                .doOnNext(removed -> bookTitleIndex.onBooksRemoved(bookIds))
+                .map(BookRemovalRepresentation::new);
+    }
+
+    public Mono<BookRemovalRepresentation> removeBooksByGenre(String genre) {
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            return Mono.error(new GenreNotFoundException(genre));
+        }
+        return reactiveBookRepository.findIdsByGenre(genreEnumRep.getGenreName())
+                .collectList()
+                .flatMap(this::removeBooksById);
+    }
+
+    public Mono<BookRepresentation> checkIdAndUpdateBook(int bookId, BookRepresentation newBookRepresentation) {
+        newBookRepresentation.setId(bookId);
+        return Mono.defer(() -> findBook(bookId)
+                        .flatMap(current -> {
+                            newBookRepresentation.setVersion(current.getVersion() + 1);
+                            BookEntity updatedBookEntity = mapRepToEntity(newBookRepresentation);
+                            return reactiveBookRepository.replaceIfVersion(updatedBookEntity, current.getVersion())
+                                    .map(replaced -> updatedBookEntity);
+                        }))
+                // the book changed between the read and the replacement, start over from its new version
+                .repeatWhenEmpty(attempts -> attempts.take(LibraryService.MAX_UPDATE_ATTEMPTS - 1))
+                .switchIfEmpty(Mono.defer(() -> findBook(bookId)
+                        .flatMap(current -> Mono.error(new VersionConflictException(bookId, current.getVersion())))))
+                .doOnNext(bookTitleIndex::onBookSaved)
+                .thenReturn(newBookRepresentation);
+    }
+
+    public Mono<BookRepresentation> checkIdAndUpdateBook(int bookId, BookRepresentation newBookRepresentation, long expectedVersion) {
+        newBookRepresentation.setId(bookId);
+        newBookRepresentation.setVersion(expectedVersion + 1);
+        BookEntity updatedBookEntity = mapRepToEntity(newBookRepresentation);
+        return reactiveBookRepository.replaceIfVersion(updatedBookEntity, expectedVersion)
+                .switchIfEmpty(Mono.defer(() -> findBook(bookId)
+                        .flatMap(current -> Mono.error(new VersionConflictException(bookId, current.getVersion())))))
+                .doOnNext(replaced -> bookTitleIndex.onBookSaved(updatedBookEntity))
+                .thenReturn(newBookRepresentation);
+    }
+
+    public Flux<BookRepresentation> getAllBooks() {
+        return reactiveBookRepository.findAllBy().map(this::mapEntityToRep);
+    }
+
+    public Mono<List<BookRepresentation>> getBookByTitle(String title) {
+        return Mono.fromSupplier(() -> bookTitleIndex.findIdsByTitle(title))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(this::findBooks)
+                .flatMap(books -> books.isEmpty()
+                        ? Mono.error(new BookNotFoundException(title))
+                        : Mono.just(books));
+    }
+
+    public Mono<List<BookRepresentation>> suggestBooksByTitle(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return Mono.error(new InvalidRequestException("Title prefix cannot be empty."));
+        }
+        if (limit < 1 || limit > LibraryService.MAX_SUGGESTIONS) {
+            return Mono.error(new InvalidRequestException("Limit must be between 1 and " + LibraryService.MAX_SUGGESTIONS + "."));
+        }
+        return Mono.fromSupplier(() -> bookTitleIndex.suggestIds(prefix, limit))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(this::findBooks);
+    }
+
+    public Mono<BookRepresentation> getBookById(int id) {
+        return findBook(id).map(this::mapEntityToRep);
+    }
+
+    public Flux<BookRepresentation> getBooksByGenre(String genre) {
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            return Flux.error(new GenreNotFoundException(genre));
+        }
+        return reactiveBookRepository.findAllByGenre(genreEnumRep.getGenreName()).map(this::mapEntityToRep);
+    }
+
+    public Mono<BookPageRepresentation> sortBooksByAuthor(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.AUTHOR, after, pageSize);
+    }
+
+    public Mono<BookPageRepresentation> sortBooksByTitle(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.TITLE, after, pageSize);
+    }
+
+    public Mono<BookPageRepresentation> sortBooksByScoreAscending(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.SCORE_ASCENDING, after, pageSize);
+    }
+
+    public Mono<BookPageRepresentation> sortBooksByScoreDescending(String after, int pageSize) {
+        return findSortedPage(BookSortOrder.SCORE_DESCENDING, after, pageSize);
+    }
+
+    public Mono<List<BookRepresentation>> getMostPopularBook() {
+        return findLeaders("votesCount", BookEntity::getVotesCount)
+                .flatMap(leaders -> !leaders.isEmpty() && leaders.get(0).getVotesCount() == 0
+                        ? Mono.error(new NoRatingsException(NoRatingsException.NO_VOTES))
+                        : Mono.just(mapEntitiesToReps(leaders)));
+    }
+
+    public Flux<BookRepresentation> getSortedScoreByGenre(String genre) {
+        GenreEnumRepresentation genreEnumRep = GenreEnumRepresentation.of(genre);
+        if (genreEnumRep == null) {
+            return Flux.empty();
+        }
+        return reactiveBookRepository.findAllByGenreOrderByScoreDescIdAsc(genreEnumRep.getGenreName()).map(this::mapEntityToRep);
+    }
+
+    public Mono<List<BookRepresentation>> getHighestRatedBook() {
+        return findLeaders("score", BookEntity::getScore)
+                .flatMap(leaders -> !leaders.isEmpty() && leaders.get(0).getScore() == 0.0
+                        ? Mono.error(new NoRatingsException(NoRatingsException.NO_SCORES))
+                        : Mono.just(mapEntitiesToReps(leaders)));
+    }
+
+    public Mono<BookRepresentation> checkIdAndRateABook(int bookId, int rate) {
+        return reactiveBookRepository.rateBook(bookId, rate)
+                .switchIfEmpty(Mono.error(() -> new BookNotFoundException(bookId)))
+                .doOnNext(bookTitleIndex::onBookSaved)
+                .map(this::mapEntityToRep);
+    }
+
+    /**
+     * The books with the given ids in that order, read with one query; books removed meanwhile are left out.
+     */
+    private Mono<List<BookRepresentation>> findBooks(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        return reactiveBookRepository.findAllById(ids)
+                .collectMap(BookEntity::getId)
+                .map(booksById -> ids.stream()
+                        .map(booksById::get)
+                        .filter(Objects::nonNull)
+                        .map(this::mapEntityToRep)
+                        .collect(Collectors.toList()));
+    }
+
+    private Mono<BookEntity> findBook(int id) {
+        return reactiveBookRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new BookNotFoundException(id)));
+    }
+
+    /**
+     * Every book sharing the highest value of {@code field}, read like {@link BookLeaderboard#findLeaders()}: one
+     * more book than the leaderboard holds, and all books with the top value only when every one of them ties.
+     * When the top value is 0 nothing has been rated yet, so only the first book is returned.
+     */
+    private Mono<List<BookEntity>> findLeaders(String field, ToDoubleFunction<BookEntity> key) {
+        return reactiveBookRepository.findTopBooks(field, leaderboardSize + 1)
+                .collectList()
+                .flatMap(top -> {
+                    if (top.isEmpty()) {
+                        return Mono.just(top);
+                    }
+                    double value = key.applyAsDouble(top.get(0));
+                    if (value == 0) {
+                        return Mono.just(top.subList(0, 1));
+                    }
+                    int leaders = 1;
+                    while (leaders < top.size() && key.applyAsDouble(top.get(leaders)) == value) {
+                        leaders++;
+                    }
+                    if (leaders == leaderboardSize + 1) {
+                        return reactiveBookRepository.findAllByFieldValue(field, value).collectList();
+                    }
+                    return Mono.just(top.subList(0, leaders));
+                });
+    }
+
+    private Mono<BookPageRepresentation> findSortedPage(BookSortOrder sortOrder, String after, int pageSize) {
+        BookPageQuery pageQuery;
+        try {
+            pageQuery = BookPageQuery.of(sortOrder, after, pageSize);
+        } catch (InvalidRequestException e) {
+            return Mono.error(e);
+        }
+        return reactiveBookRepository.findSortedAfter(sortOrder.getField(), sortOrder.getDirection(),
+                        pageQuery.getLastSortKey(), pageQuery.getLastId(), pageQuery.getFetchSize())
+                .collectList()
+                .map(pageQuery::toPage);
+    }
+
+    private List<BookRepresentation> mapEntitiesToReps(List<BookEntity> bookEntities) {
+        return bookEntities.stream().map(this::mapEntityToRep).collect(Collectors.toList());
+    }
+
+    private BookEntity mapRepToEntity(BookRepresentation bookRepresentation) {
+        return BookMapper.INSTANCE.bookRepToEntity(bookRepresentation);
+    }
+
+    private BookRepresentation mapEntityToRep(BookEntity bookEntity) {
+        return BookMapper.INSTANCE.entityToBookRep(bookEntity);
+    }
+}
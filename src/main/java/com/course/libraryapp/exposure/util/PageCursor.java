@@ -0,0 +1,53 @@
+package com.course.libraryapp.exposure.util;
+
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque search-after token carrying the sort key and id of the last book on a page. A book without a sort
+ * key is marked with {@value #NO_SORT_KEY} in place of the separator, so a null key stays apart from "null".
+ */
+public class PageCursor {
+
+    private static final char SEPARATOR = ':';
+    private static final char NO_SORT_KEY = '!';
+
+    private final int lastId;
+    private final String lastSortKey;
+
+    public PageCursor(int lastId, String lastSortKey) {
+        this.lastId = lastId;
+        this.lastSortKey = lastSortKey;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    /**
+     * The sort key of the last book, null when the book has none.
+     */
+    public String getLastSortKey() {
+        return lastSortKey;
+    }
+
+    public String encode() {
+        String raw = lastSortKey == null ? lastId + "" + NO_SORT_KEY : lastId + "" + SEPARATOR + lastSortKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 && raw.endsWith(String.valueOf(NO_SORT_KEY))) {
+                return new PageCursor(Integer.parseInt(raw.substring(0, raw.length() - 1)), null);
+            }
+            return new PageCursor(Integer.parseInt(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestException("Invalid page cursor " + token + ".");
+        }
+    }
+}
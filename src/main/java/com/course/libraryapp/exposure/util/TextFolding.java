@@ -0,0 +1,31 @@
+package com.course.libraryapp.exposure.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Case- and diacritic-insensitive form of a text used for lookups: "Powieść  Przygodowa" and
+ * "powiesc przygodowa" fold to the same value.
+ */
+public final class TextFolding {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextFolding() {
+    }
+
+    /**
+     * Lower-cases the text, strips diacritics and reduces it to words separated by single spaces.
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        // "ł" has no decomposition, so it survives NFD and needs mapping by hand
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("").replace('ł', 'l');
+        return SEPARATORS.matcher(stripped).replaceAll(" ").trim();
+    }
+}
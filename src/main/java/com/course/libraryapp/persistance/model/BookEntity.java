@@ -1,6 +1,5 @@
 package com.course.libraryapp.persistance.model;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
@@ -13,7 +12,6 @@ import java.util.List;
 @Document(collection = "books")
 @Setter
 @Getter
-@AllArgsConstructor
 public class BookEntity {
 
     @Id
@@ -31,9 +29,36 @@ public class BookEntity {
     private double score;
     @ElementCollection
     private List<Integer> scoreRegistry;
+    private long scoreSum;
+    private int votesCount;
+    private long version;
 
     // public no-arg constructor required
     public BookEntity(){
     }
+
+    public BookEntity(int id, String signature, String title, String author, String description, String genre,
+                      double score, List<Integer> scoreRegistry) {
+        this.id = id;
+        this.signature = signature;
+        this.title = title;
+        this.author = author;
+        this.description = description;
+        this.genre = genre;
+        this.score = score;
+        this.scoreRegistry = scoreRegistry;
+        updateScoreTotals();
+    }
+
+    public void updateScoreTotals() {
+        long sum = 0;
+        if (scoreRegistry != null) {
+            for (int rate : scoreRegistry) {
+                sum += rate;
+            }
+        }
+        this.scoreSum = sum;
+        this.votesCount = scoreRegistry == null ? 0 : scoreRegistry.size();
+    }
 }
 
@@ -0,0 +1,22 @@
+package com.course.libraryapp.persistance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * How far an import got: every row before {@code committedRows} has been written or rejected.
+ */
+@Document(collection = "bookImports")
+@Getter
+@AllArgsConstructor
+public class BookImportCheckpointEntity {
+
+    @Id
+    private String id;
+    private long committedRows;
+    private Instant updatedAt;
+}
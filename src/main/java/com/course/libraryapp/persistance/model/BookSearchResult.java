@@ -0,0 +1,20 @@
+package com.course.libraryapp.persistance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of matching books with the facet counts of all matching books. Genres are counted by name in
+ * descending count order, scores in buckets keyed by their whole lower bound, 4 also holding the 5s.
+ */
+@Getter
+@AllArgsConstructor
+public class BookSearchResult {
+
+    private List<BookEntity> books;
+    private Map<String, Long> genreCounts;
+    private Map<Integer, Long> scoreBucketCounts;
+}
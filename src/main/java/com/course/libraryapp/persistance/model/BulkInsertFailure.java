@@ -0,0 +1,13 @@
+package com.course.libraryapp.persistance.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkInsertFailure {
+
+    private int index;
+    private boolean duplicateKey;
+    private String message;
+}
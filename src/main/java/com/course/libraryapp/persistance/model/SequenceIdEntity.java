@@ -1,9 +1,11 @@
 package com.course.libraryapp.persistance.model;
 
+import lombok.Getter;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "counters")
+@Getter
 public class SequenceIdEntity {
 
     @Id
@@ -11,4 +13,9 @@ public class SequenceIdEntity {
     private int seq;
 
     public SequenceIdEntity(){};
+
+    public SequenceIdEntity(String id, int seq) {
+        this.id = id;
+        this.seq = seq;
+    }
 }
@@ -1,37 +1,82 @@
 package com.course.libraryapp.exposure.controller;
 
+import com.course.libraryapp.BinaryFormatsConfiguration;
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookImportRepresentation;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRemovalRepresentation;
 import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
+import com.course.libraryapp.exposure.model.FacetCountRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookPageRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
+import com.course.libraryapp.exposure.service.BookFields;
+import com.course.libraryapp.exposure.service.BookImportFormat;
+import com.course.libraryapp.exposure.service.BookImporter;
+import com.course.libraryapp.exposure.service.BookSortOrder;
+import com.course.libraryapp.exposure.service.CatalogSnapshot;
 import com.course.libraryapp.exposure.service.LibraryService;
 import com.course.libraryapp.exposure.util.JsonUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(BookController.class)
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
+@Import(BinaryFormatsConfiguration.class)
 class BookControllerTest {
 
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @MockBean
     private LibraryService libraryService;
 
+    @MockBean
+    private BookImporter bookImporter;
+
     private static final List<BookRepresentation> library = Arrays.asList(
             new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy"),
             new BookRepresentation(2, "F02", "Stardust", "Neil Gaiman", "Young man tries to find a star for the woman he loves after they see it fall from the night sky. ", "fantasy"),
@@ -72,14 +117,32 @@ class BookControllerTest {
 
         @Test
         void should_AddListOfBooksToLibrary_When_CorrectListOfBooksGiven() throws Exception {
-            Mockito.when(libraryService.checkSignaturesAndAddBooks(library)).thenReturn(library);
+            List<BookBulkResultRepresentation> results = library.stream().map(book -> BookBulkResultRepresentation.builder()
+                    .index(book.getId() - 1).signature(book.getSignature()).status(BulkItemStatus.CREATED).id(book.getId()).build())
+                    .collect(Collectors.toList());
+            Mockito.when(libraryService.checkSignaturesAndAddBooks(library)).thenReturn(results);
 
             mockMvc.perform(MockMvcRequestBuilders
                             .post("/library/books-by-list")
                             .content(JsonUtil.mapToJson(library))
                             .contentType(MediaType.APPLICATION_JSON))
                     .andExpect(status().isCreated())
-                    .andExpect(jsonPath("$", hasSize(5)));
+                    .andExpect(jsonPath("$", hasSize(5)))
+                    .andExpect(jsonPath("$[0].status", is("CREATED")));
+        }
+
+        @Test
+        void should_ReturnBadRequest_When_NoBookFromListWasAdded() throws Exception {
+            List<BookBulkResultRepresentation> results = Collections.singletonList(BookBulkResultRepresentation.builder()
+                    .index(0).signature("F01").status(BulkItemStatus.DUPLICATE).build());
+            Mockito.when(libraryService.checkSignaturesAndAddBooks(library.subList(0, 1))).thenReturn(results);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .post("/library/books-by-list")
+                            .content(JsonUtil.mapToJson(library.subList(0, 1)))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$[0].status", is("DUPLICATE")));
         }
 
         @Test
@@ -115,6 +178,24 @@ class BookControllerTest {
                             .contentType(MediaType.APPLICATION_JSON))
                     .andExpect(status().isOk());
         }
+
+        @Test
+        void should_ReturnRemovedCount_When_RemovingBooksById() throws Exception {
+            Mockito.when(libraryService.removeBooksById(List.of(1, 2, 3))).thenReturn(new BookRemovalRepresentation(2));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .delete("/library/books?ids=1,2,3"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.removed", is(2)));
+        }
+
+        @Test
+        void should_ReturnBadRequest_When_RemovingBooksWithoutFilter() throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders
+                            .delete("/library/books"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message", is("Exactly one of ids and genre must be given.")));
+        }
     }
 
     @Nested
@@ -122,7 +203,7 @@ class BookControllerTest {
 
         @Test
         void should_ReturnAllBooks_When_LibraryNotEmpty() throws Exception {
-            Mockito.when(libraryService.getAllBooks()).thenReturn(library);
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(1, library, 0));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books")
@@ -132,6 +213,40 @@ class BookControllerTest {
                     .andExpect(jsonPath("$[2].title", is("State of terror")));
         }
 
+        @Test
+        void should_StreamAllBooksAsNdjson_When_NdjsonAccepted() throws Exception {
+            Mockito.when(libraryService.streamAllBooks()).thenReturn(library.stream());
+
+            MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .accept(MediaType.APPLICATION_NDJSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            String[] lines = mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andReturn().getResponse().getContentAsString().split("\n");
+
+            assertAll(
+                    () -> assertEquals(5, lines.length),
+                    () -> assertTrue(lines[0].startsWith("{\"id\":1,")),
+                    () -> assertTrue(lines[2].contains("\"title\":\"State of terror\""))
+            );
+        }
+
+        @Test
+        void should_ReturnJsonArray_When_AnyMediaTypeAccepted() throws Exception {
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(1, library, 0));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .accept(MediaType.ALL))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$", hasSize(5)));
+        }
+
         @Test
         void should_ReturnBook_When_BookIdExists() throws Exception {
             Mockito.when(libraryService.getBookById(1)).thenReturn(library.get(0));
@@ -160,11 +275,29 @@ class BookControllerTest {
                     .andExpect(jsonPath("$[0].description", is("Story about a spice")));
         }
 
+        @Test
+        void should_ReturnSuggestions_When_PrefixMatchesTitles() throws Exception {
+            Mockito.when(libraryService.suggestBooksByTitle("sta", 2)).thenReturn(Arrays.asList(library.get(3), library.get(4)));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/autocomplete")
+                            .queryParam("prefix", "sta")
+                            .queryParam("limit", "2")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(2)));
+        }
+
         @Test
         void should_ReturnBooksByGenre_When_GenreExists() throws Exception {
             String genre = "fantasy";
             List<BookRepresentation> filteredBookRepresentations = library.stream().filter(book -> book.getGenre().getGenreName().equals(genre)).collect(Collectors.toList());
             Mockito.when(libraryService.getBooksByGenre(genre)).thenReturn(filteredBookRepresentations);
+            // other tests of this context record to the same summary, only this request's share is checked
+            DistributionSummary before = meterRegistry.find(ResultSizeMetricsAdvice.RESULT_SIZE_METRIC)
+                    .tag("uri", "/library/books/by-genre").summary();
+            long countBefore = before == null ? 0 : before.count();
+            double totalBefore = before == null ? 0 : before.totalAmount();
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/by-genre")
@@ -175,6 +308,13 @@ class BookControllerTest {
                     .andExpect(jsonPath("$..title", hasItem("LOTR")))
                     .andExpect(jsonPath("$..title", hasItem("Good Omens")))
                     .andExpect(jsonPath("$..title", hasItem("Stardust")));
+
+            DistributionSummary resultSize = meterRegistry.get(ResultSizeMetricsAdvice.RESULT_SIZE_METRIC)
+                    .tag("uri", "/library/books/by-genre").summary();
+            assertAll(
+                    () -> assertEquals(countBefore + 1, resultSize.count()),
+                    () -> assertEquals(totalBefore + 3.0, resultSize.totalAmount())
+            );
         }
 
         @Test
@@ -226,7 +366,7 @@ class BookControllerTest {
         @Test
         void should_SortBooksByAuthor() throws Exception {
             List<BookRepresentation> sortedBookRepresentations = library.stream().sorted(Comparator.comparing(BookRepresentation::getAuthor)).collect(Collectors.toList());
-            Mockito.when(libraryService.sortBooksByAuthor()).thenReturn(sortedBookRepresentations);
+            Mockito.when(libraryService.sortBooksByAuthor(null, 100)).thenReturn(new BookPageRepresentation(sortedBookRepresentations, null));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/sorted-by-author")
@@ -242,7 +382,7 @@ class BookControllerTest {
         @Test
         void should_SortBooksByTitle() throws Exception {
             List<BookRepresentation> sortedBookRepresentations = library.stream().sorted(Comparator.comparing(BookRepresentation::getTitle)).collect(Collectors.toList());
-            Mockito.when(libraryService.sortBooksByTitle()).thenReturn(sortedBookRepresentations);
+            Mockito.when(libraryService.sortBooksByTitle(null, 100)).thenReturn(new BookPageRepresentation(sortedBookRepresentations, null));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/sorted-by-title")
@@ -259,7 +399,7 @@ class BookControllerTest {
         void should_SortBooksByScoreAscending() throws Exception {
             addRatesAndScores();
             List<BookRepresentation> sortedBookRepresentations = library.stream().sorted(Comparator.comparing(BookRepresentation::getScore)).collect(Collectors.toList());
-            Mockito.when(libraryService.sortBooksByScoreAscending()).thenReturn(sortedBookRepresentations);
+            Mockito.when(libraryService.sortBooksByScoreAscending(null, 100)).thenReturn(new BookPageRepresentation(sortedBookRepresentations, null));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/sorted-by-score-ascending")
@@ -276,7 +416,7 @@ class BookControllerTest {
         void should_SortBooksByScoreDescending() throws Exception {
             addRatesAndScores();
             List<BookRepresentation> sortedBookRepresentations = library.stream().sorted(Comparator.comparing(BookRepresentation::getScore).reversed()).collect(Collectors.toList());
-            Mockito.when(libraryService.sortBooksByScoreDescending()).thenReturn(sortedBookRepresentations);
+            Mockito.when(libraryService.sortBooksByScoreDescending(null, 100)).thenReturn(new BookPageRepresentation(sortedBookRepresentations, null));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/sorted-by-score-descending")
@@ -288,15 +428,72 @@ class BookControllerTest {
                     .andExpect(jsonPath("$[3].score", is(2.3)))
                     .andExpect(jsonPath("$[4].score", is(1.0)));
         }
+        @Test
+        void should_ReturnPageWithFacets_When_BooksAreSearched() throws Exception {
+            BookSearchRepresentation search = new BookSearchRepresentation(List.of(library.get(0)), "next",
+                    List.of(new FacetCountRepresentation("fantasy", 1)), List.of(new FacetCountRepresentation("4-5", 1)));
+            Mockito.when(libraryService.searchBooks("fantasy", "J.R.R.Tolkien", null, 4.0, null, "score-descending", null, 100)).thenReturn(search);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/search")
+                            .queryParam("genre", "fantasy")
+                            .queryParam("author", "J.R.R.Tolkien")
+                            .queryParam("minScore", "4"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.books[0].title", is("LOTR")))
+                    .andExpect(jsonPath("$.nextCursor", is("next")))
+                    .andExpect(jsonPath("$.genres[0].value", is("fantasy")))
+                    .andExpect(jsonPath("$.scores[0].count", is(1)));
+        }
+
+        @Test
+        void should_ReturnNextCursorHeader_When_MoreBooksRemain() throws Exception {
+            List<BookRepresentation> firstPage = library.stream().sorted(Comparator.comparing(BookRepresentation::getTitle)).limit(2).collect(Collectors.toList());
+            Mockito.when(libraryService.sortBooksByTitle("cursor", 2)).thenReturn(new BookPageRepresentation(firstPage, "next"));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-title")
+                            .queryParam("after", "cursor")
+                            .queryParam("size", "2")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(BookController.NEXT_CURSOR_HEADER, "next"))
+                    .andExpect(jsonPath("$", hasSize(2)))
+                    .andExpect(jsonPath("$[0].title", is("Diune")));
+        }
     }
 
     @Nested
     class ExceptionTests {
 
+        @Test
+        void should_ReturnBadRequest_When_SuggestionLimitIsTooLarge() throws Exception {
+            Mockito.when(libraryService.suggestBooksByTitle("sta", 500)).thenThrow(new InvalidRequestException("Limit must be between 1 and 50."));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/autocomplete")
+                            .queryParam("prefix", "sta")
+                            .queryParam("limit", "500")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void should_ReturnBadRequest_When_PageCursorIsInvalid() throws Exception {
+            Mockito.when(libraryService.sortBooksByAuthor("broken", 100)).thenThrow(new InvalidRequestException("Invalid page cursor broken."));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-author")
+                            .queryParam("after", "broken")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message", is("Invalid page cursor broken.")));
+        }
+
         @Test
         void should_ThrowExceptionOnAddingDuplicateBookToLibrary_When_BookAlreadyExists() throws Exception {
             BookRepresentation bookRepresentationToAdd = library.get(4);
-            Mockito.when(libraryService.checkSignatureAndAddBook(bookRepresentationToAdd)).thenThrow(new Exception());
+            Mockito.when(libraryService.checkSignatureAndAddBook(bookRepresentationToAdd)).thenThrow(new DuplicateSignatureException(bookRepresentationToAdd.getSignature()));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .post("/library/books")
@@ -307,7 +504,7 @@ class BookControllerTest {
 
         @Test
         void should_ThrowExceptionOnRemoving_When_BookIdDoesNotExist() throws Exception {
-            Mockito.when(libraryService.checkIdAndRemoveBook(1)).thenThrow(new NoSuchElementException());
+            Mockito.doThrow(new BookNotFoundException(1)).when(libraryService).checkIdAndRemoveBook(1);
 
             mockMvc.perform(MockMvcRequestBuilders
                             .delete("/library/books/1")
@@ -317,7 +514,7 @@ class BookControllerTest {
 
         @Test
         void should_ThrowExceptionOnRating_When_BookIdDoesNotExist() throws Exception {
-            Mockito.when(libraryService.checkIdAndRateABook(1, 2)).thenThrow(new NoSuchElementException());
+            Mockito.when(libraryService.checkIdAndRateABook(1, 2)).thenThrow(new BookNotFoundException(1));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .put("/library/books/1/rate?rate=2")
@@ -328,7 +525,7 @@ class BookControllerTest {
         @Test
         void should_ThrowExceptionOnUpdating_When_BookIdDoesNotExist() throws Exception {
             BookRepresentation updatedBookRepresentation = new BookRepresentation(1, "F01", "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
-            Mockito.when(libraryService.checkIdAndUpdateBook(10, updatedBookRepresentation)).thenThrow(new NoSuchElementException());
+            Mockito.when(libraryService.checkIdAndUpdateBook(10, updatedBookRepresentation)).thenThrow(new BookNotFoundException(10));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .put("/library/books/10")
@@ -339,7 +536,7 @@ class BookControllerTest {
 
         @Test
         void should_ThrowExceptionOnHighestRatedBook_When_NoneIsRated() throws Exception {
-            Mockito.when(libraryService.getHighestRatedBook()).thenThrow(new Exception("Couldn't get the highest rated book. All rate to 0.0"));
+            Mockito.when(libraryService.getHighestRatedBook()).thenThrow(new NoRatingsException(NoRatingsException.NO_SCORES));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/highest-rated")
@@ -350,7 +547,7 @@ class BookControllerTest {
 
         @Test
         void should_ThrowExceptionMostPopularBook_When_ThereIsAny() throws Exception {
-            Mockito.when(libraryService.getMostPopularBook()).thenThrow(new Exception("Couldn't get the most popular book. No votes yet."));
+            Mockito.when(libraryService.getMostPopularBook()).thenThrow(new NoRatingsException(NoRatingsException.NO_VOTES));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/most-popular")
@@ -362,7 +559,7 @@ class BookControllerTest {
         @Test
         void should_ThrowExceptionOnGettingBooksByGenre_When_GenreDoesNotExist() throws Exception {
             String genre = "fantasyyy";
-            Mockito.when(libraryService.getBooksByGenre(genre)).thenThrow(new NoSuchElementException("No genre fantasyyy in a library."));
+            Mockito.when(libraryService.getBooksByGenre(genre)).thenThrow(new GenreNotFoundException(genre));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/by-genre")
@@ -375,7 +572,7 @@ class BookControllerTest {
         @Test
         void should_ThrowExceptionOnGettingByTitle_When_TitleDoesNotExist() throws Exception {
             String title = "Diune";
-            Mockito.when(libraryService.getBookByTitle(title)).thenThrow(new NoSuchElementException());
+            Mockito.when(libraryService.getBookByTitle(title)).thenThrow(new BookNotFoundException(title));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/by-title")
@@ -386,17 +583,19 @@ class BookControllerTest {
 
         @Test
         void should_ThrowExceptionOnGettingBook_When_BookIdDoesNotExist() throws Exception {
-            Mockito.when(libraryService.getBookById(1)).thenThrow(new NoSuchElementException());
+            Mockito.when(libraryService.getBookById(1)).thenThrow(new BookNotFoundException(1));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .get("/library/books/1")
                             .contentType(MediaType.APPLICATION_JSON))
-                    .andExpect(status().isNotFound());
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.message", is("No requested book with id=1 in a library.")))
+                    .andExpect(jsonPath("$.stackTrace").doesNotExist());
         }
 
         @Test
         void should_ThrowExceptionOnAddingBook_When_BookFromListAlreadyExists() throws Exception {
-            Mockito.when(libraryService.checkSignaturesAndAddBooks(library)).thenThrow(new Exception());
+            Mockito.when(libraryService.checkSignaturesAndAddBooks(library)).thenThrow(new DuplicateSignatureException("F01"));
 
             mockMvc.perform(MockMvcRequestBuilders
                             .post("/library/books-by-list")
@@ -405,4 +604,423 @@ class BookControllerTest {
                     .andExpect(status().is4xxClientError());
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class ConditionalRequestTests {
+
+        @Test
+        void should_ReturnNotModified_When_BookVersionMatches() throws Exception {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            book.setVersion(3);
+            Mockito.when(libraryService.getBookById(1)).thenReturn(book);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/1")
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"1.3\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1.3\""))
+                    .andExpect(content().string(""));
+        }
+
+        @Test
+        void should_ReturnNotModifiedWithoutReading_When_KnownVersionMatches() throws Exception {
+            Mockito.when(libraryService.findBookVersion(1)).thenReturn(3L);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/1")
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"1.3\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1.3\""));
+
+            Mockito.verify(libraryService, Mockito.never()).getBookById(1);
+        }
+
+        @Test
+        void should_ReturnBookWithETag_When_BookVersionChanged() throws Exception {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            book.setVersion(4);
+            Mockito.when(libraryService.getBookById(1)).thenReturn(book);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/1")
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"1.3\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1.4\""))
+                    .andExpect(jsonPath("$.title", is("LOTR")))
+                    .andExpect(jsonPath("$.version").doesNotExist());
+        }
+
+        @Test
+        void should_ReturnNotModified_When_CatalogUnchanged() throws Exception {
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(7, library, 0));
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .header(HttpHeaders.IF_NONE_MATCH, "W/" + etag))
+                    .andExpect(status().isNotModified());
+        }
+
+        @Test
+        void should_UpdateFromExpectedVersion_When_IfMatchGiven() throws Exception {
+            BookRepresentation updatedBookRepresentation = new BookRepresentation(1, "F01", "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            Mockito.when(libraryService.checkIdAndUpdateBook(Mockito.eq(1), Mockito.any(BookRepresentation.class), Mockito.eq(3L)))
+                    .thenAnswer(invocation -> {
+                        BookRepresentation book = invocation.getArgument(1);
+                        book.setVersion(4);
+                        return book;
+                    });
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .put("/library/books/1")
+                            .header(HttpHeaders.IF_MATCH, "\"1.3\"")
+                            .content(JsonUtil.mapToJson(updatedBookRepresentation))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1.4\""));
+        }
+
+        @Test
+        void should_ReturnConflict_When_IfMatchIsOutdated() throws Exception {
+            BookRepresentation updatedBookRepresentation = new BookRepresentation(1, "F01", "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            Mockito.when(libraryService.checkIdAndUpdateBook(Mockito.eq(1), Mockito.any(BookRepresentation.class), Mockito.eq(2L)))
+                    .thenThrow(new VersionConflictException(1, 3));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .put("/library/books/1")
+                            .header(HttpHeaders.IF_MATCH, "\"1.2\"")
+                            .content(JsonUtil.mapToJson(updatedBookRepresentation))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.message", is("Book with id=1 was modified by another request, its current version is 3.")));
+        }
+
+        @Test
+        void should_NeverMatch_When_IfMatchNamesAnotherBook() throws Exception {
+            BookRepresentation updatedBookRepresentation = new BookRepresentation(1, "F01", "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            Mockito.when(libraryService.checkIdAndUpdateBook(Mockito.eq(1), Mockito.any(BookRepresentation.class), Mockito.eq(-1L)))
+                    .thenThrow(new VersionConflictException(1, 3));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .put("/library/books/1")
+                            .header(HttpHeaders.IF_MATCH, "\"2.3\"")
+                            .content(JsonUtil.mapToJson(updatedBookRepresentation))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isConflict());
+        }
+
+        @Test
+        void should_ReturnNotModified_When_SortedPageUnchanged() throws Exception {
+            Mockito.when(libraryService.sortBooksByTitle(null, 100)).thenReturn(new BookPageRepresentation(library, null));
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books/sorted-by-title"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-title")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+        }
+
+        @Test
+        void should_ReturnNewList_When_BookChangedElsewhere() throws Exception {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            BookRepresentation rated = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            rated.setScore(4.0);
+            rated.setScoreRegistry(List.of(4));
+            rated.setVersion(1);
+            Mockito.when(libraryService.getSortedScoreByGenre("fantasy")).thenReturn(List.of(book)).thenReturn(List.of(rated));
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books/sorted-by-score/fantasy"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-score/fantasy")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+        }
+
+        @Test
+        void should_ReturnNewSearch_When_OnlyFacetCountsChanged() throws Exception {
+            BookSearchRepresentation search = new BookSearchRepresentation(List.of(library.get(0)), null,
+                    List.of(new FacetCountRepresentation("fantasy", 1)), List.of(new FacetCountRepresentation("4-5", 1)));
+            BookSearchRepresentation grown = new BookSearchRepresentation(List.of(library.get(0)), null,
+                    List.of(new FacetCountRepresentation("fantasy", 2)), List.of(new FacetCountRepresentation("4-5", 2)));
+            Mockito.when(libraryService.searchBooks("fantasy", null, null, null, null, "score-descending", null, 100)).thenReturn(search, grown);
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books/search").queryParam("genre", "fantasy"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/search")
+                            .queryParam("genre", "fantasy")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+        }
+
+        @Test
+        void should_ReturnNotModifiedWithoutQuerying_When_CollectionUnchanged() throws Exception {
+            Mockito.when(libraryService.findCollectionTag()).thenReturn("c1");
+            Mockito.when(libraryService.getBooksByGenre("fantasy")).thenReturn(library);
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books/by-genre").queryParam("genre", "fantasy"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/by-genre")
+                            .queryParam("genre", "fantasy")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag));
+            Mockito.verify(libraryService, Mockito.times(1)).getBooksByGenre("fantasy");
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/by-genre")
+                            .queryParam("genre", "fantasy")
+                            .queryParam("fields", "summary")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+        }
+
+        @Test
+        void should_ReturnNewPage_When_CollectionTagChanged() throws Exception {
+            Mockito.when(libraryService.findCollectionTag()).thenReturn("c1", "c2");
+            Mockito.when(libraryService.sortBooksByTitle(null, 100)).thenReturn(new BookPageRepresentation(library, null));
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books/sorted-by-title"))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-title")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+            Mockito.verify(libraryService, Mockito.times(2)).sortBooksByTitle(null, 100);
+        }
+
+        @Test
+        void should_TagCatalogByContent_When_SnapshotsHoldSameBooks() throws Exception {
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(7, library, 0), new CatalogSnapshot(2, library, 5));
+
+            String etag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books"))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+        }
+    }
+
+    @Nested
+    class FieldSelectionTests {
+
+        @Test
+        void should_ReturnOnlySummaryFields_When_SummaryViewRequested() throws Exception {
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(1, library, 0));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .queryParam("fields", "summary"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(5)))
+                    .andExpect(jsonPath("$[0].title", is("LOTR")))
+                    .andExpect(jsonPath("$[0].genre", is("fantasy")))
+                    .andExpect(jsonPath("$[0].description").doesNotExist())
+                    .andExpect(jsonPath("$[0].scoreRegistry").doesNotExist());
+        }
+
+        @Test
+        void should_QueryRequestedFields_When_FieldsGivenForSortedList() throws Exception {
+            SparseBookRepresentation book = new SparseBookRepresentation(4, 0);
+            book.put("id", 4);
+            book.put("title", "Diune");
+            Mockito.when(libraryService.sortBooks(BookSortOrder.TITLE, null, 100, BookFields.parse("title,id")))
+                    .thenReturn(new SparseBookPageRepresentation(List.of(book), "next"));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-title")
+                            .queryParam("fields", "title,id"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(BookController.NEXT_CURSOR_HEADER, "next"))
+                    .andExpect(jsonPath("$[0].title", is("Diune")))
+                    .andExpect(jsonPath("$[0].author").doesNotExist());
+
+            Mockito.verify(libraryService, Mockito.never()).sortBooksByTitle(Mockito.any(), Mockito.anyInt());
+        }
+
+        @Test
+        void should_QueryRequestedFields_When_FieldsGivenForGenre() throws Exception {
+            Mockito.when(libraryService.getSortedScoreByGenre("fantasy", BookFields.SUMMARY)).thenReturn(List.of(BookFields.SUMMARY.select(library.get(0))));
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-score/fantasy")
+                            .queryParam("fields", "summary"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].title", is("LOTR")));
+
+            Mockito.verify(libraryService, Mockito.never()).getSortedScoreByGenre("fantasy");
+        }
+
+        @Test
+        void should_ReturnRequestedFieldsWithOwnTag_When_FieldsGivenForBook() throws Exception {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            book.setVersion(3);
+            Mockito.when(libraryService.getBookById(1)).thenReturn(book);
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/1")
+                            .queryParam("fields", "title,author")
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"1.3\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1.3-title+author\""))
+                    .andExpect(jsonPath("$.title", is("LOTR")))
+                    .andExpect(jsonPath("$.description").doesNotExist());
+        }
+
+        @Test
+        void should_ReturnBadRequest_When_FieldIsUnknown() throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/by-genre")
+                            .queryParam("genre", "fantasy")
+                            .queryParam("fields", "title,isbn"))
+                    .andExpect(status().isBadRequest());
+
+            Mockito.verifyNoInteractions(libraryService);
+        }
+    }
+
+    @Nested
+    class BinaryFormatTests {
+
+        private final CBORMapper cborMapper = new CBORMapper();
+        private final SmileMapper smileMapper = new SmileMapper();
+
+        @Test
+        void should_WriteCbor_When_CborAccepted() throws Exception {
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(1, library, 0));
+
+            byte[] body = mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .accept(MediaType.APPLICATION_CBOR))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            List<BookRepresentation> books = cborMapper.readValue(body, new TypeReference<>() { });
+            assertEquals(library, books);
+        }
+
+        @Test
+        void should_WriteSmile_When_SmileAccepted() throws Exception {
+            Mockito.when(libraryService.sortBooksByTitle(null, 100)).thenReturn(new BookPageRepresentation(library, "next"));
+
+            byte[] body = mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books/sorted-by-title")
+                            .accept(new MediaType("application", "x-jackson-smile")))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(BookController.NEXT_CURSOR_HEADER, "next"))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            List<BookRepresentation> books = smileMapper.readValue(body, new TypeReference<>() { });
+            assertEquals(library, books);
+        }
+
+        @Test
+        void should_TagEachFormatApart_When_SameCatalogIsServed() throws Exception {
+            Mockito.when(libraryService.getCatalogSnapshot()).thenReturn(new CatalogSnapshot(1, library, 0));
+
+            String jsonTag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books").accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            String cborTag = mockMvc.perform(MockMvcRequestBuilders.get("/library/books").accept(MediaType.APPLICATION_CBOR))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            assertEquals(EntityTags.inFormat(jsonTag, "cbor"), cborTag);
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header(HttpHeaders.IF_NONE_MATCH, cborTag))
+                    .andExpect(status().isOk());
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/library/books")
+                            .accept(MediaType.APPLICATION_CBOR)
+                            .header(HttpHeaders.IF_NONE_MATCH, cborTag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, cborTag));
+        }
+
+        @Test
+        void should_UpdateFromExpectedVersion_When_IfMatchNamesSmileTag() throws Exception {
+            BookRepresentation updatedBookRepresentation = new BookRepresentation(1, "F01", "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            Mockito.when(libraryService.checkIdAndUpdateBook(Mockito.eq(1), Mockito.any(BookRepresentation.class), Mockito.eq(3L)))
+                    .thenAnswer(invocation -> {
+                        BookRepresentation book = invocation.getArgument(1);
+                        book.setVersion(4);
+                        return book;
+                    });
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .put("/library/books/1")
+                            .header(HttpHeaders.IF_MATCH, "\"1.3-smile\"")
+                            .content(JsonUtil.mapToJson(updatedBookRepresentation))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(new MediaType("application", "x-jackson-smile")))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1.4-smile\""));
+        }
+
+        @Test
+        void should_ValidateCborBook_When_BookIsAdded() throws Exception {
+            BookRepresentation bookRepresentationToAdd = new BookRepresentation(6, "F06", "", "Neil Gaiman", "Norse myths", "fantasy");
+
+            mockMvc.perform(MockMvcRequestBuilders
+                            .post("/library/books")
+                            .content(cborMapper.writeValueAsBytes(bookRepresentationToAdd))
+                            .contentType(MediaType.APPLICATION_CBOR))
+                    .andExpect(status().isBadRequest());
+
+            Mockito.verifyNoInteractions(libraryService);
+        }
+    }
+
+    @Nested
+    class ImportTests {
+
+        @Test
+        public void should_StreamCsvToImporter_When_CsvIsPosted() throws Exception {
+            String csv = "signature,title,author,description,genre\nF01,LOTR,J.R.R.Tolkien,A hobbit,fantasy\n";
+            Mockito.when(bookImporter.importBooks(Mockito.any(), Mockito.eq(BookImportFormat.CSV), Mockito.eq("catalog-2021")))
+                    .thenReturn(BookImportRepresentation.builder().importId("catalog-2021").rows(1).created(1)
+                            .rejections(Collections.emptyList()).build());
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/library/books/import")
+                            .param("importId", "catalog-2021")
+                            .contentType("text/csv")
+                            .content(csv))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.importId").value("catalog-2021"))
+                    .andExpect(jsonPath("$.created").value(1));
+        }
+
+        @Test
+        public void should_ReturnUnsupportedMediaType_When_BodyIsJsonArray() throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders.post("/library/books/import")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[]"))
+                    .andExpect(status().isUnsupportedMediaType());
+        }
+    }
+}
@@ -1,28 +1,34 @@
 package com.course.libraryapp.exposure.controller;
 
 import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.service.BookImporter;
 import com.course.libraryapp.exposure.service.LibraryService;
 import com.course.libraryapp.exposure.util.JsonUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
-
-import java.net.BindException;
+import org.springframework.web.util.NestedServletException;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(BookController.class)
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
 class ErrorControllerTest {
 
     @Autowired
@@ -31,12 +37,11 @@ class ErrorControllerTest {
     @MockBean
     private LibraryService libraryService;
 
+    @MockBean
+    private BookImporter bookImporter;
+
     @Test
     void should_ThrowValidationError_When_SignatureMissing() throws Exception {
-        Mockito.when(libraryService.checkSignatureAndAddBook
-                        (new BookRepresentation(1, "","LOTR", "Tolkien", "Desc", "fantasy")))
-                .thenThrow(new BindException());
-
         mockMvc.perform(MockMvcRequestBuilders
                         .post("/library/books")
                         .content(JsonUtil.mapToJson(
@@ -47,4 +52,14 @@ class ErrorControllerTest {
                 .andExpect(jsonPath("$.error", is("Bad Request")));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_NotAnswerBadRequest_When_UnexpectedIllegalArgumentIsThrown() {
+        Mockito.when(libraryService.getBookById(1)).thenThrow(new IllegalArgumentException("Unexpected"));
+
+        NestedServletException exception = assertThrows(NestedServletException.class, () ->
+                mockMvc.perform(MockMvcRequestBuilders.get("/library/books/1")));
+
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+    }
+}
@@ -0,0 +1,22 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.service.GenreService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class GenreCacheEndpointTest {
+
+    @Mock
+    GenreService genreService;
+
+    @Test
+    void should_InvalidateGenreCache() {
+        new GenreCacheEndpoint(genreService).invalidate();
+
+        Mockito.verify(genreService).invalidate();
+    }
+}
@@ -0,0 +1,214 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.service.ReactiveLibraryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+
+@WebFluxTest(ReactiveBookController.class)
+@ActiveProfiles("reactive")
+class ReactiveBookControllerTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @MockBean
+    private ReactiveLibraryService reactiveLibraryService;
+
+    private static final List<BookRepresentation> library = Arrays.asList(
+            new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy"),
+            new BookRepresentation(2, "F02", "Stardust", "Neil Gaiman", "Young man tries to find a star for the woman he loves after they see it fall from the night sky. ", "fantasy"),
+            new BookRepresentation(3, "T01", "State of terror", "Hillary Rodham Clinton", "A series of terrorist attacks throws the global order into disarray", "thriller/horror")
+    );
+
+    @Nested
+    class ReadTests {
+
+        @Test
+        void should_ReturnSameJsonAsList_When_BooksAreStreamed() throws Exception {
+            Mockito.when(reactiveLibraryService.getAllBooks()).thenReturn(Flux.fromIterable(library));
+
+            webTestClient.get().uri("/library/books")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                    .expectBody(String.class).isEqualTo(objectMapper.writeValueAsString(library));
+        }
+
+        @Test
+        void should_ReturnEmptyArray_When_LibraryIsEmpty() {
+            Mockito.when(reactiveLibraryService.getAllBooks()).thenReturn(Flux.empty());
+
+            webTestClient.get().uri("/library/books")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).isEqualTo("[]");
+        }
+
+        @Test
+        void should_StreamBooksAsNdjson_When_NdjsonAccepted() throws Exception {
+            Mockito.when(reactiveLibraryService.getAllBooks()).thenReturn(Flux.fromIterable(library));
+
+            String expected = objectMapper.writeValueAsString(library.get(0)) + "\n"
+                    + objectMapper.writeValueAsString(library.get(1)) + "\n"
+                    + objectMapper.writeValueAsString(library.get(2)) + "\n";
+            webTestClient.get().uri("/library/books")
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).isEqualTo(expected);
+        }
+
+        @Test
+        void should_ReturnNextCursorHeader_When_MoreBooksRemain() {
+            Mockito.when(reactiveLibraryService.sortBooksByTitle(null, 2))
+                    .thenReturn(Mono.just(new BookPageRepresentation(library.subList(0, 2), "next")));
+
+            webTestClient.get().uri("/library/books/sorted-by-title?size=2")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(BookController.NEXT_CURSOR_HEADER, "next")
+                    .expectBody()
+                    .jsonPath("$.length()").isEqualTo(2)
+                    .jsonPath("$[0].title").isEqualTo("LOTR");
+        }
+    }
+
+    @Nested
+    class ConditionalRequestTests {
+
+        @Test
+        void should_ReturnNotModified_When_BookVersionMatches() {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            book.setVersion(3);
+            Mockito.when(reactiveLibraryService.getBookById(1)).thenReturn(Mono.just(book));
+
+            webTestClient.get().uri("/library/books/1")
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"1.3\"")
+                    .exchange()
+                    .expectStatus().isNotModified()
+                    .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1.3\"")
+                    .expectBody().isEmpty();
+        }
+
+        @Test
+        void should_ReturnRequestedFieldsWithOwnTag_When_FieldsGivenForBook() {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            book.setVersion(3);
+            Mockito.when(reactiveLibraryService.getBookById(1)).thenReturn(Mono.just(book));
+
+            webTestClient.get().uri("/library/books/1?fields=title,author")
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"1.3\"")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1.3-title+author\"")
+                    .expectBody()
+                    .jsonPath("$.title").isEqualTo("LOTR")
+                    .jsonPath("$.description").doesNotExist();
+        }
+
+        @Test
+        void should_ReturnETag_When_BookIsRated() {
+            BookRepresentation book = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+            book.setVersion(4);
+            Mockito.when(reactiveLibraryService.checkIdAndRateABook(1, 2)).thenReturn(Mono.just(book));
+
+            webTestClient.put().uri("/library/books/1/rate?rate=2")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1.4\"");
+        }
+
+        @Test
+        void should_ReturnOnlySummaryFields_When_StreamedListTrimmed() {
+            Mockito.when(reactiveLibraryService.getBooksByGenre("fantasy")).thenReturn(Flux.fromIterable(library.subList(0, 2)));
+
+            webTestClient.get().uri("/library/books/by-genre?genre=fantasy&fields=summary")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.length()").isEqualTo(2)
+                    .jsonPath("$[1].title").isEqualTo("Stardust")
+                    .jsonPath("$[1].description").doesNotExist();
+        }
+    }
+
+    @Nested
+    class ExceptionTests {
+
+        @Test
+        void should_ReturnNotFound_When_BookIdDoesNotExist() {
+            Mockito.when(reactiveLibraryService.getBookById(9)).thenReturn(Mono.error(new BookNotFoundException(9)));
+
+            webTestClient.get().uri("/library/books/9")
+                    .exchange()
+                    .expectStatus().isNotFound()
+                    .expectBody()
+                    .jsonPath("$.message").value(is("No requested book with id=9 in a library."))
+                    .jsonPath("$.stackTrace").doesNotExist();
+        }
+
+        @Test
+        void should_ReturnNotFound_When_StreamedGenreDoesNotExist() {
+            Mockito.when(reactiveLibraryService.getBooksByGenre("fantasyyy"))
+                    .thenReturn(Flux.error(new GenreNotFoundException("fantasyyy")));
+
+            webTestClient.get().uri("/library/books/by-genre?genre=fantasyyy")
+                    .exchange()
+                    .expectStatus().isNotFound()
+                    .expectBody()
+                    .jsonPath("$.message").value(is("No genre fantasyyy in a library."));
+        }
+
+        @Test
+        void should_ReturnConflict_When_IfMatchIsOutdated() {
+            Mockito.when(reactiveLibraryService.checkIdAndUpdateBook(Mockito.eq(1), Mockito.any(BookRepresentation.class), Mockito.eq(2L)))
+                    .thenReturn(Mono.error(new VersionConflictException(1, 3)));
+
+            webTestClient.put().uri("/library/books/1")
+                    .header(HttpHeaders.IF_MATCH, "\"1.2\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(library.get(0))
+                    .exchange()
+                    .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                    .expectBody()
+                    .jsonPath("$.message").value(is("Book with id=1 was modified by another request, its current version is 3."));
+        }
+
+        @Test
+        void should_ReturnBadRequest_When_SignatureMissing() {
+            webTestClient.post().uri("/library/books")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new BookRepresentation(1, "", "LOTR", "Tolkien", "Desc", "fantasy"))
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody()
+                    .jsonPath("$.message").value(is("Signature cannot be empty"))
+                    .jsonPath("$.error").value(is("Bad Request"));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.course.libraryapp.exposure.controller;
+
+import com.course.libraryapp.exposure.model.BookSnapshotRepresentation;
+import com.course.libraryapp.exposure.service.BookSnapshots;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotEndpointTest {
+
+    @Mock
+    BookSnapshots bookSnapshots;
+
+    @Test
+    void should_ReturnExportSummary_When_SnapshotIsExported() throws Exception {
+        Mockito.when(bookSnapshots.export()).thenReturn(BookSnapshotRepresentation.builder()
+                .path("/var/lib/library/books.snapshot").books(5).bytes(812).createdAt(Instant.EPOCH).elapsedMillis(3).build());
+
+        BookSnapshotRepresentation snapshot = new SnapshotEndpoint(bookSnapshots).export();
+
+        assertAll(
+                () -> assertEquals(5, snapshot.getBooks()),
+                () -> assertEquals(812, snapshot.getBytes())
+        );
+    }
+
+    @Test
+    void should_FailExport_When_FileCannotBeWritten() throws Exception {
+        Mockito.when(bookSnapshots.export()).thenThrow(new IOException("disk full"));
+
+        assertThrows(UncheckedIOException.class, () -> new SnapshotEndpoint(bookSnapshots).export());
+    }
+}
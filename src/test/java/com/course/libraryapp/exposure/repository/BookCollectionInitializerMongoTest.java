@@ -0,0 +1,80 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the start-up migrations against a real mongod, see {@link EmbeddedMongo}.
+ */
+class BookCollectionInitializerMongoTest {
+
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        mongoTemplate = EmbeddedMongo.template("books-initializer-test");
+        mongoTemplate.indexOps(BookEntity.class).ensureIndex(new Index().on("signature", Sort.Direction.ASC).named("signature"));
+    }
+
+    @Test
+    public void should_KeepBooksAndPlainIndex_When_SignaturesRepeatWithoutSwitch() {
+        mongoTemplate.insert(book(1, "F01"));
+        mongoTemplate.insert(book(2, "F01"));
+
+        new BookCollectionInitializer(mongoTemplate, false).initialize();
+
+        assertAll(
+                () -> assertEquals(2, mongoTemplate.count(new Query(), BookEntity.class)),
+                () -> assertFalse(signatureIndex().isUnique())
+        );
+    }
+
+    @Test
+    public void should_RefuseToStart_When_SignaturesRepeatWithSwitch() {
+        mongoTemplate.insert(book(1, "F01"));
+        mongoTemplate.insert(book(2, "F01"));
+        BookCollectionInitializer initializer = new BookCollectionInitializer(mongoTemplate, true);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, initializer::initialize);
+
+        assertAll(
+                () -> assertTrue(exception.getMessage().contains("[F01]")),
+                () -> assertEquals(2, mongoTemplate.count(new Query(), BookEntity.class)),
+                () -> assertFalse(signatureIndex().isUnique())
+        );
+    }
+
+    @Test
+    public void should_IndexSignatureAsUnique_When_SwitchIsSetAndSignaturesDiffer() {
+        mongoTemplate.insert(book(1, "F01"));
+        mongoTemplate.insert(book(2, null));
+        mongoTemplate.insert(book(3, null));
+
+        new BookCollectionInitializer(mongoTemplate, true).initialize();
+
+        assertAll(
+                () -> assertTrue(signatureIndex().isUnique()),
+                () -> assertThrows(DuplicateKeyException.class, () -> mongoTemplate.insert(book(4, "F01")))
+        );
+    }
+
+    private IndexInfo signatureIndex() {
+        return mongoTemplate.indexOps(BookEntity.class).getIndexInfo().stream()
+                .filter(indexInfo -> indexInfo.getName().equals("signature")).findFirst().orElseThrow();
+    }
+
+    private static BookEntity book(int id, String signature) {
+        return new BookEntity(id, signature, "Title " + id, "Author " + id, "description", "fantasy", 0, new ArrayList<>());
+    }
+}
@@ -0,0 +1,92 @@
+package com.course.libraryapp.exposure.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookIdAllocatorTest {
+
+    @Mock
+    SequenceIdRepository sequenceIdRepository;
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() {
+        when(sequenceIdRepository.reserveSequenceBlock(eq(BookIdAllocator.BOOK_SEQUENCE), anyInt()))
+                .thenAnswer(invocation -> counter.addAndGet(invocation.getArgument(1)));
+    }
+
+    @Test
+    public void should_HandOutConsecutiveIds_When_CrossingBlocks() {
+        BookIdAllocator allocator = new BookIdAllocator(sequenceIdRepository, 10, 3);
+
+        for (int expected = 1; expected <= 25; expected++) {
+            assertEquals(expected, allocator.nextId());
+        }
+        assertTrue(allocator.getRefillCount() >= 3);
+    }
+
+    @Test
+    public void should_ReserveDedicatedRange_When_BulkRequestExceedsBlock() {
+        BookIdAllocator allocator = new BookIdAllocator(sequenceIdRepository, 10, 3);
+
+        int[] ids = allocator.nextIds(50);
+
+        assertAll(
+                () -> assertEquals(50, ids.length),
+                () -> assertEquals(1, ids[0]),
+                () -> assertEquals(50, ids[49]),
+                () -> assertEquals(1, allocator.getRefillCount())
+        );
+    }
+
+    @Test
+    public void should_NeverRepeatIds_When_CalledConcurrently() throws InterruptedException {
+        BookIdAllocator allocator = new BookIdAllocator(sequenceIdRepository, 16, 4);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 500; j++) {
+                    ids.add(allocator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(4000, ids.size());
+    }
+
+    @Test
+    public void should_ReportRefillsAsCounter_When_BoundToRegistry() {
+        BookIdAllocator allocator = new BookIdAllocator(sequenceIdRepository, 10, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        allocator.bindTo(registry);
+
+        allocator.nextIds(50);
+
+        assertAll(
+                () -> assertEquals(1.0, registry.get("library.book.id.refills").functionCounter().count()),
+                () -> assertEquals(0.0, registry.get("library.book.id.stalls").functionCounter().count())
+        );
+    }
+}
@@ -0,0 +1,228 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.exposure.repository.embedded.EmbeddedSequenceIdRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * What the services rely on from a {@link BookRepository}, run against every storage engine by a subclass,
+ * so the embedded engine cannot drift from Mongo.
+ */
+public abstract class BookRepositoryContract {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedSequenceIdRepository sequenceIdRepository;
+    private BookRepository bookRepository;
+
+    /**
+     * An empty book repository taking ids from {@code bookIdAllocator}.
+     */
+    protected abstract BookRepository open(BookIdAllocator bookIdAllocator);
+
+    protected void close() throws IOException {
+    }
+
+    @BeforeEach
+    public void setupRepository() {
+        sequenceIdRepository = new EmbeddedSequenceIdRepository(directory, false);
+        bookRepository = open(new BookIdAllocator(sequenceIdRepository, 10, 0));
+    }
+
+    @AfterEach
+    public void teardownRepository() throws IOException {
+        close();
+        sequenceIdRepository.close();
+    }
+
+    @Test
+    public void should_AssignIdsAndFindBooks_When_Inserted() {
+        assertTrue(bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Dune", "Herbert", "sci-fi"),
+                book("s2", "Hobbit", "Tolkien", "fantasy"),
+                book("s3", "Silmarillion", "Tolkien", "fantasy")))).isEmpty());
+        BookEntity saved = bookRepository.saveCustomized(book("s4", "Emma", "Austen", "poezja"));
+
+        assertAll(
+                () -> assertEquals(List.of(1, 2, 3, 4), sorted(ids(bookRepository.findAll()))),
+                () -> assertEquals(4, saved.getId()),
+                () -> assertEquals("Hobbit", bookRepository.findById(2).getTitle()),
+                () -> assertNull(bookRepository.findById(9)),
+                () -> assertEquals(1, bookRepository.findBySignature("s1").getId()),
+                () -> assertNull(bookRepository.findBySignature("s9")),
+                () -> assertEquals(List.of(1, 3), sorted(ids(bookRepository.findAllByIdIn(List.of(1, 3, 9))))),
+                () -> assertEquals(List.of(2, 3), sorted(ids(bookRepository.findAllByGenre("fantasy")))),
+                () -> assertEquals(List.of(2, 3), sorted(bookRepository.findIdsByGenre("fantasy"))),
+                () -> assertEquals(List.of(2, 3), sorted(ids(bookRepository.findAllByFieldValue("author", "Tolkien")))),
+                () -> assertEquals(Set.of("s2", "s4"), bookRepository.findExistingSignatures(List.of("s2", "s4", "s9"))),
+                () -> assertEquals(4, bookRepository.findAll().size())
+        );
+    }
+
+    @Test
+    public void should_StreamEveryBook() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Dune", "Herbert", "sci-fi"), book("s2", "Hobbit", "Tolkien", "fantasy"))));
+
+        try (Stream<BookEntity> books = bookRepository.streamAllBy()) {
+            assertEquals(List.of(1, 2), sorted(books.map(BookEntity::getId).collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    public void should_KeepTotalsAndScore_When_Rated() {
+        BookEntity saved = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+
+        BookEntity rated = bookRepository.rateBook(saved.getId(), 5);
+        Set<Integer> failed = bookRepository.addRates(Map.of(saved.getId(), List.of(4, 4), 99, List.of(1)));
+
+        BookEntity stored = bookRepository.findById(saved.getId());
+        assertAll(
+                () -> assertEquals(5.0, rated.getScore()),
+                () -> assertEquals(1, rated.getVersion()),
+                () -> assertTrue(failed.isEmpty()),
+                () -> assertNull(bookRepository.rateBook(99, 5)),
+                () -> assertEquals(List.of(5, 4, 4), stored.getScoreRegistry()),
+                () -> assertEquals(13, stored.getScoreSum()),
+                () -> assertEquals(3, stored.getVotesCount()),
+                () -> assertEquals(4.33, stored.getScore()),
+                () -> assertEquals(3, stored.getVersion())
+        );
+    }
+
+    @Test
+    public void should_ReplaceOnlyExpectedVersion() {
+        BookEntity saved = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+        BookEntity changed = bookRepository.findById(saved.getId());
+        changed.setGenre("fantasy");
+        changed.setVersion(1);
+
+        assertNotNull(bookRepository.replaceIfVersion(changed, 0));
+        assertNull(bookRepository.replaceIfVersion(changed, 0));
+        changed.setId(99);
+        assertNull(bookRepository.replaceIfVersion(changed, 1));
+        assertAll(
+                () -> assertEquals("fantasy", bookRepository.findById(saved.getId()).getGenre()),
+                () -> assertEquals(1, bookRepository.findById(saved.getId()).getVersion()),
+                () -> assertTrue(bookRepository.findIdsByGenre("sci-fi").isEmpty())
+        );
+    }
+
+    @Test
+    public void should_CountOnlyExistingBooks_When_Removed() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Dune", "Herbert", "sci-fi"), book("s2", "Hobbit", "Tolkien", "fantasy"),
+                book("s3", "Emma", "Austen", "poezja"))));
+
+        assertAll(
+                () -> assertTrue(bookRepository.removeById(1)),
+                () -> assertFalse(bookRepository.removeById(1)),
+                () -> assertEquals(1, bookRepository.removeAllById(List.of(1, 2, 99))),
+                () -> assertEquals(List.of(3), ids(bookRepository.findAll()))
+        );
+    }
+
+    @Test
+    public void should_OrderTopBooksByValueThenId() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Dune", "Herbert", "sci-fi", 4), book("s2", "Hobbit", "Tolkien", "fantasy", 5),
+                book("s3", "Emma", "Austen", "fantasy", 4), book("s4", "Lalka", "Prus", "fantasy", 1))));
+
+        assertAll(
+                () -> assertEquals(List.of(2, 1, 3), ids(bookRepository.findTopBooks("score", 3))),
+                () -> assertEquals(List.of(2, 3, 4), ids(bookRepository.findAllByGenreOrderByScoreDescIdAsc("fantasy")))
+        );
+    }
+
+    @Test
+    public void should_ReadOnlyRequestedFields_When_Projecting() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "C", "a", "sci-fi"), book("s2", "A", "a", "sci-fi"), book("s3", "B", "a", "sci-fi"),
+                book("s4", "A", "a", "fantasy"))));
+
+        List<BookEntity> first = bookRepository.findSortedAfter("title", Sort.Direction.ASC, null, null, 2);
+        List<BookEntity> second = bookRepository.findSortedAfter("title", Sort.Direction.ASC, "A", 4, 2, List.of("author"));
+        List<BookEntity> byGenre = bookRepository.findAllByGenre("sci-fi", Sort.by(Sort.Direction.DESC, "title"), List.of("title"));
+
+        assertAll(
+                () -> assertEquals(List.of(2, 4), ids(first)),
+                () -> assertEquals(List.of(3, 1), ids(second)),
+                () -> assertEquals("B", second.get(0).getTitle()),
+                () -> assertEquals("a", second.get(0).getAuthor()),
+                () -> assertNull(second.get(0).getSignature()),
+                () -> assertEquals(List.of(1, 3, 2), ids(byGenre)),
+                () -> assertEquals("C", byGenre.get(0).getTitle()),
+                () -> assertNull(byGenre.get(0).getAuthor())
+        );
+    }
+
+    @Test
+    public void should_PagePastNullSortKeys_When_SortedAfter() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Beowulf", null, "fantasy"), book("s2", "Edda", null, "fantasy"),
+                book("s3", "Emma", "Austen", "fantasy"), book("s4", "Dune", "Herbert", "sci-fi"))));
+
+        assertAll(
+                () -> assertEquals(List.of(1, 2), ids(bookRepository.findSortedAfter("author", Sort.Direction.ASC, null, null, 2))),
+                () -> assertEquals(List.of(2, 3), ids(bookRepository.findSortedAfter("author", Sort.Direction.ASC, null, 1, 2))),
+                () -> assertEquals(List.of(3, 4), ids(bookRepository.findSortedAfter("author", Sort.Direction.ASC, null, 2, 2))),
+                () -> assertEquals(List.of(2, 1), ids(bookRepository.findSortedAfter("author", Sort.Direction.DESC, "Austen", 3, 10))),
+                () -> assertEquals(List.of(1), ids(bookRepository.findSortedAfter("author", Sort.Direction.DESC, null, 2, 10)))
+        );
+    }
+
+    @Test
+    public void should_PageMatchesAndCountFacets_When_Searching() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Dune", "Herbert", "sci-fi", 4), book("s2", "Dune Messiah", "Herbert", "sci-fi", 4),
+                book("s3", "Dune Road", "Other", "fantasy", 5), book("s4", "Emma", "Austen", "fantasy", 2))));
+        BookSearchFilter filter = BookSearchFilter.builder().bookIds(Set.of(1, 2, 3)).build();
+
+        BookSearchResult first = bookRepository.search(filter, "score", Sort.Direction.DESC, null, null, 2);
+        BookSearchResult second = bookRepository.search(filter, "score", Sort.Direction.DESC, 4.0, 2, 2);
+        BookSearchResult byAuthor = bookRepository.search(BookSearchFilter.builder().author("Herbert").minScore(3.0).build(),
+                "title", Sort.Direction.ASC, null, null, 10);
+
+        assertAll(
+                () -> assertEquals(List.of(3, 2), ids(first.getBooks())),
+                () -> assertEquals(List.of(1), ids(second.getBooks())),
+                () -> assertEquals(List.of("sci-fi", "fantasy"), new ArrayList<>(first.getGenreCounts().keySet())),
+                () -> assertEquals(Map.of(4, 3L), first.getScoreBucketCounts()),
+                () -> assertEquals(List.of(1, 2), ids(byAuthor.getBooks()))
+        );
+    }
+
+    private static BookEntity book(String signature, String title, String author, String genre) {
+        return new BookEntity(0, signature, title, author, "description", genre, 0, new ArrayList<>());
+    }
+
+    private static BookEntity book(String signature, String title, String author, String genre, int rate) {
+        return new BookEntity(0, signature, title, author, "description", genre, rate, new ArrayList<>(List.of(rate)));
+    }
+
+    private static List<Integer> ids(Collection<BookEntity> books) {
+        return books.stream().map(BookEntity::getId).collect(Collectors.toList());
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,135 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the queries and updates that are built by hand against a real mongod, see {@link EmbeddedMongo}.
+ */
+class BookRepositoryCustomImplMongoTest {
+
+    private MongoTemplate mongoTemplate;
+    private BookRepositoryCustomImpl bookRepository;
+
+    @BeforeEach
+    public void setup() {
+        mongoTemplate = EmbeddedMongo.template("books-custom-test");
+        bookRepository = new BookRepositoryCustomImpl(mock(BookIdAllocator.class), mongoTemplate, 1000, false);
+    }
+
+    @Test
+    public void should_PushRateAndRecomputeScore_When_RatingABook() {
+        mongoTemplate.insert(book(1, "Dune", "sci-fi", 5, new ArrayList<>(List.of(5))));
+
+        BookEntity rated = bookRepository.rateBook(1, 4);
+        BookEntity stored = mongoTemplate.findById(1, BookEntity.class);
+
+        assertAll(
+                () -> assertEquals(4.5, rated.getScore()),
+                () -> assertEquals(List.of(5, 4), stored.getScoreRegistry()),
+                () -> assertEquals(9, stored.getScoreSum()),
+                () -> assertEquals(2, stored.getVotesCount()),
+                () -> assertEquals(1, stored.getVersion()),
+                () -> assertEquals(4.5, stored.getScore()),
+                () -> assertNull(bookRepository.rateBook(2, 4))
+        );
+    }
+
+    @Test
+    public void should_DeriveTotalsFromRegistry_When_RatedBookHasNone() {
+        mongoTemplate.getCollection("books").insertOne(new Document("_id", 1).append("title", "Dune").append("genre", "sci-fi")
+                .append("score", 5.0).append("scoreRegistry", List.of(5, 3)));
+
+        BookEntity rated = bookRepository.rateBook(1, 4);
+        bookRepository.addRates(Map.of(1, List.of(4)));
+        BookEntity stored = mongoTemplate.findById(1, BookEntity.class);
+
+        assertAll(
+                () -> assertEquals(12, rated.getScoreSum()),
+                () -> assertEquals(3, rated.getVotesCount()),
+                () -> assertEquals(4.0, rated.getScore()),
+                () -> assertEquals(List.of(5, 3, 4, 4), stored.getScoreRegistry()),
+                () -> assertEquals(16, stored.getScoreSum()),
+                () -> assertEquals(4, stored.getVotesCount()),
+                () -> assertEquals(2, stored.getVersion())
+        );
+    }
+
+    @Test
+    public void should_AddAllRatesOfEachBook_When_RatingInBulk() {
+        mongoTemplate.insert(book(1, "Dune", "sci-fi", 0, new ArrayList<>()));
+        mongoTemplate.insert(book(2, "Emma", "poezja", 3, new ArrayList<>(List.of(3))));
+
+        assertTrue(bookRepository.addRates(Map.of(1, List.of(5, 4, 4), 2, List.of(4), 3, List.of(1))).isEmpty());
+
+        BookEntity first = mongoTemplate.findById(1, BookEntity.class);
+        BookEntity second = mongoTemplate.findById(2, BookEntity.class);
+        assertAll(
+                () -> assertEquals(List.of(5, 4, 4), first.getScoreRegistry()),
+                () -> assertEquals(4.33, first.getScore()),
+                () -> assertEquals(3, first.getVersion()),
+                () -> assertEquals(List.of(3, 4), second.getScoreRegistry()),
+                () -> assertEquals(3.5, second.getScore())
+        );
+    }
+
+    @Test
+    public void should_ContinueAfterLastKey_When_ReadingKeysetPages() {
+        mongoTemplate.insert(book(1, "C", "sci-fi", 4, new ArrayList<>(List.of(4))));
+        mongoTemplate.insert(book(2, "A", "sci-fi", 5, new ArrayList<>(List.of(5))));
+        mongoTemplate.insert(book(3, "B", "sci-fi", 4, new ArrayList<>(List.of(4))));
+        mongoTemplate.insert(book(4, "D", "sci-fi", 1, new ArrayList<>(List.of(1))));
+
+        List<BookEntity> first = bookRepository.findSortedAfter("score", Sort.Direction.DESC, null, null, 2);
+        List<BookEntity> second = bookRepository.findSortedAfter("score", Sort.Direction.DESC, 4.0, 3, 2, List.of("title"));
+
+        assertAll(
+                () -> assertEquals(List.of(2, 3), ids(first)),
+                () -> assertEquals(List.of(1, 4), ids(second)),
+                () -> assertEquals("C", second.get(0).getTitle()),
+                () -> assertNull(second.get(0).getAuthor())
+        );
+    }
+
+    @Test
+    public void should_BreakTiesByIdAndCountFacets_When_Searching() {
+        mongoTemplate.insert(book(1, "Dune", "sci-fi", 4, new ArrayList<>(List.of(4))));
+        mongoTemplate.insert(book(2, "Dune Messiah", "sci-fi", 4, new ArrayList<>(List.of(4))));
+        mongoTemplate.insert(book(3, "Dune Road", "fantasy", 5, new ArrayList<>(List.of(5))));
+        mongoTemplate.insert(book(4, "Emma", "fantasy", 2, new ArrayList<>(List.of(2))));
+        BookSearchFilter filter = BookSearchFilter.builder().bookIds(Set.of(1, 2, 3)).build();
+
+        BookSearchResult first = bookRepository.search(filter, "score", Sort.Direction.DESC, null, null, 2);
+        BookSearchResult second = bookRepository.search(filter, "score", Sort.Direction.DESC, 4.0, 2, 2);
+
+        assertAll(
+                () -> assertEquals(List.of(3, 2), ids(first.getBooks())),
+                () -> assertEquals(List.of(1), ids(second.getBooks())),
+                () -> assertEquals(List.of("sci-fi", "fantasy"), new ArrayList<>(first.getGenreCounts().keySet())),
+                () -> assertEquals(Map.of(4, 3L), first.getScoreBucketCounts())
+        );
+    }
+
+    static BookEntity book(int id, String title, String genre, double score, List<Integer> rates) {
+        return new BookEntity(id, "S" + id, title, "Author " + id, "description", genre, score, rates);
+    }
+
+    static List<Integer> ids(Collection<BookEntity> books) {
+        return books.stream().map(BookEntity::getId).collect(Collectors.toList());
+    }
+}
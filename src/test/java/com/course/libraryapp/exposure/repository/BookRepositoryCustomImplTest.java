@@ -0,0 +1,64 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookRepositoryCustomImplTest {
+
+    @Mock
+    BookIdAllocator bookIdAllocator;
+
+    @Mock
+    MongoTemplate mongoTemplate;
+
+    @Test
+    public void should_RefuseToStart_When_BulkInsertBatchSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new BookRepositoryCustomImpl(bookIdAllocator, mongoTemplate, 0, false));
+        assertThrows(IllegalArgumentException.class, () -> new BookRepositoryCustomImpl(bookIdAllocator, mongoTemplate, -5, false));
+    }
+
+    @Test
+    public void should_RateInOneRoundTrip_When_RatingABook() {
+        BookEntity rated = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy", 4.0, List.of(4));
+        when(mongoTemplate.findAndModify(any(Query.class), any(AggregationUpdate.class), any(FindAndModifyOptions.class), eq(BookEntity.class)))
+                .thenReturn(rated);
+
+        BookEntity returned = new BookRepositoryCustomImpl(bookIdAllocator, mongoTemplate, 1000, false).rateBook(1, 4);
+
+        assertSame(rated, returned);
+        verifyNoMoreInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void should_SetTotalsVersionAndScoreInOneUpdate_When_RatesAreAdded() {
+        List<Document> pipeline = BookRepositoryCustomImpl.rateUpdatePipeline(List.of(4, 5));
+
+        assertAll(
+                () -> assertEquals(2, pipeline.size()),
+                () -> assertEquals(Set.of("scoreSum", "votesCount", "version", "scoreRegistry"),
+                        pipeline.get(0).get("$set", Document.class).keySet()),
+                () -> assertEquals(Set.of("score"), pipeline.get(1).get("$set", Document.class).keySet())
+        );
+    }
+}
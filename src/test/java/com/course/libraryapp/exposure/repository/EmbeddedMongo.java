@@ -0,0 +1,51 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * A mongod shared by all tests of a run, started on first use and stopped when the JVM exits. Tests that need it
+ * are skipped where flapdoodle cannot provide a MongoDB 4.4 binary, as on machines without network access and
+ * without a cached download.
+ */
+public final class EmbeddedMongo {
+
+    private static MongoClient client;
+    private static Exception startFailure;
+
+    private EmbeddedMongo() {
+    }
+
+    public static synchronized MongoTemplate template(String database) {
+        if (client == null && startFailure == null) {
+            start();
+        }
+        Assumptions.assumeTrue(client != null, () -> "No embedded MongoDB available: " + startFailure);
+        MongoTemplate template = new MongoTemplate(client, database);
+        template.getDb().drop();
+        return template;
+    }
+
+    private static void start() {
+        try {
+            int port = Network.getFreeServerPort();
+            MongodExecutable executable = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                    .version(Version.V4_4_1)
+                    .net(new Net(port, Network.localhostIsIPv6()))
+                    .build());
+            executable.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(executable::stop));
+            client = MongoClients.create("mongodb://localhost:" + port);
+        } catch (Exception e) {
+            startFailure = e;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.course.libraryapp.exposure.repository;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+/**
+ * Runs the repository contract against a real mongod, see {@link EmbeddedMongo}, through the same Spring Data
+ * repository and custom fragment the application wires.
+ */
+class MongoBookRepositoryContractTest extends BookRepositoryContract {
+
+    @Override
+    protected BookRepository open(BookIdAllocator bookIdAllocator) {
+        MongoTemplate mongoTemplate = EmbeddedMongo.template("books-contract-test");
+        BookRepositoryCustomImpl custom = new BookRepositoryCustomImpl(bookIdAllocator, mongoTemplate, 1000, false);
+        return new MongoRepositoryFactory(mongoTemplate).getRepository(MongoBookRepository.class, RepositoryFragments.just(custom));
+    }
+}
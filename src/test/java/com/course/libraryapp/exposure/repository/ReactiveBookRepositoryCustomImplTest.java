@@ -0,0 +1,44 @@
+package com.course.libraryapp.exposure.repository;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveBookRepositoryCustomImplTest {
+
+    @Mock
+    BookIdAllocator bookIdAllocator;
+
+    @Mock
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Test
+    public void should_TakeIdOnBoundedElasticScheduler_When_InsertingABook() {
+        AtomicReference<String> allocatingThread = new AtomicReference<>();
+        when(bookIdAllocator.nextId()).thenAnswer(invocation -> {
+            allocatingThread.set(Thread.currentThread().getName());
+            return 7;
+        });
+        when(reactiveMongoTemplate.insert(any(BookEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        BookEntity bookEntity = new BookEntity(0, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy", 0, new ArrayList<>());
+
+        StepVerifier.create(new ReactiveBookRepositoryCustomImpl(bookIdAllocator, reactiveMongoTemplate, 1000, false).insertCustomized(bookEntity))
+                .assertNext(inserted -> assertEquals(7, inserted.getId()))
+                .verifyComplete();
+        assertTrue(allocatingThread.get().startsWith("boundedElastic"), allocatingThread.get());
+    }
+}
@@ -0,0 +1,74 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppendOnlyLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void should_KeepLaterRecords_When_AppendFailedMidway() throws IOException {
+        Path path = directory.resolve("test.log");
+        AtomicBoolean failing = new AtomicBoolean();
+        AppendOnlyLog log = AppendOnlyLog.open(path, false, in -> { }, (channel, bytes) -> {
+            if (!failing.get()) {
+                return channel.write(bytes);
+            }
+            // half of the frame reaches the file, then the disk gives up
+            ByteBuffer half = bytes.duplicate();
+            half.limit(bytes.position() + bytes.remaining() / 2);
+            channel.write(half);
+            throw new IOException("No space left on device");
+        });
+        log.append(List.of(record("a"), record("b")));
+        failing.set(true);
+        assertThrows(IOException.class, () -> log.append(List.of(record("lost"), record("lost too"))));
+        failing.set(false);
+        log.append(List.of(record("c")));
+        log.close();
+
+        List<String> replayed = new ArrayList<>();
+        AppendOnlyLog reopened = AppendOnlyLog.open(path, false, in -> replayed.add(in.readUTF()));
+        reopened.close();
+
+        assertAll(
+                () -> assertEquals(List.of("a", "b", "c"), replayed),
+                () -> assertEquals(3, reopened.getRecords())
+        );
+    }
+
+    @Test
+    public void should_DropWholeBatch_When_LogEndsInsideIt() throws IOException {
+        Path path = directory.resolve("test.log");
+        AppendOnlyLog log = AppendOnlyLog.open(path, false, in -> { });
+        log.append(List.of(record("a")));
+        log.append(List.of(record("b"), record("c")));
+        log.close();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // a crash after the first record of the batch made it to the disk
+            channel.truncate(channel.size() - 4);
+        }
+
+        List<String> replayed = new ArrayList<>();
+        AppendOnlyLog.open(path, false, in -> replayed.add(in.readUTF())).close();
+
+        assertEquals(List.of("a"), replayed);
+    }
+
+    private static AppendOnlyLog.Record record(String value) {
+        return out -> out.writeUTF(value);
+    }
+}
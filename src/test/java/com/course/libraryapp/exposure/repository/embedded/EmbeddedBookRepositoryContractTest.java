@@ -0,0 +1,28 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.repository.BookIdAllocator;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.exposure.repository.BookRepositoryContract;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+class EmbeddedBookRepositoryContractTest extends BookRepositoryContract {
+
+    @TempDir
+    Path booksDirectory;
+
+    private EmbeddedBookRepository bookRepository;
+
+    @Override
+    protected BookRepository open(BookIdAllocator bookIdAllocator) {
+        bookRepository = new EmbeddedBookRepository(bookIdAllocator, booksDirectory, false, false);
+        return bookRepository;
+    }
+
+    @Override
+    protected void close() throws IOException {
+        bookRepository.close();
+    }
+}
@@ -0,0 +1,199 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.repository.BookIdAllocator;
+import com.course.libraryapp.exposure.repository.BookSearchFilter;
+import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedBookRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedSequenceIdRepository sequenceIdRepository;
+    private EmbeddedBookRepository bookRepository;
+
+    @BeforeEach
+    public void setup() {
+        open();
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        close();
+    }
+
+    @Test
+    public void should_FindBooksThroughIndexes_When_Saved() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "Dune", "Herbert", "sci-fi"),
+                book("s2", "Hobbit", "Tolkien", "fantasy"),
+                book("s3", "Silmarillion", "Tolkien", "fantasy"))));
+
+        assertAll(
+                () -> assertEquals("Dune", bookRepository.findBySignature("s1").getTitle()),
+                () -> assertEquals(List.of(2, 3), bookRepository.findIdsByGenre("fantasy")),
+                () -> assertEquals(List.of(2), ids(bookRepository.findAllByFieldValue("title", "Hobbit"))),
+                () -> assertEquals(List.of(2, 3), ids(bookRepository.findAllByFieldValue("author", "Tolkien"))),
+                () -> assertEquals(Set.of("s2"), bookRepository.findExistingSignatures(List.of("s2", "s9"))),
+                () -> assertEquals(3, bookRepository.count())
+        );
+    }
+
+    @Test
+    public void should_MoveBookBetweenIndexEntries_When_Replaced() {
+        BookEntity saved = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+        BookEntity changed = bookRepository.findById(saved.getId());
+        changed.setGenre("fantasy");
+        changed.setVersion(1);
+
+        assertNotNull(bookRepository.replaceIfVersion(changed, 0));
+        assertNull(bookRepository.replaceIfVersion(changed, 0));
+        assertAll(
+                () -> assertTrue(bookRepository.findIdsByGenre("sci-fi").isEmpty()),
+                () -> assertEquals(List.of(saved.getId()), bookRepository.findIdsByGenre("fantasy"))
+        );
+    }
+
+    @Test
+    public void should_RecomputeScore_When_Rated() {
+        BookEntity saved = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+
+        bookRepository.rateBook(saved.getId(), 5);
+        bookRepository.addRates(Map.of(saved.getId(), List.of(4, 4), 99, List.of(1)));
+
+        BookEntity rated = bookRepository.findById(saved.getId());
+        assertAll(
+                () -> assertEquals(4.33, rated.getScore()),
+                () -> assertEquals(List.of(5, 4, 4), rated.getScoreRegistry()),
+                () -> assertEquals(13, rated.getScoreSum()),
+                () -> assertEquals(3, rated.getVotesCount()),
+                () -> assertEquals(3, rated.getVersion())
+        );
+    }
+
+    @Test
+    public void should_PageInSortOrder_When_ReadingKeysetPages() {
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(
+                book("s1", "C", "a", "sci-fi"), book("s2", "A", "a", "sci-fi"), book("s3", "B", "a", "sci-fi"),
+                book("s4", "A", "a", "fantasy"))));
+
+        List<BookEntity> first = bookRepository.findSortedAfter("title", Sort.Direction.ASC, null, null, 2);
+        List<BookEntity> second = bookRepository.findSortedAfter("title", Sort.Direction.ASC, "A", 4, 2, List.of("author"));
+
+        assertAll(
+                () -> assertEquals(List.of(2, 4), ids(first)),
+                () -> assertEquals(List.of(3, 1), ids(second)),
+                () -> assertEquals("B", second.get(0).getTitle()),
+                () -> assertNull(second.get(0).getSignature())
+        );
+    }
+
+    @Test
+    public void should_CountFacetsOfAllMatches_When_Searching() {
+        BookEntity rated = book("s1", "Dune", "Herbert", "sci-fi");
+        rated.setScore(5);
+        bookRepository.insertAllCustomized(new ArrayList<>(List.of(rated,
+                book("s2", "Dune Messiah", "Herbert", "sci-fi"), book("s3", "Dune Road", "Other", "fantasy"))));
+
+        BookSearchResult result = bookRepository.search(BookSearchFilter.builder().bookIds(Set.of(1, 2, 3)).build(),
+                "score", Sort.Direction.DESC, null, null, 1);
+
+        assertAll(
+                () -> assertEquals(List.of(1), ids(result.getBooks())),
+                () -> assertEquals(List.of("sci-fi", "fantasy"), new ArrayList<>(result.getGenreCounts().keySet())),
+                () -> assertEquals(Map.of(0, 2L, 4, 1L), result.getScoreBucketCounts())
+        );
+    }
+
+    @Test
+    public void should_RestoreBooksAndIds_When_Reopened() throws IOException {
+        BookEntity kept = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+        BookEntity removed = bookRepository.saveCustomized(book("s2", "Hobbit", "Tolkien", "fantasy"));
+        bookRepository.rateBook(kept.getId(), 3);
+        bookRepository.removeById(removed.getId());
+
+        close();
+        open();
+        BookEntity added = bookRepository.saveCustomized(book("s3", "Emma", "Austen", "poezja"));
+
+        assertAll(
+                () -> assertEquals(List.of(kept.getId(), added.getId()), ids(bookRepository.findAll())),
+                () -> assertEquals(3.0, bookRepository.findById(kept.getId()).getScore()),
+                () -> assertNull(bookRepository.findBySignature("s2")),
+                () -> assertTrue(added.getId() > removed.getId())
+        );
+    }
+
+    @Test
+    public void should_KeepOnlyLiveRecords_When_Compacted() throws IOException {
+        BookEntity saved = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+        for (int i = 0; i < 10; i++) {
+            bookRepository.rateBook(saved.getId(), 4);
+        }
+
+        bookRepository.compactIfWorthIt(2, 5);
+        bookRepository.rateBook(saved.getId(), 1);
+        close();
+        open();
+
+        assertAll(
+                () -> assertEquals(2, bookRepository.getLogRecords()),
+                () -> assertEquals(11, bookRepository.findById(saved.getId()).getVotesCount())
+        );
+    }
+
+    @Test
+    public void should_DropTornRecord_When_LogEndsMidway() throws IOException {
+        BookEntity saved = bookRepository.saveCustomized(book("s1", "Dune", "Herbert", "sci-fi"));
+        close();
+        try (FileChannel log = FileChannel.open(directory.resolve("books.log"), StandardOpenOption.APPEND)) {
+            log.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 7, 7}));
+        }
+
+        open();
+        bookRepository.rateBook(saved.getId(), 5);
+        close();
+        open();
+
+        assertEquals(List.of(5), bookRepository.findById(saved.getId()).getScoreRegistry());
+        assertTrue(Files.size(directory.resolve("books.log")) > 0);
+    }
+
+    private void open() {
+        sequenceIdRepository = new EmbeddedSequenceIdRepository(directory, false);
+        bookRepository = new EmbeddedBookRepository(new BookIdAllocator(sequenceIdRepository, 1, 0), directory, false, false);
+    }
+
+    private void close() throws IOException {
+        bookRepository.close();
+        sequenceIdRepository.close();
+    }
+
+    private static BookEntity book(String signature, String title, String author, String genre) {
+        return new BookEntity(0, signature, title, author, "description", genre, 0, new ArrayList<>());
+    }
+
+    private static List<Integer> ids(List<BookEntity> books) {
+        return books.stream().map(BookEntity::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,66 @@
+package com.course.libraryapp.exposure.repository.embedded;
+
+import com.course.libraryapp.exposure.controller.SnapshotEndpoint;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.exposure.service.BookSnapshots;
+import com.course.libraryapp.exposure.service.LibraryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class EmbeddedProfileTest {
+
+    @Autowired
+    LibraryService libraryService;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @DynamicPropertySource
+    static void embeddedDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("library-embedded").toString();
+        registry.add("library.embedded.directory", () -> directory);
+    }
+
+    @Test
+    public void should_ServeBooksWithoutMongo_When_EmbeddedProfileIsActive() {
+        BookRepresentation book = new BookRepresentation();
+        book.setSignature("embedded-1");
+        book.setTitle("Dune");
+        book.setAuthor("Frank Herbert");
+        book.setDescription("Desert planet");
+        book.setGenre(GenreEnumRepresentation.SCI_FI);
+
+        BookRepresentation added = libraryService.checkSignatureAndAddBook(book);
+        libraryService.checkIdAndRateABook(added.getId(), 4);
+
+        BookRepresentation found = libraryService.getBookById(added.getId());
+        assertAll(
+                () -> assertEquals("Dune", found.getTitle()),
+                () -> assertEquals(4.0, found.getScore()),
+                () -> assertEquals(List.of(4), found.getScoreRegistry()),
+                () -> assertEquals(1, libraryService.getBooksByGenre("sci-fi").size())
+        );
+    }
+
+    @Test
+    public void should_LeaveOutSnapshots_When_EmbeddedProfileIsActive() {
+        assertAll(
+                () -> assertTrue(applicationContext.getBeansOfType(BookSnapshots.class).isEmpty()),
+                () -> assertTrue(applicationContext.getBeansOfType(SnapshotEndpoint.class).isEmpty())
+        );
+    }
+}
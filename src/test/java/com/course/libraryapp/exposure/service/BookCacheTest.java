@@ -0,0 +1,37 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookCacheTest {
+
+    private final BookCache bookCache = new BookCache(100, Duration.ofMinutes(1));
+
+    @Test
+    void should_KeepNewerBook_When_OlderVersionIsPutLater() {
+        bookCache.put(book(1, 3, "Two Towers"));
+        bookCache.put(book(1, 2, "LOTR"));
+
+        assertEquals("Two Towers", bookCache.find(1).getTitle());
+    }
+
+    @Test
+    void should_ForgetBook_When_Invalidated() {
+        bookCache.put(book(1, 0, "LOTR"));
+
+        bookCache.invalidate(1);
+
+        assertNull(bookCache.find(1));
+    }
+
+    private static BookRepresentation book(int id, long version, String title) {
+        BookRepresentation book = new BookRepresentation(id, "F01", title, "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy");
+        book.setVersion(version);
+        return book;
+    }
+}
@@ -0,0 +1,107 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookCatalogTest {
+
+    private static final BookEntity bookEntity = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+            "A hobbit on a mission to destroy the ring", "fantasy", 3.5, new ArrayList<>());
+    private static final BookEntity bookEntity2 = new BookEntity(2, "F02", "Star Dust", "Gaiman",
+            "A hobbit on a mission", "fantasy", 5.0, Arrays.asList(5, 5, 5));
+
+    @Mock
+    BookRepository bookRepository;
+
+    private BookCatalog bookCatalog;
+
+    @AfterEach
+    public void tearDown() {
+        bookCatalog.shutdown();
+    }
+
+    @Test
+    public void should_ServeSameSnapshot_When_NothingChanged() {
+        bookCatalog = new BookCatalog(bookRepository, Duration.ZERO, Duration.ofMinutes(1));
+        when(bookRepository.findAll()).thenReturn(Collections.singletonList(bookEntity));
+
+        CatalogSnapshot first = bookCatalog.current();
+        CatalogSnapshot second = bookCatalog.current();
+
+        assertSame(first, second);
+        assertThrows(UnsupportedOperationException.class, () -> first.getBooks().clear());
+        verify(bookRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void should_PublishNewSnapshotInBackground_When_BookChanged() {
+        bookCatalog = new BookCatalog(bookRepository, Duration.ZERO, Duration.ofMinutes(1));
+        when(bookRepository.findAll())
+                .thenReturn(Collections.singletonList(bookEntity))
+                .thenReturn(Arrays.asList(bookEntity, bookEntity2));
+
+        CatalogSnapshot before = bookCatalog.current();
+        bookCatalog.markChanged();
+
+        verify(bookRepository, timeout(2000).times(2)).findAll();
+        CatalogSnapshot after = bookCatalog.current();
+        assertAll(
+                () -> assertEquals(1, before.getBooks().size()),
+                () -> assertEquals(2, after.getBooks().size()),
+                () -> assertTrue(after.getVersion() > before.getVersion())
+        );
+    }
+
+    @Test
+    public void should_RefreshInBackground_When_SnapshotOutlivedMaxAge() {
+        bookCatalog = new BookCatalog(bookRepository, Duration.ZERO, Duration.ZERO);
+        when(bookRepository.findAll())
+                .thenReturn(Collections.singletonList(bookEntity))
+                .thenReturn(Arrays.asList(bookEntity, bookEntity2));
+
+        CatalogSnapshot first = bookCatalog.current();
+        CatalogSnapshot stale = bookCatalog.current();
+
+        verify(bookRepository, timeout(2000).times(2)).findAll();
+        assertAll(
+                () -> assertSame(first, stale),
+                () -> assertEquals(2, bookCatalog.current().getBooks().size()),
+                () -> assertNotEquals(first.getContentHash(), bookCatalog.current().getContentHash())
+        );
+    }
+
+    @Test
+    public void should_TagCollectionByContent_When_SnapshotHoldsEveryWrite() {
+        bookCatalog = new BookCatalog(bookRepository, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        when(bookRepository.findAll()).thenReturn(Collections.singletonList(bookEntity));
+
+        String beforeLoad = bookCatalog.findCollectionTag();
+        verify(bookRepository, timeout(2000).times(1)).findAll();
+        // waits for the background load to publish its snapshot
+        bookCatalog.current();
+        String loaded = bookCatalog.findCollectionTag();
+        bookCatalog.markChanged();
+        String written = bookCatalog.findCollectionTag();
+
+        assertAll(
+                () -> assertNull(beforeLoad),
+                () -> assertEquals(bookCatalog.current().getContentHash(), loaded),
+                () -> assertNotNull(written),
+                () -> assertNotEquals(loaded, written)
+        );
+    }
+}
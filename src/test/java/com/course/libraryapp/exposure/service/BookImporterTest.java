@@ -0,0 +1,185 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookImportRepresentation;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
+import com.course.libraryapp.exposure.repository.BookImportCheckpointRepository;
+import com.course.libraryapp.persistance.model.BookImportCheckpointEntity;
+import com.fasterxml.jackson.databind.MapperFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookImporterTest {
+
+    @Mock
+    LibraryService libraryService;
+
+    @Mock
+    BookImportCheckpointRepository checkpointRepository;
+
+    @Captor
+    ArgumentCaptor<List<BookRepresentation>> batches;
+
+    private BookImporter bookImporter;
+
+    @BeforeEach
+    public void setup() {
+        bookImporter = new BookImporter(libraryService, checkpointRepository,
+                Jackson2ObjectMapperBuilder.json().featuresToEnable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS).build(),
+                2, 2, 1000);
+    }
+
+    @Test
+    public void should_ReportRowIndexes_When_NdjsonRowsAreRejected() throws Exception {
+        when(libraryService.checkSignaturesAndAddBooks(any())).thenAnswer(invocation -> {
+            List<BookRepresentation> books = invocation.getArgument(0);
+            List<BookBulkResultRepresentation> results = new ArrayList<>();
+            for (int i = 0; i < books.size(); i++) {
+                BulkItemStatus status = books.get(i).getSignature().equals("F02") ? BulkItemStatus.DUPLICATE : BulkItemStatus.CREATED;
+                results.add(BookBulkResultRepresentation.builder().index(i).signature(books.get(i).getSignature()).status(status).build());
+            }
+            return results;
+        });
+        String ndjson = """
+                {"signature":"F01","title":"LOTR","author":"J.R.R.Tolkien","description":"A hobbit","genre":"fantasy"}
+                {"signature":"F02","title":"Stardust",
+                {"signature":"F02","title":"Stardust","author":"Neil Gaiman","description":"A star","genre":"fantasy"}
+
+                {"signature":"SF01","title":"Diune","author":"Frank Herbert","description":"Spice","genre":"sci-fi"}
+                """;
+
+        BookImportRepresentation report = bookImporter.importBooks(utf8(ndjson), BookImportFormat.NDJSON, null);
+
+        assertAll(
+                () -> assertEquals(4, report.getRows()),
+                () -> assertEquals(2, report.getCreated()),
+                () -> assertEquals(2, report.getRejected()),
+                () -> assertEquals(List.of(1, 2), report.getRejections().stream().map(BookBulkResultRepresentation::getIndex).toList()),
+                () -> assertEquals(List.of(BulkItemStatus.INVALID, BulkItemStatus.DUPLICATE),
+                        report.getRejections().stream().map(BookBulkResultRepresentation::getStatus).toList())
+        );
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    @Test
+    public void should_ReadQuotedFieldsAndSkipUnboundRecords_When_ImportingCsv() throws Exception {
+        when(libraryService.checkSignaturesAndAddBooks(batches.capture())).thenReturn(Collections.emptyList());
+        String csv = """
+                signature,title,author,description,genre,scoreRegistry
+                F01,LOTR,J.R.R.Tolkien,"A hobbit, a ring and a mission",Fantasy,4;5
+                W01,Lonesome Dove,Larry McMurtry,Cattle drive,western,
+                SF01,Diune,Frank Herbert,Spice,sci-fi,
+                """;
+
+        BookImportRepresentation report = bookImporter.importBooks(utf8(csv), BookImportFormat.CSV, null);
+
+        List<BookRepresentation> books = batches.getAllValues().stream().flatMap(List::stream)
+                .sorted(Comparator.comparing(BookRepresentation::getSignature)).toList();
+        assertAll(
+                () -> assertEquals(3, report.getRows()),
+                () -> assertEquals(List.of("F01", "SF01"), books.stream().map(BookRepresentation::getSignature).toList()),
+                () -> assertEquals("A hobbit, a ring and a mission", books.get(0).getDescription()),
+                () -> assertEquals(List.of(4, 5), books.get(0).getScoreRegistry()),
+                () -> assertEquals(1, report.getRejections().get(0).getIndex()),
+                () -> assertEquals(BulkItemStatus.INVALID, report.getRejections().get(0).getStatus())
+        );
+    }
+
+    @Test
+    public void should_SkipCommittedRows_When_ImportIsResumed() throws Exception {
+        when(checkpointRepository.findById("catalog-2021"))
+                .thenReturn(Optional.of(new BookImportCheckpointEntity("catalog-2021", 2, Instant.now())));
+        when(libraryService.checkSignaturesAndAddBooks(batches.capture())).thenReturn(Collections.emptyList());
+        String ndjson = """
+                {"signature":"F01","title":"LOTR","author":"J.R.R.Tolkien","description":"A hobbit","genre":"fantasy"}
+                {"signature":"F02","title":"Stardust","author":"Neil Gaiman","description":"A star","genre":"fantasy"}
+                {"signature":"SF01","title":"Diune","author":"Frank Herbert","description":"Spice","genre":"sci-fi"}
+                """;
+
+        BookImportRepresentation report = bookImporter.importBooks(utf8(ndjson), BookImportFormat.NDJSON, "catalog-2021");
+
+        ArgumentCaptor<BookImportCheckpointEntity> checkpoint = ArgumentCaptor.forClass(BookImportCheckpointEntity.class);
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertAll(
+                () -> assertEquals(2, report.getResumedAtRow()),
+                () -> assertEquals(1, report.getRows()),
+                () -> assertEquals(List.of("SF01"), batches.getValue().stream().map(BookRepresentation::getSignature).toList()),
+                () -> assertEquals(3, checkpoint.getValue().getCommittedRows())
+        );
+    }
+
+    @Test
+    public void should_RejectDuplicate_When_SignatureIsSplitAcrossConcurrentBatches() throws Exception {
+        Set<String> storedSignatures = ConcurrentHashMap.newKeySet();
+        CountDownLatch bothBatchesWriting = new CountDownLatch(2);
+        when(libraryService.checkSignaturesAndAddBooks(any())).thenAnswer(invocation -> {
+            List<BookRepresentation> books = invocation.getArgument(0);
+            // like the service: look the signatures up first, insert afterwards
+            Set<String> existingSignatures = books.stream().map(BookRepresentation::getSignature)
+                    .filter(storedSignatures::contains).collect(Collectors.toSet());
+            bothBatchesWriting.countDown();
+            bothBatchesWriting.await(300, TimeUnit.MILLISECONDS);
+            List<BookBulkResultRepresentation> results = new ArrayList<>();
+            for (int i = 0; i < books.size(); i++) {
+                String signature = books.get(i).getSignature();
+                BulkItemStatus status = existingSignatures.contains(signature) || !storedSignatures.add(signature)
+                        ? BulkItemStatus.DUPLICATE : BulkItemStatus.CREATED;
+                results.add(BookBulkResultRepresentation.builder().index(i).signature(signature).status(status).build());
+            }
+            return results;
+        });
+        String ndjson = """
+                {"signature":"F01","title":"LOTR","author":"J.R.R.Tolkien","description":"A hobbit","genre":"fantasy"}
+                {"signature":"F02","title":"Stardust","author":"Neil Gaiman","description":"A star","genre":"fantasy"}
+                {"signature":"F02","title":"Stardust","author":"Neil Gaiman","description":"A star","genre":"fantasy"}
+                {"signature":"SF01","title":"Diune","author":"Frank Herbert","description":"Spice","genre":"sci-fi"}
+                """;
+
+        BookImportRepresentation report = bookImporter.importBooks(utf8(ndjson), BookImportFormat.NDJSON, null);
+
+        assertAll(
+                () -> assertEquals(3, report.getCreated()),
+                () -> assertEquals(1, report.getRejected()),
+                () -> assertEquals(2, report.getRejections().get(0).getIndex()),
+                () -> assertEquals(BulkItemStatus.DUPLICATE, report.getRejections().get(0).getStatus())
+        );
+    }
+
+    @Test
+    public void should_StopAndRethrow_When_BatchFailsToWrite() {
+        when(libraryService.checkSignaturesAndAddBooks(any())).thenThrow(new IllegalStateException("Mongo is down"));
+        String ndjson = """
+                {"signature":"F01","title":"LOTR","author":"J.R.R.Tolkien","description":"A hobbit","genre":"fantasy"}
+                """;
+
+        assertThrows(IllegalStateException.class,
+                () -> bookImporter.importBooks(utf8(ndjson), BookImportFormat.NDJSON, "catalog-2021"));
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    private static InputStream utf8(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,90 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookLeaderboardsTest {
+
+    @Mock
+    BookRepository bookRepository;
+
+    private BookLeaderboards bookLeaderboards;
+
+    @BeforeEach
+    public void setup() {
+        bookLeaderboards = new BookLeaderboards(bookRepository, 2, Duration.ofMinutes(1));
+    }
+
+    private static BookEntity book(int id, double score, Integer... rates) {
+        return new BookEntity(id, "S" + id, "Title " + id, "Author", "Desc", "fantasy", score, Arrays.asList(rates));
+    }
+
+    @Test
+    public void should_KeepServingFromMemory_When_BookIsRatedOntoTheBoard() {
+        when(bookRepository.findTopBooks("votesCount", 3)).thenReturn(Arrays.asList(book(1, 4, 4, 4), book(2, 3, 3), book(3, 2, 2)));
+
+        bookLeaderboards.findMostVoted();
+        bookLeaderboards.onBookSaved(book(3, 3, 2, 4, 3));
+        List<BookEntity> mostVoted = bookLeaderboards.findMostVoted();
+
+        assertAll(
+                () -> assertEquals(1, mostVoted.size()),
+                () -> assertEquals(3, mostVoted.get(0).getId())
+        );
+        verify(bookRepository, times(1)).findTopBooks("votesCount", 3);
+    }
+
+    @Test
+    public void should_Reseed_When_LeaderIsRemovedFromIncompleteBoard() {
+        when(bookRepository.findTopBooks("score", 3))
+                .thenReturn(Arrays.asList(book(1, 5, 5), book(2, 4, 4), book(3, 3, 3)))
+                .thenReturn(Arrays.asList(book(2, 4, 4), book(3, 3, 3)));
+
+        bookLeaderboards.findHighestRated();
+        bookLeaderboards.onBookRemoved(1);
+        List<BookEntity> highestRated = bookLeaderboards.findHighestRated();
+
+        assertEquals(2, highestRated.get(0).getId());
+        verify(bookRepository, times(2)).findTopBooks("score", 3);
+    }
+
+    @Test
+    public void should_QueryAllTiedBooks_When_WholeBoardIsTied() {
+        List<BookEntity> tied = Arrays.asList(book(1, 5, 5), book(2, 5, 5), book(3, 5, 5));
+        when(bookRepository.findTopBooks("score", 3)).thenReturn(tied);
+        when(bookRepository.findAllByFieldValue("score", 5.0)).thenReturn(tied);
+
+        List<BookEntity> highestRated = bookLeaderboards.findHighestRated();
+
+        assertEquals(3, highestRated.size());
+    }
+
+    @Test
+    public void should_NotQueryTiedBooks_When_NothingIsRated() {
+        when(bookRepository.findTopBooks("votesCount", 3)).thenReturn(Arrays.asList(book(1, 0), book(2, 0), book(3, 0)));
+        when(bookRepository.findTopBooks("score", 3)).thenReturn(Arrays.asList(book(1, 0), book(2, 0), book(3, 0)));
+
+        List<BookEntity> mostVoted = bookLeaderboards.findMostVoted();
+        List<BookEntity> highestRated = bookLeaderboards.findHighestRated();
+
+        assertAll(
+                () -> assertEquals(0, mostVoted.get(0).getVotesCount()),
+                () -> assertEquals(0.0, highestRated.get(0).getScore()),
+                () -> assertTrue(mostVoted.size() <= 2)
+        );
+        verify(bookRepository, never()).findAllByFieldValue(anyString(), any());
+    }
+}
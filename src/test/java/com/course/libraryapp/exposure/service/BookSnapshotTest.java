@@ -0,0 +1,92 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSnapshotTest {
+
+    private static final BsonDocument resumeToken = new BsonDocument("_data", new BsonString("8261A4C1D2000000012B022C0100296E5A1004"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void should_ReadBooksBack_When_SnapshotWasWritten() throws IOException {
+        BookEntity rated = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring",
+                "fantasy", 4.5, Arrays.asList(4, 5));
+        rated.setVersion(7);
+        BookEntity unrated = new BookEntity(2, "P01", "Pan Tadeusz", "Adam Mickiewicz", null, "powieść przygodowa", 0, null);
+        Path path = directory.resolve("books.snapshot");
+
+        int written = BookSnapshot.write(path, 1_000L, resumeToken, List.of(rated, unrated).iterator());
+        BookSnapshot snapshot = BookSnapshot.read(path);
+
+        BookEntity first = snapshot.getBooks().get(0);
+        BookEntity second = snapshot.getBooks().get(1);
+        assertAll(
+                () -> assertEquals(2, written),
+                () -> assertEquals(1_000L, snapshot.getCreatedAt()),
+                () -> assertEquals(resumeToken, snapshot.getResumeToken()),
+                () -> assertEquals(7, first.getVersion()),
+                () -> assertEquals(4.5, first.getScore()),
+                () -> assertEquals(List.of(4, 5), first.getScoreRegistry()),
+                () -> assertEquals(9, first.getScoreSum()),
+                () -> assertEquals("powieść przygodowa", second.getGenre()),
+                () -> assertNull(second.getDescription()),
+                () -> assertEquals(0, second.getVotesCount()),
+                () -> assertFalse(Files.exists(directory.resolve("books.snapshot.partial")))
+        );
+    }
+
+    @Test
+    public void should_KeepRatesOutsideByteRange_When_SnapshotWasWritten() throws IOException {
+        BookEntity rated = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit", "fantasy", 2.0,
+                Arrays.asList(200, -300, 106));
+        Path path = directory.resolve("books.snapshot");
+
+        BookSnapshot.write(path, 0, resumeToken, List.of(rated).iterator());
+        BookEntity read = BookSnapshot.read(path).getBooks().get(0);
+
+        assertAll(
+                () -> assertEquals(List.of(200, -300, 106), read.getScoreRegistry()),
+                () -> assertEquals(6, read.getScoreSum()),
+                () -> assertEquals(3, read.getVotesCount())
+        );
+    }
+
+    @Test
+    public void should_WriteBooksLargerThanTheBuffer() throws IOException {
+        List<BookEntity> books = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            books.add(new BookEntity(id, "S" + id, "Title " + id, "Author", "x".repeat(100_000), "sci-fi", 0, new ArrayList<>()));
+        }
+        Path path = directory.resolve("books.snapshot");
+
+        BookSnapshot.write(path, 0, resumeToken, books.iterator());
+
+        assertEquals(List.of(1, 2, 3), BookSnapshot.read(path).getBooks().stream().map(BookEntity::getId).toList());
+    }
+
+    @Test
+    public void should_Reject_When_SnapshotIsTruncated() throws IOException {
+        Path path = directory.resolve("books.snapshot");
+        BookSnapshot.write(path, 0, resumeToken, List.of(new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+                "A hobbit", "fantasy", 0, new ArrayList<>())).iterator());
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+
+        assertThrows(IllegalStateException.class, () -> BookSnapshot.read(path));
+    }
+}
@@ -0,0 +1,105 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.repository.BookChangeStream;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSnapshotsTest {
+
+    private static final BsonDocument resumeToken = new BsonDocument("_data", new BsonString("8261A4C1D2000000012B022C0100296E5A1004"));
+
+    @Mock
+    BookRepository bookRepository;
+
+    @Mock
+    BookChangeStream bookChangeStream;
+
+    @TempDir
+    Path directory;
+
+    private BookCatalog bookCatalog;
+    private BookTitleIndex bookTitleIndex;
+    private BookVersions bookVersions;
+
+    @BeforeEach
+    public void setup() {
+        bookCatalog = new BookCatalog(bookRepository, Duration.ZERO, Duration.ofMinutes(1));
+        bookTitleIndex = new BookTitleIndex(bookRepository, Duration.ofMinutes(1));
+        bookVersions = new BookVersions(100, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bookCatalog.shutdown();
+    }
+
+    @Test
+    public void should_SeedCachesWithReplayedChanges_When_WarmStarting() throws Exception {
+        Path path = directory.resolve("books.snapshot");
+        BookSnapshot.write(path, 0, resumeToken, List.of(
+                book(1, "LOTR", 1),
+                book(2, "Stardust", 1),
+                book(3, "Diune", 1)).iterator());
+        doAnswer(invocation -> {
+            Consumer<BookEntity> onSaved = invocation.getArgument(1);
+            IntConsumer onRemoved = invocation.getArgument(2);
+            onSaved.accept(book(2, "Stardust", 2));
+            onRemoved.accept(3);
+            onSaved.accept(book(4, "Good Omens", 1));
+            return 3L;
+        }).when(bookChangeStream).replayChangesAfter(eq(resumeToken), any(), any());
+
+        new BookSnapshots(bookRepository, bookChangeStream, bookCatalog, bookTitleIndex, bookVersions, path, true).warmStart();
+
+        assertAll(
+                () -> assertEquals(List.of(1, 2, 4), bookCatalog.current().getBooks().stream().map(BookRepresentation::getId).toList()),
+                () -> assertEquals(List.of(4), bookTitleIndex.findIdsByTitle("omens")),
+                () -> assertTrue(bookTitleIndex.findIdsByTitle("diune").isEmpty()),
+                () -> assertEquals(2L, bookVersions.find(2))
+        );
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    public void should_LeaveCachesCold_When_ChangesCannotBeReplayed() throws Exception {
+        Path path = directory.resolve("books.snapshot");
+        BookSnapshot.write(path, 0, resumeToken, List.of(book(1, "LOTR", 1)).iterator());
+        when(bookChangeStream.replayChangesAfter(eq(resumeToken), any(), any()))
+                .thenThrow(new IllegalStateException("The books collection had a drop event, its changes cannot be replayed."));
+        when(bookRepository.findAll()).thenReturn(List.of(book(1, "LOTR", 1), book(2, "Stardust", 1)));
+
+        new BookSnapshots(bookRepository, bookChangeStream, bookCatalog, bookTitleIndex, bookVersions, path, true).warmStart();
+
+        assertEquals(2, bookCatalog.current().getBooks().size());
+        assertNull(bookVersions.find(1));
+    }
+
+    private static BookEntity book(int id, String title, long version) {
+        BookEntity bookEntity = new BookEntity(id, "S" + id, title, "Author", "Description", "fantasy", 0, new ArrayList<>());
+        bookEntity.setVersion(version);
+        return bookEntity;
+    }
+}
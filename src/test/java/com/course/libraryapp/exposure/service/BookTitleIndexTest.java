@@ -0,0 +1,192 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookTitleIndexTest {
+
+    private static final BookEntity lotr = book(1, "The Lord of the Rings");
+    private static final BookEntity lalka = book(2, "Lalka");
+    private static final BookEntity solaris = book(3, "Solaris");
+    private static final BookEntity zolc = book(4, "Żółć i miód");
+    private static final BookEntity lord = book(5, "Lord Jim");
+
+    @Mock
+    BookRepository bookRepository;
+
+    private BookTitleIndex bookTitleIndex;
+
+    @BeforeEach
+    public void setup() {
+        bookTitleIndex = new BookTitleIndex(bookRepository, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bookTitleIndex.shutdown();
+    }
+
+    @Test
+    public void should_FindSubstringIgnoringCaseAndDiacritics() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(lotr, lalka, solaris, zolc, lord));
+
+        assertAll(
+                () -> assertEquals(List.of(1), bookTitleIndex.findIdsByTitle("OF THE")),
+                () -> assertEquals(List.of(4), bookTitleIndex.findIdsByTitle("zolc")),
+                () -> assertEquals(List.of(4), bookTitleIndex.findIdsByTitle("MIÓD")),
+                () -> assertEquals(List.of(2, 3), bookTitleIndex.findIdsByTitle("la"))
+        );
+    }
+
+    @Test
+    public void should_FindTitleOneEditAway_When_NoExactMatch() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(lotr, lalka, solaris, zolc, lord));
+
+        assertAll(
+                () -> assertEquals(List.of(3), bookTitleIndex.findIdsByTitle("Solaros")),
+                () -> assertEquals(List.of(1), bookTitleIndex.findIdsByTitle("the rngs")),
+                () -> assertTrue(bookTitleIndex.findIdsByTitle("Dune").isEmpty())
+        );
+    }
+
+    @Test
+    public void should_FindShortTitleOneEditAway_When_QueryKeepsNoTrigram() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(lalka, solaris, book(6, "Dune"), book(7, "Emma")));
+
+        assertAll(
+                () -> assertEquals(List.of(6), bookTitleIndex.findIdsByTitle("Dume")),
+                () -> assertEquals(List.of(6), bookTitleIndex.findIdsByTitle("dne")),
+                () -> assertEquals(List.of(7), bookTitleIndex.findIdsByTitle("Emmma")),
+                () -> assertEquals(List.of(2), bookTitleIndex.findIdsByTitle("laka")),
+                () -> assertEquals(List.of(6), bookTitleIndex.suggestIds("dume", 10))
+        );
+    }
+
+    @Test
+    public void should_CountTrigramsOneEditCanDestroy() {
+        assertAll(
+                () -> assertEquals(1, BookTitleIndex.destroyedByOneEdit(3)),
+                () -> assertEquals(2, BookTitleIndex.destroyedByOneEdit(4)),
+                () -> assertEquals(3, BookTitleIndex.destroyedByOneEdit(5)),
+                () -> assertEquals(3, BookTitleIndex.destroyedByOneEdit(12))
+        );
+    }
+
+    @Test
+    public void should_ListOnlyExactMatchIds_When_FindingIdsForSearch() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(lotr, lalka, solaris, zolc, lord));
+
+        assertAll(
+                () -> assertEquals(Set.of(2, 3), bookTitleIndex.findIdsContaining("LA")),
+                () -> assertEquals(Set.of(4), bookTitleIndex.findIdsContaining("zolc")),
+                () -> assertTrue(bookTitleIndex.findIdsContaining("Solaros").isEmpty())
+        );
+    }
+
+    @Test
+    public void should_RankTitlePrefixBeforeWordPrefix_When_Suggesting() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(lotr, lalka, solaris, zolc, lord));
+
+        List<Integer> suggestions = bookTitleIndex.suggestIds("lor", 10);
+
+        // "Solaris" is a one-edit typo away ("lar"), so it ranks last
+        assertEquals(List.of(5, 1, 3), suggestions);
+        assertEquals(List.of(5), bookTitleIndex.suggestIds("lor", 1));
+    }
+
+    @Test
+    public void should_FollowWrites_When_BooksChange() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(lotr, lalka, solaris, zolc, lord));
+
+        bookTitleIndex.load();
+
+        bookTitleIndex.onBookSaved(book(6, "Solaris Station"));
+        bookTitleIndex.onBookSaved(book(3, "Eden"));
+        bookTitleIndex.onBookRemoved(2);
+
+        assertAll(
+                () -> assertEquals(List.of(6), bookTitleIndex.findIdsByTitle("solaris")),
+                () -> assertEquals(List.of(3), bookTitleIndex.findIdsByTitle("eden")),
+                () -> assertTrue(bookTitleIndex.findIdsByTitle("lalka").isEmpty())
+        );
+    }
+
+    @Test
+    public void should_KeepWrites_When_ReportedDuringLoad() {
+        when(bookRepository.findAll()).thenAnswer(invocation -> {
+            bookTitleIndex.onBookSaved(book(6, "Solaris Station"));
+            bookTitleIndex.onBookRemoved(2);
+            return Arrays.asList(lotr, lalka, solaris);
+        });
+
+        bookTitleIndex.load();
+
+        assertAll(
+                () -> assertEquals(List.of(3, 6), bookTitleIndex.findIdsByTitle("solaris")),
+                () -> assertTrue(bookTitleIndex.findIdsByTitle("lalka").isEmpty())
+        );
+    }
+
+    @Test
+    public void should_KeepNewerVersion_When_LoadReadsOlderOne() {
+        BookEntity renamed = book(3, "Eden");
+        renamed.setVersion(1);
+
+        bookTitleIndex.load(List.of(renamed));
+        bookTitleIndex.onBookSaved(solaris);
+
+        assertAll(
+                () -> assertEquals(List.of(3), bookTitleIndex.findIdsByTitle("eden")),
+                () -> assertTrue(bookTitleIndex.findIdsByTitle("solaris").isEmpty())
+        );
+    }
+
+    @Test
+    public void should_ReloadInBackground_When_IndexOutlivedMaxAge() {
+        bookTitleIndex.shutdown();
+        bookTitleIndex = new BookTitleIndex(bookRepository, Duration.ZERO);
+        when(bookRepository.findAll())
+                .thenReturn(Arrays.asList(lotr, lalka))
+                .thenReturn(Arrays.asList(lotr, lalka, solaris));
+
+        bookTitleIndex.load();
+        bookTitleIndex.findIdsByTitle("solaris");
+
+        verify(bookRepository, timeout(2000).times(2)).findAll();
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            while (bookTitleIndex.findIdsByTitle("solaris").isEmpty()) {
+                Thread.onSpinWait();
+            }
+        });
+    }
+
+    @Test
+    public void should_MatchWithinOneEdit() {
+        assertAll(
+                () -> assertTrue(BookTitleIndex.containsWithinOneEdit(" the hobbit", "hobit")),
+                () -> assertTrue(BookTitleIndex.containsWithinOneEdit(" the hobbit", "hobbbit")),
+                () -> assertTrue(BookTitleIndex.containsWithinOneEdit(" the hobbit", "hobbot")),
+                () -> assertFalse(BookTitleIndex.containsWithinOneEdit(" the hobbit", "hubbot"))
+        );
+    }
+
+    private static BookEntity book(int id, String title) {
+        return new BookEntity(id, "F0" + id, title, "author", "description", "fantasy", 0.0, new ArrayList<>());
+    }
+}
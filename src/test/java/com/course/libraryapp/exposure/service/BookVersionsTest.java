@@ -0,0 +1,43 @@
+package com.course.libraryapp.exposure.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookVersionsTest {
+
+    @Test
+    void should_KeepNewerVersion_When_OlderVersionIsRecordedLater() {
+        BookVersions bookVersions = new BookVersions(100, Duration.ofMinutes(1));
+
+        bookVersions.record(1, 3);
+        bookVersions.record(1, 2);
+
+        assertEquals(3L, bookVersions.find(1));
+    }
+
+    @Test
+    void should_IgnoreVersion_When_BookWasRemoved() {
+        BookVersions bookVersions = new BookVersions(100, Duration.ofMinutes(1));
+
+        bookVersions.record(1, 3);
+        bookVersions.remove(1);
+        bookVersions.record(1, 4);
+
+        assertNull(bookVersions.find(1));
+    }
+
+    @Test
+    void should_ForgetTombstone_When_ItExpired() throws InterruptedException {
+        BookVersions bookVersions = new BookVersions(100, Duration.ofMillis(200));
+
+        bookVersions.remove(1);
+        Thread.sleep(400);
+        bookVersions.record(1, 0);
+
+        assertEquals(0L, bookVersions.find(1));
+    }
+}
@@ -2,18 +2,23 @@ package com.course.libraryapp.exposure.service;
 
 import com.course.libraryapp.exposure.repository.GenreRepository;
 import com.course.libraryapp.persistance.model.GenreEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class GenreServiceTest {
@@ -24,12 +29,16 @@ public class GenreServiceTest {
     @Mock
     GenreRepository genreRepository;
 
-    @InjectMocks
     private GenreService genreService;
 
     @BeforeEach
     public void setup() {
-        genreService = new GenreService(genreRepository);
+        genreService = new GenreService(genreRepository, new ObjectMapper(), Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        genreService.shutdown();
     }
 
     @Test
@@ -44,4 +53,52 @@ public class GenreServiceTest {
                 () -> assertFalse(genres.contains("unknown genre"))
         );
     }
+
+    @Test
+    public void should_ServeCachedJson_When_CalledAgain() {
+        when(genreRepository.findAll()).thenReturn(Arrays.asList(genreFantasyEntity, genreSciFiEntity));
+
+        byte[] first = genreService.getAllGenresJson();
+        byte[] second = genreService.getAllGenresJson();
+
+        assertAll(
+                () -> assertEquals("[\"fantasy\",\"sci-fi\"]", new String(first, StandardCharsets.UTF_8)),
+                () -> assertSame(first, second)
+        );
+        verify(genreRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void should_ServeCachedListWhileReloading_When_RefreshIsDue() {
+        genreService.shutdown();
+        genreService = new GenreService(genreRepository, new ObjectMapper(), Duration.ZERO, Duration.ofHours(1));
+        AtomicReference<String> refreshThread = new AtomicReference<>();
+        when(genreRepository.findAll())
+                .thenReturn(Collections.singletonList(genreFantasyEntity))
+                .thenAnswer(invocation -> {
+                    refreshThread.set(Thread.currentThread().getName());
+                    return Arrays.asList(genreFantasyEntity, genreSciFiEntity);
+                });
+
+        genreService.getAllGenres();
+        List<String> stale = genreService.getAllGenres();
+
+        verify(genreRepository, timeout(2000).times(2)).findAll();
+        assertAll(
+                () -> assertEquals(Collections.singletonList("fantasy"), stale),
+                () -> assertEquals("genre-refresher", refreshThread.get())
+        );
+    }
+
+    @Test
+    public void should_ReloadGenres_When_Invalidated() {
+        when(genreRepository.findAll())
+                .thenReturn(Collections.singletonList(genreFantasyEntity))
+                .thenReturn(Arrays.asList(genreFantasyEntity, genreSciFiEntity));
+
+        genreService.getAllGenres();
+        genreService.invalidate();
+
+        assertEquals(Arrays.asList("fantasy", "sci-fi"), genreService.getAllGenres());
+    }
 }
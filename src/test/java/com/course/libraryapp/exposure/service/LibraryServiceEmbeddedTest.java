@@ -0,0 +1,128 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
+import com.course.libraryapp.exposure.repository.BookIdAllocator;
+import com.course.libraryapp.exposure.repository.embedded.EmbeddedBookRepository;
+import com.course.libraryapp.exposure.repository.embedded.EmbeddedSequenceIdRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The service over the embedded store instead of mocks, so what it needs from a {@link
+ * com.course.libraryapp.exposure.repository.BookRepository} is exercised end to end without a mongod.
+ */
+class LibraryServiceEmbeddedTest {
+
+    private static final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedSequenceIdRepository sequenceIdRepository;
+    private EmbeddedBookRepository bookRepository;
+    private BookCatalog bookCatalog;
+    private BookTitleIndex bookTitleIndex;
+    private RatingBuffer ratingBuffer;
+    private LibraryService libraryService;
+
+    @BeforeEach
+    public void setup() {
+        sequenceIdRepository = new EmbeddedSequenceIdRepository(directory, false);
+        bookRepository = new EmbeddedBookRepository(new BookIdAllocator(sequenceIdRepository, 10, 0), directory, false, false);
+        bookCatalog = new BookCatalog(bookRepository, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        bookTitleIndex = new BookTitleIndex(bookRepository, Duration.ofMinutes(1));
+        ratingBuffer = new RatingBuffer(bookRepository, true, Duration.ofHours(1), 1000);
+        libraryService = new LibraryService(bookRepository, validator, new BookLeaderboards(bookRepository, 10, Duration.ofMinutes(1)),
+                bookCatalog, bookTitleIndex, new BookVersions(100, Duration.ofMinutes(1)), new BookCache(100, Duration.ofMinutes(1)), ratingBuffer);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException, IOException {
+        ratingBuffer.shutdown();
+        bookCatalog.shutdown();
+        bookTitleIndex.shutdown();
+        bookRepository.close();
+        sequenceIdRepository.close();
+    }
+
+    @Test
+    public void should_AddFindAndRemoveBook_When_StoredEmbedded() {
+        BookRepresentation added = libraryService.checkSignatureAndAddBook(book("F01", "LOTR", "fantasy"));
+
+        assertAll(
+                () -> assertEquals("LOTR", libraryService.getBookById(added.getId()).getTitle()),
+                () -> assertThrows(DuplicateSignatureException.class, () -> libraryService.checkSignatureAndAddBook(book("F01", "Hobbit", "fantasy")))
+        );
+        libraryService.checkIdAndRemoveBook(added.getId());
+        assertThrows(BookNotFoundException.class, () -> libraryService.getBookById(added.getId()));
+    }
+
+    @Test
+    public void should_UpdateOnlyFromCurrentVersion_When_VersionGiven() {
+        BookRepresentation added = libraryService.checkSignatureAndAddBook(book("F01", "LOTR", "fantasy"));
+
+        libraryService.checkIdAndUpdateBook(added.getId(), book("F01", "Two Towers", "fantasy"), 0);
+
+        assertAll(
+                () -> assertEquals("Two Towers", libraryService.getBookById(added.getId()).getTitle()),
+                () -> assertThrows(VersionConflictException.class,
+                        () -> libraryService.checkIdAndUpdateBook(added.getId(), book("F01", "Return of the King", "fantasy"), 0))
+        );
+    }
+
+    @Test
+    public void should_CountBufferedAndWrittenVotesOnce_When_RatingsAreFlushed() {
+        BookRepresentation added = libraryService.checkSignatureAndAddBook(book("F01", "LOTR", "fantasy"));
+
+        libraryService.checkIdAndRateABook(added.getId(), 5);
+        libraryService.checkIdAndRateABook(added.getId(), 4);
+        BookRepresentation buffered = libraryService.getBookById(added.getId());
+        ratingBuffer.flush(List.of(added.getId()));
+        BookRepresentation written = libraryService.getBookById(added.getId());
+
+        assertAll(
+                () -> assertEquals(List.of(5, 4), buffered.getScoreRegistry()),
+                () -> assertEquals(4.5, buffered.getScore()),
+                () -> assertEquals(List.of(5, 4), written.getScoreRegistry()),
+                () -> assertEquals(4.5, written.getScore()),
+                () -> assertEquals(buffered.getVersion(), written.getVersion()),
+                () -> assertEquals(List.of(5, 4), bookRepository.findById(added.getId()).getScoreRegistry())
+        );
+    }
+
+    @Test
+    public void should_SearchAndSelectFields_When_StoredEmbedded() {
+        libraryService.checkSignatureAndAddBook(book("F01", "LOTR", "fantasy"));
+        libraryService.checkSignatureAndAddBook(book("F02", "The Hobbit", "fantasy"));
+        libraryService.checkSignatureAndAddBook(book("S01", "Dune", "sci-fi"));
+
+        BookSearchRepresentation search = libraryService.searchBooks("fantasy", null, "hobbit", null, null, "title", null, 10);
+        List<SparseBookRepresentation> fantasy = libraryService.getBooksByGenre("fantasy", BookFields.parse("title"));
+
+        assertAll(
+                () -> assertEquals(List.of("The Hobbit"), search.getBooks().stream().map(BookRepresentation::getTitle).toList()),
+                () -> assertEquals(List.of("LOTR", "The Hobbit"), fantasy.stream().map(book -> book.get("title")).sorted().toList()),
+                () -> assertNull(fantasy.get(0).get("author"))
+        );
+    }
+
+    private static BookRepresentation book(String signature, String title, String genre) {
+        return new BookRepresentation(0, signature, title, "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", genre);
+    }
+}
@@ -1,20 +1,51 @@
 package com.course.libraryapp.exposure.service;
 
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.GenreNotFoundException;
+import com.course.libraryapp.exposure.exception.InvalidRequestException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.model.BookBulkResultRepresentation;
+import com.course.libraryapp.exposure.model.BookPageRepresentation;
+import com.course.libraryapp.exposure.model.BookRemovalRepresentation;
 import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.model.BookSearchRepresentation;
+import com.course.libraryapp.exposure.model.BulkItemStatus;
+import com.course.libraryapp.exposure.model.FacetCountRepresentation;
+import com.course.libraryapp.exposure.model.GenreEnumRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookPageRepresentation;
+import com.course.libraryapp.exposure.model.SparseBookRepresentation;
 import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.exposure.repository.BookSearchFilter;
+import com.course.libraryapp.exposure.util.PageCursor;
 import com.course.libraryapp.persistance.model.BookEntity;
+import com.course.libraryapp.persistance.model.BookSearchResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,15 +75,21 @@ class LibraryServiceTest {
             "A hobbit on a mission", "fantasy", 0.0, Arrays.asList(2, 4, 5));
 
 
+    private static final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @Mock
     BookRepository bookRepository;
 
-    @InjectMocks
+    private BookVersions bookVersions;
     private LibraryService libraryService;
 
     @BeforeEach
     public void setup() {
-        libraryService = new LibraryService(bookRepository);
+        bookVersions = new BookVersions(100, Duration.ofMinutes(1));
+        libraryService = new LibraryService(bookRepository, validator, new BookLeaderboards(bookRepository, 10, Duration.ofMinutes(1)),
+                new BookCatalog(bookRepository, Duration.ofMinutes(1), Duration.ofMinutes(1)), new BookTitleIndex(bookRepository, Duration.ofMinutes(1)), bookVersions,
+                new BookCache(100, Duration.ofMinutes(1)),
+                new RatingBuffer(bookRepository, false, Duration.ofMillis(100), 1000));
     }
 
     @Nested
@@ -75,18 +112,39 @@ class LibraryServiceTest {
 
             final List<BookRepresentation> listOfBookRepresentations = Arrays.asList(bookRepresentation5, bookRepresentation6);
 
-            List<BookRepresentation> result = libraryService.checkSignaturesAndAddBooks(listOfBookRepresentations);
+            List<BookBulkResultRepresentation> result = libraryService.checkSignaturesAndAddBooks(listOfBookRepresentations);
 
             assertAll(
                     () -> assertEquals(2, libraryService.getAllBooks().size()),
                     () -> assertEquals(result.get(0).getSignature(), bookEntity5.getSignature()),
-                    () -> assertEquals(result.get(1).getSignature(), bookEntity6.getSignature())
+                    () -> assertEquals(result.get(1).getSignature(), bookEntity6.getSignature()),
+                    () -> assertEquals(BulkItemStatus.CREATED, result.get(0).getStatus()),
+                    () -> assertEquals(BulkItemStatus.CREATED, result.get(1).getStatus())
+            );
+        }
+
+        @Test
+        public void should_ReportEachBook_When_ListContainsDuplicatesAndInvalidBooks() {
+            BookRepresentation invalidBookRepresentation = new BookRepresentation(0, "F09", "", "Tolkien", "Desc", "fantasy");
+            when(bookRepository.findExistingSignatures(Set.of("F05", "F06")))
+                    .thenReturn(Set.of("F06"));
+
+            List<BookBulkResultRepresentation> result = libraryService.checkSignaturesAndAddBooks(
+                    Arrays.asList(bookRepresentation5, bookRepresentation6, bookRepresentation5, invalidBookRepresentation));
+
+            assertAll(
+                    () -> assertEquals(4, result.size()),
+                    () -> assertEquals(BulkItemStatus.CREATED, result.get(0).getStatus()),
+                    () -> assertEquals(BulkItemStatus.DUPLICATE, result.get(1).getStatus()),
+                    () -> assertEquals(BulkItemStatus.DUPLICATE, result.get(2).getStatus()),
+                    () -> assertEquals(BulkItemStatus.INVALID, result.get(3).getStatus()),
+                    () -> assertEquals("Title cannot be empty", result.get(3).getMessage())
             );
         }
 
         @Test
         public void should_RemoveBookFromLibrary_When_BookIdExists() {
-            when(bookRepository.findById(1)).thenReturn(bookEntity);
+            when(bookRepository.removeById(1)).thenReturn(true);
             when(bookRepository.findAll()).thenReturn(Collections.singletonList(bookEntity2));
 
             libraryService.checkIdAndRemoveBook(1);
@@ -101,18 +159,167 @@ class LibraryServiceTest {
         @Test
         public void should_UpdateBook_When_BookIdExists() {
             when(bookRepository.findById(1)).thenReturn(bookEntity);
+            when(bookRepository.replaceIfVersion(any(BookEntity.class), eq(0L))).thenAnswer(invocation -> invocation.getArgument(0));
 
             BookRepresentation updatedBookRepresentation = libraryService.checkIdAndUpdateBook(1, bookRepresentation2);
 
-            assertEquals("Fellowship of the ring", updatedBookRepresentation.getTitle());
+            assertAll(
+                    () -> assertEquals("Fellowship of the ring", updatedBookRepresentation.getTitle()),
+                    () -> assertEquals(1, updatedBookRepresentation.getVersion()),
+                    () -> assertEquals(1, libraryService.getBookById(1).getVersion())
+            );
         }
 
         @Test
-        public void should_RateABook_When_BookIdExists() {
+        public void should_RetryFromNewVersion_When_BookChangedDuringUpdate() {
+            BookEntity changedBookEntity = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+                    "A hobbit on a mission to destroy the ring", "sci-fi", 3.5, new ArrayList<>());
+            changedBookEntity.setVersion(3);
+            when(bookRepository.findById(1)).thenReturn(bookEntity, changedBookEntity);
+            when(bookRepository.replaceIfVersion(any(BookEntity.class), eq(0L))).thenReturn(null);
+            when(bookRepository.replaceIfVersion(any(BookEntity.class), eq(3L))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            BookRepresentation updatedBookRepresentation = libraryService.checkIdAndUpdateBook(1, new BookRepresentation(1, "F01",
+                    "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy"));
+
+            assertEquals(4, updatedBookRepresentation.getVersion());
+        }
+
+        @Test
+        public void should_ThrowConflict_When_EveryReplaceLosesTheRace() {
             when(bookRepository.findById(1)).thenReturn(bookEntity);
+            when(bookRepository.replaceIfVersion(any(BookEntity.class), eq(0L))).thenReturn(null);
+
+            assertThrows(VersionConflictException.class, () -> libraryService.checkIdAndUpdateBook(1, new BookRepresentation(1, "F01",
+                    "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy")));
+            verify(bookRepository, times(LibraryService.MAX_UPDATE_ATTEMPTS)).replaceIfVersion(any(BookEntity.class), eq(0L));
+        }
+
+        @Test
+        public void should_ThrowConflict_When_ExpectedVersionIsOutdated() {
+            BookEntity changedBookEntity = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+                    "A hobbit on a mission to destroy the ring", "sci-fi", 3.5, new ArrayList<>());
+            changedBookEntity.setVersion(3);
+            when(bookRepository.replaceIfVersion(any(BookEntity.class), eq(2L))).thenReturn(null);
+            when(bookRepository.findById(1)).thenReturn(changedBookEntity);
+
+            VersionConflictException exception = assertThrows(VersionConflictException.class, () ->
+                    libraryService.checkIdAndUpdateBook(1, new BookRepresentation(1, "F01", "Two Towers", "J.R.R.Tolkien",
+                            "A hobbit on a mission to destroy the ring", "fantasy"), 2));
+
+            assertEquals("Book with id=1 was modified by another request, its current version is 3.", exception.getMessage());
+        }
+
+        @Test
+        public void should_UpdateBook_When_ExpectedVersionIsCurrent() {
+            when(bookRepository.replaceIfVersion(any(BookEntity.class), eq(3L))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            BookRepresentation updatedBookRepresentation = libraryService.checkIdAndUpdateBook(1, new BookRepresentation(1, "F01",
+                    "Two Towers", "J.R.R.Tolkien", "A hobbit on a mission to destroy the ring", "fantasy"), 3);
+
+            assertAll(
+                    () -> assertEquals(4, updatedBookRepresentation.getVersion()),
+                    () -> assertEquals(4, libraryService.getBookById(1).getVersion())
+            );
+        }
+
+        @Test
+        public void should_ServeBookFromCache_When_ReadAgain() {
+            when(bookRepository.findById(1)).thenReturn(bookEntity);
+
+            libraryService.getBookById(1);
+            BookRepresentation bookRep = libraryService.getBookById(1);
+
+            assertEquals("LOTR", bookRep.getTitle());
+            verify(bookRepository, times(1)).findById(1);
+        }
+
+        @Test
+        public void should_ReadBookAgain_When_CachedBookRemoved() {
+            when(bookRepository.findById(1)).thenReturn(bookEntity, (BookEntity) null);
+            when(bookRepository.removeById(1)).thenReturn(true);
+
+            libraryService.getBookById(1);
+            libraryService.checkIdAndRemoveBook(1);
+
+            assertThrows(BookNotFoundException.class, () -> libraryService.getBookById(1));
+        }
+
+        @Test
+        public void should_RemoveBooksOfGenre_When_GenreExists() {
+            when(bookRepository.findById(2)).thenReturn(bookEntity2);
+            when(bookRepository.findIdsByGenre("fantasy")).thenReturn(List.of(2, 3));
+            when(bookRepository.removeAllById(List.of(2, 3))).thenReturn(2L);
+
+            libraryService.getBookById(2);
+            BookRemovalRepresentation removal = libraryService.removeBooksByGenre("Fantasy");
+
+            assertAll(
+                    () -> assertEquals(2, removal.getRemoved()),
+                    () -> assertNull(bookVersions.find(2))
+            );
+        }
+
+        @Test
+        public void should_SkipDelete_When_NoIdsGiven() {
+            BookRemovalRepresentation removal = libraryService.removeBooksById(Collections.emptyList());
+
+            assertEquals(0, removal.getRemoved());
+            verifyNoInteractions(bookRepository);
+        }
+
+        @Test
+        public void should_BufferVote_When_WriteBehindEnabled() throws InterruptedException {
+            RatingBuffer ratingBuffer = new RatingBuffer(bookRepository, true, Duration.ofHours(1), 1000);
+            LibraryService writeBehindService = new LibraryService(bookRepository, validator,
+                    new BookLeaderboards(bookRepository, 10, Duration.ofMinutes(1)), new BookCatalog(bookRepository, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                    new BookTitleIndex(bookRepository, Duration.ofMinutes(1)), new BookVersions(100, Duration.ofMinutes(1)), new BookCache(100, Duration.ofMinutes(1)), ratingBuffer);
+            when(bookRepository.findById(3)).thenReturn(bookEntity3);
+            when(bookRepository.addRates(Map.of(3, List.of(5)))).thenReturn(Collections.emptySet());
+
+            BookRepresentation ratedBookRepresentation = writeBehindService.checkIdAndRateABook(3, 5);
+            long servedVersion = writeBehindService.getBookById(3).getVersion();
+            ratingBuffer.shutdown();
+
+            assertAll(
+                    () -> assertEquals(List.of(3, 3, 5), ratedBookRepresentation.getScoreRegistry()),
+                    () -> assertEquals(3.67, ratedBookRepresentation.getScore()),
+                    () -> assertEquals(1, servedVersion)
+            );
+            verify(bookRepository, never()).rateBook(anyInt(), anyInt());
+        }
+
+        @Test
+        public void should_KnowBookVersion_When_BookWasRead() {
+            when(bookRepository.findById(1)).thenReturn(bookEntity);
+
+            Long unknown = libraryService.findBookVersion(1);
+            libraryService.getBookById(1);
+
+            assertAll(
+                    () -> assertNull(unknown),
+                    () -> assertEquals(bookEntity.getVersion(), libraryService.findBookVersion(1))
+            );
+        }
+
+        @Test
+        public void should_ForgetBookVersion_When_BookRemoved() {
+            when(bookRepository.findById(1)).thenReturn(bookEntity);
+
+            when(bookRepository.removeById(1)).thenReturn(true);
+
+            libraryService.getBookById(1);
+            libraryService.checkIdAndRemoveBook(1);
+
+            assertNull(bookVersions.find(1));
+        }
+
+        @Test
+        public void should_RateABook_When_BookIdExists() {
+            when(bookRepository.rateBook(1, 4)).thenReturn(new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+                    "A hobbit on a mission to destroy the ring", "sci-fi", 4.0, List.of(4)));
 
             BookRepresentation bookRepresentation = libraryService.checkIdAndRateABook(1, 4);
-            libraryService.checkIdAndRateABook(1, 5);
 
             assertAll(
                     () -> assertEquals(1, bookRepresentation.getScoreRegistry().size()),
@@ -125,7 +332,8 @@ class LibraryServiceTest {
     class ReturnFilteredBooksTests {
         @Test
         public void should_ReturnBooksByTitle_When_TitleExists() {
-            when(bookRepository.findAllByTitle("Witcher")).thenReturn(Arrays.asList(bookEntity3, bookEntity7));
+            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity7, bookEntity2, bookEntity3));
+            when(bookRepository.findAllByIdIn(List.of(3, 7))).thenReturn(Arrays.asList(bookEntity7, bookEntity3));
 
             List<BookRepresentation> bookRepresentation = libraryService.getBookByTitle("Witcher");
 
@@ -135,6 +343,50 @@ class LibraryServiceTest {
             );
         }
 
+        @Test
+        public void should_SuggestBooksByTitle_When_PrefixMatches() {
+            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity2, bookEntity3, bookEntity6));
+            when(bookRepository.findAllByIdIn(List.of(3))).thenReturn(List.of(bookEntity3));
+
+            List<BookRepresentation> suggestions = libraryService.suggestBooksByTitle("wit", 10);
+
+            assertAll(
+                    () -> assertEquals(1, suggestions.size()),
+                    () -> assertEquals(bookEntity3.getTitle(), suggestions.get(0).getTitle())
+            );
+        }
+
+        @Test
+        public void should_ServeStoredBookWithPendingVotes_When_FoundByTitle() throws InterruptedException {
+            RatingBuffer ratingBuffer = new RatingBuffer(bookRepository, true, Duration.ofHours(1), 1000);
+            LibraryService writeBehindService = new LibraryService(bookRepository, validator,
+                    new BookLeaderboards(bookRepository, 10, Duration.ofMinutes(1)), new BookCatalog(bookRepository, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                    new BookTitleIndex(bookRepository, Duration.ofMinutes(1)), new BookVersions(100, Duration.ofMinutes(1)), new BookCache(100, Duration.ofMinutes(1)), ratingBuffer);
+            BookEntity storedBookEntity = new BookEntity(3, "F03", "Witcher", "Andrzej Sapkowski",
+                    "A witcher on a mission", "fantasy", 3.0, Arrays.asList(3, 3));
+            when(bookRepository.findAll()).thenReturn(List.of(bookEntity3));
+            when(bookRepository.findAllByIdIn(List.of(3))).thenReturn(List.of(storedBookEntity));
+            when(bookRepository.addRates(Map.of(3, List.of(5)))).thenReturn(Collections.emptySet());
+
+            ratingBuffer.add(3, 5);
+            List<BookRepresentation> booksByTitle = writeBehindService.getBookByTitle("witcher");
+            ratingBuffer.shutdown();
+
+            assertAll(
+                    () -> assertEquals("Andrzej Sapkowski", booksByTitle.get(0).getAuthor()),
+                    () -> assertEquals(List.of(3, 3, 5), booksByTitle.get(0).getScoreRegistry()),
+                    () -> assertEquals(1, booksByTitle.get(0).getVersion())
+            );
+        }
+
+        @Test
+        public void should_ThrowExceptionOnSuggestions_When_LimitTooLarge() {
+            InvalidRequestException exception = assertThrows(InvalidRequestException.class, () ->
+                    libraryService.suggestBooksByTitle("wit", LibraryService.MAX_SUGGESTIONS + 1));
+
+            assertEquals("Limit must be between 1 and 50.", exception.getMessage());
+        }
+
         @Test
         public void should_ReturnBooksByGenre_When_GenreExists() {
             when(bookRepository.findAllByGenre("fantasy")).thenReturn(Arrays.asList(bookEntity2, bookEntity3));
@@ -147,9 +399,35 @@ class LibraryServiceTest {
             );
         }
 
+        @Test
+        public void should_ReturnOnlyRequestedFields_When_SummaryOfGenreRequested() {
+            when(bookRepository.findAllByGenre("fantasy", Sort.unsorted(), BookFields.SUMMARY.getProjection()))
+                    .thenReturn(Arrays.asList(bookEntity2, bookEntity3));
+
+            List<SparseBookRepresentation> fantasyBooks = libraryService.getBooksByGenre("fantasy", BookFields.SUMMARY);
+
+            assertAll(
+                    () -> assertEquals(List.of("id", "title", "author", "genre", "score"), new ArrayList<>(fantasyBooks.get(0).keySet())),
+                    () -> assertEquals(GenreEnumRepresentation.FANTASY, fantasyBooks.get(0).get("genre")),
+                    () -> assertEquals(bookEntity3.getTitle(), fantasyBooks.get(1).get("title"))
+            );
+        }
+
+        @Test
+        public void should_QueryCanonicalGenre_When_GenreDiffersInCaseOrDiacritics() {
+            when(bookRepository.findAllByGenre("powieść przygodowa")).thenReturn(Collections.singletonList(bookEntity6));
+
+            List<BookRepresentation> adventureBookRepresentations = libraryService.getBooksByGenre("Powiesc  Przygodowa");
+
+            assertAll(
+                    () -> assertEquals(1, adventureBookRepresentations.size()),
+                    () -> assertEquals(GenreEnumRepresentation.POWIESC_PRZYGODOWA, adventureBookRepresentations.get(0).getGenre())
+            );
+        }
+
         @Test
         public void should_ReturnMostPopularBook_When_ThereIsOne() throws Exception {
-            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity7, bookEntity5, bookEntity6, bookEntity3));
+            when(bookRepository.findTopBooks("votesCount", 11)).thenReturn(Arrays.asList(bookEntity2, bookEntity7, bookEntity3, bookEntity5, bookEntity6, bookEntity));
 
             List<BookRepresentation> mostPopularBookRepresentation = libraryService.getMostPopularBook();
 
@@ -161,9 +439,9 @@ class LibraryServiceTest {
 
         @Test
         public void should_ReturnMostPopularBooksByGenre_When_GenreExists() {
-            when(bookRepository.findAllByGenre("fantasy")).thenReturn(Arrays.asList(bookEntity2, bookEntity7, bookEntity3));
+            when(bookRepository.findAllByGenreOrderByScoreDescIdAsc("fantasy")).thenReturn(Arrays.asList(bookEntity2, bookEntity3, bookEntity7));
 
-            List<BookRepresentation> sortedLibraryBookRepresentations = libraryService.getSortedScoreByGenre("fantasy");
+            List<BookRepresentation> sortedLibraryBookRepresentations = libraryService.getSortedScoreByGenre("Fantasy");
 
             assertAll(
                     () -> assertEquals(3, sortedLibraryBookRepresentations.size()),
@@ -178,78 +456,175 @@ class LibraryServiceTest {
 
         @Test
         public void should_ReturnHighestRatedBook_When_ExistsOne() throws Exception {
-            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity7, bookEntity5, bookEntity6, bookEntity3));
+            when(bookRepository.findTopBooks("score", 11)).thenReturn(Arrays.asList(bookEntity2, bookEntity5, bookEntity, bookEntity3, bookEntity6, bookEntity7));
 
             List<BookRepresentation> highestRatedBookRepresentations = libraryService.getHighestRatedBook();
 
             assertAll(
+                    () -> assertEquals(1, highestRatedBookRepresentations.size()),
                     () -> assertEquals(5.0, highestRatedBookRepresentations.get(0).getScore()),
                     () -> assertEquals(bookEntity2.getTitle(), highestRatedBookRepresentations.get(0).getTitle())
             );
         }
+
+        @Test
+        public void should_ReturnHighestRatedBook_When_RatingMovesBookToTheTop() throws Exception {
+            BookEntity ratedBookEntity = new BookEntity(5, "F05", "Two Towers", "Zajdel",
+                    "A hobbit on a mission to destroy the ring", "thriller/horror", 5.0, Arrays.asList(4, 5, 5, 5, 5, 6));
+            when(bookRepository.findTopBooks("score", 11)).thenReturn(Arrays.asList(bookEntity2, bookEntity5, bookEntity));
+            when(bookRepository.rateBook(5, 6)).thenReturn(ratedBookEntity);
+
+            libraryService.getHighestRatedBook();
+            libraryService.checkIdAndRateABook(5, 6);
+            List<BookRepresentation> highestRatedBookRepresentations = libraryService.getHighestRatedBook();
+
+            assertAll(
+                    () -> assertEquals(2, highestRatedBookRepresentations.size()),
+                    () -> assertEquals(bookEntity2.getTitle(), highestRatedBookRepresentations.get(0).getTitle()),
+                    () -> assertEquals(ratedBookEntity.getTitle(), highestRatedBookRepresentations.get(1).getTitle())
+            );
+        }
     }
 
     @Nested
     class SortingTests {
         @Test
         public void should_SortBooksByAuthor() {
-            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity7, bookEntity5, bookEntity6));
+            when(bookRepository.findSortedAfter("author", Sort.Direction.ASC, null, null, 101))
+                    .thenReturn(Arrays.asList(bookEntity7, bookEntity2, bookEntity, bookEntity6, bookEntity5));
+
+            BookPageRepresentation page = libraryService.sortBooksByAuthor(null, 100);
+
+            assertAll(
+                    () -> assertEquals(5, page.getBooks().size()),
+                    () -> assertEquals(bookEntity7.getAuthor(), page.getBooks().get(0).getAuthor()),
+                    () -> assertEquals(bookEntity5.getAuthor(), page.getBooks().get(4).getAuthor()),
+                    () -> assertNull(page.getNextCursor())
+            );
+        }
+
+        @Test
+        public void should_ReadOnlyRequestedFields_When_SparsePageIsSorted() {
+            BookFields fields = BookFields.parse("author");
+            when(bookRepository.findSortedAfter("title", Sort.Direction.ASC, null, null, 3, List.of("author", "version")))
+                    .thenReturn(Arrays.asList(bookEntity6, bookEntity, bookEntity2));
+
+            SparseBookPageRepresentation page = libraryService.sortBooks(BookSortOrder.TITLE, null, 2, fields);
 
-            List<BookRepresentation> sortedLibraryBookRepresentations = libraryService.sortBooksByAuthor();
+            assertAll(
+                    () -> assertEquals(List.of(Map.of("author", bookEntity6.getAuthor()), Map.of("author", bookEntity.getAuthor())), page.getBooks()),
+                    () -> assertEquals(new PageCursor(bookEntity.getId(), bookEntity.getTitle()).encode(), page.getNextCursor())
+            );
+        }
+
+        @Test
+        public void should_SearchWithAllFilters_When_BooksMatch() {
+            Map<String, Long> genreCounts = new LinkedHashMap<>();
+            genreCounts.put("fantasy", 2L);
+            genreCounts.put("thriller/horror", 1L);
+            ArgumentCaptor<BookSearchFilter> filter = ArgumentCaptor.forClass(BookSearchFilter.class);
+            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity3, bookEntity7));
+            when(bookRepository.search(filter.capture(), eq("score"), eq(Sort.Direction.DESC), isNull(), isNull(), eq(3)))
+                    .thenReturn(new BookSearchResult(Arrays.asList(bookEntity2, bookEntity5, bookEntity3), genreCounts, Map.of(4, 2L, 3, 1L)));
+
+            BookSearchRepresentation search = libraryService.searchBooks("Fantasy", " ", "wit", 3.0, null, "score-descending", null, 2);
+
+            assertAll(
+                    () -> assertEquals("fantasy", filter.getValue().getGenre()),
+                    () -> assertNull(filter.getValue().getAuthor()),
+                    () -> assertEquals(Set.of(3, 7), filter.getValue().getBookIds()),
+                    () -> assertEquals(3.0, filter.getValue().getMinScore()),
+                    () -> assertEquals(2, search.getBooks().size()),
+                    () -> assertEquals(new PageCursor(bookEntity5.getId(), "4.5").encode(), search.getNextCursor()),
+                    () -> assertEquals(List.of(new FacetCountRepresentation("fantasy", 2), new FacetCountRepresentation("thriller/horror", 1)),
+                            search.getGenres()),
+                    () -> assertEquals(List.of(new FacetCountRepresentation("0-1", 0), new FacetCountRepresentation("1-2", 0),
+                            new FacetCountRepresentation("2-3", 0), new FacetCountRepresentation("3-4", 1),
+                            new FacetCountRepresentation("4-5", 2)), search.getScores())
+            );
+        }
+
+        @Test
+        public void should_ThrowExceptionOnSearch_When_ScoreRangeIsEmpty() {
+            InvalidRequestException exception = assertThrows(InvalidRequestException.class, () ->
+                    libraryService.searchBooks(null, null, null, 4.0, 3.0, "title", null, 10));
+
+            assertEquals("Minimum score cannot be greater than maximum score.", exception.getMessage());
+            verifyNoInteractions(bookRepository);
+        }
+
+        @Test
+        public void should_ThrowExceptionOnSearch_When_SortOrderIsUnknown() {
+            assertThrows(InvalidRequestException.class, () ->
+                    libraryService.searchBooks(null, null, null, null, null, "relevance", null, 10));
+        }
+
+        @Test
+        public void should_SortBooksByTitle_When_PageIsFollowedByCursor() {
+            when(bookRepository.findSortedAfter("title", Sort.Direction.ASC, null, null, 3))
+                    .thenReturn(Arrays.asList(bookEntity6, bookEntity, bookEntity2));
+            when(bookRepository.findSortedAfter("title", Sort.Direction.ASC, "LOTR", 1, 3))
+                    .thenReturn(Arrays.asList(bookEntity2, bookEntity5));
+
+            BookPageRepresentation firstPage = libraryService.sortBooksByTitle(null, 2);
+            BookPageRepresentation secondPage = libraryService.sortBooksByTitle(firstPage.getNextCursor(), 2);
 
             assertAll(
-                    () -> assertEquals(bookEntity7.getAuthor(), sortedLibraryBookRepresentations.get(0).getAuthor()),
-                    () -> assertEquals(bookEntity2.getAuthor(), sortedLibraryBookRepresentations.get(1).getAuthor()),
-                    () -> assertEquals(bookEntity.getAuthor(), sortedLibraryBookRepresentations.get(2).getAuthor()),
-                    () -> assertEquals(bookEntity6.getAuthor(), sortedLibraryBookRepresentations.get(3).getAuthor()),
-                    () -> assertEquals(bookEntity5.getAuthor(), sortedLibraryBookRepresentations.get(4).getAuthor())
+                    () -> assertEquals(2, firstPage.getBooks().size()),
+                    () -> assertEquals(bookEntity6.getTitle(), firstPage.getBooks().get(0).getTitle()),
+                    () -> assertEquals(bookEntity.getTitle(), firstPage.getBooks().get(1).getTitle()),
+                    () -> assertNotNull(firstPage.getNextCursor()),
+                    () -> assertEquals(bookEntity2.getTitle(), secondPage.getBooks().get(0).getTitle()),
+                    () -> assertEquals(bookEntity5.getTitle(), secondPage.getBooks().get(1).getTitle()),
+                    () -> assertNull(secondPage.getNextCursor())
             );
         }
 
         @Test
-        public void should_SortBooksByTitle() {
-            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity7, bookEntity5, bookEntity6));
+        public void should_PagePastBooksWithoutAuthor_When_SortingByAuthor() {
+            BookEntity anonymous = new BookEntity(8, "F08", "Beowulf", null, "An old poem", "fantasy", 0.0, new ArrayList<>());
+            when(bookRepository.findSortedAfter("author", Sort.Direction.ASC, null, null, 2))
+                    .thenReturn(Arrays.asList(anonymous, bookEntity3));
+            when(bookRepository.findSortedAfter("author", Sort.Direction.ASC, null, 8, 2))
+                    .thenReturn(Arrays.asList(bookEntity3));
 
-            List<BookRepresentation> sortedLibraryBookRepresentations = libraryService.sortBooksByTitle();
+            BookPageRepresentation firstPage = libraryService.sortBooksByAuthor(null, 1);
+            BookPageRepresentation secondPage = libraryService.sortBooksByAuthor(firstPage.getNextCursor(), 1);
 
             assertAll(
-                    () -> assertEquals(bookEntity6.getTitle(), sortedLibraryBookRepresentations.get(0).getTitle()),
-                    () -> assertEquals(bookEntity.getTitle(), sortedLibraryBookRepresentations.get(1).getTitle()),
-                    () -> assertEquals(bookEntity2.getTitle(), sortedLibraryBookRepresentations.get(2).getTitle()),
-                    () -> assertEquals(bookEntity5.getTitle(), sortedLibraryBookRepresentations.get(3).getTitle()),
-                    () -> assertEquals(bookEntity7.getTitle(), sortedLibraryBookRepresentations.get(4).getTitle())
+                    () -> assertEquals(new PageCursor(8, null).encode(), firstPage.getNextCursor()),
+                    () -> assertNull(PageCursor.decode(firstPage.getNextCursor()).getLastSortKey()),
+                    () -> assertEquals(bookEntity3.getTitle(), secondPage.getBooks().get(0).getTitle()),
+                    () -> assertNull(secondPage.getNextCursor())
             );
         }
 
         @Test
         public void should_SortBooksByScoreAscending() {
-            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity7, bookEntity5, bookEntity6, bookEntity3));
+            when(bookRepository.findSortedAfter("score", Sort.Direction.ASC, 3.0, 3, 3))
+                    .thenReturn(Arrays.asList(bookEntity, bookEntity5));
 
-            List<BookRepresentation> sortedLibraryBookRepresentations = libraryService.sortBooksByScoreAscending();
+            String cursor = new PageCursor(3, "3.0").encode();
+            BookPageRepresentation page = libraryService.sortBooksByScoreAscending(cursor, 2);
 
             assertAll(
-                    () -> assertEquals(0.0, sortedLibraryBookRepresentations.get(0).getScore()),
-                    () -> assertEquals(2.0, sortedLibraryBookRepresentations.get(1).getScore()),
-                    () -> assertEquals(3.0, sortedLibraryBookRepresentations.get(2).getScore()),
-                    () -> assertEquals(3.5, sortedLibraryBookRepresentations.get(3).getScore()),
-                    () -> assertEquals(4.5, sortedLibraryBookRepresentations.get(4).getScore()),
-                    () -> assertEquals(5.0, sortedLibraryBookRepresentations.get(5).getScore())
+                    () -> assertEquals(3.5, page.getBooks().get(0).getScore()),
+                    () -> assertEquals(4.5, page.getBooks().get(1).getScore()),
+                    () -> assertNull(page.getNextCursor())
             );
         }
 
         @Test
         public void should_SortBooksByScoreDescending() {
-            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity2, bookEntity7, bookEntity5, bookEntity6, bookEntity3));
+            when(bookRepository.findSortedAfter("score", Sort.Direction.DESC, null, null, 3))
+                    .thenReturn(Arrays.asList(bookEntity2, bookEntity5, bookEntity));
 
-            List<BookRepresentation> sortedLibraryBookRepresentations = libraryService.sortBooksByScoreDescending();
+            BookPageRepresentation page = libraryService.sortBooksByScoreDescending(null, 2);
 
             assertAll(
-                    () -> assertEquals(5.0, sortedLibraryBookRepresentations.get(0).getScore()),
-                    () -> assertEquals(4.5, sortedLibraryBookRepresentations.get(1).getScore()),
-                    () -> assertEquals(3.5, sortedLibraryBookRepresentations.get(2).getScore()),
-                    () -> assertEquals(3.0, sortedLibraryBookRepresentations.get(3).getScore()),
-                    () -> assertEquals(2.0, sortedLibraryBookRepresentations.get(4).getScore()),
-                    () -> assertEquals(0.0, sortedLibraryBookRepresentations.get(5).getScore())
+                    () -> assertEquals(5.0, page.getBooks().get(0).getScore()),
+                    () -> assertEquals(4.5, page.getBooks().get(1).getScore()),
+                    () -> assertEquals(new PageCursor(5, "4.5").encode(), page.getNextCursor())
             );
         }
 
@@ -258,9 +633,27 @@ class LibraryServiceTest {
     @Nested
     class ExceptionTests {
 
+        @Test
+        public void should_ThrowExceptionOnSorting_When_CursorIsInvalid() {
+            InvalidRequestException exception = assertThrows(InvalidRequestException.class, () ->
+                    libraryService.sortBooksByAuthor("not a cursor", 10));
+
+            assertEquals("Invalid page cursor not a cursor.", exception.getMessage());
+        }
+
+        @Test
+        public void should_ThrowExceptionOnSortingByScore_When_CursorScoreIsNotANumber() {
+            String cursor = new PageCursor(3, "high").encode();
+
+            InvalidRequestException exception = assertThrows(InvalidRequestException.class, () ->
+                    libraryService.sortBooksByScoreAscending(cursor, 10));
+
+            assertEquals("Invalid page cursor " + cursor + ".", exception.getMessage());
+        }
+
         @Test
         public void should_ThrowExceptionOnGettingByGenre_When_GenreDoesNotExist() {
-            NoSuchElementException exception = assertThrows(NoSuchElementException.class, () ->
+            GenreNotFoundException exception = assertThrows(GenreNotFoundException.class, () ->
                     libraryService.getBooksByGenre("fantasyyy"));
             assertEquals("No genre fantasyyy in a library.", exception.getMessage());
         }
@@ -269,19 +662,28 @@ class LibraryServiceTest {
         public void should_ThrowExceptionOnAddingDuplicateBookToLibrary_When_BookAlreadyExists() {
             when(bookRepository.findBySignature("F01")).thenReturn(bookEntity);
 
-            Exception exception = assertThrows(Exception.class, () -> libraryService.checkSignatureAndAddBook(bookRepresentation));
+            DuplicateSignatureException exception = assertThrows(DuplicateSignatureException.class, () -> libraryService.checkSignatureAndAddBook(bookRepresentation));
+
+            assertEquals("Book with provided signature F01 already in a library.", exception.getMessage());
+        }
+
+        @Test
+        public void should_ThrowExceptionOnAddingDuplicateBookToLibrary_When_AddedConcurrently() {
+            when(bookRepository.saveCustomized(any(BookEntity.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+
+            DuplicateSignatureException exception = assertThrows(DuplicateSignatureException.class, () -> libraryService.checkSignatureAndAddBook(bookRepresentation));
 
             assertEquals("Book with provided signature F01 already in a library.", exception.getMessage());
         }
 
         @Test
         public void should_ThrowExceptionOnRemoving_When_BookDoesNotExist() {
-            when(bookRepository.findById(3)).thenThrow(new NoSuchElementException("No requested book with id=8 in a library."));
+            when(bookRepository.removeById(3)).thenReturn(false);
 
-            NoSuchElementException exception = assertThrows(NoSuchElementException.class, () ->
+            BookNotFoundException exception = assertThrows(BookNotFoundException.class, () ->
                     libraryService.checkIdAndRemoveBook(3));
 
-            assertEquals("No requested book with id=8 in a library.", exception.getMessage());
+            assertEquals("No requested book with id=3 in a library.", exception.getMessage());
         }
 
 
@@ -289,17 +691,25 @@ class LibraryServiceTest {
         public void should_ThrowExceptionOnUpdating_When_BookIdDoesNotExist() {
             when(bookRepository.findById(5)).thenReturn(null);
 
-            NoSuchElementException exception = assertThrows(NoSuchElementException.class, () ->
+            BookNotFoundException exception = assertThrows(BookNotFoundException.class, () ->
                     libraryService.checkIdAndUpdateBook(5, bookRepresentation5));
 
             assertEquals("No requested book with id=5 in a library.", exception.getMessage());
         }
 
+        @Test
+        public void should_ThrowExceptionOnRating_When_BookIdDoesNotExist() {
+            BookNotFoundException exception = assertThrows(BookNotFoundException.class, () ->
+                    libraryService.checkIdAndRateABook(9, 4));
+
+            assertEquals("No requested book with id=9 in a library.", exception.getMessage());
+        }
+
         @Test
         public void should_ThrowExceptionOnGettingByTitle_When_TitleDoesNotExist() {
-            when(bookRepository.findAllByTitle("unknown")).thenReturn(Collections.emptyList());
+            when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity, bookEntity3));
 
-            NoSuchElementException exception = assertThrows(NoSuchElementException.class, () ->
+            BookNotFoundException exception = assertThrows(BookNotFoundException.class, () ->
                     libraryService.getBookByTitle("unknown"));
 
             assertEquals("No requested book with title unknown in a library.", exception.getMessage());
@@ -307,9 +717,9 @@ class LibraryServiceTest {
 
         @Test
         public void should_ThrowExceptionOnHighestRatedBook_When_NoneIsRated() {
-            when(bookRepository.findAll()).thenReturn(Collections.singletonList(bookEntity7));
+            when(bookRepository.findTopBooks("score", 11)).thenReturn(Collections.singletonList(bookEntity7));
 
-            Exception exception = assertThrows(Exception.class, () ->
+            NoRatingsException exception = assertThrows(NoRatingsException.class, () ->
                     libraryService.getHighestRatedBook());
 
             assertEquals("Couldn't get the highest rated book. All rate to 0.0", exception.getMessage());
@@ -317,9 +727,9 @@ class LibraryServiceTest {
 
         @Test
         public void should_ThrowExceptionMostPopularBook_When_ThereIsAny() {
-            when(bookRepository.findAll()).thenReturn(Collections.singletonList(bookEntity));
+            when(bookRepository.findTopBooks("votesCount", 11)).thenReturn(Collections.singletonList(bookEntity));
 
-            Exception exception = assertThrows(Exception.class, () ->
+            NoRatingsException exception = assertThrows(NoRatingsException.class, () ->
                     libraryService.getMostPopularBook());
 
             assertEquals("Couldn't get the most popular book. No votes yet.", exception.getMessage());
@@ -0,0 +1,144 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RatingBufferTest {
+
+    private static final BookEntity bookEntity = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+            "A hobbit on a mission to destroy the ring", "fantasy", 4.5, Arrays.asList(4, 4, 5, 5));
+
+    @Mock
+    BookRepository bookRepository;
+
+    private RatingBuffer ratingBuffer;
+
+    @BeforeEach
+    public void setup() {
+        ratingBuffer = new RatingBuffer(bookRepository, true, Duration.ofHours(1), 1000);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        ratingBuffer.shutdown();
+    }
+
+    @Test
+    public void should_CountPendingVotes_When_BookIsRead() {
+        BookRepresentation stored = new BookRepresentation(1, "F01", "LOTR", "J.R.R.Tolkien", "A hobbit on a mission", "fantasy");
+        stored.setScoreRegistry(List.of(5));
+        stored.setScore(5.0);
+        stored.setScoreSum(5);
+        stored.setVotesCount(1);
+        stored.setVersion(3);
+
+        ratingBuffer.add(1, 2);
+        ratingBuffer.add(1, 4);
+        BookRepresentation merged = ratingBuffer.withPendingRatings(1, () -> stored);
+
+        assertAll(
+                () -> assertEquals(List.of(5, 2, 4), merged.getScoreRegistry()),
+                () -> assertEquals(3.67, merged.getScore()),
+                () -> assertEquals(5, merged.getVersion()),
+                () -> assertEquals(11, merged.getScoreSum()),
+                () -> assertEquals(3, merged.getVotesCount()),
+                () -> assertEquals(List.of(5), stored.getScoreRegistry())
+        );
+    }
+
+    @Test
+    public void should_WriteAllBooksInOneBulkWrite_When_Flushed() {
+        when(bookRepository.addRates(any())).thenReturn(Collections.emptySet());
+        when(bookRepository.findAllByIdIn(List.of(1, 2))).thenReturn(List.of(bookEntity));
+        List<BookEntity> flushedBooks = new ArrayList<>();
+        ratingBuffer.onFlushed(flushedBooks::add);
+
+        ratingBuffer.add(1, 4);
+        ratingBuffer.add(1, 4);
+        ratingBuffer.add(2, 5);
+        ratingBuffer.flush(List.of(1, 2));
+
+        verify(bookRepository).addRates(Map.of(1, List.of(4, 4), 2, List.of(5)));
+        assertAll(
+                () -> assertEquals(List.of(bookEntity), flushedBooks),
+                () -> assertEquals(0, ratingBuffer.countPendingVotes(1)),
+                () -> assertEquals(0, ratingBuffer.countPendingVotes(2))
+        );
+    }
+
+    @Test
+    public void should_KeepVotes_When_TheirBookFailedToWrite() {
+        when(bookRepository.addRates(any())).thenReturn(Set.of(2));
+
+        ratingBuffer.add(1, 4);
+        ratingBuffer.add(2, 5);
+        ratingBuffer.flush(List.of(1, 2));
+
+        assertAll(
+                () -> assertEquals(0, ratingBuffer.countPendingVotes(1)),
+                () -> assertEquals(1, ratingBuffer.countPendingVotes(2))
+        );
+    }
+
+    @Test
+    public void should_WriteVotesInArrivalOrder_When_AFailedWriteIsRetried() {
+        when(bookRepository.addRates(any()))
+                .thenThrow(new IllegalStateException("Mongo is down"))
+                .thenReturn(Collections.emptySet());
+
+        ratingBuffer.add(1, 5);
+        ratingBuffer.add(1, 3);
+        assertThrows(IllegalStateException.class, () -> ratingBuffer.flush(List.of(1)));
+        ratingBuffer.add(1, 4);
+        ratingBuffer.flush(List.of(1));
+
+        verify(bookRepository).addRates(Map.of(1, List.of(5, 3, 4)));
+    }
+
+    @Test
+    public void should_KeepAllVotes_When_BulkWriteThrows() {
+        when(bookRepository.addRates(any())).thenThrow(new IllegalStateException("Mongo is down"));
+
+        ratingBuffer.add(1, 4);
+
+        assertThrows(IllegalStateException.class, () -> ratingBuffer.flush(List.of(1)));
+        assertEquals(1, ratingBuffer.countPendingVotes(1));
+        reset(bookRepository);
+    }
+
+    @Test
+    public void should_WriteBufferedVotes_When_ShuttingDown() throws InterruptedException {
+        when(bookRepository.addRates(any())).thenReturn(Collections.emptySet());
+
+        ratingBuffer.add(1, 3);
+        ratingBuffer.shutdown();
+
+        verify(bookRepository).addRates(Map.of(1, List.of(3)));
+    }
+
+    @Test
+    public void should_WriteVoteStraightThrough_When_AddedAfterShutdown() throws InterruptedException {
+        when(bookRepository.addRates(any())).thenReturn(Collections.emptySet());
+
+        ratingBuffer.shutdown();
+        ratingBuffer.add(1, 3);
+
+        verify(bookRepository).addRates(Map.of(1, List.of(3)));
+        assertEquals(0, ratingBuffer.countPendingVotes(1));
+    }
+}
@@ -0,0 +1,173 @@
+package com.course.libraryapp.exposure.service;
+
+import com.course.libraryapp.exposure.exception.BookNotFoundException;
+import com.course.libraryapp.exposure.exception.DuplicateSignatureException;
+import com.course.libraryapp.exposure.exception.NoRatingsException;
+import com.course.libraryapp.exposure.exception.VersionConflictException;
+import com.course.libraryapp.exposure.model.BookRepresentation;
+import com.course.libraryapp.exposure.repository.BookRepository;
+import com.course.libraryapp.exposure.repository.ReactiveBookRepository;
+import com.course.libraryapp.persistance.model.BookEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveLibraryServiceTest {
+
+    private static final BookEntity bookEntity = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien",
+            "A hobbit on a mission to destroy the ring", "fantasy", 4.0, Arrays.asList(4, 4));
+    private static final BookEntity bookEntity2 = new BookEntity(2, "F02", "Star Dust", "Gaiman",
+            "A hobbit on a mission", "fantasy", 4.0, List.of(4));
+    private static final BookEntity bookEntity3 = new BookEntity(3, "F03", "Witcher", "Neil Gaiman",
+            "A hobbit on a mission", "fantasy", 3.0, Arrays.asList(3, 3));
+    private static final BookEntity unratedBookEntity = new BookEntity(4, "F04", "Witcher", "Adrzej Sapkowski",
+            "A hobbit on a mission", "fantasy", 0.0, new ArrayList<>());
+
+    private static final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    ReactiveBookRepository reactiveBookRepository;
+
+    @Mock
+    BookRepository bookRepository;
+
+    private ReactiveLibraryService reactiveLibraryService;
+
+    @BeforeEach
+    public void setup() {
+        reactiveLibraryService = new ReactiveLibraryService(reactiveBookRepository, validator, new BookTitleIndex(bookRepository, Duration.ofMinutes(1)), 2);
+    }
+
+    @Test
+    public void should_ReadBooksInIdOrder_When_FoundByTitle() {
+        when(bookRepository.findAll()).thenReturn(Arrays.asList(bookEntity3, unratedBookEntity, bookEntity));
+        when(reactiveBookRepository.findAllById(List.of(3, 4))).thenReturn(Flux.just(unratedBookEntity, bookEntity3));
+
+        StepVerifier.create(reactiveLibraryService.getBookByTitle("witcher"))
+                .assertNext(books -> assertEquals(List.of(3, 4), books.stream().map(BookRepresentation::getId).toList()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void should_ReturnOnlyTiedLeaders_When_GettingHighestRatedBook() {
+        when(reactiveBookRepository.findTopBooks("score", 3)).thenReturn(Flux.just(bookEntity, bookEntity2, bookEntity3));
+
+        StepVerifier.create(reactiveLibraryService.getHighestRatedBook())
+                .assertNext(leaders -> assertEquals(List.of(1, 2), leaders.stream().map(BookRepresentation::getId).toList()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void should_FailWithNoRatings_When_NoBookHasVotes() {
+        when(reactiveBookRepository.findTopBooks("votesCount", 3)).thenReturn(Flux.just(unratedBookEntity, unratedBookEntity, unratedBookEntity));
+
+        StepVerifier.create(reactiveLibraryService.getMostPopularBook())
+                .expectErrorMatches(e -> e instanceof NoRatingsException && e.getMessage().equals(NoRatingsException.NO_VOTES))
+                .verify();
+        verify(reactiveBookRepository, never()).findAllByFieldValue(anyString(), any());
+    }
+
+    @Test
+    public void should_ReadAllTiedBooks_When_LeadersFillTheBoard() {
+        BookEntity tied = new BookEntity(5, "F05", "Dune", "Herbert", "A desert planet", "sci-fi", 4.0, List.of(4));
+        when(reactiveBookRepository.findTopBooks("score", 3)).thenReturn(Flux.just(bookEntity, bookEntity2, tied));
+        when(reactiveBookRepository.findAllByFieldValue("score", 4.0)).thenReturn(Flux.just(bookEntity, bookEntity2, tied, tied));
+
+        StepVerifier.create(reactiveLibraryService.getHighestRatedBook())
+                .assertNext(leaders -> assertEquals(4, leaders.size()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void should_RetryFromNewVersion_When_BookChangedBeforeReplace() {
+        BookEntity stored = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien", "description", "fantasy", 0, new ArrayList<>());
+        BookEntity changed = new BookEntity(1, "F01", "LOTR", "J.R.R.Tolkien", "description", "fantasy", 0, new ArrayList<>());
+        changed.setVersion(1);
+        when(reactiveBookRepository.findById(1)).thenReturn(Mono.just(stored)).thenReturn(Mono.just(changed));
+        when(reactiveBookRepository.replaceIfVersion(any(), eq(0L))).thenReturn(Mono.empty());
+        when(reactiveBookRepository.replaceIfVersion(any(), eq(1L))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        BookRepresentation update = new BookRepresentation(0, "F01", "The Hobbit", "J.R.R.Tolkien", "description", "fantasy");
+
+        StepVerifier.create(reactiveLibraryService.checkIdAndUpdateBook(1, update))
+                .assertNext(updated -> assertEquals(2, updated.getVersion()))
+                .verifyComplete();
+        verify(reactiveBookRepository, times(2)).replaceIfVersion(any(), anyLong());
+    }
+
+    @Test
+    public void should_FailWithVersionConflict_When_EveryReplaceLosesTheRace() {
+        when(reactiveBookRepository.findById(1)).thenReturn(Mono.just(bookEntity));
+        when(reactiveBookRepository.replaceIfVersion(any(), anyLong())).thenReturn(Mono.empty());
+        BookRepresentation update = new BookRepresentation(0, "F01", "The Hobbit", "J.R.R.Tolkien", "description", "fantasy");
+
+        StepVerifier.create(reactiveLibraryService.checkIdAndUpdateBook(1, update))
+                .expectError(VersionConflictException.class)
+                .verify();
+        verify(reactiveBookRepository, times(LibraryService.MAX_UPDATE_ATTEMPTS)).replaceIfVersion(any(), anyLong());
+    }
+
+    @Test
+    public void should_FailWithDuplicateSignature_When_BookAlreadyExists() {
+        BookRepresentation bookRepresentation = new BookRepresentation(0, "F01", "LOTR", "J.R.R.Tolkien",
+                "A hobbit on a mission to destroy the ring", "fantasy");
+        when(reactiveBookRepository.findBySignature("F01")).thenReturn(Mono.just(bookEntity));
+
+        StepVerifier.create(reactiveLibraryService.checkSignatureAndAddBook(bookRepresentation))
+                .expectError(DuplicateSignatureException.class)
+                .verify();
+    }
+
+    @Test
+    public void should_FailWithDuplicateSignature_When_BookAddedConcurrently() {
+        BookRepresentation bookRepresentation = new BookRepresentation(0, "F01", "LOTR", "J.R.R.Tolkien",
+                "A hobbit on a mission to destroy the ring", "fantasy");
+        when(reactiveBookRepository.findBySignature("F01")).thenReturn(Mono.empty());
+        when(reactiveBookRepository.insertCustomized(any())).thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+
+        StepVerifier.create(reactiveLibraryService.checkSignatureAndAddBook(bookRepresentation))
+                .expectError(DuplicateSignatureException.class)
+                .verify();
+    }
+
+    @Test
+    public void should_FailWithNotFound_When_RatingMissingBook() {
+        when(reactiveBookRepository.rateBook(9, 4)).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveLibraryService.checkIdAndRateABook(9, 4))
+                .expectErrorMessage("No requested book with id=9 in a library.")
+                .verify();
+    }
+
+    @Test
+    public void should_FailWithNotFound_When_RemovingMissingBook() {
+        when(reactiveBookRepository.removeById(9)).thenReturn(Mono.just(false));
+
+        StepVerifier.create(reactiveLibraryService.checkIdAndRemoveBook(9))
+                .expectError(BookNotFoundException.class)
+                .verify();
+    }
+}